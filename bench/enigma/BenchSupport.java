@@ -0,0 +1,120 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+
+/** Synthetic alphabets, rotors, machines and messages of any size for
+ *  the benchmarks.
+ *  @author Xiaoru Zhao
+ */
+class BenchSupport {
+
+    /** The upper-case letters. */
+    static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    /** First code point of alphabets larger than UPPER (CJK ideographs). */
+    static final int LARGE_BASE = 0x4e00;
+
+    /** Return an alphabet of SIZE characters: a prefix of UPPER if SIZE is
+     *  at most 26, and a run of CJK ideographs otherwise. */
+    static Alphabet alphabet(int size) {
+        if (size <= UPPER.length()) {
+            return new Alphabet(UPPER.substring(0, size));
+        }
+        int[] cps = new int[size];
+        for (int i = 0; i < size; i += 1) {
+            cps[i] = LARGE_BASE + i;
+        }
+        return new Alphabet(cps);
+    }
+
+    /** Return a random permutation of ALPHA, drawn using RANDOM, in cycle
+     *  notation. */
+    static String cycles(Alphabet alpha, Random random) {
+        int[] order = shuffle(alpha.size(), random);
+        StringBuilder result = new StringBuilder();
+        boolean[] seen = new boolean[order.length];
+        for (int start = 0; start < order.length; start += 1) {
+            if (!seen[start]) {
+                result.append('(');
+                for (int k = start; !seen[k]; k = order[k]) {
+                    seen[k] = true;
+                    result.appendCodePoint(alpha.toCodePoint(k));
+                }
+                result.append(") ");
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return a random pairing of the characters of ALPHA, which must
+     *  have an even size, drawn using RANDOM, in cycle notation. */
+    static String pairs(Alphabet alpha, Random random) {
+        int[] order = shuffle(alpha.size(), random);
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k + 1 < order.length; k += 2) {
+            result.append('(')
+                .appendCodePoint(alpha.toCodePoint(order[k]))
+                .appendCodePoint(alpha.toCodePoint(order[k + 1]))
+                .append(") ");
+        }
+        return result.toString();
+    }
+
+    /** Return a machine over an alphabet of SIZE characters with a
+     *  reflector and NUMROTORS - 1 moving rotors whose wirings are drawn
+     *  from SEED, set up with all rotors at their first position. */
+    static Machine machine(int size, int numRotors, long seed) {
+        Random random = new Random(seed);
+        Alphabet alpha = alphabet(size);
+        Collection<Rotor> all = new ArrayList<>();
+        String[] names = new String[numRotors];
+        names[0] = "R";
+        all.add(new Reflector("R", new Permutation(pairs(alpha, random),
+                                                   alpha)));
+        for (int i = 1; i < numRotors; i += 1) {
+            names[i] = "M" + i;
+            String notch = new String(Character.toChars(
+                alpha.toCodePoint(random.nextInt(size))));
+            all.add(new MovingRotor(names[i],
+                new Permutation(cycles(alpha, random), alpha), notch));
+        }
+        Machine machine = new Machine(alpha, numRotors, numRotors - 1, all);
+        machine.insertRotors(names);
+        StringBuilder setting = new StringBuilder();
+        for (int i = 1; i < numRotors; i += 1) {
+            setting.appendCodePoint(alpha.toCodePoint(0));
+        }
+        machine.setRotors(setting.toString());
+        return machine;
+    }
+
+    /** Return a random message of LEN characters of ALPHA drawn from
+     *  SEED. */
+    static String message(Alphabet alpha, int len, long seed) {
+        Random random = new Random(seed);
+        StringBuilder result = new StringBuilder(len);
+        for (int i = 0; i < len; i += 1) {
+            result.appendCodePoint(alpha.toCodePoint(
+                random.nextInt(alpha.size())));
+        }
+        return result.toString();
+    }
+
+    /** Return a random permutation of 0 .. N-1 drawn using RANDOM. */
+    static int[] shuffle(int n, Random random) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = i;
+        }
+        for (int i = n - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            int t = result[i];
+            result[i] = result[j];
+            result[j] = t;
+        }
+        return result;
+    }
+
+}
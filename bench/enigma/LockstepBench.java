@@ -0,0 +1,102 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Throughput of the lockstep engines: one message through many machines
+ *  at once.  The laneChars counter is the rate in lanes times characters
+ *  per second.  The vector engine is used for engine=best only if it has
+ *  been compiled (make -C vector) and the forked JVM is given the module,
+ *  e.g. 'make run BENCH=Lockstep JMHFLAGS="-jvmArgsAppend
+ *  --add-modules=jdk.incubator.vector"'.
+ *  @author Xiaoru Zhao
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class LockstepBench {
+
+    /** Number of machines run together. */
+    @Param({ "64", "4096" })
+    public int lanes;
+
+    /** Characters per message. */
+    @Param({ "256" })
+    public int length;
+
+    /** Number of characters in the alphabet. */
+    @Param({ "26" })
+    public int size;
+
+    /** Which engine: "scalar" or "best". */
+    @Param({ "scalar", "best" })
+    public String engine;
+
+    /** Counts of work done, reported by JMH as rates. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        /** Lanes times characters converted. */
+        public long laneChars;
+    }
+
+    /** Build the lanes, each a five-rotor machine at random positions,
+     *  and the message. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Machine machine = BenchSupport.machine(size, 5, 5);
+        Random random = new Random(lanes);
+        _lanes = new MachineLanes(5, size, lanes);
+        for (int i = 0; i < lanes; i += 1) {
+            int lane = _lanes.add(machine);
+            for (int k = 1; k < 5; k += 1) {
+                _lanes.setPosition(lane, k, random.nextInt(size));
+            }
+        }
+        _message = new int[length];
+        for (int t = 0; t < length; t += 1) {
+            _message[t] = random.nextInt(size);
+        }
+        _out = new int[length * lanes];
+        _engine = engine.equals("scalar") ? LockstepEngine.scalar()
+            : LockstepEngine.best();
+    }
+
+    /** One message through every lane. */
+    @Benchmark
+    public int[] convert(Counters counters) {
+        _engine.convert(_lanes, _message, length, _out);
+        counters.laneChars += (long) lanes * length;
+        return _out;
+    }
+
+    /** The engine under test. */
+    private LockstepEngine _engine;
+
+    /** The machines. */
+    private MachineLanes _lanes;
+
+    /** The message, as alphabet indices. */
+    private int[] _message;
+
+    /** Output of the engine. */
+    private int[] _out;
+
+}
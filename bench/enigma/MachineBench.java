@@ -0,0 +1,107 @@
+package enigma;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Time for Machine.convert on whole messages, by message length,
+ *  alphabet size and number of rotors, and on single characters, by
+ *  alphabet size and number of rotors.  Divide the message length by the
+ *  reported time per operation to get characters per second.
+ *  @author Xiaoru Zhao
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class MachineBench {
+
+    /** A machine and a message for it. */
+    @State(Scope.Thread)
+    public static class Message {
+
+        /** Characters per message. */
+        @Param({ "1", "1000", "1000000", "100000000" })
+        public int length;
+
+        /** Number of characters in the alphabet. */
+        @Param({ "26", "1024" })
+        public int size;
+
+        /** Number of rotor slots, including the reflector. */
+        @Param({ "3", "5", "8" })
+        public int rotors;
+
+        /** Build the machine and message. */
+        @Setup(Level.Trial)
+        public void setUp() {
+            _machine = BenchSupport.machine(size, rotors, rotors);
+            _message = BenchSupport.message(_machine.getAlphabet(), length,
+                                            length);
+        }
+
+        /** The machine under test. */
+        private Machine _machine;
+
+        /** The message converted. */
+        private String _message;
+
+    }
+
+    /** A machine and one character index for it.  Unlike Message, it
+     *  has no message length, which would only repeat identical runs. */
+    @State(Scope.Thread)
+    public static class OneChar {
+
+        /** Number of characters in the alphabet. */
+        @Param({ "26", "1024" })
+        public int size;
+
+        /** Number of rotor slots, including the reflector. */
+        @Param({ "3", "5", "8" })
+        public int rotors;
+
+        /** Build the machine and pick the character. */
+        @Setup(Level.Trial)
+        public void setUp() {
+            _machine = BenchSupport.machine(size, rotors, rotors);
+            String message =
+                BenchSupport.message(_machine.getAlphabet(), 1, 1);
+            _index = _machine.getAlphabet().toInt(message.codePointAt(0));
+        }
+
+        /** The machine under test. */
+        private Machine _machine;
+
+        /** The character index converted. */
+        private int _index;
+
+    }
+
+    /** Machine.convert of a whole message of STATE. */
+    @Benchmark
+    public String convertMessage(Message state) {
+        return state._machine.convert(state._message);
+    }
+
+    /** Machine.convert of one character index of STATE, including
+     *  stepping. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public int convertChar(OneChar state) {
+        return state._machine.convert(state._index);
+    }
+
+}
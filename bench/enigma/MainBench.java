@@ -0,0 +1,100 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** End-to-end time of Main on the catalog in testing/correct/default.conf,
+ *  reading a generated input file and writing an output file.  Each run
+ *  constructs a Main and calls its process method directly, since
+ *  Main.main may end the JVM.
+ *  @author Xiaoru Zhao
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MainBench {
+
+    /** Configuration file, relative to the bench directory. */
+    @Param({ "../testing/correct/default.conf" })
+    public String config;
+
+    /** Number of message lines in the input. */
+    @Param({ "1", "1000", "100000" })
+    public int lines;
+
+    /** Number of message lines between settings lines (0 for a single
+     *  settings line at the start). */
+    @Param({ "0", "10" })
+    public int resetEvery;
+
+    /** Write the input file. */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        _input = Files.createTempFile("enigma-bench", ".in");
+        _output = Files.createTempFile("enigma-bench", ".out");
+        Alphabet upper = BenchSupport.alphabet(BenchSupport.UPPER.length());
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i += 1) {
+            if (i == 0 || resetEvery > 0 && i % resetEvery == 0) {
+                text.append(SETTINGS).append('\n');
+            }
+            text.append(BenchSupport.message(upper, LINE_LENGTH, i))
+                .append('\n');
+        }
+        Files.write(_input, text.toString().getBytes(StandardCharsets.UTF_8));
+        if (!Files.isReadable(Paths.get(config))) {
+            throw new IOException("cannot read " + config);
+        }
+    }
+
+    /** Remove the input and output files. */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(_input);
+        Files.deleteIfExists(_output);
+    }
+
+    /** One complete run of Main. */
+    @Benchmark
+    public void process() {
+        new Main(new String[] { config, _input.toString(),
+                                _output.toString() }).process();
+    }
+
+    /** Settings line used in the input. */
+    private static final String SETTINGS =
+        "* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)";
+
+    /** Characters per message line. */
+    private static final int LINE_LENGTH = 60;
+
+    /** Generated input file. */
+    private Path _input;
+
+    /** Output file. */
+    private Path _output;
+
+}
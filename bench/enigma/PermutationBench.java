@@ -0,0 +1,101 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Latency of single lookups in Permutation, Alphabet and MovingRotor,
+ *  as a function of alphabet size.
+ *  @author Xiaoru Zhao
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermutationBench {
+
+    /** Number of characters in the alphabet. */
+    @Param({ "26", "1024", "16384" })
+    public int size;
+
+    /** Build the permutation, rotor and lookup keys. */
+    @Setup
+    public void setUp() {
+        Random random = new Random(size);
+        _alphabet = BenchSupport.alphabet(size);
+        _perm = new Permutation(BenchSupport.cycles(_alphabet, random),
+                                _alphabet);
+        _rotor = new MovingRotor("M", new Permutation(
+            BenchSupport.cycles(_alphabet, random), _alphabet),
+            new String(Character.toChars(_alphabet.toCodePoint(0))));
+        _rotor.set(size / 2);
+        _keys = BenchSupport.shuffle(size, random);
+        _codePoints = new int[size];
+        for (int i = 0; i < size; i += 1) {
+            _codePoints[i] = _alphabet.toCodePoint(_keys[i]);
+        }
+    }
+
+    /** Return the next index to look up. */
+    private int next() {
+        _k = _k + 1 == _keys.length ? 0 : _k + 1;
+        return _keys[_k];
+    }
+
+    /** Permutation.permute of one index. */
+    @Benchmark
+    public int permute() {
+        return _perm.permute(next());
+    }
+
+    /** Permutation.invert of one index. */
+    @Benchmark
+    public int invert() {
+        return _perm.invert(next());
+    }
+
+    /** Alphabet.toInt of one code point. */
+    @Benchmark
+    public int toInt() {
+        _k = _k + 1 == _codePoints.length ? 0 : _k + 1;
+        return _alphabet.toInt(_codePoints[_k]);
+    }
+
+    /** MovingRotor.convertForward of one index. */
+    @Benchmark
+    public int convertForward() {
+        return _rotor.convertForward(next());
+    }
+
+    /** The alphabet. */
+    private Alphabet _alphabet;
+
+    /** A random permutation of _alphabet. */
+    private Permutation _perm;
+
+    /** A moving rotor over _alphabet, set mid-way. */
+    private MovingRotor _rotor;
+
+    /** Indices to look up, in random order. */
+    private int[] _keys;
+
+    /** The code points at _keys. */
+    private int[] _codePoints;
+
+    /** Position in _keys. */
+    private int _k;
+
+}
@@ -1,27 +1,35 @@
 package enigma;
 
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
 
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  Characters are Unicode code
+ *  points, so an alphabet may hold characters outside the Basic
+ *  Multilingual Plane.  Looking up the index of a character takes constant
+ *  time however large the alphabet: a direct table indexed by code point
+ *  when the code points are densely packed, and a hash table otherwise.
  *  @author Xiaoru Zhao
  */
 class Alphabet {
 
-    /** A char list of alphabet. */
-    private char[] _char;
-
     /** A new alphabet containing CHARS. The K-th character has index
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
-        _char = new char [chars.length()];
-        for (int i = 0; i < chars.length(); i += 1) {
-            _char[i] = chars.charAt(i);
-        }
+        this(chars.codePoints().toArray());
     }
 
     /** A new alphabet containing CHARS. */
     Alphabet(char[] chars) {
-        _char = chars;
+        this(new String(chars));
+    }
+
+    /** A new alphabet containing the code points CODEPOINTS, the K-th of
+     *  which has index K.  No code point may be duplicated. */
+    Alphabet(int[] codePoints) {
+        _char = codePoints.clone();
+        buildIndex();
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -36,29 +44,194 @@ class Alphabet {
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        for (int i = 0; i < _char.length; i += 1) {
-            if (_char[i] == ch) {
-                return true;
-            }
-        }
-        return false;
+        return indexOf(ch) >= 0;
+    }
+
+    /** Returns true if the code point CP is in this alphabet. */
+    boolean contains(int cp) {
+        return indexOf(cp) >= 0;
     }
 
     /** Returns character number INDEX in the alphabet, where
-     *  0 <= INDEX < size(). */
+     *  0 <= INDEX < size().  That character must be in the Basic
+     *  Multilingual Plane; see toCodePoint otherwise. */
     char toChar(int index) {
+        int cp = _char[index];
+        if (cp > Character.MAX_VALUE) {
+            throw error("character %s does not fit in a char",
+                        new String(Character.toChars(cp)));
+        }
+        return (char) cp;
+    }
+
+    /** Returns the code point of character number INDEX in the alphabet,
+     *  where 0 <= INDEX < size(). */
+    int toCodePoint(int index) {
         return _char[index];
     }
 
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar(). */
     int toInt(char ch) {
+        return Math.max(indexOf(ch), 0);
+    }
+
+    /** Returns the index of the code point CP, which must be in the
+     *  alphabet.  This is the inverse of toCodePoint(). */
+    int toInt(int cp) {
+        return Math.max(indexOf(cp), 0);
+    }
+
+    /** Returns the index of the code point CP in the alphabet, or -1 if
+     *  it is not in the alphabet. */
+    int indexOf(int cp) {
+        if (_dense != null) {
+            int k = cp - _min;
+            return k >= 0 && k < _dense.length ? _dense[k] : -1;
+        }
+        int mask = _keys.length - 1;
+        for (int h = hash(cp) & mask; _keys[h] != EMPTY; h = (h + 1) & mask) {
+            if (_keys[h] == cp) {
+                return _values[h];
+            }
+        }
+        return -1;
+    }
+
+    /** Returns true iff every character of this alphabet can be stored
+     *  in a single byte (i.e., lies in the range 0..255). */
+    boolean singleByte() {
         for (int i = 0; i < _char.length; i += 1) {
-            if (_char[i] == ch) {
-                return i;
+            if (_char[i] > MAX_BYTE) {
+                return false;
             }
         }
-        return 0;
+        return true;
     }
 
+    /** Returns a table of 256 entries mapping each unsigned byte value
+     *  to its index in this alphabet, or to -1 if that byte is not in the
+     *  alphabet.  Requires that singleByte() be true. */
+    int[] byteIndex() {
+        if (_byteIndex == null) {
+            if (!singleByte()) {
+                throw error("alphabet is not single-byte");
+            }
+            int[] index = new int[MAX_BYTE + 1];
+            Arrays.fill(index, -1);
+            for (int i = _char.length - 1; i >= 0; i -= 1) {
+                index[_char[i]] = i;
+            }
+            _byteIndex = index;
+        }
+        return _byteIndex;
+    }
+
+    /** Returns a table mapping each index of this alphabet to the byte
+     *  holding its character.  The inverse of byteIndex(). */
+    byte[] indexByte() {
+        if (_indexByte == null) {
+            if (!singleByte()) {
+                throw error("alphabet is not single-byte");
+            }
+            byte[] bytes = new byte[_char.length];
+            for (int i = 0; i < _char.length; i += 1) {
+                bytes[i] = (byte) _char[i];
+            }
+            _indexByte = bytes;
+        }
+        return _indexByte;
+    }
+
+    /** Fill in the index from code points to indices, checking for
+     *  duplicates. */
+    private void buildIndex() {
+        int min = Integer.MAX_VALUE, max = -1;
+        for (int cp : _char) {
+            min = Math.min(min, cp);
+            max = Math.max(max, cp);
+        }
+        if (_char.length == 0) {
+            min = max = 0;
+        }
+        if ((long) max - min < (long) DENSITY * _char.length + MAX_BYTE) {
+            _min = min;
+            _dense = new int[max - min + 1];
+            Arrays.fill(_dense, -1);
+            for (int i = 0; i < _char.length; i += 1) {
+                if (_dense[_char[i] - min] >= 0) {
+                    throw duplicate(_char[i]);
+                }
+                _dense[_char[i] - min] = i;
+            }
+            return;
+        }
+        int capacity = Integer.highestOneBit(2 * _char.length) * 2;
+        _keys = new int[capacity];
+        _values = new int[capacity];
+        Arrays.fill(_keys, EMPTY);
+        int mask = capacity - 1;
+        for (int i = 0; i < _char.length; i += 1) {
+            int h = hash(_char[i]) & mask;
+            while (_keys[h] != EMPTY) {
+                if (_keys[h] == _char[i]) {
+                    throw duplicate(_char[i]);
+                }
+                h = (h + 1) & mask;
+            }
+            _keys[h] = _char[i];
+            _values[h] = i;
+        }
+    }
+
+    /** Return the error reporting that CP is duplicated. */
+    private static EnigmaException duplicate(int cp) {
+        return error("character %s duplicated in alphabet",
+                     new String(Character.toChars(cp)));
+    }
+
+    /** Return a well-mixed hash of the code point CP. */
+    private static int hash(int cp) {
+        int h = cp * HASH_MULTIPLIER;
+        return h ^ (h >>> HASH_SHIFT);
+    }
+
+    /** Largest unsigned byte value. */
+    private static final int MAX_BYTE = 255;
+
+    /** A dense index is used when the code points span no more than this
+     *  many times the size of the alphabet (plus MAX_BYTE). */
+    private static final int DENSITY = 4;
+
+    /** Marks an unused slot of _keys. */
+    private static final int EMPTY = -1;
+
+    /** Multiplier for hashing code points (the golden ratio, 2**32/phi). */
+    private static final int HASH_MULTIPLIER = 0x9e3779b9;
+
+    /** Shift folding the high bits of a hash into its low bits. */
+    private static final int HASH_SHIFT = 16;
+
+    /** The code points of the alphabet, in order. */
+    private final int[] _char;
+
+    /** If non-null, maps code point C to the index of C (or to -1) at
+     *  C - _min. */
+    private int[] _dense;
+
+    /** Smallest code point in the alphabet, for _dense. */
+    private int _min;
+
+    /** Open-addressed hash table of the code points, if _dense is null. */
+    private int[] _keys;
+
+    /** The index of the code point in the same slot of _keys. */
+    private int[] _values;
+
+    /** Cached result of byteIndex(), or null if not yet computed. */
+    private int[] _byteIndex;
+
+    /** Cached result of indexByte(), or null if not yet computed. */
+    private byte[] _indexByte;
+
 }
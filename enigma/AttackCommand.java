@@ -0,0 +1,131 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.file.Paths;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--attack (--corpus=FILE [--ngram=N] | --table=TABLE)
+ *  [--pairs=M] [--top=K] [--threads=T] CONFIG SPACE INPUT [OUTPUT]",
+ *  which attacks the ciphertext in INPUT (all its lines run together,
+ *  without whitespace) without a crib (see CiphertextAttack): it picks
+ *  the settings of SPACE (see KeyspaceSweep.parse) whose outputs have
+ *  the highest index of coincidence, and then looks for up to M
+ *  plugboard pairs (default 10) under which the output best matches the
+ *  N-grams (default 3) of the text in FILE, or those saved in TABLE by
+ *  TrainCommand.  It reports progress and each new best key on the
+ *  standard error, and finally prints the best K keys (default 1), best
+ *  first, each as a settings line followed by the converted message.
+ *  @author Xiaoru Zhao
+ */
+class AttackCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE =
+        "--attack (--corpus=FILE [--ngram=N] | --table=TABLE) [--pairs=M]"
+        + " [--top=K] [--threads=T] CONFIG SPACE INPUT [OUTPUT]";
+
+    /** An attack whose options and operands are in OPTIONS. */
+    AttackCommand(Options options) {
+        super(options, USAGE);
+        options.flag("--attack");
+        _corpusName = options.value("--corpus");
+        _tableName = options.value("--table");
+        _ngram = options.count("--ngram");
+        _pairs = options.number("--pairs", 0, -1);
+        _top = options.count("--top");
+        _threads = options.count("--threads");
+        List<String> operands = options.operands();
+        if ((_corpusName == null) == (_tableName == null)
+            || operands.size() < 3 || operands.size() > 4) {
+            throw usage();
+        }
+        if (_tableName != null && _ngram > 0) {
+            throw error("--ngram is not allowed with --table");
+        }
+        setConfig(operands.get(0));
+        _settings = operands.get(1);
+        setStreams(operands.get(2),
+                   operands.size() > 3 ? operands.get(3) : null);
+    }
+
+    @Override
+    void run() {
+        Machine machine = machine();
+        Alphabet alphabet = alphabet();
+        KeyspaceSweep sweep = space(machine);
+        sweep.parse(_settings);
+        NGramScorer scorer = _tableName != null ? loadTable()
+            : TrainCommand.train(alphabet, _ngram, _corpusName);
+        CiphertextAttack attack =
+            new CiphertextAttack(sweep, machine.catalog(), scorer);
+        if (_threads > 0) {
+            attack.setThreads(_threads);
+        }
+        if (_pairs >= 0) {
+            attack.setMaxPairs(_pairs);
+        }
+        int top = Math.max(1, _top);
+        attack.setCandidates(Math.max(top, attack.candidates()));
+        attack.setListener(new CiphertextAttack.Listener() {
+            @Override
+            public void progress(int stage, long done, long total) {
+                System.err.printf("stage %d: %d of %d%n", stage, done, total);
+            }
+
+            @Override
+            public void best(CiphertextAttack.Key key) {
+                System.err.printf("best: %s (%.1f)%n",
+                                  key.settingsLine(alphabet), key.score());
+            }
+        });
+        List<CiphertextAttack.Key> keys = attack.run(indices(readAll()));
+        for (CiphertextAttack.Key key
+                 : keys.subList(0, Math.min(top, keys.size()))) {
+            output().println(key.settingsLine(alphabet));
+            printMessageLine(KeyspaceSweep.text(key.output(), alphabet));
+        }
+        output().flush();
+    }
+
+    /** Return the scorer saved in file _tableName, which must be over
+     *  alphabet(). */
+    private NGramScorer loadTable() {
+        NGramScorer result;
+        try {
+            result = NGramScorer.load(Paths.get(_tableName));
+        } catch (IOException excp) {
+            throw error("could not read %s", _tableName);
+        }
+        if (!MachineConfig.sameAlphabet(result.alphabet(), alphabet())) {
+            throw error("%s is not over the alphabet of %s", _tableName,
+                        config().name());
+        }
+        return result;
+    }
+
+    /** Space of settings attacked. */
+    private final String _settings;
+
+    /** Name of the corpus of the n-grams, or null. */
+    private final String _corpusName;
+
+    /** Name of a saved n-gram table, or null. */
+    private final String _tableName;
+
+    /** Length of the n-grams, or 0 for the default. */
+    private final int _ngram;
+
+    /** Most plugboard pairs looked for, or -1 for the default. */
+    private final int _pairs;
+
+    /** Number of best keys printed, or 0 for one. */
+    private final int _top;
+
+    /** Number of threads attacking, or 0 for the default. */
+    private final int _threads;
+
+}
@@ -0,0 +1,640 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static enigma.EnigmaException.*;
+
+/** A simulation of the Turing-Welchman bombe.  Given a crib, a stretch of
+ *  known plaintext lying at a known offset in a ciphertext, it finds the
+ *  rotor orders and starting positions under which the crib could have
+ *  given the ciphertext through some plugboard, together with the
+ *  plugboard pairs that those settings imply.
+ *
+ *  Each letter of the crib and the ciphertext letter beneath it are
+ *  joined, in the menu, by an edge labelled with the number of steps the
+ *  machine has taken by then.  Without its plugboard, the machine at each
+ *  step is an involution S, and the plugboard P must satisfy
+ *  P(c) = S(P(p)) along every edge from p to c.  For each setting, the
+ *  bombe assumes each value for P of the most connected letter of the
+ *  menu in turn, and follows the edges to find everything that
+ *  assumption implies, as a set of lit wires for each letter.  An
+ *  assumption that lights two wires for one letter is impossible; one
+ *  that survives is a stop.  With the diagonal board, each lit wire
+ *  P(a) = b also lights P(b) = a.
+ *
+ *  Ring settings are not searched: a stop gives the positions of the
+ *  rotors' wiring, which is all the bombe can see.  The machine is
+ *  assumed to start fresh at each setting, as after a single settings
+ *  line.  Rotor orders are shared out among threads, and for each order
+ *  the plugboard-free involution at every combination of rotor positions
+ *  is computed in advance, so that following an edge is a table lookup.
+ *  @author Xiaoru Zhao
+ */
+class Bombe {
+
+    /** A setting that survived every test, and the plugboard pairs it
+     *  implies. */
+    static class Stop {
+
+        /** The stop at rotor order ORDER and positions POSITIONS, with
+         *  STECKERS giving the plugboard partner (possibly itself) of each
+         *  letter, or -1 where unknown.  RANK orders stops as found by a
+         *  single thread. */
+        Stop(String[] order, int[] positions, int[] steckers, long rank) {
+            _order = order;
+            _positions = positions;
+            _steckers = steckers;
+            _rank = rank;
+        }
+
+        /** Return the names of the rotors, reflector first. */
+        String[] order() {
+            return _order;
+        }
+
+        /** Return the position of each rotor but the reflector, as an
+         *  alphabet index. */
+        int[] positions() {
+            return _positions;
+        }
+
+        /** Return the plugboard partner of each alphabet index, or -1
+         *  where the menu says nothing. */
+        int[] steckers() {
+            return _steckers;
+        }
+
+        /** Return the plugboard pairs I imply, as cycles over
+         *  ALPHABET. */
+        String plugboard(Alphabet alphabet) {
+            StringBuilder result = new StringBuilder();
+            boolean[] used = new boolean[_steckers.length];
+            for (int a = 0; a < _steckers.length; a += 1) {
+                int b = _steckers[a];
+                if (b >= 0 && b != a && !used[a] && !used[b]
+                    && (_steckers[b] == a || _steckers[b] < 0)) {
+                    used[a] = used[b] = true;
+                    result.append('(').appendCodePoint(alphabet.toCodePoint(a))
+                        .appendCodePoint(alphabet.toCodePoint(b)).append(')');
+                }
+            }
+            return result.toString();
+        }
+
+        /** Return the settings line giving my setting and the plugboard
+         *  pairs I imply, over ALPHABET. */
+        String settingsLine(Alphabet alphabet) {
+            KeyspaceSweep.Result setting =
+                new KeyspaceSweep.Result(_order, _positions, null, null, 0);
+            return setting.settingsLine(alphabet, plugboard(alphabet));
+        }
+
+        /** Return the position of this stop in the order in which one
+         *  thread would have found it. */
+        long rank() {
+            return _rank;
+        }
+
+        /** The rotor order. */
+        private final String[] _order;
+
+        /** The rotor positions. */
+        private final int[] _positions;
+
+        /** The plugboard partners. */
+        private final int[] _steckers;
+
+        /** The order of discovery. */
+        private final long _rank;
+
+    }
+
+    /** A bombe for machines over ALPHA with NUMROTORS rotor slots and
+     *  PAWLS pawls, using the rotors of CATALOG.  Initially it has no rotor
+     *  orders, no crib, and no diagonal board. */
+    Bombe(Alphabet alpha, int numRotors, int pawls, RotorCatalog catalog) {
+        if (alpha.size() > Long.SIZE) {
+            throw error("the bombe handles alphabets of at most %d letters",
+                        Long.SIZE);
+        }
+        _alphabet = alpha;
+        _size = alpha.size();
+        _numRotors = numRotors;
+        _pawls = pawls;
+        _catalog = catalog;
+        _checker = new Machine(alpha, numRotors, pawls, catalog);
+        _checker.setMetrics(new EnigmaMetrics("bombe"));
+        _orders = new ArrayList<>();
+        long starts = 1;
+        for (int k = 1; k < numRotors; k += 1) {
+            starts = Math.multiplyExact(starts, _size);
+        }
+        if (starts * _size > MAX_TABLE) {
+            throw error("too many rotor positions for the bombe");
+        }
+        _starts = (int) starts;
+        _threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Add the rotor order ORDER (reflector first).  Throws an
+     *  EnigmaException if a machine would not accept it or its reflector
+     *  does not pair off the letters of the alphabet. */
+    void addOrder(String... order) {
+        _checker.insertRotors(order);
+        int[] reflect =
+            new Permutation(_catalog.get(order[0]).permutation().getCycle(),
+                            _alphabet).forwardTable();
+        for (int i = 0; i < _size; i += 1) {
+            if (reflect[i] == i || reflect[reflect[i]] != i) {
+                throw error("reflector %s does not pair off letters",
+                            order[0]);
+            }
+        }
+        _orders.add(order.clone());
+    }
+
+    /** Add every rotor order that takes its K-th rotor from CHOICES[K] and
+     *  that a machine would accept, leaving out orders that use a rotor
+     *  twice.  Returns the number of orders added. */
+    int addOrders(String[][] choices) {
+        if (choices.length != _numRotors) {
+            throw error("need choices for %d rotor slots", _numRotors);
+        }
+        int before = _orders.size();
+        addOrders(choices, new String[_numRotors], 0);
+        return _orders.size() - before;
+    }
+
+    /** Add the orders completing ORDER from slot K onwards with rotors
+     *  from CHOICES. */
+    private void addOrders(String[][] choices, String[] order, int k) {
+        if (k == _numRotors) {
+            try {
+                addOrder(order);
+            } catch (EnigmaException excp) {
+                /* Not a valid order: leave it out. */
+            }
+            return;
+        }
+        for (String name : choices[k]) {
+            if (!Arrays.asList(order).subList(0, k).contains(name)) {
+                order[k] = name;
+                addOrders(choices, order, k + 1);
+            }
+        }
+    }
+
+    /** Add every rotor order that can be made from my catalog, and return
+     *  the number added. */
+    int addAllOrders() {
+        ArrayList<String> reflectors = new ArrayList<>(),
+            fixed = new ArrayList<>(), moving = new ArrayList<>();
+        for (String name : _catalog.names()) {
+            Rotor rotor = _catalog.get(name);
+            if (rotor.reflecting()) {
+                reflectors.add(name);
+            } else if (rotor.rotates()) {
+                moving.add(name);
+            } else {
+                fixed.add(name);
+            }
+        }
+        String[][] choices = new String[_numRotors][];
+        for (int k = 0; k < _numRotors; k += 1) {
+            Collection<String> names =
+                k == 0 ? reflectors
+                : k < _numRotors - _pawls ? fixed : moving;
+            choices[k] = names.toArray(new String[0]);
+        }
+        return addOrders(choices);
+    }
+
+    /** Return the number of rotor orders to be tested. */
+    int orders() {
+        return _orders.size();
+    }
+
+    /** Use the diagonal board iff ON. */
+    void setDiagonalBoard(boolean on) {
+        _diagonal = on;
+    }
+
+    /** Use up to N threads. */
+    void setThreads(int n) {
+        _threads = Math.max(1, n);
+    }
+
+    /** Give up, throwing an EnigmaException, after finding more than N
+     *  stops.  A menu with too few loops stops almost everywhere. */
+    void setMaxStops(int n) {
+        _maxStops = n;
+    }
+
+    /** Use as menu the crib CRIB (alphabet indices), which is known to have
+     *  given the letters of CIPHER (alphabet indices) starting at
+     *  OFFSET. */
+    void setCrib(int[] crib, int[] cipher, int offset) {
+        if (crib.length == 0) {
+            throw error("empty crib");
+        }
+        if (offset < 0 || offset + crib.length > cipher.length) {
+            throw error("crib does not fit the ciphertext at %d", offset);
+        }
+        int edges = crib.length;
+        _from = crib.clone();
+        _to = Arrays.copyOfRange(cipher, offset, offset + edges);
+        _offset = offset;
+        int[] degree = new int[_size];
+        for (int e = 0; e < edges; e += 1) {
+            degree[_from[e]] += 1;
+            degree[_to[e]] += 1;
+        }
+        _first = new int[_size + 1];
+        for (int a = 0; a < _size; a += 1) {
+            _first[a + 1] = _first[a] + degree[a];
+        }
+        _edge = new int[2 * edges];
+        _other = new int[2 * edges];
+        int[] fill = Arrays.copyOf(_first, _size);
+        for (int e = 0; e < edges; e += 1) {
+            int a = _from[e], b = _to[e];
+            _edge[fill[a]] = e;
+            _other[fill[a]] = b;
+            fill[a] += 1;
+            _edge[fill[b]] = e;
+            _other[fill[b]] = a;
+            fill[b] += 1;
+        }
+        _test = 0;
+        for (int a = 1; a < _size; a += 1) {
+            if (degree[a] > degree[_test]) {
+                _test = a;
+            }
+        }
+    }
+
+    /** Return the letter (alphabet index) whose plugboard partner the
+     *  bombe guesses at each setting. */
+    int testLetter() {
+        return _test;
+    }
+
+    /** Return the number of settings tested. */
+    long size() {
+        return (long) _orders.size() * _starts;
+    }
+
+    /** Test every setting, passing each stop to SINK.  SINK is called
+     *  from one thread at a time, but stops arrive in no particular
+     *  order. */
+    void run(Consumer<Stop> sink) {
+        if (_orders.isEmpty()) {
+            throw error("no rotor orders to test");
+        }
+        if (_from == null) {
+            throw error("no crib");
+        }
+        AtomicInteger next = new AtomicInteger();
+        _stops.set(0);
+        int threads = Math.min(_threads, _orders.size());
+        if (threads <= 1) {
+            new Worker(next, sink).run();
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int i = 0; i < threads; i += 1) {
+                done.add(pool.submit(new Worker(next, sink)));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("bombe interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw error("bombe failed: %s", excp.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Test every setting, and return the stops in the order of their
+     *  rotor orders and then their positions. */
+    List<Stop> run() {
+        ArrayList<Stop> result = new ArrayList<>();
+        run(result::add);
+        result.sort(Comparator.comparingLong(Stop::rank));
+        return result;
+    }
+
+    /** Tests all settings of successive rotor orders until none are
+     *  left. */
+    private class Worker implements Runnable {
+
+        /** A worker taking the number of its next rotor order from NEXT,
+         *  and passing its stops to SINK. */
+        Worker(AtomicInteger next, Consumer<Stop> sink) {
+            _next = next;
+            _sink = sink;
+            _lanes = new MachineLanes(_numRotors, _size, 1);
+            _scrambler = new byte[_starts * _size];
+            _inner = new int[_size];
+            _base = new int[_numRotors];
+            _rotates = new int[_numRotors];
+            _posn = new int[_numRotors];
+            _before = new int[_numRotors];
+            _at = new int[_from.length];
+            _lit = new long[_size];
+            _stack = new int[2 * _size];
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                int n = _next.getAndIncrement();
+                if (n >= _orders.size()) {
+                    return;
+                }
+                String[] order = _orders.get(n);
+                for (int k = 0; k < _numRotors; k += 1) {
+                    Rotor rotor = _catalog.get(order[k]);
+                    _base[k] = _lanes.tables(rotor, _alphabet, 0);
+                    _rotates[k] = rotor.rotates() ? 1 : 0;
+                }
+                _pool = _lanes.pool();
+                compile();
+                for (int start = 0; start < _starts; start += 1) {
+                    test(order, (long) n * _starts + start, start);
+                }
+            }
+        }
+
+        /** Fill _scrambler with the plugboard-free involution of the
+         *  current rotor order at each combination of positions of slots
+         *  1 .. numRotors - 1, as described at _scrambler. */
+        private void compile() {
+            int fast = _numRotors - 1;
+            int outer = _starts / _size;
+            Arrays.fill(_posn, 0);
+            for (int o = 0; o < outer; o += 1) {
+                int rest = o;
+                for (int k = fast - 1; k >= 1; k -= 1) {
+                    _posn[k] = rest % _size;
+                    rest /= _size;
+                }
+                for (int c = 0; c < _size; c += 1) {
+                    int r = c;
+                    for (int k = fast - 1; k >= 0; k -= 1) {
+                        r = through(r, k, 0);
+                    }
+                    for (int k = 1; k < fast; k += 1) {
+                        r = through(r, k, _size);
+                    }
+                    _inner[c] = r;
+                }
+                int row = o * _size * _size;
+                for (int p = 0; p < _size; p += 1) {
+                    _posn[fast] = p;
+                    for (int c = 0; c < _size; c += 1) {
+                        int r = _inner[through(c, fast, 0)];
+                        _scrambler[row + c] = (byte) through(r, fast, _size);
+                    }
+                    row += _size;
+                }
+            }
+        }
+
+        /** Return the conversion of R by the rotor in slot K at position
+         *  _posn[K], using its forward table if TABLE is 0, or its inverse
+         *  if TABLE is the alphabet size. */
+        private int through(int r, int k, int table) {
+            int x = ScalarLockstepEngine.shift(r, _posn[k], _size);
+            return ScalarLockstepEngine.shift(_pool[_base[k] + table + x],
+                                              -_posn[k], _size);
+        }
+
+        /** Test the setting numbered START (its positions as the digits of
+         *  START, slot 1 most significant) of rotor order ORDER, reporting
+         *  any stops with rank RANK. */
+        private void test(String[] order, long rank, int start) {
+            _posn[0] = 0;
+            int rest = start;
+            for (int k = _numRotors - 1; k >= 1; k -= 1) {
+                _posn[k] = rest % _size;
+                rest /= _size;
+                _before[k] = 0;
+            }
+            _before[0] = 0;
+            int steps = _offset + _at.length;
+            for (int t = 0; t < steps; t += 1) {
+                ScalarLockstepEngine.step(_pool, _size, _base, _posn,
+                                          _before, _rotates);
+                if (t >= _offset) {
+                    int index = 0;
+                    for (int k = 1; k < _numRotors; k += 1) {
+                        index = index * _size + _posn[k];
+                    }
+                    _at[t - _offset] = index * _size;
+                }
+            }
+            for (int guess = 0; guess < _size; guess += 1) {
+                if (consistent(guess)) {
+                    report(order, rank, start);
+                }
+            }
+        }
+
+        /** Return true iff assuming that the test letter is plugged to
+         *  GUESS lights no two wires of any letter.  Leaves the lit wires
+         *  in _lit. */
+        private boolean consistent(int guess) {
+            Arrays.fill(_lit, 0);
+            _top = 0;
+            if (!light(_test, guess)) {
+                return false;
+            }
+            while (_top > 0) {
+                _top -= 2;
+                int a = _stack[_top], w = _stack[_top + 1];
+                for (int i = _first[a]; i < _first[a + 1]; i += 1) {
+                    int v = _scrambler[_at[_edge[i]] + w];
+                    if (!light(_other[i], v)) {
+                        return false;
+                    }
+                }
+                if (_diagonal && !light(w, a)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** Light wire W of letter A, unless it is lit already.  Return
+         *  false iff A already has some other wire lit. */
+        private boolean light(int a, int w) {
+            long bit = 1L << w;
+            if ((_lit[a] & bit) != 0) {
+                return true;
+            }
+            if (_lit[a] != 0) {
+                return false;
+            }
+            _lit[a] = bit;
+            _stack[_top] = a;
+            _stack[_top + 1] = w;
+            _top += 2;
+            return true;
+        }
+
+        /** Report the stop, with rank RANK, at setting START of ORDER whose
+         *  wires are lit in _lit. */
+        private void report(String[] order, long rank, int start) {
+            int[] positions = new int[_numRotors - 1];
+            for (int k = positions.length - 1; k >= 0; k -= 1) {
+                positions[k] = start % _size;
+                start /= _size;
+            }
+            int[] steckers = new int[_size];
+            for (int a = 0; a < _size; a += 1) {
+                steckers[a] = _lit[a] == 0
+                    ? -1 : Long.numberOfTrailingZeros(_lit[a]);
+            }
+            Stop stop = new Stop(order.clone(), positions, steckers, rank);
+            if (_stops.incrementAndGet() > _maxStops) {
+                throw error("more than %d stops: the menu needs more loops",
+                            _maxStops);
+            }
+            synchronized (_sink) {
+                _sink.accept(stop);
+            }
+        }
+
+        /** Number of the next unclaimed rotor order. */
+        private final AtomicInteger _next;
+
+        /** Receives stops. */
+        private final Consumer<Stop> _sink;
+
+        /** Compiles the rotors' tables and steps the rotors. */
+        private final MachineLanes _lanes;
+
+        /** The tables of _lanes. */
+        private int[] _pool;
+
+        /** The image of C under the plugboard-free involution with the
+         *  rotors in slots 1 .. numRotors - 1 at the digits of N (slot 1
+         *  most significant), at N * alphabet size + C. */
+        private final byte[] _scrambler;
+
+        /** Conversion by all but the fast rotor, while compiling. */
+        private final int[] _inner;
+
+        /** Offsets of the current order's rotor tables, by slot. */
+        private final int[] _base;
+
+        /** 1 iff the current order's rotor in each slot moves. */
+        private final int[] _rotates;
+
+        /** Current rotor positions, by slot. */
+        private final int[] _posn;
+
+        /** Current notch flags, by slot. */
+        private final int[] _before;
+
+        /** Offset in _scrambler of the involution at each edge of the
+         *  menu. */
+        private final int[] _at;
+
+        /** The wires lit for each letter, as a bit set. */
+        private final long[] _lit;
+
+        /** Letters and wires lit but not yet followed, in pairs. */
+        private final int[] _stack;
+
+        /** Number of entries of _stack in use. */
+        private int _top;
+
+    }
+
+    /** Largest number of entries of the table of involutions computed
+     *  for each rotor order. */
+    private static final long MAX_TABLE = 1 << 26;
+
+    /** Default largest number of stops. */
+    private static final int MAX_STOPS = 10000;
+
+    /** The alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of pawls. */
+    private final int _pawls;
+
+    /** Number of combinations of rotor positions. */
+    private final int _starts;
+
+    /** Source of rotors. */
+    private final RotorCatalog _catalog;
+
+    /** Machine used to check rotor orders. */
+    private final Machine _checker;
+
+    /** The rotor orders. */
+    private final ArrayList<String[]> _orders;
+
+    /** True iff using the diagonal board. */
+    private boolean _diagonal;
+
+    /** Largest number of threads used. */
+    private int _threads;
+
+    /** Largest number of stops found before giving up. */
+    private int _maxStops = MAX_STOPS;
+
+    /** Number of stops found by the current run. */
+    private final AtomicInteger _stops = new AtomicInteger();
+
+    /** Crib letter of each edge of the menu. */
+    private int[] _from;
+
+    /** Ciphertext letter of each edge of the menu. */
+    private int[] _to;
+
+    /** Offset of the crib in the ciphertext. */
+    private int _offset;
+
+    /** The edges of letter A are listed in _edge and _other from
+     *  _first[A] up to _first[A + 1]. */
+    private int[] _first;
+
+    /** Edge number of each entry of the menu's lists of edges. */
+    private int[] _edge;
+
+    /** Letter at the other end of each entry of the menu's lists of
+     *  edges. */
+    private int[] _other;
+
+    /** The test letter. */
+    private int _test;
+
+}
@@ -0,0 +1,74 @@
+package enigma;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--bombe --crib=TEXT [--at=N] [--diagonal] [--threads=N]
+ *  CONFIG INPUT [OUTPUT]", which runs a bombe (see Bombe) over every
+ *  rotor order of CONFIG, given that the ciphertext in INPUT (all its
+ *  lines run together, without whitespace) holds the encryption of TEXT
+ *  starting at its Nth letter (default 0).  With --diagonal, the bombe
+ *  uses a diagonal board.  It prints a settings line for each stop,
+ *  giving the rotor positions found and the plugboard pairs they imply,
+ *  and gives up if a menu with too few loops stops too often.
+ *  @author Xiaoru Zhao
+ */
+class BombeCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE =
+        "--bombe --crib=TEXT [--at=N] [--diagonal] [--threads=N]"
+        + " CONFIG INPUT [OUTPUT]";
+
+    /** A bombe run whose options and operands are in OPTIONS. */
+    BombeCommand(Options options) {
+        super(options, USAGE);
+        options.flag("--bombe");
+        List<String> cribs = options.values("--crib");
+        _cribOffset = options.number("--at", 0, 0);
+        _diagonal = options.flag("--diagonal");
+        _threads = options.count("--threads");
+        List<String> operands = options.operands();
+        if (cribs.size() != 1 || operands.size() < 2
+            || operands.size() > 3) {
+            throw usage();
+        }
+        _crib = cribs.get(0).replaceAll("\\s", "");
+        setConfig(operands.get(0));
+        setStreams(operands.get(1),
+                   operands.size() > 2 ? operands.get(2) : null);
+    }
+
+    @Override
+    void run() {
+        Machine machine = machine();
+        Bombe bombe = new Bombe(alphabet(), machine.numRotors(),
+                                machine.numPawls(), machine.catalog());
+        if (_threads > 0) {
+            bombe.setThreads(_threads);
+        }
+        bombe.setDiagonalBoard(_diagonal);
+        if (bombe.addAllOrders() == 0) {
+            throw error("no valid rotor order in %s", config().name());
+        }
+        bombe.setCrib(indices(_crib), indices(readAll()), _cribOffset);
+        for (Bombe.Stop stop : bombe.run()) {
+            output().println(stop.settingsLine(alphabet()));
+        }
+        output().flush();
+    }
+
+    /** The crib. */
+    private final String _crib;
+
+    /** Offset of the crib in the ciphertext. */
+    private final int _cribOffset;
+
+    /** True iff the bombe uses a diagonal board. */
+    private final boolean _diagonal;
+
+    /** Number of threads running the bombe, or 0 for the default. */
+    private final int _threads;
+
+}
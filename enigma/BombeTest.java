@@ -0,0 +1,173 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for Bombe.
+ *  @author Xiaoru Zhao
+ */
+public class BombeTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a new machine with NUMROTORS slots and naval rotors B,
+     *  Beta (if NUMROTORS is 5), I, II, III and IV. */
+    private Machine machine(int numRotors) {
+        if (numRotors == 5) {
+            return navalMachine(5, "B", "Beta", "I", "II", "III", "IV");
+        }
+        return navalMachine(numRotors, "B", "I", "II", "III", "IV");
+    }
+
+    /** Return a new bombe for machines like M. */
+    private Bombe bombe(Machine m) {
+        return new Bombe(UPPER, m.numRotors(), m.numPawls(), m.catalog());
+    }
+
+    /** Return the conversion of MSG by a new machine with NUMROTORS slots
+     *  and rotors ORDER at positions SETTING with plugboard PLUGS. */
+    private String encrypt(int numRotors, String[] order, String setting,
+                           String plugs, String msg) {
+        Machine m = machine(numRotors);
+        m.insertRotors(order);
+        m.setRotors(setting);
+        m.setPlugboard(new Permutation(plugs, UPPER));
+        return m.convert(msg);
+    }
+
+    /** Return the alphabet indices of MSG. */
+    private int[] indices(String msg) {
+        int[] result = new int[msg.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = UPPER.toInt(msg.charAt(i));
+        }
+        return result;
+    }
+
+    /** Return the stop of STOPS at settings line SETTINGS, ignoring the
+     *  plugboard, or null if none. */
+    private Bombe.Stop find(List<Bombe.Stop> stops, String settings) {
+        for (Bombe.Stop s : stops) {
+            if (s.settingsLine(UPPER).startsWith(settings)) {
+                return s;
+            }
+        }
+        return null;
+    }
+
+    /** Check that every plugboard pair in STOP agrees with PLUGS. */
+    private void checkSteckers(Bombe.Stop stop, String plugs) {
+        Permutation p = new Permutation(plugs, UPPER);
+        int[] steckers = stop.steckers();
+        int known = 0;
+        for (int a = 0; a < steckers.length; a += 1) {
+            if (steckers[a] >= 0) {
+                assertEquals(p.permute(a), steckers[a]);
+                known += 1;
+            }
+        }
+        assertTrue(known > 1);
+    }
+
+    /** Plaintext used in the tests. */
+    private static final String PLAIN =
+        "WETTERVORHERSAGEBISKAYAXXNORDWESTWINDSTAERKEVIERXX";
+
+    /** Plugboard used in the tests. */
+    private static final String PLUGS = "(AQ)(EP)(TR)(WZ)(DK)(NS)(IV)";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkFindsSetting() {
+        String[] order = { "B", "Beta", "II", "IV", "I" };
+        String cipher = encrypt(5, order, "AXLE", PLUGS, PLAIN);
+        Machine m = machine(5);
+        Bombe bombe = bombe(m);
+        bombe.addOrder(order);
+        bombe.setDiagonalBoard(true);
+        bombe.setCrib(indices(PLAIN.substring(4, 24)), indices(cipher), 4);
+        assertEquals(26L * 26 * 26 * 26, bombe.size());
+        List<Bombe.Stop> stops = bombe.run();
+        Bombe.Stop stop = find(stops, "* B Beta II IV I AXLE");
+        assertNotNull(stop);
+        checkSteckers(stop, PLUGS);
+        assertTrue(stops.size() < 100);
+    }
+
+    @Test
+    public void checkWithoutDiagonal() {
+        String[] order = { "B", "III", "I", "II" };
+        String cipher = encrypt(4, order, "QEV", PLUGS, PLAIN);
+        Bombe bombe = bombe(machine(4));
+        bombe.addOrder(order);
+        bombe.setCrib(indices(PLAIN.substring(0, 30)), indices(cipher), 0);
+        List<Bombe.Stop> stops = bombe.run();
+        Bombe.Stop stop = find(stops, "* B III I II QEV");
+        assertNotNull(stop);
+        checkSteckers(stop, PLUGS);
+    }
+
+    @Test
+    public void checkAllOrders() {
+        String[] order = { "B", "IV", "II", "III" };
+        String cipher = encrypt(4, order, "MUD", PLUGS, PLAIN);
+        Bombe one = bombe(machine(4)), many = bombe(machine(4));
+        assertEquals(24, one.addAllOrders());
+        assertEquals(24, many.addAllOrders());
+        one.setThreads(1);
+        many.setThreads(4);
+        for (Bombe b : new Bombe[] { one, many }) {
+            b.setDiagonalBoard(true);
+            b.setCrib(indices(PLAIN.substring(10, 35)), indices(cipher),
+                      10);
+        }
+        List<Bombe.Stop> stops = one.run();
+        assertNotNull(find(stops, "* B IV II III MUD"));
+        List<Bombe.Stop> others = many.run();
+        assertEquals(stops.size(), others.size());
+        for (int i = 0; i < stops.size(); i += 1) {
+            assertEquals(stops.get(i).settingsLine(UPPER),
+                         others.get(i).settingsLine(UPPER));
+        }
+    }
+
+    @Test
+    public void checkMenu() {
+        Bombe bombe = bombe(machine(4));
+        bombe.setCrib(indices("ABCA"), indices("XXBCDB"), 2);
+        assertEquals(UPPER.toInt('B'), bombe.testLetter());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkTooManyStops() {
+        Bombe bombe = bombe(machine(4));
+        bombe.addOrder("B", "I", "II", "III");
+        bombe.setCrib(indices("AB"), indices("CD"), 0);
+        bombe.setMaxStops(100);
+        bombe.run();
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkCribTooLong() {
+        bombe(machine(4)).setCrib(indices("ABC"), indices("XYZ"), 1);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNoCrib() {
+        Bombe bombe = bombe(machine(4));
+        bombe.addOrder("B", "I", "II", "III");
+        bombe.run();
+    }
+
+}
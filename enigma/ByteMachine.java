@@ -0,0 +1,293 @@
+package enigma;
+
+import java.nio.ByteBuffer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+import static enigma.EnigmaException.*;
+
+/** An Enigma machine over the 256 byte values, for binary data.  Its
+ *  rotors are ByteRotors, and it works directly on byte arrays and
+ *  buffers.  Since the reflector and the rotors other than the fast one
+ *  move rarely, their combined effect is kept as one precomposed table,
+ *  so each byte costs only a plugboard, fast-rotor and table lookup.
+ *  @author Xiaoru Zhao
+ */
+class ByteMachine {
+
+    /** A new byte machine with 1 < NUMROTORS rotor slots and
+     *  0 < PAWLS < NUMROTORS pawls.  ALLROTORS contains all the available
+     *  rotors. */
+    ByteMachine(int numRotors, int pawls, Collection<ByteRotor> allRotors) {
+        if (numRotors <= 1 || pawls <= 0 || pawls >= numRotors) {
+            throw error("bad number of rotors or pawls");
+        }
+        _numRotors = numRotors;
+        _pawls = pawls;
+        _allRotors = new ArrayList<>(allRotors);
+        _rotors = new ByteRotor[numRotors];
+        _posn = new int[numRotors];
+        _advance = new boolean[numRotors];
+        _plugboard = ByteRotor.identity();
+        _inner = new int[ByteRotor.SIZE];
+        _outer = new int[ByteRotor.SIZE];
+    }
+
+    /** Return the number of rotor slots I have. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number pawls (and thus rotating rotors) I have. */
+    int numPawls() {
+        return _pawls;
+    }
+
+    /** Set my rotor slots to the rotors named ROTORS from my set of
+     *  available rotors (ROTORS[0] names the reflector).
+     *  Initially, all rotors are set at their 0 setting. */
+    void insertRotors(String[] rotors) {
+        if (rotors.length != _numRotors) {
+            throw error("Inserted rotors number not equal to numRotors.");
+        }
+        for (int i = 0; i < rotors.length; i += 1) {
+            _rotors[i] = null;
+            for (ByteRotor r : _allRotors) {
+                if (r.name().equals(rotors[i])) {
+                    _rotors[i] = r;
+                    break;
+                }
+            }
+            if (_rotors[i] == null) {
+                throw error("Rotor %s not contained.", rotors[i]);
+            }
+            for (int k = 0; k < i; k += 1) {
+                if (_rotors[k] == _rotors[i]) {
+                    throw error("Rotor %s repeated.", rotors[i]);
+                }
+            }
+            boolean moving = i >= _numRotors - _pawls;
+            if (i == 0 && !_rotors[i].reflecting()
+                || i > 0 && (_rotors[i].reflecting()
+                             || _rotors[i].rotates() != moving)) {
+                throw error("Rotor %s in wrong slot.", rotors[i]);
+            }
+            _posn[i] = 0;
+        }
+        _innerValid = _outerValid = false;
+        checkQuiet();
+    }
+
+    /** Set my rotors to SETTING, which holds numRotors()-1 byte values,
+     *  the first for the leftmost rotor (not counting the reflector). */
+    void setRotors(int[] setting) {
+        if (setting.length != _numRotors - 1) {
+            throw error("wrong number of rotor settings");
+        }
+        for (int i = 1; i < _numRotors; i += 1) {
+            _posn[i] = setting[i - 1] & ByteRotor.MASK;
+        }
+        _innerValid = _outerValid = false;
+        checkQuiet();
+    }
+
+    /** Return the current settings of my rotors, the first for the
+     *  leftmost rotor (not counting the reflector). */
+    int[] settings() {
+        int[] result = new int[_numRotors - 1];
+        System.arraycopy(_posn, 1, result, 0, result.length);
+        return result;
+    }
+
+    /** Set the plugboard to PLUGBOARD, an involution of 0..255. */
+    void setPlugboard(int[] plugboard) {
+        for (int k = 0; k < ByteRotor.SIZE; k += 1) {
+            if (plugboard[plugboard[k] & ByteRotor.MASK] != k) {
+                throw error("plugboard is not a set of swaps");
+            }
+        }
+        _plugboard = plugboard.clone();
+    }
+
+    /** Returns the result of converting the byte value C, after first
+     *  advancing the machine. */
+    int convert(int c) {
+        step();
+        if (!_innerValid) {
+            compose();
+        }
+        ByteRotor fast = _rotors[_numRotors - 1];
+        int p = _posn[_numRotors - 1];
+        int r = _plugboard[c & ByteRotor.MASK];
+        r = fast.convertForward(r, p);
+        r = _inner[r];
+        r = fast.convertBackward(r, p);
+        return _plugboard[r];
+    }
+
+    /** Convert the LEN bytes of BUF starting at OFF in place. */
+    void convert(byte[] buf, int off, int len) {
+        int fast = _numRotors - 1;
+        int[] plug = _plugboard, inner = _inner;
+        int[] fwd = _rotors[fast].forwardTable();
+        int[] bwd = _rotors[fast].backwardTable();
+        boolean[] notch = _rotors[fast].notchTable();
+        int p = _posn[fast];
+        for (int i = off; i < off + len; i += 1) {
+            if (notch[p] || !_quiet) {
+                _posn[fast] = p;
+                step();
+                p = _posn[fast];
+            } else {
+                p = (p + 1) & ByteRotor.MASK;
+            }
+            if (!_innerValid) {
+                compose();
+            }
+            int r = plug[buf[i] & ByteRotor.MASK];
+            r = (fwd[(r + p) & ByteRotor.MASK] - p) & ByteRotor.MASK;
+            r = inner[r];
+            r = (bwd[(r + p) & ByteRotor.MASK] - p) & ByteRotor.MASK;
+            buf[i] = (byte) plug[r];
+        }
+        _posn[fast] = p;
+    }
+
+    /** Convert the bytes of BUF between its position and limit in place,
+     *  leaving its position at its limit.  Works on heap and direct
+     *  buffers alike.  Returns the number of bytes converted. */
+    int transform(ByteBuffer buf) {
+        int pos = buf.position(), lim = buf.limit();
+        if (buf.hasArray()) {
+            convert(buf.array(), buf.arrayOffset() + pos, lim - pos);
+        } else {
+            byte[] chunk = new byte[Math.min(CHUNK, lim - pos)];
+            ByteBuffer src = buf.duplicate(), dst = buf.duplicate();
+            while (src.hasRemaining()) {
+                int len = Math.min(chunk.length, src.remaining());
+                src.get(chunk, 0, len);
+                convert(chunk, 0, len);
+                dst.put(chunk, 0, len);
+            }
+        }
+        buf.position(lim);
+        return lim - pos;
+    }
+
+    /** Advance the rotors one step.  The fast rotor always moves; each
+     *  other pawl pushes the rotor under it and the one to its left when
+     *  its rotor is at a notch. */
+    private void step() {
+        int fast = _numRotors - 1;
+        for (int i = fast - _pawls + 1; i < fast; i += 1) {
+            _advance[i] = false;
+        }
+        for (int j = fast; j > _numRotors - _pawls; j -= 1) {
+            if (_rotors[j].atNotch(_posn[j])) {
+                _advance[j] = true;
+                _advance[j - 1] = true;
+            }
+        }
+        for (int i = _numRotors - _pawls; i < fast; i += 1) {
+            if (_advance[i]) {
+                _posn[i] = (_posn[i] + 1) & ByteRotor.MASK;
+                _innerValid = false;
+                if (i < fast - 1) {
+                    _outerValid = false;
+                }
+            }
+        }
+        _posn[fast] = (_posn[fast] + 1) & ByteRotor.MASK;
+        if (!_innerValid) {
+            checkQuiet();
+        }
+    }
+
+    /** Set _quiet according to whether any pawl other than the fast
+     *  rotor's is engaged, so that only the fast rotor notch need be
+     *  checked on most steps. */
+    private void checkQuiet() {
+        _quiet = true;
+        for (int j = _numRotors - 2; j > _numRotors - _pawls; j -= 1) {
+            if (_rotors[j].atNotch(_posn[j])) {
+                _quiet = false;
+            }
+        }
+    }
+
+    /** Recompute _inner, the combined mapping of all rotors but the fast
+     *  one, in their current settings.  Since the rotors to the left of
+     *  the second one move far less often than it does, their combined
+     *  mapping is kept separately in _outer. */
+    private void compose() {
+        int second = _numRotors - 2;
+        if (second == 0) {
+            for (int x = 0; x < ByteRotor.SIZE; x += 1) {
+                _inner[x] = _rotors[0].convertForward(x, _posn[0]);
+            }
+            _innerValid = true;
+            return;
+        }
+        if (!_outerValid) {
+            for (int x = 0; x < ByteRotor.SIZE; x += 1) {
+                int r = x;
+                for (int i = second - 1; i >= 0; i -= 1) {
+                    r = _rotors[i].convertForward(r, _posn[i]);
+                }
+                for (int i = 1; i < second; i += 1) {
+                    r = _rotors[i].convertBackward(r, _posn[i]);
+                }
+                _outer[x] = r;
+            }
+            _outerValid = true;
+        }
+        ByteRotor rotor = _rotors[second];
+        int p = _posn[second];
+        for (int x = 0; x < ByteRotor.SIZE; x += 1) {
+            _inner[x] = rotor.convertBackward(
+                _outer[rotor.convertForward(x, p)], p);
+        }
+        _innerValid = true;
+    }
+
+    /** Number of my rotor slots. */
+    private final int _numRotors;
+
+    /** Number of my pawls. */
+    private final int _pawls;
+
+    /** All available rotors. */
+    private final ArrayList<ByteRotor> _allRotors;
+
+    /** My rotors, reflector first. */
+    private final ByteRotor[] _rotors;
+
+    /** Current setting of each of my rotors. */
+    private final int[] _posn;
+
+    /** Scratch flags: which rotors advance on the current step. */
+    private final boolean[] _advance;
+
+    /** My plugboard, as a table. */
+    private int[] _plugboard;
+
+    /** Number of bytes of a direct buffer converted at a time. */
+    private static final int CHUNK = 1 << 16;
+
+    /** True iff no pawl but the fast rotor's is engaged. */
+    private boolean _quiet;
+
+    /** Combined mapping of all rotors but the fast one. */
+    private final int[] _inner;
+
+    /** True iff _inner reflects the current rotor settings. */
+    private boolean _innerValid;
+
+    /** Combined mapping of the rotors to the left of the second. */
+    private final int[] _outer;
+
+    /** True iff _outer reflects the current rotor settings. */
+    private boolean _outerValid;
+
+}
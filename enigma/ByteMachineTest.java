@@ -0,0 +1,99 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the ByteMachine class.
+ *  @author Xiaoru Zhao
+ */
+public class ByteMachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a four-rotor byte machine with rotors generated from
+     *  seeds, set to SETTING. */
+    private ByteMachine machine(int[] setting) {
+        ArrayList<ByteRotor> all = new ArrayList<>();
+        all.add(new ByteRotor("R", 'R', ByteRotor.reflection(1),
+                              new int[0]));
+        all.add(new ByteRotor("N", 'N', ByteRotor.wiring(2), new int[0]));
+        all.add(new ByteRotor("M1", 'M', ByteRotor.wiring(3),
+                              new int[] { 0x10 }));
+        all.add(new ByteRotor("M2", 'M', ByteRotor.wiring(4),
+                              new int[] { 0x20, 0xa0 }));
+        all.add(new ByteRotor("M3", 'M', ByteRotor.wiring(5),
+                              new int[] { 0x30 }));
+        ByteMachine result = new ByteMachine(5, 3, all);
+        result.insertRotors(new String[] { "R", "N", "M1", "M2", "M3" });
+        result.setRotors(setting);
+        return result;
+    }
+
+    /** Return LEN random bytes. */
+    private byte[] randomBytes(int len) {
+        byte[] result = new byte[len];
+        new Random(len).nextBytes(result);
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkRoundTrip() {
+        int[] setting = { 0, 0x0f, 0x1f, 0x2f };
+        byte[] plain = randomBytes(100000);
+        byte[] data = plain.clone();
+        machine(setting).convert(data, 0, data.length);
+        assertFalse(Arrays.equals(plain, data));
+        machine(setting).convert(data, 0, data.length);
+        assertArrayEquals(plain, data);
+    }
+
+    @Test
+    public void checkBulkMatchesSingle() {
+        int[] setting = { 1, 0x0f, 0x9f, 0x2f };
+        byte[] data = randomBytes(70000);
+        ByteMachine single = machine(setting);
+        byte[] expected = new byte[data.length];
+        for (int i = 0; i < data.length; i += 1) {
+            expected[i] = (byte) single.convert(data[i]);
+        }
+        ByteMachine bulk = machine(setting);
+        bulk.convert(data, 0, data.length);
+        assertArrayEquals(expected, data);
+        assertArrayEquals(single.settings(), bulk.settings());
+    }
+
+    @Test
+    public void checkDirectBuffer() {
+        int[] setting = { 0, 0, 0, 0 };
+        byte[] data = randomBytes(200000);
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+        direct.put(data).flip();
+        machine(setting).convert(data, 0, data.length);
+        assertEquals(data.length, machine(setting).transform(direct));
+        for (int i = 0; i < data.length; i += 1) {
+            assertEquals(data[i], direct.get(i));
+        }
+    }
+
+    @Test
+    public void checkNoFixedPoints() {
+        ByteMachine m = machine(new int[] { 0, 0, 0, 0 });
+        for (int i = 0; i < ByteRotor.SIZE * 4; i += 1) {
+            assertNotEquals(i & ByteRotor.MASK, m.convert(i));
+        }
+    }
+
+}
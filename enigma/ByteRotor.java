@@ -0,0 +1,166 @@
+package enigma;
+
+import java.util.Random;
+
+import static enigma.EnigmaException.*;
+
+/** A rotor over the implicit alphabet of the 256 byte values, whose
+ *  wiring is held as a table rather than in cycle notation.
+ *  @author Xiaoru Zhao
+ */
+class ByteRotor {
+
+    /** Number of symbols (byte values) in a byte rotor. */
+    static final int SIZE = 256;
+
+    /** Mask reducing an int modulo SIZE. */
+    static final int MASK = SIZE - 1;
+
+    /** A rotor named NAME whose wiring in its 0 setting maps each byte
+     *  value K to WIRING[K], which must be a permutation of 0..255.  TYPE
+     *  is 'R' for a reflector, 'N' for a fixed rotor, or 'M' for a moving
+     *  rotor with a notch at each position in NOTCHES. */
+    ByteRotor(String name, char type, int[] wiring, int[] notches) {
+        if (wiring.length != SIZE) {
+            throw error("rotor %s: wiring must have %d entries", name, SIZE);
+        }
+        _name = name;
+        _forward = wiring.clone();
+        _backward = new int[SIZE];
+        for (int k = 0; k < SIZE; k += 1) {
+            _backward[k] = -1;
+        }
+        for (int k = 0; k < SIZE; k += 1) {
+            int v = _forward[k];
+            if (v < 0 || v >= SIZE || _backward[v] >= 0) {
+                throw error("rotor %s: wiring is not a permutation", name);
+            }
+            _backward[v] = k;
+        }
+        _notch = new boolean[SIZE];
+        for (int n : notches) {
+            _notch[n & MASK] = true;
+        }
+        switch (type) {
+        case 'R':
+            _reflecting = true;
+            for (int k = 0; k < SIZE; k += 1) {
+                if (_forward[k] == k || _forward[_forward[k]] != k) {
+                    throw error("reflector %s is not a derangement", name);
+                }
+            }
+            break;
+        case 'N':
+            break;
+        case 'M':
+            _rotates = true;
+            break;
+        default:
+            throw error("rotor %s: bad type %c", name, type);
+        }
+    }
+
+    /** Return a random permutation of 0..255 determined by SEED. */
+    static int[] wiring(long seed) {
+        int[] result = identity();
+        Random random = new Random(seed);
+        for (int k = SIZE - 1; k > 0; k -= 1) {
+            int j = random.nextInt(k + 1);
+            int t = result[k];
+            result[k] = result[j];
+            result[j] = t;
+        }
+        return result;
+    }
+
+    /** Return a random fixed-point-free involution of 0..255 (suitable
+     *  for a reflector or a full plugboard) determined by SEED. */
+    static int[] reflection(long seed) {
+        int[] order = wiring(seed);
+        int[] result = new int[SIZE];
+        for (int k = 0; k < SIZE; k += 2) {
+            result[order[k]] = order[k + 1];
+            result[order[k + 1]] = order[k];
+        }
+        return result;
+    }
+
+    /** Return the identity permutation of 0..255. */
+    static int[] identity() {
+        int[] result = new int[SIZE];
+        for (int k = 0; k < SIZE; k += 1) {
+            result[k] = k;
+        }
+        return result;
+    }
+
+    /** Return my name. */
+    String name() {
+        return _name;
+    }
+
+    /** Return true iff I have a ratchet and can move. */
+    boolean rotates() {
+        return _rotates;
+    }
+
+    /** Return true iff I reflect. */
+    boolean reflecting() {
+        return _reflecting;
+    }
+
+    /** Return true iff I have a notch at setting POSN. */
+    boolean atNotch(int posn) {
+        return _notch[posn & MASK];
+    }
+
+    /** Return the conversion of P at setting POSN. */
+    int convertForward(int p, int posn) {
+        return (_forward[(p + posn) & MASK] - posn) & MASK;
+    }
+
+    /** Return the inverse conversion of E at setting POSN. */
+    int convertBackward(int e, int posn) {
+        return (_backward[(e + posn) & MASK] - posn) & MASK;
+    }
+
+    /** Return my wiring table in the 0 setting.  Not to be modified. */
+    int[] forwardTable() {
+        return _forward;
+    }
+
+    /** Return the inverse of forwardTable().  Not to be modified. */
+    int[] backwardTable() {
+        return _backward;
+    }
+
+    /** Return a table that is true at each of my notches.  Not to be
+     *  modified. */
+    boolean[] notchTable() {
+        return _notch;
+    }
+
+    @Override
+    public String toString() {
+        return "ByteRotor " + _name;
+    }
+
+    /** My name. */
+    private final String _name;
+
+    /** My wiring in the 0 setting. */
+    private final int[] _forward;
+
+    /** The inverse of _forward. */
+    private final int[] _backward;
+
+    /** True at each setting where I have a notch. */
+    private final boolean[] _notch;
+
+    /** True iff I am a moving rotor. */
+    private boolean _rotates;
+
+    /** True iff I am a reflector. */
+    private boolean _reflecting;
+
+}
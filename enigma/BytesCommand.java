@@ -0,0 +1,136 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--bytes CONFIG SETTINGS INPUT OUTPUT", which encrypts
+ *  binary data as MappedCommand encrypts text, using a ByteMachine over
+ *  all 256 byte values.  CONFIG holds the number of rotor slots and
+ *  pawls followed by rotor descriptions "NAME TYPE WIRING", where TYPE
+ *  is R, N, or M followed by the notch positions as two-digit hex
+ *  numbers, and WIRING is either "seed=N" or 512 hex digits giving the
+ *  rotor's table.  SETTINGS names the rotors as usual, then gives each
+ *  rotor's setting as two hex digits, followed by any plugboard swaps,
+ *  each as four hex digits.
+ *  @author Xiaoru Zhao
+ */
+class BytesCommand extends MappedCommand {
+
+    /** My command line. */
+    static final String USAGE = "--bytes CONFIG SETTINGS INPUT OUTPUT";
+
+    /** A binary encryption whose options and operands are in OPTIONS. */
+    BytesCommand(Options options) {
+        super(options, USAGE, false);
+        options.flag("--bytes");
+        String name = options.operands().get(0);
+        try {
+            _config = new Scanner(new File(name), CHARSET);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    @Override
+    void run() {
+        ByteMachine machine = readConfig();
+        setUpBytes(machine, settings());
+        encrypt(new MappedFileCipher(machine));
+    }
+
+    /** Return a byte machine configured from the contents of the
+     *  configuration file _config (see above), which is then closed. */
+    private ByteMachine readConfig() {
+        try {
+            int numRotors = _config.nextInt();
+            int numPawls = _config.nextInt();
+            Collection<ByteRotor> allRotors = new ArrayList<>();
+            while (_config.hasNext()) {
+                allRotors.add(readRotor());
+            }
+            return new ByteMachine(numRotors, numPawls, allRotors);
+        } catch (NoSuchElementException excp) {
+            throw error("configuration file truncated");
+        } finally {
+            _config.close();
+        }
+    }
+
+    /** Return a byte rotor, reading its description from _config. */
+    private ByteRotor readRotor() {
+        try {
+            String name = _config.next();
+            String type = _config.next();
+            String wiring = _config.next();
+            int[] notches = hexBytes(type.substring(1));
+            int[] table;
+            if (wiring.startsWith("seed=")) {
+                long seed = Long.parseLong(wiring.substring("seed=".length()));
+                table = type.charAt(0) == 'R'
+                    ? ByteRotor.reflection(seed) : ByteRotor.wiring(seed);
+            } else {
+                table = hexBytes(wiring);
+            }
+            return new ByteRotor(name, type.charAt(0), table, notches);
+        } catch (NoSuchElementException | NumberFormatException excp) {
+            throw error("bad rotor description");
+        }
+    }
+
+    /** Set the byte machine M according to SETTINGS (see above). */
+    private static void setUpBytes(ByteMachine M, String settings) {
+        try {
+            Scanner aLine = new Scanner(settings);
+            if (aLine.hasNext("\\*")) {
+                aLine.next();
+            }
+            String[] myRotors = new String[M.numRotors()];
+            for (int i = 0; i < M.numRotors(); i += 1) {
+                myRotors[i] = aLine.next();
+            }
+            M.insertRotors(myRotors);
+            M.setRotors(hexBytes(aLine.next()));
+            int[] plugboard = ByteRotor.identity();
+            while (aLine.hasNext()) {
+                int[] swap = hexBytes(aLine.next());
+                if (swap.length != 2 || swap[0] == swap[1]
+                    || plugboard[swap[0]] != swap[0]
+                    || plugboard[swap[1]] != swap[1]) {
+                    throw error("bad plugboard swap");
+                }
+                plugboard[swap[0]] = swap[1];
+                plugboard[swap[1]] = swap[0];
+            }
+            M.setPlugboard(plugboard);
+        } catch (NoSuchElementException | NumberFormatException excp) {
+            throw error("bad settings line");
+        }
+    }
+
+    /** Return the byte values written as pairs of hex digits in HEX. */
+    private static int[] hexBytes(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw error("odd number of hex digits in %s", hex);
+        }
+        int[] result = new int[hex.length() / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = Integer.parseInt(hex.substring(2 * i, 2 * i + 2),
+                                         HEX);
+        }
+        return result;
+    }
+
+    /** Radix of hexadecimal numbers. */
+    private static final int HEX = 16;
+
+    /** Source of machine configuration. */
+    private final Scanner _config;
+
+}
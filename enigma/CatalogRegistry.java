@@ -0,0 +1,170 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import static enigma.EnigmaException.*;
+
+/** A RotorCatalog for long-running processes that follows changes to
+ *  its configuration file.  Each version of the catalog is a RotorCatalog
+ *  loaded from the file, never changed once published.  A new version is
+ *  loaded, on request or by a background thread watching the file, and
+ *  published by a single volatile write, so readers never take a lock or
+ *  wait for a reload.  A Machine takes one snapshot of the current
+ *  version in each call to insertRotors, and copies the rotors it uses
+ *  from it, so any number of machines may share a version: a machine
+ *  already set up keeps the rotors of the version it was set up with,
+ *  while machines set up afterwards get the new one.  A version that
+ *  fails to load is reported and leaves the current version in place.
+ *  @author Xiaoru Zhao
+ */
+class CatalogRegistry implements RotorCatalog, AutoCloseable {
+
+    /** A registry of the catalogs that LOADER reads from the file CONFIG,
+     *  starting with the one it reads now. */
+    CatalogRegistry(Path config, Function<Path, RotorCatalog> loader) {
+        _config = config;
+        _loader = loader;
+        _stamp = stamp();
+        _current = new Version(load(), 1);
+    }
+
+    @Override
+    public Rotor get(String name) {
+        return _current._catalog.get(name);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return _current._catalog.isEmpty();
+    }
+
+    @Override
+    public Collection<String> names() {
+        return _current._catalog.names();
+    }
+
+    @Override
+    public RotorCatalog snapshot() {
+        return _current._catalog;
+    }
+
+    /** Return the number of the current version, counting from 1. */
+    long version() {
+        return _current._number;
+    }
+
+    /** Load my file again and publish it as a new version.  Throws an
+     *  EnigmaException, leaving the current version, if it cannot be
+     *  loaded. */
+    synchronized void reload() {
+        _stamp = stamp();
+        RotorCatalog catalog = load();
+        _current = new Version(catalog, _current._number + 1);
+    }
+
+    /** Reload my file, as for reload, if its modification time or size
+     *  has changed since it was last loaded or tried, and return true
+     *  iff a new version was published. */
+    synchronized boolean reloadIfChanged() {
+        if (stamp().equals(_stamp)) {
+            return false;
+        }
+        reload();
+        return true;
+    }
+
+    /** Check my file for changes every PERIOD milliseconds on a daemon
+     *  thread, reloading it when it has changed, and passing any failure
+     *  to reload to FAILURES. */
+    synchronized void watch(long period, Consumer<RuntimeException> failures) {
+        if (_watcher != null) {
+            throw error("already watching %s", _config);
+        }
+        _watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog " + _config);
+            thread.setDaemon(true);
+            return thread;
+        });
+        _watcher.scheduleWithFixedDelay(() -> {
+            try {
+                reloadIfChanged();
+            } catch (RuntimeException excp) {
+                failures.accept(excp);
+            }
+        }, period, period, MILLISECONDS);
+    }
+
+    /** Stop watching my file, if I am. */
+    @Override
+    public synchronized void close() {
+        if (_watcher != null) {
+            _watcher.shutdownNow();
+            _watcher = null;
+        }
+    }
+
+    /** Return the catalog my loader reads from my file. */
+    private RotorCatalog load() {
+        RotorCatalog result = _loader.apply(_config);
+        if (result == null) {
+            throw error("could not load %s", _config);
+        }
+        return result;
+    }
+
+    /** Return a description of the modification time and size of my
+     *  file, or "missing" if it cannot be read. */
+    private String stamp() {
+        try {
+            return Files.getLastModifiedTime(_config) + " "
+                + Files.size(_config);
+        } catch (IOException excp) {
+            return "missing";
+        }
+    }
+
+    /** One version of the catalog. */
+    private static class Version {
+
+        /** Version number NUMBER, holding CATALOG. */
+        Version(RotorCatalog catalog, long number) {
+            _catalog = catalog;
+            _number = number;
+        }
+
+        /** The catalog. */
+        private final RotorCatalog _catalog;
+
+        /** The version number. */
+        private final long _number;
+
+    }
+
+    /** The configuration file. */
+    private final Path _config;
+
+    /** Reads a catalog from a file. */
+    private final Function<Path, RotorCatalog> _loader;
+
+    /** The current version, replaced whole on each reload. */
+    private volatile Version _current;
+
+    /** Modification time and size of my file when last loaded or tried.
+     *  Guarded by this. */
+    private String _stamp;
+
+    /** Thread watching my file, or null.  Guarded by this. */
+    private ScheduledExecutorService _watcher;
+
+}
@@ -0,0 +1,249 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for CatalogRegistry.
+ *  @author Xiaoru Zhao
+ */
+public class CatalogRegistryTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a catalog of the rotors in FILE, one per line, each a name,
+     *  R for a reflector or N for a fixed rotor, and cycles over
+     *  UPPER. */
+    private static RotorCatalog load(Path file) {
+        List<Rotor> rotors = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(file)) {
+                String[] words = line.split(" ", 3);
+                Permutation perm = new Permutation(words[2], UPPER);
+                if (words[1].equals("R")) {
+                    rotors.add(new Reflector(words[0], perm));
+                } else if (words[1].equals("N")) {
+                    rotors.add(new FixedRotor(words[0], perm));
+                } else {
+                    throw new EnigmaException("bad rotor type");
+                }
+            }
+        } catch (IOException | ArrayIndexOutOfBoundsException excp) {
+            throw new EnigmaException("bad catalog");
+        }
+        return Machine.catalogOf(rotors);
+    }
+
+    /** Write LINES to FILE, making its modification time later than any
+     *  it had before.  The new contents are written to another file and
+     *  moved into place, so that a watching registry sees the change all
+     *  at once. */
+    private static void write(Path file, String... lines)
+        throws IOException {
+        FileTime before = Files.getLastModifiedTime(file);
+        Path temp = Files.createTempFile(file.getParent(), "rotors", ".new");
+        Files.write(temp, String.join("\n", lines)
+                    .getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(temp,
+            FileTime.fromMillis(before.toMillis() + CLOCK_STEP));
+        Files.move(temp, file, REPLACE_EXISTING, ATOMIC_MOVE);
+    }
+
+    /** Write the first version of the rotors to FILE, and return it. */
+    private static Path writeFirst(Path file) throws IOException {
+        Files.write(file, List.of(REFLECTOR, ROTOR));
+        return file;
+    }
+
+    /** Amount by which write advances modification times, in
+     *  milliseconds, enough for file systems with coarse clocks. */
+    private static final long CLOCK_STEP = 2000;
+
+    /** A reflector. */
+    private static final String REFLECTOR =
+        "B R " + NAVALA.get("B");
+
+    /** A fixed rotor. */
+    private static final String ROTOR = "I N " + NAVALA.get("I");
+
+    /** Another wiring of the fixed rotor. */
+    private static final String NEW_ROTOR = "I N " + NAVALA.get("II");
+
+    /** Return a new machine with two slots and no pawls using
+     *  CATALOG. */
+    private static Machine machine(RotorCatalog catalog) {
+        Machine result = new Machine(UPPER, 2, 0, catalog);
+        result.insertRotors(new String[] { "B", "I" });
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkReload() throws IOException {
+        Path file = Files.createTempFile("rotors", ".conf");
+        try {
+            CatalogRegistry registry =
+                new CatalogRegistry(writeFirst(file),
+                                    CatalogRegistryTest::load);
+            assertEquals(1, registry.version());
+            assertFalse(registry.reloadIfChanged());
+            Machine old = machine(registry);
+            String before = old.convert("HELLOWORLD");
+            write(file, REFLECTOR, NEW_ROTOR);
+            assertTrue(registry.reloadIfChanged());
+            assertEquals(2, registry.version());
+            assertFalse(registry.reloadIfChanged());
+            Machine current = machine(registry);
+            assertNotEquals(before, current.convert("HELLOWORLD"));
+            assertEquals(before, old.convert("HELLOWORLD"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkFailedReloadKeepsVersion() throws IOException {
+        Path file = Files.createTempFile("rotors", ".conf");
+        try {
+            CatalogRegistry registry =
+                new CatalogRegistry(writeFirst(file),
+                                    CatalogRegistryTest::load);
+            RotorCatalog first = registry.snapshot();
+            write(file, REFLECTOR, "I X (AB)");
+            try {
+                registry.reloadIfChanged();
+                fail("bad catalog loaded");
+            } catch (EnigmaException excp) {
+                /* Expected. */
+            }
+            assertEquals(1, registry.version());
+            assertSame(first, registry.snapshot());
+            assertFalse(registry.reloadIfChanged());
+            assertNotNull(machine(registry));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkWatch() throws IOException, InterruptedException {
+        Path file = Files.createTempFile("rotors", ".conf");
+        try (CatalogRegistry registry = new CatalogRegistry(
+                 writeFirst(file), CatalogRegistryTest::load)) {
+            AtomicReference<RuntimeException> failure =
+                new AtomicReference<>();
+            registry.watch(10, failure::set);
+            write(file, REFLECTOR, NEW_ROTOR);
+            while (registry.version() == 1) {
+                Thread.sleep(10);
+            }
+            assertNull(failure.get());
+            write(file, "nonsense");
+            while (failure.get() == null) {
+                Thread.sleep(10);
+            }
+            assertEquals(2, registry.version());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkReadersDuringReloads()
+        throws IOException, InterruptedException {
+        Path file = Files.createTempFile("rotors", ".conf");
+        try {
+            CatalogRegistry registry =
+                new CatalogRegistry(writeFirst(file),
+                                    CatalogRegistryTest::load);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread reader = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 2000; i += 1) {
+                        RotorCatalog snapshot = registry.snapshot();
+                        assertNotNull(snapshot.get("I"));
+                        assertNotNull(snapshot.get("B"));
+                        machine(registry).convert("A");
+                    }
+                } catch (Throwable excp) {
+                    failure.set(excp);
+                }
+            });
+            reader.start();
+            for (int i = 0; i < 20; i += 1) {
+                registry.reload();
+            }
+            reader.join();
+            assertNull(failure.get());
+            assertEquals(21, registry.version());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkMachinesShareVersion()
+        throws IOException, InterruptedException {
+        Path file = Files.createTempFile("rotors", ".conf");
+        try {
+            CatalogRegistry registry =
+                new CatalogRegistry(file, f -> new HistoricalCatalog(UPPER));
+            String[] lines = {
+                "* B Beta III IV I AXLE BCFG (HQ) (EX)",
+                "* B Beta III IV I QRST AAZZ (AB)",
+            };
+            String text = "HELLOWORLD".repeat(500);
+            Machine[] machines = new Machine[lines.length];
+            for (int k = 0; k < lines.length; k += 1) {
+                machines[k] = new Machine(UPPER, 5, 3, registry);
+                Command.setUp(machines[k], lines[k]);
+            }
+            String[] results = new String[lines.length];
+            Thread[] threads = new Thread[lines.length];
+            for (int k = 0; k < lines.length; k += 1) {
+                int slot = k;
+                threads[k] = new Thread(() -> {
+                    StringBuilder out = new StringBuilder();
+                    for (int i = 0; i < text.length(); i += 10) {
+                        out.append(machines[slot].convert(
+                                       text.substring(i, i + 10)));
+                    }
+                    results[slot] = out.toString();
+                });
+                threads[k].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(1, registry.version());
+            for (int k = 0; k < lines.length; k += 1) {
+                assertEquals(lines[k],
+                             historicalMachine(lines[k]).convert(text),
+                             results[k]);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,486 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import static enigma.EnigmaException.*;
+
+/** A file of text encrypted under one settings line, any part of which
+ *  can be decrypted without decrypting what comes before it.  The text
+ *  is encrypted byte for byte, as by Machine.transform(ByteBuffer), so
+ *  the alphabet must be single-byte, bytes outside it are kept as they
+ *  are, and each byte of ciphertext lies at the offset of its plaintext.
+ *  The text is cut into blocks of a fixed number of bytes, and the state
+ *  of the rotors at the start of each block is kept in an index, so a
+ *  block is decrypted by putting a machine in that state.
+ *
+ *  The file holds a header of little-endian numbers: the ints MAGIC,
+ *  VERSION, the block size, the number of rotor slots, the alphabet
+ *  size and the length in bytes of the settings line, and then the long
+ *  length of the text.  Then come the alphabet's characters, one byte
+ *  each, the settings line in UTF-8, and the ciphertext.  The index
+ *  follows, giving for each block and each slot but the reflector's the
+ *  rotor's setting and notch flag (1 or 0) as little-endian ints.  A
+ *  Writer writes a container; a CipherContainer reads one.
+ *  @author Xiaoru Zhao
+ */
+class CipherContainer implements AutoCloseable {
+
+    /** The container in the open file IN, whose settings line SETTINGS
+     *  is set up by MACHINE, whose text of LENGTH bytes starts at START
+     *  in blocks of BLOCKSIZE bytes, with the index INDEX. */
+    private CipherContainer(FileChannel in, String settings, Machine machine,
+                            long start, long length, int blockSize,
+                            IntBuffer index) {
+        _in = in;
+        _settings = settings;
+        _machine = machine;
+        _start = start;
+        _length = length;
+        _blockSize = blockSize;
+        _index = index;
+    }
+
+    /** Return the container in FILE, decrypted with the machine that
+     *  SETUP returns for its settings line.  That machine is used only
+     *  to compile tables, and must not be changed while the container is
+     *  open. */
+    static CipherContainer open(Path file, Function<String, Machine> setUp)
+        throws IOException {
+        FileChannel in = FileChannel.open(file, READ);
+        try {
+            ByteBuffer header =
+                ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(in, header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw error("%s is not a cipher container", file);
+            }
+            int blockSize = header.getInt(), numRotors = header.getInt();
+            int size = header.getInt(), settingsLength = header.getInt();
+            long length = header.getLong();
+            if (blockSize < 1 || numRotors < 2 || size < 1
+                || size > MAX_BYTE + 1 || settingsLength < 0 || length < 0
+                || HEADER + size + settingsLength > in.size()) {
+                throw error("bad cipher container %s", file);
+            }
+            ByteBuffer text = ByteBuffer.allocate(size + settingsLength);
+            readFully(in, text, HEADER);
+            byte[] chars = new byte[size], line = new byte[settingsLength];
+            text.flip();
+            text.get(chars).get(line);
+            String settings = new String(line, StandardCharsets.UTF_8);
+            Machine machine = setUp.apply(settings);
+            if (machine.numRotors() != numRotors
+                || !sameAlphabet(machine.getAlphabet(), chars)) {
+                throw error("cipher container %s is for another machine",
+                            file);
+            }
+            long start = HEADER + size + settingsLength;
+            long blocks = (length + blockSize - 1) / blockSize;
+            long indexSize = blocks * 2 * (numRotors - 1) * Integer.BYTES;
+            if (indexSize > Integer.MAX_VALUE
+                || in.size() != start + length + indexSize) {
+                throw error("bad cipher container %s", file);
+            }
+            IntBuffer index =
+                in.map(READ_ONLY, start + length, indexSize)
+                .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            return new CipherContainer(in, settings, machine, start, length,
+                                       blockSize, index);
+        } catch (IOException | RuntimeException excp) {
+            in.close();
+            throw excp;
+        }
+    }
+
+    /** Return true iff ALPHABET is single-byte and holds just the
+     *  characters CHARS, in order. */
+    private static boolean sameAlphabet(Alphabet alphabet, byte[] chars) {
+        if (alphabet.size() != chars.length || !alphabet.singleByte()) {
+            return false;
+        }
+        byte[] mine = alphabet.indexByte();
+        for (int i = 0; i < chars.length; i += 1) {
+            if (mine[i] != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the settings line of the text. */
+    String settings() {
+        return _settings;
+    }
+
+    /** Return the length of the text in bytes. */
+    long length() {
+        return _length;
+    }
+
+    /** Return the number of bytes in each block but perhaps the last. */
+    int blockSize() {
+        return _blockSize;
+    }
+
+    /** Return the number of blocks. */
+    int blocks() {
+        return (int) ((_length + _blockSize - 1) / _blockSize);
+    }
+
+    /** Return the plaintext of the LENGTH bytes starting at offset FROM,
+     *  decrypting only the blocks that hold them. */
+    byte[] read(long from, int length) throws IOException {
+        if (from < 0 || length < 0 || from > _length - length) {
+            throw error("bytes %d to %d are not in the container", from,
+                        from + length);
+        }
+        byte[] result = new byte[length];
+        if (length == 0) {
+            return result;
+        }
+        Decoder decoder = new Decoder();
+        int first = (int) (from / _blockSize);
+        int last = (int) ((from + length - 1) / _blockSize);
+        for (int b = first; b <= last; b += 1) {
+            ByteBuffer block = decoder.decrypt(b);
+            long blockStart = (long) b * _blockSize;
+            long lo = Math.max(from, blockStart);
+            long hi = Math.min(from + length, blockStart + block.limit());
+            block.position((int) (lo - blockStart));
+            block.get(result, (int) (lo - from), (int) (hi - lo));
+        }
+        return result;
+    }
+
+    /** Decrypt the whole text into the file OUTPUT, which is created or
+     *  truncated as needed, with up to THREADS threads each decrypting
+     *  blocks in turn. */
+    void decryptAll(Path output, int threads) throws IOException {
+        try (FileChannel out = FileChannel.open(output, CREATE, WRITE,
+                                                TRUNCATE_EXISTING)) {
+            AtomicLong next = new AtomicLong();
+            int tasks = Math.max(1, Math.min(threads, blocks()));
+            ExecutorService pool = Executors.newFixedThreadPool(tasks);
+            try {
+                List<Future<?>> done = new ArrayList<>();
+                for (int i = 0; i < tasks; i += 1) {
+                    done.add(pool.submit(() -> {
+                        Decoder decoder = new Decoder();
+                        for (long b = next.getAndIncrement(); b < blocks();
+                             b = next.getAndIncrement()) {
+                            ByteBuffer block = decoder.decrypt((int) b);
+                            long at = b * _blockSize;
+                            while (block.hasRemaining()) {
+                                at += out.write(block, at);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> f : done) {
+                    f.get();
+                }
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw error("decryption interrupted");
+            } catch (ExecutionException excp) {
+                if (excp.getCause() instanceof IOException) {
+                    throw (IOException) excp.getCause();
+                }
+                if (excp.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) excp.getCause();
+                }
+                throw error("decryption failed: %s", excp.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        _in.close();
+    }
+
+    /** Fill BUFFER from IN starting at offset AT, throwing if IN ends
+     *  first. */
+    private static void readFully(FileChannel in, ByteBuffer buffer,
+                                  long at) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = in.read(buffer, at);
+            if (n < 0) {
+                throw error("cipher container truncated");
+            }
+            at += n;
+        }
+    }
+
+    /** Decrypts blocks of the container, through the tables of the
+     *  machine compiled into one lane.  Not to be shared among
+     *  threads. */
+    private class Decoder {
+
+        /** A decoder of my container's blocks. */
+        Decoder() {
+            int n = _machine.numRotors();
+            _lanes = new MachineLanes(n, _machine.getAlphabet().size(), 1);
+            _lanes.addLane();
+            _lanes.set(0, _machine);
+            _toIndex = _machine.getAlphabet().byteIndex();
+            _toByte = _machine.getAlphabet().indexByte();
+            _block = ByteBuffer.allocate(_blockSize);
+            _chars = new int[_blockSize];
+        }
+
+        /** Return a buffer, good until the next call, holding the
+         *  plaintext of block B from its start to its limit. */
+        ByteBuffer decrypt(int b) throws IOException {
+            long from = (long) b * _blockSize;
+            int len = (int) Math.min(_blockSize, _length - from);
+            _block.clear().limit(len);
+            readFully(_in, _block, _start + from);
+            int n = _machine.numRotors(), entry = b * 2 * (n - 1);
+            for (int k = 1; k < n; k += 1) {
+                _lanes.positions(k)[0] = _index.get(entry);
+                _lanes.before(k)[0] = _index.get(entry + 1);
+                entry += 2;
+            }
+            int count = 0;
+            for (int i = 0; i < len; i += 1) {
+                int c = _toIndex[_block.get(i) & MAX_BYTE];
+                if (c >= 0) {
+                    _chars[count] = c;
+                    count += 1;
+                }
+            }
+            _engine.run(_lanes, _chars, 0, count, _chars);
+            count = 0;
+            for (int i = 0; i < len; i += 1) {
+                if (_toIndex[_block.get(i) & MAX_BYTE] >= 0) {
+                    _block.put(i, _toByte[_chars[count]]);
+                    count += 1;
+                }
+            }
+            _block.flip();
+            return _block;
+        }
+
+        /** The machine, compiled as lane 0. */
+        private final MachineLanes _lanes;
+
+        /** Converts the lane. */
+        private final TableEngine _engine = new PrecomposedEngine();
+
+        /** Maps bytes to alphabet indices, or -1. */
+        private final int[] _toIndex;
+
+        /** Maps alphabet indices to bytes. */
+        private final byte[] _toByte;
+
+        /** The block being decrypted. */
+        private final ByteBuffer _block;
+
+        /** Alphabet indices of the block's characters in the
+         *  alphabet. */
+        private final int[] _chars;
+
+    }
+
+    /** Writes a container, encrypting text as it is given.  The machine
+     *  must be set up by its settings line, and is advanced as the text
+     *  is encrypted. */
+    static class Writer implements AutoCloseable {
+
+        /** A writer of a new container in FILE, created or truncated as
+         *  needed, encrypting with MACHINE, which has been set up by the
+         *  settings line SETTINGS, in blocks of BLOCKSIZE bytes. */
+        Writer(Path file, Machine machine, String settings, int blockSize)
+            throws IOException {
+            if (blockSize < 1) {
+                throw error("bad block size %d", blockSize);
+            }
+            Alphabet alphabet = machine.getAlphabet();
+            byte[] chars = alphabet.indexByte();
+            byte[] line = settings.getBytes(StandardCharsets.UTF_8);
+            _machine = machine;
+            _blockSize = blockSize;
+            _out = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING);
+            ByteBuffer header =
+                ByteBuffer.allocate(HEADER + chars.length + line.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(blockSize)
+                .putInt(machine.numRotors()).putInt(chars.length)
+                .putInt(line.length).putLong(0).put(chars).put(line).flip();
+            append(header);
+            _block = ByteBuffer.allocate(blockSize);
+            _index = new int[INITIAL_INDEX];
+        }
+
+        /** Encrypt and write the bytes of DATA from its position to its
+         *  limit, leaving its position at its limit. */
+        void write(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                int n = Math.min(data.remaining(), _block.remaining());
+                ByteBuffer part = data.duplicate();
+                part.limit(part.position() + n);
+                _block.put(part);
+                data.position(data.position() + n);
+                if (!_block.hasRemaining()) {
+                    flushBlock();
+                }
+            }
+        }
+
+        /** Encrypt and write the block gathered so far, recording the
+         *  state of the rotors at its start in the index. */
+        private void flushBlock() throws IOException {
+            Machine.State state = _machine.state();
+            int n = _machine.numRotors();
+            if (_indexLength + 2 * n > _index.length) {
+                _index = Arrays.copyOf(_index, 2 * _index.length + 2 * n);
+            }
+            for (int k = 1; k < n; k += 1) {
+                _index[_indexLength] = state.settings()[k];
+                _index[_indexLength + 1] = state.notches()[k] ? 1 : 0;
+                _indexLength += 2;
+            }
+            _block.flip();
+            _length += _block.remaining();
+            _machine.transform(_block);
+            _block.flip();
+            append(_block);
+        }
+
+        /** Write any partial last block, the index and the length of the
+         *  text, and close the file. */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (_block.position() > 0) {
+                    flushBlock();
+                }
+                ByteBuffer chunk =
+                    ByteBuffer.allocate(CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < _indexLength; i += 1) {
+                    if (chunk.remaining() < Integer.BYTES) {
+                        chunk.flip();
+                        append(chunk);
+                    }
+                    chunk.putInt(_index[i]);
+                }
+                chunk.flip();
+                append(chunk);
+                ByteBuffer length =
+                    ByteBuffer.allocate(Long.BYTES).order(
+                        ByteOrder.LITTLE_ENDIAN);
+                length.putLong(_length).flip();
+                long at = LENGTH_OFFSET;
+                while (length.hasRemaining()) {
+                    at += _out.write(length, at);
+                }
+            } finally {
+                _out.close();
+            }
+        }
+
+        /** Write the contents of BUFFER, from its position to its limit,
+         *  to the end of my file, and clear it. */
+        private void append(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                _out.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /** The machine encrypting. */
+        private final Machine _machine;
+
+        /** The number of bytes in each block. */
+        private final int _blockSize;
+
+        /** The file written. */
+        private final FileChannel _out;
+
+        /** The block being gathered. */
+        private final ByteBuffer _block;
+
+        /** The index so far. */
+        private int[] _index;
+
+        /** Number of ints of _index used. */
+        private int _indexLength;
+
+        /** Number of bytes of text written. */
+        private long _length;
+
+    }
+
+    /** First int of a container. */
+    static final int MAGIC = 0x454e4331;
+
+    /** Version of the format. */
+    static final int VERSION = 1;
+
+    /** Number of bytes in the header before the alphabet. */
+    private static final int HEADER = 6 * Integer.BYTES + Long.BYTES;
+
+    /** Offset of the length of the text in the header. */
+    private static final long LENGTH_OFFSET = 6 * Integer.BYTES;
+
+    /** Largest byte value. */
+    private static final int MAX_BYTE = 0xff;
+
+    /** Initial number of ints held for a writer's index. */
+    private static final int INITIAL_INDEX = 256;
+
+    /** Size of the buffer used to write indexes. */
+    private static final int CHUNK = 1 << 16;
+
+    /** Block size used by default. */
+    static final int DEFAULT_BLOCK = 1 << 16;
+
+    /** The open file. */
+    private final FileChannel _in;
+
+    /** The settings line. */
+    private final String _settings;
+
+    /** A machine set up by the settings line. */
+    private final Machine _machine;
+
+    /** Offset of the ciphertext in the file. */
+    private final long _start;
+
+    /** Length of the text. */
+    private final long _length;
+
+    /** Number of bytes in each block. */
+    private final int _blockSize;
+
+    /** The index. */
+    private final IntBuffer _index;
+
+}
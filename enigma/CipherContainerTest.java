@@ -0,0 +1,159 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for CipherContainer.
+ *  @author Xiaoru Zhao
+ */
+public class CipherContainerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The settings line of the tests. */
+    private static final String SETTINGS = "* B Beta I II III AXLE (AQ) (EP)";
+
+    /** Number of bytes in a container's header before the alphabet. */
+    private static final int HEADER = 32;
+
+    /** Block size of the tests, small enough for many blocks. */
+    private static final int BLOCK = 100;
+
+    /** Return LENGTH bytes of random letters, spaces and newlines from
+     *  RANDOM. */
+    private static byte[] text(Random random, int length) {
+        byte[] result = new byte[length];
+        for (int i = 0; i < length; i += 1) {
+            int c = random.nextInt(UPPER.size() + 2);
+            result[i] = (byte) (c == UPPER.size() ? ' '
+                                : c > UPPER.size() ? '\n' : 'A' + c);
+        }
+        return result;
+    }
+
+    /** Write TEXT into a new container in FILE, in pieces of random
+     *  lengths from RANDOM. */
+    private static void write(Path file, byte[] text, Random random)
+        throws IOException {
+        try (CipherContainer.Writer writer =
+                 new CipherContainer.Writer(file, historicalMachine(SETTINGS),
+                                            SETTINGS, BLOCK)) {
+            int at = 0;
+            while (at < text.length) {
+                int n = Math.min(text.length - at, random.nextInt(3 * BLOCK));
+                writer.write(ByteBuffer.wrap(text, at, n));
+                at += n;
+            }
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkRanges() throws IOException {
+        Random random = new Random(1);
+        byte[] text = text(random, 2345);
+        Path file = Files.createTempFile("container", ".enc");
+        try {
+            write(file, text, random);
+            try (CipherContainer container =
+                     CipherContainer.open(file, TestUtils::historicalMachine)) {
+                assertEquals(SETTINGS, container.settings());
+                assertEquals(text.length, container.length());
+                assertEquals(24, container.blocks());
+                for (int i = 0; i < 200; i += 1) {
+                    int from = random.nextInt(text.length + 1);
+                    int len = random.nextInt(text.length - from + 1);
+                    assertArrayEquals(Arrays.copyOfRange(text, from,
+                                                         from + len),
+                                      container.read(from, len));
+                }
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkCiphertext() throws IOException {
+        Random random = new Random(2);
+        byte[] text = text(random, 1000);
+        Path file = Files.createTempFile("container", ".enc");
+        try {
+            write(file, text, random);
+            ByteBuffer expected = ByteBuffer.wrap(text.clone());
+            historicalMachine(SETTINGS).transform(expected);
+            byte[] data = Files.readAllBytes(file);
+            int start = HEADER + UPPER.size() + SETTINGS.length();
+            assertArrayEquals(expected.array(),
+                              Arrays.copyOfRange(data, start,
+                                                 start + text.length));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkDecryptAll() throws IOException {
+        Random random = new Random(3);
+        byte[] text = text(random, 5050);
+        Path file = Files.createTempFile("container", ".enc");
+        Path output = Files.createTempFile("container", ".txt");
+        try {
+            write(file, text, random);
+            try (CipherContainer container =
+                     CipherContainer.open(file, TestUtils::historicalMachine)) {
+                container.decryptAll(output, 4);
+            }
+            assertArrayEquals(text, Files.readAllBytes(output));
+        } finally {
+            Files.delete(file);
+            Files.delete(output);
+        }
+    }
+
+    @Test
+    public void checkEmpty() throws IOException {
+        Path file = Files.createTempFile("container", ".enc");
+        try {
+            write(file, new byte[0], new Random(4));
+            try (CipherContainer container =
+                     CipherContainer.open(file, TestUtils::historicalMachine)) {
+                assertEquals(0, container.length());
+                assertEquals(0, container.read(0, 0).length);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkBadFile() throws IOException {
+        Path file = Files.createTempFile("container", ".enc");
+        try {
+            Files.write(file, "not a container at all, really".getBytes());
+            CipherContainer.open(file, TestUtils::historicalMachine);
+            fail("opened a bad container");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
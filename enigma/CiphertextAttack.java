@@ -0,0 +1,461 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static enigma.EnigmaException.*;
+
+/** An attack on a ciphertext alone, in two stages.  Stage one runs the
+ *  ciphertext through every setting of a KeyspaceSweep, whose plugboard
+ *  should be empty, and keeps the settings whose outputs have the highest
+ *  index of coincidence, since the right rotor setting gives an output
+ *  that, outside the plugged letters, is plaintext.  Stage two takes each
+ *  of those candidates and climbs towards the plugboard under which the
+ *  output scores best by an NGramScorer, adding at each step the pair of
+ *  letters that most improves the score.
+ *
+ *  For stage two, the plugboard-free substitution made at each step of
+ *  the message by a candidate's rotors is computed once, so that trying a
+ *  plugboard costs three table lookups a character and never steps the
+ *  rotors again, and only the n-grams around the characters that the
+ *  plugboard changes are rescored.  Candidates are shared out among
+ *  threads.
+ *  @author Xiaoru Zhao
+ */
+class CiphertextAttack {
+
+    /** Receives news of an attack as it goes.  Calls come from one thread
+     *  at a time. */
+    interface Listener {
+
+        /** Report that DONE of the TOTAL items of STAGE (1 or 2) are
+         *  finished. */
+        void progress(int stage, long done, long total);
+
+        /** Report that KEY is the best key found so far. */
+        void best(Key key);
+
+    }
+
+    /** A full key found by the attack: a setting of the sweep, and a
+     *  plugboard. */
+    static class Key {
+
+        /** The key with the rotor setting of SETTING and plugboard
+         *  PLUGBOARD, as cycles, giving OUTPUT (alphabet indices) with
+         *  n-gram score SCORE. */
+        Key(KeyspaceSweep.Result setting, String plugboard, int[] output,
+            double score) {
+            _setting = setting;
+            _plugboard = plugboard;
+            _output = output;
+            _score = score;
+        }
+
+        /** Return the rotor setting, whose score is its index of
+         *  coincidence. */
+        KeyspaceSweep.Result setting() {
+            return _setting;
+        }
+
+        /** Return the plugboard, as cycles. */
+        String plugboard() {
+            return _plugboard;
+        }
+
+        /** Return the converted message, as alphabet indices. */
+        int[] output() {
+            return _output;
+        }
+
+        /** Return the n-gram score of output(). */
+        double score() {
+            return _score;
+        }
+
+        /** Return the settings line giving me, over ALPHABET. */
+        String settingsLine(Alphabet alphabet) {
+            return _setting.settingsLine(alphabet, _plugboard);
+        }
+
+        /** The rotor setting. */
+        private final KeyspaceSweep.Result _setting;
+
+        /** The plugboard. */
+        private final String _plugboard;
+
+        /** The converted message. */
+        private final int[] _output;
+
+        /** The score. */
+        private final double _score;
+
+    }
+
+    /** An attack trying the settings of SWEEP, whose rotors come from
+     *  CATALOG, and judging plugboards by SCORER. */
+    CiphertextAttack(KeyspaceSweep sweep, RotorCatalog catalog,
+                     NGramScorer scorer) {
+        _sweep = sweep;
+        _catalog = catalog;
+        _scorer = scorer;
+        _alphabet = scorer.alphabet();
+        _size = _alphabet.size();
+        _candidates = CANDIDATES;
+        _maxPairs = MAX_PAIRS;
+        _threads = Runtime.getRuntime().availableProcessors();
+        _listener = new Listener() {
+            @Override
+            public void progress(int stage, long done, long total) {
+            }
+
+            @Override
+            public void best(Key key) {
+            }
+        };
+    }
+
+    /** Carry N candidates from stage one into stage two. */
+    void setCandidates(int n) {
+        _candidates = Math.max(1, n);
+    }
+
+    /** Return the number of candidates carried into stage two. */
+    int candidates() {
+        return _candidates;
+    }
+
+    /** Let the plugboard have at most N pairs. */
+    void setMaxPairs(int n) {
+        _maxPairs = Math.max(0, n);
+    }
+
+    /** Use up to N threads. */
+    void setThreads(int n) {
+        _threads = Math.max(1, n);
+        _sweep.setThreads(n);
+    }
+
+    /** Send news of the attack to LISTENER. */
+    void setListener(Listener listener) {
+        _listener = listener;
+    }
+
+    /** Return the index of coincidence of TEXT, whose characters are
+     *  indices in an alphabet of COUNTS.length characters.  COUNTS is
+     *  overwritten. */
+    static double coincidence(int[] text, int[] counts) {
+        Arrays.fill(counts, 0);
+        for (int c : text) {
+            counts[c] += 1;
+        }
+        long pairs = 0;
+        for (int n : counts) {
+            pairs += (long) n * (n - 1);
+        }
+        long n = text.length;
+        return n < 2 ? 0 : (double) pairs / (n * (n - 1));
+    }
+
+    /** Attack CIPHER (alphabet indices), returning the best key found from
+     *  each candidate, best first. */
+    List<Key> run(int[] cipher) {
+        long total = _sweep.size();
+        AtomicLong done = new AtomicLong();
+        ThreadLocal<int[]> counts =
+            ThreadLocal.withInitial(() -> new int[_size]);
+        List<KeyspaceSweep.Result> candidates =
+            _sweep.top(cipher, out -> {
+                if (done.incrementAndGet() % PROGRESS_STEP == 0) {
+                    progress(1, done.get(), total);
+                }
+                return coincidence(out, counts.get());
+            }, _candidates);
+        progress(1, total, total);
+        return climbAll(cipher, candidates);
+    }
+
+    /** Report that DONE of the TOTAL items of STAGE are finished. */
+    private void progress(int stage, long done, long total) {
+        synchronized (this) {
+            _listener.progress(stage, done, total);
+        }
+    }
+
+    /** Climb from each of CANDIDATES for CIPHER, reporting progress and
+     *  new best keys, and return the keys found, best first. */
+    private List<Key> climbAll(int[] cipher,
+                               List<KeyspaceSweep.Result> candidates) {
+        Key[] keys = new Key[candidates.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        Runnable worker = () -> {
+            Climber climber = new Climber(cipher);
+            while (true) {
+                int i = next.getAndIncrement();
+                if (i >= keys.length) {
+                    return;
+                }
+                keys[i] = climber.climb(candidates.get(i));
+                synchronized (this) {
+                    if (_best == null || keys[i].score() > _best.score()) {
+                        _best = keys[i];
+                        _listener.best(_best);
+                    }
+                    _listener.progress(2, done.incrementAndGet(),
+                                       keys.length);
+                }
+            }
+        };
+        _best = null;
+        int threads = Math.min(_threads, keys.length);
+        if (threads <= 1) {
+            worker.run();
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < threads; i += 1) {
+                    futures.add(pool.submit(worker));
+                }
+                for (Future<?> f : futures) {
+                    f.get();
+                }
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw error("attack interrupted");
+            } catch (ExecutionException excp) {
+                if (excp.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) excp.getCause();
+                }
+                throw error("attack failed: %s", excp.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        List<Key> result = new ArrayList<>(Arrays.asList(keys));
+        result.sort(Comparator.comparingDouble(Key::score).reversed());
+        return result;
+    }
+
+    /** Climbs towards the best plugboard for one candidate at a time. */
+    private class Climber {
+
+        /** A climber for CIPHER. */
+        Climber(int[] cipher) {
+            _cipher = cipher;
+            _scrambler = new int[cipher.length * _size];
+            _output = new int[cipher.length];
+            _current = new int[cipher.length];
+            _changed = new int[cipher.length];
+            _plug = new int[_size];
+            _trial = new int[_size];
+        }
+
+        /** Return the best key found by climbing from the rotor setting
+         *  CANDIDATE with an empty plugboard. */
+        Key climb(KeyspaceSweep.Result candidate) {
+            compile(candidate);
+            for (int c = 0; c < _size; c += 1) {
+                _plug[c] = c;
+            }
+            double current = score(_plug), best = current;
+            for (int pairs = 0; pairs < _maxPairs; pairs += 1) {
+                int bestA = -1, bestB = -1;
+                for (int a = 0; a < _size; a += 1) {
+                    for (int b = a + 1; b < _size; b += 1) {
+                        if (_plug[a] == b) {
+                            continue;
+                        }
+                        connect(a, b);
+                        double s = rescore(_trial, current);
+                        if (s > best) {
+                            best = s;
+                            bestA = a;
+                            bestB = b;
+                        }
+                    }
+                }
+                if (bestA < 0) {
+                    break;
+                }
+                connect(bestA, bestB);
+                System.arraycopy(_trial, 0, _plug, 0, _size);
+                current = score(_plug);
+                best = current;
+            }
+            return new Key(candidate, cycles(_plug), _current.clone(),
+                           current);
+        }
+
+        /** Set _scrambler to the plugboard-free substitutions made by the
+         *  rotors of SETTING at each step of the message. */
+        private void compile(KeyspaceSweep.Result setting) {
+            String[] order = setting.order();
+            int n = order.length;
+            int[] rings = setting.rings();
+            MachineLanes lanes = new MachineLanes(n, _size, 1);
+            int lane = lanes.addLane();
+            for (int k = 0; k < n; k += 1) {
+                Rotor rotor = _catalog.get(order[k]);
+                int ring = rings != null && k > 0 ? rings[k - 1] : 0;
+                lanes.setRotor(lane, k,
+                               lanes.tables(rotor, _alphabet, ring),
+                               rotor.rotates(),
+                               k == 0 ? 0 : setting.positions()[k - 1],
+                               false);
+            }
+            int[] pool = lanes.pool();
+            int[] base = new int[n], posn = new int[n];
+            int[] before = new int[n], rotates = new int[n];
+            for (int k = 0; k < n; k += 1) {
+                base[k] = lanes.base(k)[lane];
+                posn[k] = lanes.positions(k)[lane];
+                rotates[k] = lanes.rotates(k)[lane];
+            }
+            for (int t = 0; t < _cipher.length; t += 1) {
+                ScalarLockstepEngine.step(pool, _size, base, posn, before,
+                                          rotates);
+                for (int c = 0; c < _size; c += 1) {
+                    int r = c;
+                    for (int k = n - 1; k >= 0; k -= 1) {
+                        r = through(pool, base[k], r, posn[k]);
+                    }
+                    for (int k = 1; k < n; k += 1) {
+                        r = through(pool, base[k] + _size, r, posn[k]);
+                    }
+                    _scrambler[t * _size + c] = r;
+                }
+            }
+        }
+
+        /** Return the conversion of R by the table at offset TABLE of
+         *  POOL, of a rotor at position POSN. */
+        private int through(int[] pool, int table, int r, int posn) {
+            int x = ScalarLockstepEngine.shift(r, posn, _size);
+            return ScalarLockstepEngine.shift(pool[table + x], -posn, _size);
+        }
+
+        /** Set _trial to _plug with A and B plugged together and their
+         *  former partners left unplugged. */
+        private void connect(int a, int b) {
+            System.arraycopy(_plug, 0, _trial, 0, _size);
+            _trial[_trial[a]] = _trial[a];
+            _trial[_trial[b]] = _trial[b];
+            _trial[a] = b;
+            _trial[b] = a;
+        }
+
+        /** Convert the cipher under plugboard PLUG into _current, and
+         *  return its score. */
+        private double score(int[] plug) {
+            for (int t = 0; t < _cipher.length; t += 1) {
+                _current[t] = plug[_scrambler[t * _size + plug[_cipher[t]]]];
+            }
+            return _scorer.score(_current);
+        }
+
+        /** Convert the cipher under plugboard PLUG into _output, and
+         *  return its score, given that the score of _current is SCORE.
+         *  Only the n-grams around the characters that differ from
+         *  _current are rescored. */
+        private double rescore(int[] plug, double score) {
+            int count = 0;
+            for (int t = 0; t < _cipher.length; t += 1) {
+                int c = plug[_scrambler[t * _size + plug[_cipher[t]]]];
+                _output[t] = c;
+                if (c != _current[t]) {
+                    _changed[count] = t;
+                    count += 1;
+                }
+            }
+            return _scorer.rescore(score, _current, _output, _cipher.length,
+                                   _changed, count);
+        }
+
+        /** Return the cycles of the plugboard PLUG. */
+        private String cycles(int[] plug) {
+            StringBuilder result = new StringBuilder();
+            for (int a = 0; a < _size; a += 1) {
+                if (plug[a] > a) {
+                    result.append('(')
+                        .appendCodePoint(_alphabet.toCodePoint(a))
+                        .appendCodePoint(_alphabet.toCodePoint(plug[a]))
+                        .append(')');
+                }
+            }
+            return result.toString();
+        }
+
+        /** The ciphertext. */
+        private final int[] _cipher;
+
+        /** The image of C at step T of the current candidate, at
+         *  T * alphabet size + C. */
+        private final int[] _scrambler;
+
+        /** The output under the plugboard last tried. */
+        private final int[] _output;
+
+        /** The output under the current plugboard. */
+        private final int[] _current;
+
+        /** Positions at which _output differs from _current. */
+        private final int[] _changed;
+
+        /** The current plugboard, as an involution. */
+        private final int[] _plug;
+
+        /** The plugboard being tried. */
+        private final int[] _trial;
+
+    }
+
+    /** Default number of candidates carried into stage two. */
+    private static final int CANDIDATES = 20;
+
+    /** Default largest number of plugboard pairs. */
+    private static final int MAX_PAIRS = 10;
+
+    /** Number of settings between reports of progress in stage one. */
+    private static final long PROGRESS_STEP = 1 << 16;
+
+    /** The settings tried in stage one. */
+    private final KeyspaceSweep _sweep;
+
+    /** Source of rotors. */
+    private final RotorCatalog _catalog;
+
+    /** Judges plugboards. */
+    private final NGramScorer _scorer;
+
+    /** The alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Number of candidates carried into stage two. */
+    private int _candidates;
+
+    /** Largest number of plugboard pairs. */
+    private int _maxPairs;
+
+    /** Largest number of threads used in stage two. */
+    private int _threads;
+
+    /** Receives news of the attack. */
+    private Listener _listener;
+
+    /** Best key found so far by stage two. */
+    private Key _best;
+
+}
@@ -0,0 +1,193 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for CiphertextAttack.
+ *  @author Xiaoru Zhao
+ */
+public class CiphertextAttackTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Text from which n-gram frequencies are taken. */
+    private static final String CORPUS =
+        "Four score and seven years ago our fathers brought forth on this "
+        + "continent, a new nation, conceived in Liberty, and dedicated to "
+        + "the proposition that all men are created equal. Now we are engaged"
+        + " in a great civil war, testing whether that nation, or any nation "
+        + "so conceived and so dedicated, can long endure. We are met on a "
+        + "great battle-field of that war. We have come to dedicate a portion"
+        + " of that field, as a final resting place for those who here gave "
+        + "their lives that that nation might live. It is altogether fitting "
+        + "and proper that we should do this. But, in a larger sense, we can "
+        + "not dedicate -- we can not consecrate -- we can not hallow -- this"
+        + " ground. The brave men, living and dead, who struggled here, have "
+        + "consecrated it, far above our poor power to add or detract. The "
+        + "world will little note, nor long remember what we say here, but it"
+        + " can never forget what they did here. It is for us the living, "
+        + "rather, to be dedicated here to the unfinished work which they who"
+        + " fought here have thus far so nobly advanced. It is rather for us "
+        + "to be here dedicated to the great task remaining before us -- that"
+        + " from these honored dead we take increased devotion to that cause "
+        + "for which they gave the last full measure of devotion -- that we "
+        + "here highly resolve that these dead shall not have died in vain --"
+        + " that this nation, under God, shall have a new birth of freedom --"
+        + " and that government of the people, by the people, for the people,"
+        + " shall not perish from the earth.";
+
+    /** Message encrypted in the tests. */
+    private static final String PLAIN =
+        "WETHEPEOPLEOFTHEUNITEDSTATESINORDERTOFORMAMOREPERFECTUNIONESTABLIS"
+        + "HJUSTICEINSUREDOMESTICTRANQUILITYPROVIDEFORTHECOMMONDEFENCEPROMOTE"
+        + "THEGENERALWELFAREANDSECURETHEBLESSINGSOFLIBERTYTOOURSELVESANDOURPO"
+        + "STERITYDOORDAINANDESTABLISHTHISCONSTITUTIONFORTHEUNITEDSTATESOFAME"
+        + "RICA";
+
+    /** Return a new machine with 4 slots and naval rotors B, I, II, III
+     *  and IV. */
+    private Machine machine() {
+        return navalMachine(4, "B", "I", "II", "III", "IV");
+    }
+
+    /** Return the alphabet indices of MSG. */
+    private int[] indices(String msg) {
+        int[] result = new int[msg.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = UPPER.toInt(msg.charAt(i));
+        }
+        return result;
+    }
+
+    /** Return PLAIN encrypted by a new machine with the settings line
+     *  SETTINGS, which has no ring settings. */
+    private int[] encrypt(String settings) {
+        Machine m = machine();
+        String[] tokens = settings.split(" ");
+        m.insertRotors(new String[] {
+            tokens[1], tokens[2], tokens[3], tokens[4] });
+        m.setRotors(tokens[5]);
+        m.setPlugboard(new Permutation(tokens.length > 6 ? tokens[6] : "",
+                                       UPPER));
+        return indices(m.convert(PLAIN));
+    }
+
+    /** Return an attack over the space SPACE of machines like machine(),
+     *  scoring by trigrams of CORPUS. */
+    private CiphertextAttack attack(String space) throws IOException {
+        Machine m = machine();
+        KeyspaceSweep sweep = new KeyspaceSweep(UPPER, 4, 3, m.catalog());
+        sweep.parse(space);
+        return new CiphertextAttack(sweep, m.catalog(),
+                                    NGramScorer.train(UPPER, 3,
+                                        new StringReader(CORPUS)));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkCoincidence() {
+        int[] counts = new int[UPPER.size()];
+        assertEquals(0, CiphertextAttack.coincidence(indices("ABCD"), counts),
+                     1e-9);
+        assertEquals(1, CiphertextAttack.coincidence(indices("AAA"), counts),
+                     1e-9);
+        assertEquals(2.0 / 12,
+                     CiphertextAttack.coincidence(indices("AABC"), counts),
+                     1e-9);
+        assertTrue(CiphertextAttack.coincidence(indices(PLAIN), counts)
+                   > CiphertextAttack.coincidence(encrypt("* B I II III AAA"),
+                                                  counts));
+    }
+
+    @Test
+    public void checkRecoversKey() throws IOException {
+        String settings = "* B II IV I KQD (AQ)(EP)(RT)(WZ)";
+        CiphertextAttack attack = attack("B II IV I ???");
+        List<CiphertextAttack.Key> keys = attack.run(encrypt(settings));
+        assertEquals(attack.candidates(), keys.size());
+        assertEquals(settings, keys.get(0).settingsLine(UPPER));
+        assertEquals(PLAIN, KeyspaceSweep.text(keys.get(0).output(), UPPER));
+        assertTrue(keys.get(1).score() <= keys.get(0).score());
+    }
+
+    @Test
+    public void checkProgress() throws IOException {
+        CiphertextAttack attack = attack("B II|III IV I ?[A-C]?");
+        attack.setCandidates(3);
+        attack.setMaxPairs(0);
+        attack.setThreads(2);
+        List<String> news = new ArrayList<>();
+        attack.setListener(new CiphertextAttack.Listener() {
+            @Override
+            public void progress(int stage, long done, long total) {
+                news.add(stage + ":" + done + "/" + total);
+            }
+
+            @Override
+            public void best(CiphertextAttack.Key key) {
+                news.add("best");
+            }
+        });
+        List<CiphertextAttack.Key> keys =
+            attack.run(encrypt("* B III IV I MAX"));
+        assertEquals(3, keys.size());
+        for (CiphertextAttack.Key key : keys) {
+            assertEquals("", key.plugboard());
+        }
+        assertTrue(news.contains("1:4056/4056"));
+        assertTrue(news.contains("2:3/3"));
+        assertTrue(news.contains("best"));
+        assertEquals("* B III IV I MAX", keys.get(0).settingsLine(UPPER));
+    }
+
+    @Test
+    public void checkTopBeyondKeys() throws IOException {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Path corpus = Files.createTempFile("enigma", ".txt");
+        Path input = Files.createTempFile("enigma", ".in");
+        Path output = Files.createTempFile("enigma", ".out");
+        try {
+            Files.write(config, Arrays.asList(HistoricalCatalog.LETTERS,
+                                              "5 3", "@historical"));
+            Files.write(corpus, Arrays.asList(CORPUS));
+            Machine m = new Machine(UPPER, 5, 3, new HistoricalCatalog(UPPER));
+            m.insertRotors(new String[] { "B", "Beta", "II", "IV", "I" });
+            m.setRotors("AKQD");
+            Files.write(input, Arrays.asList(m.convert(PLAIN)));
+            Main.main("--attack", "--corpus=" + corpus, "--top=40",
+                      config.toString(), "B Beta II IV I AKQ?",
+                      input.toString(), output.toString());
+            List<String> lines = Files.readAllLines(output);
+            int keys = 0;
+            for (String line : lines) {
+                if (line.startsWith("*")) {
+                    keys += 1;
+                }
+            }
+            assertTrue(keys > 0 && keys <= UPPER.size());
+            assertEquals("* B Beta II IV I AKQD", lines.get(0));
+        } finally {
+            for (Path p : new Path[] { config, corpus, input, output }) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+}
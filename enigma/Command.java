@@ -0,0 +1,223 @@
+package enigma;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** One mode of Main, selected by its command line.  A command checks its
+ *  options and operands and opens its files when constructed, and does
+ *  its work when run.  Each subclass describes its command line, and
+ *  holds it as USAGE.  The methods here are those shared by commands
+ *  that read a configuration, ciphertext or messages, or print
+ *  messages.
+ *  @author Xiaoru Zhao
+ */
+abstract class Command {
+
+    /** A command taking its options from OPTIONS, whose command line is
+     *  USAGE. */
+    Command(Options options, String usage) {
+        _options = options;
+        _usage = usage;
+    }
+
+    /** Do my work. */
+    abstract void run();
+
+    /** Release what I hold, once run has finished or failed. */
+    void close() {
+        if (_config != null) {
+            _config.close();
+        }
+    }
+
+    /** Return my options. */
+    Options options() {
+        return _options;
+    }
+
+    /** Return an error reporting that my command line should be my
+     *  USAGE. */
+    EnigmaException usage() {
+        return error("usage: java enigma.Main %s", _usage);
+    }
+
+    /** Read my machine from the configuration file NAME, or the built-in
+     *  one if NAME is null, once machine() is called. */
+    void setConfig(String name) {
+        _config = new MachineConfig(name, _options);
+    }
+
+    /** Return my configuration (see setConfig). */
+    MachineConfig config() {
+        return _config;
+    }
+
+    /** Return a new machine as my configuration describes. */
+    Machine machine() {
+        return _config.machine();
+    }
+
+    /** Return the alphabet of my machine, once machine() has been
+     *  called. */
+    Alphabet alphabet() {
+        return _config.alphabet();
+    }
+
+    /** Return a space of settings of machines like MACHINE, not yet set
+     *  up (see KeyspaceSweep.parse). */
+    KeyspaceSweep space(Machine machine) {
+        return new KeyspaceSweep(alphabet(), machine.numRotors(),
+                                 machine.numPawls(), machine.catalog());
+    }
+
+    /** Read my input from the file INPUT, or from the standard input if
+     *  INPUT is null, and write my output to the file OUTPUT, or to the
+     *  standard output if OUTPUT is null. */
+    void setStreams(String input, String output) {
+        try {
+            InputStream in = input == null ? System.in
+                : new FileInputStream(input);
+            _input = new Scanner(metrics().meter(in), CHARSET);
+        } catch (IOException excp) {
+            throw error("could not open %s", input);
+        }
+        if (output == null) {
+            setOutput(System.out);
+        } else {
+            try {
+                setOutput(new FileOutputStream(output));
+            } catch (IOException excp) {
+                throw error("could not open %s", output);
+            }
+        }
+    }
+
+    /** Write my output to OUT, recording the bytes written in
+     *  metrics(). */
+    void setOutput(OutputStream out) {
+        try {
+            _output = new PrintStream(metrics().meter(out), false, CHARSET);
+        } catch (IOException excp) {
+            throw error("could not open output");
+        }
+    }
+
+    /** Return my source of input. */
+    Scanner input() {
+        return _input;
+    }
+
+    /** Return my destination of output. */
+    PrintStream output() {
+        return _output;
+    }
+
+    /** Return the metrics recording the work done. */
+    EnigmaMetrics metrics() {
+        return EnigmaMetrics.global();
+    }
+
+    /** Return the rest of my input run together, without whitespace. */
+    String readAll() {
+        StringBuilder text = new StringBuilder();
+        while (_input.hasNext()) {
+            text.append(_input.next());
+        }
+        return text.toString();
+    }
+
+    /** Return the alphabet indices of the characters of TEXT, all of which
+     *  must be in alphabet(). */
+    int[] indices(String text) {
+        Alphabet alphabet = alphabet();
+        int[] result = text.codePoints().toArray();
+        for (int i = 0; i < result.length; i += 1) {
+            int k = alphabet.indexOf(result[i]);
+            if (k < 0) {
+                throw error("character %s not in alphabet",
+                            new String(Character.toChars(result[i])));
+            }
+            result[i] = k;
+        }
+        return result;
+    }
+
+    /** Print MSG in groups of five (except that the last group may
+     *  have fewer letters). */
+    void printMessageLine(String msg) {
+        StringBuilder result = new StringBuilder(msg.length() * 6 / 5 + 1);
+        int i = 0;
+        for (int k = 0; k < msg.length(); i += 1) {
+            int cp = msg.codePointAt(k);
+            result.appendCodePoint(cp);
+            if (i != 0 && (i + 1) % 5 == 0) {
+                result.append(' ');
+            }
+            k += Character.charCount(cp);
+        }
+        _output.println(result);
+    }
+
+    /** Set M according to the specification given on SETTINGS,
+     *  which must have the format specified in the assignment. */
+    static void setUp(Machine M, String settings) {
+        long start = System.nanoTime();
+        Scanner aLine = new Scanner(settings);
+        aLine.next();
+        String[] myRotors = new String[M.numRotors()];
+        for (int i = 0; i < M.numRotors(); i += 1) {
+            myRotors[i] = aLine.next();
+        }
+        M.insertRotors(myRotors);
+        M.setRotors(aLine.next());
+        if (aLine.hasNext("\\w+")) {
+            M.setRings(aLine.next());
+        }
+        StringBuilder plugboard = new StringBuilder();
+        while (aLine.hasNext()) {
+            plugboard.append(aLine.next());
+        }
+        M.setPlugboard(new Permutation(plugboard.toString(),
+                                       M.getAlphabet()));
+        M.metrics().recordReconfiguration(System.nanoTime() - start);
+    }
+
+    /** Return SETTINGS as a settings line, starting with "*". */
+    static String settingsLine(String settings) {
+        String result = settings.trim();
+        return result.startsWith("*") ? result : "* " + result;
+    }
+
+    /** Return THREADS, or the number of processors if THREADS is 0. */
+    static int threads(int threads) {
+        return threads > 0 ? threads
+            : Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Encoding of configuration, input, and output files. */
+    static final String CHARSET = "UTF-8";
+
+    /** My options. */
+    private final Options _options;
+
+    /** My command line. */
+    private final String _usage;
+
+    /** My configuration, or null. */
+    private MachineConfig _config;
+
+    /** Source of input messages, or null. */
+    private Scanner _input;
+
+    /** File for encoded/decoded messages, or null. */
+    private PrintStream _output;
+
+}
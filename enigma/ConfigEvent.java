@@ -0,0 +1,42 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A Flight Recorder event spanning the reading of a configuration
+ *  file.  Disabled unless a recording enables it, as Main's --jfr
+ *  does.
+ *  @author Xiaoru Zhao
+ */
+@Name("enigma.Config")
+@Label("Configuration Parsed")
+@Category("Enigma")
+@Description("Reading a configuration file and building its machine")
+@Enabled(false)
+@StackTrace(false)
+class ConfigEvent extends Event {
+
+    /** Name of the configuration file. */
+    @Label("File")
+    String file;
+
+    /** Size of the configuration file. */
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    /** Number of characters in the alphabet. */
+    @Label("Alphabet Size")
+    int alphabetSize;
+
+    /** Number of rotors read, or -1 if they are parsed lazily. */
+    @Label("Rotors")
+    int rotors;
+
+}
@@ -0,0 +1,79 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--container [--block=K] CONFIG SETTINGS INPUT OUTPUT",
+ *  which encrypts file INPUT under SETTINGS, as MappedCommand does, into
+ *  a seekable container OUTPUT (see CipherContainer) whose index holds
+ *  the state of the rotors every K bytes (default 65536).
+ *  ExtractCommand decrypts it.
+ *  @author Xiaoru Zhao
+ */
+class ContainerCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE =
+        "--container [--block=K] CONFIG SETTINGS INPUT OUTPUT";
+
+    /** A container encryption whose options and operands are in
+     *  OPTIONS. */
+    ContainerCommand(Options options) {
+        super(options, USAGE);
+        options.flag("--container");
+        int blockSize = options.count("--block");
+        _blockSize = blockSize > 0 ? blockSize : CipherContainer.DEFAULT_BLOCK;
+        List<String> operands = options.operands();
+        if (operands.size() != 4) {
+            throw usage();
+        }
+        setConfig(operands.get(0));
+        _settings = settingsLine(operands.get(1));
+        _inputName = operands.get(2);
+        _outputName = operands.get(3);
+    }
+
+    @Override
+    void run() {
+        Machine machine = machine();
+        setUp(machine, _settings);
+        ByteBuffer buffer = ByteBuffer.allocate(CONTAINER_CHUNK);
+        try (FileChannel in = FileChannel.open(Paths.get(_inputName));
+             CipherContainer.Writer out =
+                 new CipherContainer.Writer(Paths.get(_outputName), machine,
+                                            _settings, _blockSize)) {
+            while (in.read(buffer) >= 0) {
+                buffer.flip();
+                metrics().recordBytesIn(buffer.remaining());
+                out.write(buffer);
+                buffer.clear();
+            }
+        } catch (IOException excp) {
+            throw error("could not encrypt %s: %s", _inputName,
+                        excp.getMessage());
+        }
+    }
+
+    /** Size of the buffer through which a container is written. */
+    private static final int CONTAINER_CHUNK = 1 << 16;
+
+    /** Bytes between entries of the container's index. */
+    private final int _blockSize;
+
+    /** Settings line used. */
+    private final String _settings;
+
+    /** Name of the input file. */
+    private final String _inputName;
+
+    /** Name of the container written. */
+    private final String _outputName;
+
+}
@@ -0,0 +1,318 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.EnigmaException.*;
+
+/** Converts messages through a Machine, advancing its rotors exactly as
+ *  Machine.convert(int) does for each character.  The reference engine
+ *  is that walk through the Rotors itself; the others compile the
+ *  machine into tables and may be faster, and an EngineSelector chooses
+ *  among them.  An engine may keep tables compiled for the machine it
+ *  last converted through, so each Machine has engines of its own.
+ *
+ *  Any engine can be checked against the reference: checked(ENGINE)
+ *  repeats each conversion with the reference and throws if the outputs
+ *  or the final states differ, and crossCheck runs an engine that way
+ *  over random machines and messages.
+ *  @author Xiaoru Zhao
+ */
+abstract class ConversionEngine {
+
+    /** Return the engine that uses Machine.convert(int) itself. */
+    static ConversionEngine reference() {
+        return new Reference();
+    }
+
+    /** Return an engine that converts through compiled tables, as a
+     *  ScalarLockstepEngine does for a single lane. */
+    static ConversionEngine table() {
+        return new TableEngine();
+    }
+
+    /** Return an engine that composes the slower rotors into one table
+     *  (see PrecomposedEngine). */
+    static ConversionEngine precomposed() {
+        return new PrecomposedEngine();
+    }
+
+    /** Return an engine using the incubating Vector API, or null if it
+     *  was not compiled or the module is not present (see the vector
+     *  directory). */
+    static ConversionEngine vector() {
+        try {
+            return (ConversionEngine) Class.forName(VECTOR_CLASS)
+                .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError excp) {
+            return null;
+        }
+    }
+
+    /** Return a new one of each engine available here, the reference
+     *  first. */
+    static List<ConversionEngine> all() {
+        List<ConversionEngine> result = new ArrayList<>();
+        result.add(reference());
+        result.add(table());
+        result.add(precomposed());
+        ConversionEngine vector = vector();
+        if (vector != null) {
+            result.add(vector);
+        }
+        return result;
+    }
+
+    /** Return a new engine named NAME. */
+    static ConversionEngine named(String name) {
+        for (ConversionEngine engine : all()) {
+            if (engine.name().equals(name)) {
+                return engine;
+            }
+        }
+        throw error("no conversion engine named %s here", name);
+    }
+
+    /** Return an engine that converts with ENGINE, but first converts
+     *  the same characters with the reference engine from the same
+     *  state, and throws if the outputs or final states differ. */
+    static ConversionEngine checked(ConversionEngine engine) {
+        return new Checked(engine);
+    }
+
+    /** Convert random messages through ENGINE on TRIALS new random
+     *  machines, checking every conversion against the reference engine.
+     *  The machines vary in alphabet, number of rotors, pawls, wirings,
+     *  notches, settings and plugboard, and each converts several
+     *  messages under one key, mostly of MAX_SHORT characters or fewer,
+     *  and some of up to MAX_CHECKED.  The random choices come from SEED.
+     *  Throws an EnigmaException describing the first difference
+     *  found. */
+    static void crossCheck(ConversionEngine engine, long seed, int trials) {
+        Random random = new Random(seed);
+        ConversionEngine checked = checked(engine);
+        for (int trial = 0; trial < trials; trial += 1) {
+            Machine machine = randomMachine(random);
+            int size = machine.getAlphabet().size();
+            try {
+                for (int m = random.nextInt(MAX_MESSAGES); m >= 0; m -= 1) {
+                    int longest =
+                        random.nextInt(4) == 0 ? MAX_CHECKED : MAX_SHORT;
+                    int[] msg = new int[random.nextInt(longest + 1)];
+                    for (int i = 0; i < msg.length; i += 1) {
+                        msg[i] = random.nextInt(size);
+                    }
+                    checked.convert(machine, msg, 0, msg.length,
+                                    new int[msg.length]);
+                }
+            } catch (EnigmaException excp) {
+                throw error("trial %d of seed %d, rotors %s, plugboard %s:"
+                            + " %s", trial, seed, machine.rotorNames(),
+                            machine.plugboard().getCycle(),
+                            excp.getMessage());
+            }
+        }
+    }
+
+    /** Return a new machine chosen at random by RANDOM, with its rotors
+     *  inserted and set. */
+    private static Machine randomMachine(Random random) {
+        int size = 2 * (1 + random.nextInt(CHECK_CHARS.length() / 2));
+        Alphabet alphabet = new Alphabet(CHECK_CHARS.substring(0, size));
+        int numRotors = 2 + random.nextInt(MAX_CHECKED_ROTORS - 1);
+        int pawls = random.nextInt(numRotors);
+        List<Rotor> rotors = new ArrayList<>();
+        String[] names = new String[numRotors];
+        for (int k = 0; k < numRotors; k += 1) {
+            names[k] = "R" + k;
+            Permutation perm = randomPermutation(random, alphabet, k == 0);
+            if (k == 0) {
+                rotors.add(new Reflector(names[k], perm));
+            } else if (k < numRotors - pawls || random.nextInt(4) == 0) {
+                rotors.add(new FixedRotor(names[k], perm));
+            } else {
+                StringBuilder notches = new StringBuilder();
+                for (int i = random.nextInt(3); i > 0; i -= 1) {
+                    notches.append(alphabet.toChar(random.nextInt(size)));
+                }
+                rotors.add(new MovingRotor(names[k], perm,
+                                           notches.toString()));
+            }
+        }
+        Machine result = new Machine(alphabet, numRotors, pawls, rotors);
+        result.setMetrics(new EnigmaMetrics(CHECK_METRICS));
+        result.insertRotors(names);
+        for (int k = 1; k < numRotors; k += 1) {
+            result.rotor(k).set(random.nextInt(size));
+            result.rotor(k).updateNotch(random.nextBoolean());
+        }
+        int[] order = shuffled(random, size);
+        StringBuilder plugs = new StringBuilder();
+        for (int i = 2 * random.nextInt(size / 2 + 1) - 1; i > 0; i -= 2) {
+            plugs.append('(').append(alphabet.toChar(order[i]))
+                .append(alphabet.toChar(order[i - 1])).append(')');
+        }
+        result.setPlugboard(new Permutation(plugs.toString(), alphabet));
+        return result;
+    }
+
+    /** Return a random permutation, from RANDOM, of ALPHABET, which is a
+     *  set of swaps with no fixed points if REFLECTING. */
+    private static Permutation randomPermutation(Random random,
+                                                 Alphabet alphabet,
+                                                 boolean reflecting) {
+        int size = alphabet.size();
+        int[] forward = shuffled(random, size);
+        if (reflecting) {
+            int[] order = forward.clone();
+            for (int i = 0; i < size; i += 2) {
+                forward[order[i]] = order[i + 1];
+                forward[order[i + 1]] = order[i];
+            }
+        }
+        int[] inverse = new int[size];
+        for (int i = 0; i < size; i += 1) {
+            inverse[forward[i]] = i;
+        }
+        return new Permutation(forward, inverse, alphabet);
+    }
+
+    /** Return 0 .. N-1 in an order chosen by RANDOM. */
+    private static int[] shuffled(Random random, int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            int j = random.nextInt(i + 1);
+            result[i] = result[j];
+            result[j] = i;
+        }
+        return result;
+    }
+
+    /** Return a short name describing me. */
+    abstract String name();
+
+    /** Convert MSG[FROM] .. MSG[TO-1], given as alphabet indices, through
+     *  MACHINE, which must have its rotors inserted, storing the results
+     *  in OUT[FROM] .. OUT[TO-1] and advancing MACHINE as if each had
+     *  been converted by Machine.convert(int) in turn.  OUT may be MSG. */
+    abstract void convert(Machine machine, int[] msg, int from, int to,
+                          int[] out);
+
+    @Override
+    public String toString() {
+        return name();
+    }
+
+    /** The engine that is Machine.convert(int). */
+    private static class Reference extends ConversionEngine {
+
+        @Override
+        String name() {
+            return "reference";
+        }
+
+        @Override
+        void convert(Machine machine, int[] msg, int from, int to,
+                     int[] out) {
+            for (int i = from; i < to; i += 1) {
+                out[i] = machine.convert(msg[i]);
+            }
+        }
+
+    }
+
+    /** An engine checked against the reference as it converts. */
+    private static class Checked extends ConversionEngine {
+
+        /** An engine checking ENGINE. */
+        Checked(ConversionEngine engine) {
+            _engine = engine;
+        }
+
+        @Override
+        String name() {
+            return "checked " + _engine.name();
+        }
+
+        @Override
+        void convert(Machine machine, int[] msg, int from, int to,
+                     int[] out) {
+            int n = machine.numRotors();
+            int[] settings = new int[n];
+            boolean[] notches = new boolean[n];
+            save(machine, settings, notches);
+            int[] expected = new int[to];
+            _reference.convert(machine, msg, from, to, expected);
+            int[] settingsAfter = new int[n];
+            boolean[] notchesAfter = new boolean[n];
+            save(machine, settingsAfter, notchesAfter);
+            for (int k = 1; k < n; k += 1) {
+                machine.rotor(k).set(settings[k]);
+                machine.rotor(k).updateNotch(notches[k]);
+            }
+            _engine.convert(machine, msg, from, to, out);
+            for (int i = from; i < to; i += 1) {
+                if (out[i] != expected[i]) {
+                    throw error("%s engine gives %d for character %d of"
+                                + " %d, not %d", _engine.name(), out[i],
+                                i - from, to - from, expected[i]);
+                }
+            }
+            save(machine, settings, notches);
+            if (!Arrays.equals(settings, settingsAfter)
+                || !Arrays.equals(notches, notchesAfter)) {
+                throw error("%s engine leaves rotors at %s %s, not %s %s",
+                            _engine.name(), Arrays.toString(settings),
+                            Arrays.toString(notches),
+                            Arrays.toString(settingsAfter),
+                            Arrays.toString(notchesAfter));
+            }
+        }
+
+        /** Store the setting of each rotor of MACHINE in SETTINGS, in the
+         *  range 0 .. alphabet size - 1, and its notch record in
+         *  NOTCHES. */
+        private static void save(Machine machine, int[] settings,
+                                 boolean[] notches) {
+            for (int k = 0; k < settings.length; k += 1) {
+                Rotor rotor = machine.rotor(k);
+                settings[k] = rotor.permutation().wrap(rotor.setting());
+                notches[k] = rotor.atNotchBefore();
+            }
+        }
+
+        /** The engine checked. */
+        private final ConversionEngine _engine;
+
+        /** The engine it is checked against. */
+        private final ConversionEngine _reference = reference();
+
+    }
+
+    /** Characters of the alphabets of the machines of crossCheck. */
+    private static final String CHECK_CHARS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+
+    /** Name of the metrics, kept apart from the others, to which the
+     *  machines of crossCheck report. */
+    private static final String CHECK_METRICS = "crossCheck";
+
+    /** Most rotor slots of the machines of crossCheck. */
+    private static final int MAX_CHECKED_ROTORS = 7;
+
+    /** Longest message converted by crossCheck. */
+    private static final int MAX_CHECKED = 2500;
+
+    /** Longest of most messages converted by crossCheck. */
+    private static final int MAX_SHORT = 100;
+
+    /** Most messages converted under one key by crossCheck. */
+    private static final int MAX_MESSAGES = 5;
+
+    /** Name of the Vector API engine class. */
+    private static final String VECTOR_CLASS =
+        "enigma.VectorConversionEngine";
+
+}
@@ -0,0 +1,165 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the ConversionEngines and
+ *  EngineSelector.
+ *  @author Xiaoru Zhao
+ */
+public class ConversionEngineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return N random upper-case letters, with a space after every
+     *  seventh, from RANDOM. */
+    private String letters(Random random, int n) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < n; i += 1) {
+            result.append((char) ('A' + random.nextInt(UPPER.size())));
+            if (i % 7 == 6) {
+                result.append(' ');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Rotor order used in the tests. */
+    private static final String[] ORDER = { "B", "Beta", "I", "II", "III" };
+
+    /** An engine that gets the first character of each message wrong. */
+    private static class Broken extends TableEngine {
+        @Override
+        String name() {
+            return "broken";
+        }
+
+        @Override
+        void run(MachineLanes lanes, int[] msg, int from, int to,
+                 int[] out) {
+            super.run(lanes, msg, from, to, out);
+            if (from < to) {
+                out[from] = (out[from] + 1) % lanes.size();
+            }
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkCrossCheck() {
+        for (ConversionEngine engine : ConversionEngine.all()) {
+            ConversionEngine.crossCheck(engine, 2, 60);
+        }
+    }
+
+    @Test
+    public void checkCatchesDifference() {
+        try {
+            ConversionEngine.crossCheck(new Broken(), 2, 10);
+            fail("broken engine passed");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().contains("broken"));
+        }
+    }
+
+    @Test
+    public void checkMachineConversions() {
+        Random random = new Random(3);
+        String[] msgs = new String[20];
+        for (int i = 0; i < msgs.length; i += 1) {
+            msgs[i] = letters(random, random.nextInt(2000));
+        }
+        Machine reference = historicalMachine(ORDER, "AXLE", "(AQ)(EP)(TR)");
+        reference.setEngine(ConversionEngine.reference());
+        String[] expected = new String[msgs.length];
+        for (int i = 0; i < msgs.length; i += 1) {
+            expected[i] = reference.convert(msgs[i].replace(" ", ""));
+        }
+        for (ConversionEngine engine : ConversionEngine.all()) {
+            Machine one = historicalMachine(ORDER, "AXLE", "(AQ)(EP)(TR)");
+            Machine two = historicalMachine(ORDER, "AXLE", "(AQ)(EP)(TR)");
+            one.setEngine(engine);
+            two.setEngine(engine);
+            for (int i = 0; i < msgs.length; i += 1) {
+                String msg = msgs[i].replace(" ", "");
+                assertEquals(expected[i], one.convert(msg));
+                assertEquals(expected[i], two.convert(msg));
+            }
+        }
+    }
+
+    @Test
+    public void checkBuffers() {
+        Random random = new Random(4);
+        String msg = letters(random, 30000);
+        Machine reference = historicalMachine(ORDER, "QZMR", "(HQ)(EX)");
+        reference.setEngine(ConversionEngine.reference());
+        String expected = reference.convert(msg.replace(" ", ""));
+        byte[] bytes = msg.getBytes(StandardCharsets.US_ASCII);
+        for (ConversionEngine engine : ConversionEngine.all()) {
+            Machine m = historicalMachine(ORDER, "QZMR", "(HQ)(EX)");
+            m.setEngine(engine);
+            ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+            buf.put(bytes).flip();
+            assertEquals(expected.length(), m.transform(buf));
+            byte[] got = new byte[bytes.length];
+            buf.flip();
+            buf.get(got);
+            assertEquals(expected, new String(got, StandardCharsets.US_ASCII)
+                         .replace(" ", ""));
+            m = historicalMachine(ORDER, "QZMR", "(HQ)(EX)");
+            m.setEngine(engine);
+            CharBuffer chars = CharBuffer.wrap(msg.toCharArray());
+            assertEquals(expected.length(), m.transform(chars));
+            assertEquals(expected, chars.flip().toString().replace(" ", ""));
+        }
+    }
+
+    @Test
+    public void checkSelection() {
+        assumeTrue(System.getProperty(EngineSelector.PROPERTY) == null
+                   && !Boolean.getBoolean(EngineSelector.CHECK_PROPERTY));
+        Machine m = historicalMachine(ORDER, "AAAA", "");
+        assertEquals("reference", m.engine(10).name());
+        assertEquals("reference",
+                     m.engine(EngineSelector.MIN_WORK - 1).name());
+        double[][] costs = EngineSelector.calibration();
+        assertEquals(ConversionEngine.all().size(), costs.length);
+        for (double[] cost : costs) {
+            assertTrue(cost[EngineSelector.PER_CHAR] >= 0);
+        }
+        String msg = letters(new Random(5), 3000).replace(" ", "");
+        String expected = historicalMachine(ORDER, "AAAA", "").convert(msg);
+        for (int i = 0; i < 2 * EngineSelector.EXPLORE; i += 1) {
+            m.setRotors("AAAA");
+            assertEquals(expected, m.convert(msg));
+        }
+        m.setEngine(ConversionEngine.table());
+        assertEquals("table", m.engine(10).name());
+        m.setEngine(null);
+        m.insertRotors(ORDER);
+        assertEquals("reference", m.engine(10).name());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNoSuchEngine() {
+        ConversionEngine.named("abacus");
+    }
+
+}
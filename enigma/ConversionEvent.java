@@ -0,0 +1,36 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A Flight Recorder event spanning the conversion of one batch of
+ *  characters: a message, a buffer, or a file.  Disabled unless a
+ *  recording enables it.
+ *  @author Xiaoru Zhao
+ */
+@Name("enigma.Conversion")
+@Label("Conversion")
+@Category("Enigma")
+@Description("Converting one message, buffer or file")
+@Enabled(false)
+@StackTrace(false)
+class ConversionEvent extends Event {
+
+    /** What was converted: "string", "bytes", "chars" or "file". */
+    @Label("Kind")
+    String kind;
+
+    /** Names of the machine's rotors, reflector first. */
+    @Label("Rotors")
+    String rotors;
+
+    /** Number of characters converted. */
+    @Label("Characters")
+    long characters;
+
+}
@@ -0,0 +1,368 @@
+package enigma;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static enigma.EnigmaException.*;
+
+/** A Flow.Processor that converts chunks of text as they arrive, as
+ *  consecutive pieces of one message, so that the rotors carry on from
+ *  one chunk to the next.  Characters outside the machine's alphabet,
+ *  such as whitespace, are passed through unchanged and do not advance
+ *  it, as for Machine.transform(CharBuffer).  Each chunk converted gives
+ *  one chunk out.
+ *
+ *  A processor may instead be given a function that sets up a machine
+ *  from a settings line.  Then each chunk whose first non-blank
+ *  character is "*" is taken as a settings line, gives no chunk out,
+ *  and replaces the machine used for the chunks after it.
+ *
+ *  The processor never holds more than PREFETCH chunks from its
+ *  publisher: it asks for that many at first, and then for BATCH more
+ *  each time BATCH have been used, and it only converts chunks its
+ *  subscriber has asked for.  So a slow subscriber slows the publisher
+ *  rather than filling memory.  Up to BATCH chunks waiting for the same
+ *  machine are converted together, by one bulk conversion.  The work is
+ *  done by tasks on an executor, one at a time, and the subscriber's
+ *  methods are called from them.
+ *  @author Xiaoru Zhao
+ */
+class ConversionProcessor implements Flow.Processor<String, String> {
+
+    /** A processor converting through MACHINE, whose rotors have been
+     *  set, on EXECUTOR, holding at most PREFETCH chunks and converting
+     *  and asking for them BATCH at a time. */
+    ConversionProcessor(Machine machine, Executor executor, int prefetch,
+                        int batch) {
+        this(null, machine, executor, prefetch, batch);
+    }
+
+    /** A processor converting through the machines that SETUP returns
+     *  for the settings lines among its chunks, as described above, on
+     *  EXECUTOR, holding at most PREFETCH chunks and converting and
+     *  asking for them BATCH at a time. */
+    ConversionProcessor(Function<String, Machine> setUp, Executor executor,
+                        int prefetch, int batch) {
+        this(setUp, null, executor, prefetch, batch);
+    }
+
+    /** A processor as for the other constructors, setting up machines
+     *  with SETUP, if not null, and starting with MACHINE. */
+    private ConversionProcessor(Function<String, Machine> setUp,
+                                Machine machine, Executor executor,
+                                int prefetch, int batch) {
+        if (prefetch < 1 || batch < 1 || batch > prefetch) {
+            throw error("bad prefetch %d or batch %d", prefetch, batch);
+        }
+        _setUp = setUp;
+        _machine = machine;
+        _executor = executor;
+        _prefetch = prefetch;
+        _batch = batch;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        if (_downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Demand());
+            schedule();
+        } else {
+            subscriber.onSubscribe(REJECTED);
+            subscriber.onError(error("processor already has a"
+                                     + " subscriber"));
+        }
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (_upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        _upstream = subscription;
+        if (_stopped) {
+            subscription.cancel();
+        } else {
+            subscription.request(_prefetch);
+        }
+    }
+
+    @Override
+    public void onNext(String chunk) {
+        _inbox.add(chunk);
+        schedule();
+    }
+
+    @Override
+    public void onError(Throwable excp) {
+        _failure = excp;
+        _done = true;
+        schedule();
+    }
+
+    @Override
+    public void onComplete() {
+        _done = true;
+        schedule();
+    }
+
+    /** Arrange for the chunks and signals waiting to be handled. */
+    private void schedule() {
+        if (_work.getAndIncrement() == 0) {
+            _executor.execute(this::drain);
+        }
+    }
+
+    /** Handle the chunks and signals waiting, until there are no more or
+     *  the subscriber wants no more. */
+    private void drain() {
+        int missed = 1;
+        do {
+            Flow.Subscriber<? super String> downstream = _downstream.get();
+            if (downstream != null && !_terminated) {
+                try {
+                    emit(downstream);
+                } catch (RuntimeException excp) {
+                    cancelUpstream();
+                    terminate(downstream, excp);
+                }
+            }
+            if (_terminated) {
+                _inbox.clear();
+            }
+            missed = _work.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /** Pass DOWNSTREAM as many converted chunks as it has asked for and
+     *  are available, and then any final signal due. */
+    private void emit(Flow.Subscriber<? super String> downstream) {
+        List<String> chunks = new ArrayList<>();
+        while (!_terminated) {
+            if (_cancelled) {
+                _terminated = true;
+                return;
+            }
+            boolean done = _done;
+            String next = _inbox.peek();
+            if (next == null) {
+                if (done) {
+                    terminate(downstream, _failure);
+                }
+                return;
+            }
+            if (_setUp != null && isSettings(next)) {
+                _inbox.poll();
+                used(1);
+                _machine = _setUp.apply(next.trim());
+                continue;
+            }
+            long demand = _demand.get();
+            if (demand == 0) {
+                return;
+            }
+            chunks.clear();
+            while (chunks.size() < Math.min(demand, _batch)) {
+                next = _inbox.peek();
+                if (next == null || (_setUp != null && isSettings(next))) {
+                    break;
+                }
+                chunks.add(_inbox.poll());
+            }
+            used(chunks.size());
+            String[] out = convert(chunks);
+            if (demand != Long.MAX_VALUE) {
+                _demand.addAndGet(-out.length);
+            }
+            for (String chunk : out) {
+                if (_cancelled) {
+                    break;
+                }
+                downstream.onNext(chunk);
+            }
+        }
+    }
+
+    /** Record that N more chunks of the publisher's have been used,
+     *  asking it for more once BATCH have been. */
+    private void used(int n) {
+        _used += n;
+        if (_used >= _batch) {
+            Flow.Subscription upstream = _upstream;
+            if (upstream != null && !_stopped) {
+                upstream.request(_used);
+            }
+            _used = 0;
+        }
+    }
+
+    /** Return CHUNKS converted in turn, as one message, through the
+     *  current machine. */
+    private String[] convert(List<String> chunks) {
+        if (_machine == null) {
+            throw error("no settings line before the first chunk");
+        }
+        int length = 0;
+        for (String chunk : chunks) {
+            length += chunk.length();
+        }
+        if (_buffer.length < length) {
+            _buffer = new char[Math.max(length, 2 * _buffer.length)];
+        }
+        int n = 0;
+        for (String chunk : chunks) {
+            chunk.getChars(0, chunk.length(), _buffer, n);
+            n += chunk.length();
+        }
+        _machine.transform(CharBuffer.wrap(_buffer, 0, n));
+        String[] result = new String[chunks.size()];
+        n = 0;
+        for (int c = 0; c < result.length; c += 1) {
+            int len = chunks.get(c).length();
+            result[c] = new String(_buffer, n, len);
+            n += len;
+        }
+        return result;
+    }
+
+    /** Return true iff CHUNK is a settings line. */
+    private static boolean isSettings(String chunk) {
+        return chunk.trim().startsWith("*");
+    }
+
+    /** Finish DOWNSTREAM with the error FAILURE or, if that is null,
+     *  normally, unless already finished. */
+    private void terminate(Flow.Subscriber<? super String> downstream,
+                           Throwable failure) {
+        if (_terminated) {
+            return;
+        }
+        _terminated = true;
+        if (_cancelled) {
+            return;
+        }
+        if (failure != null) {
+            downstream.onError(failure);
+        } else {
+            downstream.onComplete();
+        }
+    }
+
+    /** Cancel my subscription to my publisher, now or as soon as I
+     *  have one. */
+    private void cancelUpstream() {
+        _stopped = true;
+        Flow.Subscription upstream = _upstream;
+        if (upstream != null) {
+            upstream.cancel();
+        }
+    }
+
+    /** My subscriber's subscription to me. */
+    private class Demand implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                _failure = new IllegalArgumentException("request of " + n);
+                _done = true;
+                _inbox.clear();
+                cancelUpstream();
+            } else {
+                _demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE
+                                     : d + n);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            _cancelled = true;
+            cancelUpstream();
+            schedule();
+        }
+
+    }
+
+    /** The subscription given a subscriber turned away because I
+     *  already have one, which has no effect on me. */
+    private static final Flow.Subscription REJECTED =
+        new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+
+    /** Sets up a machine from a settings line, or null if there are no
+     *  settings lines. */
+    private final Function<String, Machine> _setUp;
+
+    /** Runs the work. */
+    private final Executor _executor;
+
+    /** Most chunks held from the publisher. */
+    private final int _prefetch;
+
+    /** Number of chunks converted, and asked for, at a time. */
+    private final int _batch;
+
+    /** Chunks received and not yet used. */
+    private final Queue<String> _inbox = new ConcurrentLinkedQueue<>();
+
+    /** Number of chunks the subscriber has asked for and not yet had, or
+     *  Long.MAX_VALUE for unbounded. */
+    private final AtomicLong _demand = new AtomicLong();
+
+    /** Number of times work was scheduled and not yet done; the work is
+     *  running iff it is positive. */
+    private final AtomicInteger _work = new AtomicInteger();
+
+    /** The machine converting chunks, or null before the first settings
+     *  line.  Used only by the work. */
+    private Machine _machine;
+
+    /** The chunks being converted.  Used only by the work. */
+    private char[] _buffer = new char[0];
+
+    /** Number of chunks used since I last asked for more.  Used only by
+     *  the work. */
+    private int _used;
+
+    /** My subscription to my publisher, or null. */
+    private volatile Flow.Subscription _upstream;
+
+    /** My subscriber, or null. */
+    private final AtomicReference<Flow.Subscriber<? super String>>
+        _downstream = new AtomicReference<>();
+
+    /** True once my publisher has finished. */
+    private volatile boolean _done;
+
+    /** The error my publisher finished with, or null. */
+    private volatile Throwable _failure;
+
+    /** True once I have cancelled, or must cancel, my subscription to my
+     *  publisher. */
+    private volatile boolean _stopped;
+
+    /** True once my subscriber has cancelled. */
+    private volatile boolean _cancelled;
+
+    /** True once my subscriber has been finished.  Used only by the
+     *  work. */
+    private boolean _terminated;
+
+}
@@ -0,0 +1,338 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for ConversionProcessor.
+ *  @author Xiaoru Zhao
+ */
+public class ConversionProcessorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Rotors of the machines of the tests. */
+    private static final String[] ORDER = { "B", "Beta", "I", "II", "III" };
+
+    /** Return COUNT chunks of random letters and spaces from RANDOM, of
+     *  up to MAXLEN characters each. */
+    private static List<String> chunks(Random random, int count,
+                                       int maxLen) {
+        List<String> result = new ArrayList<>();
+        for (int c = 0; c < count; c += 1) {
+            StringBuilder chunk = new StringBuilder();
+            for (int i = random.nextInt(maxLen + 1); i > 0; i -= 1) {
+                chunk.append(random.nextInt(6) == 0 ? ' '
+                             : (char) ('A' + random.nextInt(UPPER.size())));
+            }
+            result.add(chunk.toString());
+        }
+        return result;
+    }
+
+    /** Return the conversion of CHUNKS, one after another, by MACHINE, as
+     *  the chunks a processor should give. */
+    private static List<String> expected(Machine machine,
+                                         List<String> chunks) {
+        List<String> result = new ArrayList<>();
+        for (String chunk : chunks) {
+            List<String> words = new ArrayList<>();
+            for (String word : chunk.split(" ", -1)) {
+                words.add(machine.convert(word));
+            }
+            result.add(String.join(" ", words));
+        }
+        return result;
+    }
+
+    /** A publisher of a list of chunks to one subscriber, in the thread
+     *  that asks for them, which keeps track of how far ahead of its use
+     *  of them its subscriber asks. */
+    private static class ListPublisher implements Flow.Publisher<String> {
+
+        /** A publisher of CHUNKS. */
+        ListPublisher(List<String> chunks) {
+            _chunks = chunks;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super String> subscriber) {
+            _subscriber = subscriber;
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    _requested += n;
+                    _mostAhead = Math.max(_mostAhead, _requested - _sent);
+                    send();
+                }
+
+                @Override
+                public void cancel() {
+                    _cancelled = true;
+                }
+            });
+        }
+
+        /** Send all the chunks asked for, unless already sending. */
+        private void send() {
+            if (_sending) {
+                return;
+            }
+            _sending = true;
+            while (!_cancelled && _sent < _requested
+                   && _sent < _chunks.size()) {
+                _sent += 1;
+                _subscriber.onNext(_chunks.get((int) _sent - 1));
+            }
+            if (!_cancelled && _sent == _chunks.size() && !_completed) {
+                _completed = true;
+                _subscriber.onComplete();
+            }
+            _sending = false;
+        }
+
+        /** The chunks. */
+        private final List<String> _chunks;
+
+        /** The subscriber. */
+        private Flow.Subscriber<? super String> _subscriber;
+
+        /** Chunks asked for and sent so far. */
+        private long _requested, _sent;
+
+        /** Most chunks asked for and not yet sent at any time. */
+        private long _mostAhead;
+
+        /** True iff sending, cancelled, or finished. */
+        private boolean _sending, _cancelled, _completed;
+
+    }
+
+    /** A subscriber that collects what it receives, asking for chunks as
+     *  it is told. */
+    private static class Collector implements Flow.Subscriber<String> {
+
+        /** A collector asking for FIRST at first and then for EACH more
+         *  per chunk received. */
+        Collector(long first, long each) {
+            _first = first;
+            _each = each;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            _subscription = subscription;
+            subscription.request(_first);
+        }
+
+        @Override
+        public void onNext(String chunk) {
+            _chunks.add(chunk);
+            if (_each > 0) {
+                _subscription.request(_each);
+            }
+        }
+
+        @Override
+        public void onError(Throwable excp) {
+            _error = excp;
+            _finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            _finished.countDown();
+        }
+
+        /** Wait until finished. */
+        void await() throws InterruptedException {
+            assertTrue(_finished.await(10, TimeUnit.SECONDS));
+        }
+
+        /** Chunks received. */
+        private final List<String> _chunks = new ArrayList<>();
+
+        /** Chunks asked for at first and per chunk received. */
+        private final long _first, _each;
+
+        /** The subscription. */
+        private Flow.Subscription _subscription;
+
+        /** The error received, or null. */
+        private volatile Throwable _error;
+
+        /** Counted down when finished. */
+        private final CountDownLatch _finished = new CountDownLatch(1);
+
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkChunksCarryOn() throws InterruptedException {
+        List<String> chunks = chunks(new Random(1), 200, 40);
+        ConversionProcessor processor =
+            new ConversionProcessor(historicalMachine(ORDER, "AXLE",
+                                                      "(AQ)(EP)"),
+                                    Runnable::run, 16, 4);
+        Collector collector = new Collector(Long.MAX_VALUE, 0);
+        processor.subscribe(collector);
+        new ListPublisher(chunks).subscribe(processor);
+        collector.await();
+        assertNull(collector._error);
+        assertEquals(expected(historicalMachine(ORDER, "AXLE", "(AQ)(EP)"),
+                              chunks),
+                     collector._chunks);
+    }
+
+    @Test
+    public void checkBackpressure() throws InterruptedException {
+        List<String> chunks = chunks(new Random(2), 100, 10);
+        ConversionProcessor processor =
+            new ConversionProcessor(historicalMachine(ORDER, "AXLE", ""),
+                                    Runnable::run, 8, 4);
+        Collector collector = new Collector(3, 0);
+        processor.subscribe(collector);
+        ListPublisher publisher = new ListPublisher(chunks);
+        publisher.subscribe(processor);
+        assertEquals(3, collector._chunks.size());
+        assertTrue(publisher._sent <= 3 + 8);
+        collector._subscription.request(Long.MAX_VALUE);
+        collector.await();
+        assertTrue(publisher._mostAhead <= 8);
+        assertEquals(expected(historicalMachine(ORDER, "AXLE", ""), chunks),
+                     collector._chunks);
+    }
+
+    @Test
+    public void checkSettingsLines() throws InterruptedException {
+        Random random = new Random(3);
+        List<String> first = chunks(random, 20, 30);
+        List<String> second = chunks(random, 20, 30);
+        List<String> chunks = new ArrayList<>();
+        chunks.add("* B Beta I II III AXLE (AQ)");
+        chunks.addAll(first);
+        chunks.add("  * B Gamma III II I QQQQ (EP) (TZ)");
+        chunks.addAll(second);
+        ConversionProcessor processor =
+            new ConversionProcessor(TestUtils::historicalMachine,
+                                    Runnable::run, 4, 2);
+        Collector collector = new Collector(1, 1);
+        processor.subscribe(collector);
+        new ListPublisher(chunks).subscribe(processor);
+        collector.await();
+        assertNull(collector._error);
+        List<String> expected =
+            expected(historicalMachine("* B Beta I II III AXLE (AQ)"), first);
+        String[] order = { "B", "Gamma", "III", "II", "I" };
+        expected.addAll(expected(historicalMachine(order, "QQQQ",
+                                                   "(EP)(TZ)"),
+                                 second));
+        assertEquals(expected, collector._chunks);
+    }
+
+    @Test
+    public void checkThreaded() throws InterruptedException {
+        List<String> chunks = chunks(new Random(4), 500, 50);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (SubmissionPublisher<String> publisher =
+                 new SubmissionPublisher<>(executor, 4)) {
+            ConversionProcessor processor =
+                new ConversionProcessor(historicalMachine(ORDER, "ZZZZ",
+                                                          "(AB)"),
+                                        executor, 8, 2);
+            Collector collector = new Collector(1, 1);
+            processor.subscribe(collector);
+            publisher.subscribe(processor);
+            for (String chunk : chunks) {
+                publisher.submit(chunk);
+            }
+            publisher.close();
+            collector.await();
+            assertNull(collector._error);
+            assertEquals(expected(historicalMachine(ORDER, "ZZZZ", "(AB)"),
+                                  chunks),
+                         collector._chunks);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void checkBadRequest() throws InterruptedException {
+        ConversionProcessor processor =
+            new ConversionProcessor(historicalMachine(ORDER, "AXLE", ""),
+                                    Runnable::run, 4, 4);
+        Collector collector = new Collector(0, 0);
+        processor.subscribe(collector);
+        ListPublisher publisher =
+            new ListPublisher(chunks(new Random(5), 10, 5));
+        publisher.subscribe(processor);
+        collector.await();
+        assertTrue(collector._error instanceof IllegalArgumentException);
+        assertTrue(publisher._cancelled);
+    }
+
+    @Test
+    public void checkNoSettings() throws InterruptedException {
+        ConversionProcessor processor =
+            new ConversionProcessor(TestUtils::historicalMachine,
+                                    Runnable::run, 4, 4);
+        Collector collector = new Collector(1, 0);
+        processor.subscribe(collector);
+        ListPublisher publisher = new ListPublisher(List.of("HELLO"));
+        publisher.subscribe(processor);
+        collector.await();
+        assertTrue(collector._error instanceof EnigmaException);
+        assertTrue(publisher._cancelled);
+    }
+
+    @Test
+    public void checkSecondSubscriber() throws InterruptedException {
+        List<String> chunks = chunks(new Random(6), 10, 5);
+        ConversionProcessor processor =
+            new ConversionProcessor(historicalMachine(ORDER, "AXLE", ""),
+                                    Runnable::run, 4, 2);
+        Collector first = new Collector(2, 0), second = new Collector(5, 0);
+        processor.subscribe(first);
+        processor.subscribe(second);
+        second.await();
+        assertTrue(second._error instanceof EnigmaException);
+        second._subscription.request(5);
+        second._subscription.cancel();
+        ListPublisher publisher = new ListPublisher(chunks);
+        publisher.subscribe(processor);
+        assertEquals(2, first._chunks.size());
+        assertFalse(publisher._cancelled);
+        first._subscription.request(Long.MAX_VALUE);
+        first.await();
+        assertNull(first._error);
+        assertEquals(expected(historicalMachine(ORDER, "AXLE", ""), chunks),
+                     first._chunks);
+        assertTrue(second._chunks.isEmpty());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkBadKnobs() {
+        new ConversionProcessor(historicalMachine(ORDER, "AXLE", ""),
+                                Runnable::run, 4, 8);
+    }
+
+}
@@ -0,0 +1,94 @@
+package enigma;
+
+import java.util.List;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** The default mode of Main, "[CONFIG [INPUT [OUTPUT]]]", which applies
+ *  the machine of CONFIG (see MachineConfig) to the messages in file
+ *  INPUT, or the standard input, sending the results to file OUTPUT, or
+ *  the standard output.  Each settings line, starting with "*", sets up
+ *  the machine; each other line is converted and printed in groups of
+ *  five.
+ *  @author Xiaoru Zhao
+ */
+class ConvertCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE = "[CONFIG [INPUT [OUTPUT]]]";
+
+    /** A conversion whose options and operands are in OPTIONS. */
+    ConvertCommand(Options options) {
+        this(options, USAGE);
+        List<String> operands = options.operands();
+        if (operands.size() > 3) {
+            throw error("Only 0, 1, 2, or 3 command-line arguments allowed");
+        }
+        setConfig(operand(0));
+        setStreams(operand(1), operand(2));
+    }
+
+    /** A conversion whose options are in OPTIONS and whose command line
+     *  is USAGE, for subclasses, which set up their own files. */
+    ConvertCommand(Options options, String usage) {
+        super(options, usage);
+    }
+
+    /** Return operand K, or null if there are not that many. */
+    String operand(int k) {
+        List<String> operands = options().operands();
+        return k < operands.size() ? operands.get(k) : null;
+    }
+
+    @Override
+    void run() {
+        Machine machine = machine();
+        if (!input().hasNext("\\*")) {
+            throw new EnigmaException("no setting");
+        }
+        convert(machine, 0, 0);
+    }
+
+    /** Convert the rest of my input with MACHINE, after LINES lines of
+     *  input, CHARACTERS characters of which MACHINE has converted since
+     *  its settings line. */
+    void convert(Machine machine, long lines, long characters) {
+        Scanner input = input();
+        String first = "";
+        while (input.hasNextLine()) {
+            String line = input.nextLine();
+            lines += 1;
+            Scanner aLine = new Scanner(line);
+            int count = 0;
+            if (aLine.hasNext()) {
+                first = aLine.next();
+                if (first.equals("*")) {
+                    setUp(machine, line);
+                    characters = 0;
+                } else {
+                    StringBuilder msg = new StringBuilder(first);
+                    while (aLine.hasNext()) {
+                        msg.append(aLine.next());
+                    }
+                    String text = msg.toString();
+                    printMessageLine(machine.convert(text));
+                    count = text.codePointCount(0, text.length());
+                    characters += count;
+                }
+            } else {
+                printMessageLine("");
+            }
+            converted(machine, characters, lines, count);
+        }
+        output().flush();
+    }
+
+    /** Note that MACHINE has converted CHARACTERS characters since its
+     *  settings line, COUNT of them from the last of LINES lines of
+     *  input.  By default, does nothing. */
+    void converted(Machine machine, long characters, long lines,
+                   int count) {
+    }
+
+}
@@ -0,0 +1,183 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** Finds where cribs may lie in a ciphertext.  Since no letter is ever
+ *  encrypted to itself, a crib can lie at a given offset of the
+ *  ciphertext only if no letter of the crib falls on the same letter of
+ *  the ciphertext.  The scanner reports every such offset of every crib
+ *  in one pass over the ciphertext, which may be fed to it in pieces.
+ *
+ *  All cribs are packed side by side into one vector of bits, one bit per
+ *  crib letter, in which bit I of a crib is set while the alignment of
+ *  that crib that puts its letter I on the current ciphertext letter has
+ *  yet to clash.
+ *  Each ciphertext letter shifts the whole vector up by one, starts a new
+ *  alignment of every crib, and clears the bits of the crib letters equal
+ *  to it; a crib's last bit left set marks an offset found.  So each
+ *  letter costs a few operations per 64 crib letters, whatever the
+ *  number of cribs.
+ *  @author Xiaoru Zhao
+ */
+class CribScanner {
+
+    /** Receives the offsets found. */
+    interface Sink {
+        /** Report that crib number CRIB may lie at OFFSET. */
+        void found(int crib, long offset);
+    }
+
+    /** A scanner for cribs over an alphabet of SIZE characters, with no
+     *  cribs yet. */
+    CribScanner(int size) {
+        _size = size;
+        _cribs = new ArrayList<>();
+    }
+
+    /** Add CRIB (alphabet indices) and return its number.  Cribs must all
+     *  be added before scanning starts. */
+    int add(int[] crib) {
+        if (crib.length == 0) {
+            throw error("empty crib");
+        }
+        if (_state != null) {
+            throw error("cribs must be added before scanning");
+        }
+        for (int c : crib) {
+            if (c < 0 || c >= _size) {
+                throw error("crib character %d out of range", c);
+            }
+        }
+        _cribs.add(crib.clone());
+        _bits += crib.length;
+        return _cribs.size() - 1;
+    }
+
+    /** Return the number of cribs. */
+    int cribs() {
+        return _cribs.size();
+    }
+
+    /** Forget all ciphertext scanned so far, so that the next letter
+     *  scanned is at offset 0. */
+    void reset() {
+        if (_state != null) {
+            Arrays.fill(_state, 0);
+        }
+        _position = 0;
+    }
+
+    /** Scan the letters CIPHER[FROM .. TO-1] (alphabet indices), which
+     *  follow any letters already scanned, reporting to SINK each offset
+     *  at which a crib may lie and whose last letter is among them.
+     *  Offsets are counted from the first letter scanned since
+     *  construction or reset, and are reported in order of the position
+     *  of their crib's last letter. */
+    void scan(int[] cipher, int from, int to, Sink sink) {
+        if (_cribs.isEmpty()) {
+            throw error("no cribs to scan for");
+        }
+        if (_state == null) {
+            compile();
+        }
+        int words = _state.length;
+        long[] state = _state;
+        for (int i = from; i < to; i += 1) {
+            int c = cipher[i];
+            if (c < 0 || c >= _size) {
+                throw error("ciphertext character %d out of range", c);
+            }
+            int row = c * words;
+            long carry = 0, ends = 0;
+            for (int w = 0; w < words; w += 1) {
+                long s = state[w];
+                long next =
+                    ((s << 1) | carry | _starts[w]) & _allowed[row + w];
+                carry = s >>> (Long.SIZE - 1);
+                state[w] = next;
+                ends |= next & _ends[w];
+            }
+            if (ends != 0) {
+                report(sink);
+            }
+            _position += 1;
+        }
+    }
+
+    /** Scan all of CIPHER, as for scan(CIPHER, 0, CIPHER.length, SINK). */
+    void scan(int[] cipher, Sink sink) {
+        scan(cipher, 0, cipher.length, sink);
+    }
+
+    /** Report to SINK every crib whose last bit is set in _state, at the
+     *  offset at which it then starts. */
+    private void report(Sink sink) {
+        for (int w = 0; w < _state.length; w += 1) {
+            long found = _state[w] & _ends[w];
+            while (found != 0) {
+                int bit = Long.numberOfTrailingZeros(found);
+                found &= found - 1;
+                int crib = _cribAt[w * Long.SIZE + bit];
+                sink.found(crib, _position - _cribs.get(crib).length + 1);
+            }
+        }
+    }
+
+    /** Lay out the bit vectors for the current cribs. */
+    private void compile() {
+        int words = (_bits + Long.SIZE - 1) / Long.SIZE;
+        _state = new long[words];
+        _starts = new long[words];
+        _ends = new long[words];
+        _allowed = new long[_size * words];
+        Arrays.fill(_allowed, -1L);
+        _cribAt = new int[words * Long.SIZE];
+        int bit = 0;
+        for (int k = 0; k < _cribs.size(); k += 1) {
+            int[] crib = _cribs.get(k);
+            _starts[bit / Long.SIZE] |= 1L << bit;
+            for (int i = 0; i < crib.length; i += 1) {
+                int b = bit + i;
+                _allowed[crib[i] * words + b / Long.SIZE] &= ~(1L << b);
+            }
+            bit += crib.length;
+            _ends[(bit - 1) / Long.SIZE] |= 1L << (bit - 1);
+            _cribAt[bit - 1] = k;
+        }
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** The cribs. */
+    private final ArrayList<int[]> _cribs;
+
+    /** Total length of the cribs. */
+    private int _bits;
+
+    /** Number of letters scanned since construction or reset. */
+    private long _position;
+
+    /** Letter I of the crib whose first letter is bit B of the vector is
+     *  bit B + I, counting from bit 0 of word 0.  Set while the alignment
+     *  of that crib putting letter I on the last letter scanned has not
+     *  clashed. */
+    private long[] _state;
+
+    /** The bits of the first letters of the cribs. */
+    private long[] _starts;
+
+    /** The bits of the last letters of the cribs. */
+    private long[] _ends;
+
+    /** Word W of the bits of the crib letters that are not C, at
+     *  C * number of words + W. */
+    private long[] _allowed;
+
+    /** Number of the crib whose last letter is at each bit. */
+    private int[] _cribAt;
+
+}
@@ -0,0 +1,133 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for CribScanner.
+ *  @author Xiaoru Zhao
+ */
+public class CribScannerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return SIZE random letters of an alphabet of ALPHABET letters,
+     *  from RANDOM. */
+    private int[] letters(Random random, int size, int alphabet) {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i += 1) {
+            result[i] = random.nextInt(alphabet);
+        }
+        return result;
+    }
+
+    /** Return "CRIB:OFFSET" for every offset of CIPHER at which one of
+     *  CRIBS has no letter in common with CIPHER, in order of the end of
+     *  the crib and then of its number. */
+    private List<String> expected(int[][] cribs, int[] cipher) {
+        List<String> result = new ArrayList<>();
+        for (int end = 0; end < cipher.length; end += 1) {
+            for (int k = 0; k < cribs.length; k += 1) {
+                int offset = end - cribs[k].length + 1;
+                if (offset < 0) {
+                    continue;
+                }
+                boolean clash = false;
+                for (int i = 0; i < cribs[k].length; i += 1) {
+                    clash |= cribs[k][i] == cipher[offset + i];
+                }
+                if (!clash) {
+                    result.add(k + ":" + offset);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the alphabet indices of MSG. */
+    private int[] indices(String msg) {
+        int[] result = new int[msg.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = UPPER.toInt(msg.charAt(i));
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkAgainstBruteForce() {
+        Random random = new Random(7);
+        int size = 4;
+        int[][] cribs = {
+            letters(random, 1, size), letters(random, 5, size),
+            letters(random, 3, size), letters(random, 70, size),
+            letters(random, 130, size), letters(random, 2, size),
+        };
+        for (int[] crib : cribs) {
+            for (int i = 0; i < crib.length; i += 1) {
+                crib[i] = random.nextInt(64) == 0 ? crib[i] : 0;
+            }
+        }
+        int[] cipher = letters(random, 5000, size);
+        CribScanner scanner = new CribScanner(size);
+        for (int[] crib : cribs) {
+            scanner.add(crib);
+        }
+        assertEquals(cribs.length, scanner.cribs());
+        List<String> found = new ArrayList<>();
+        int from = 0;
+        while (from < cipher.length) {
+            int to = Math.min(cipher.length, from + random.nextInt(200));
+            scanner.scan(cipher, from, to,
+                         (crib, offset) -> found.add(crib + ":" + offset));
+            from = to;
+        }
+        List<String> expected = expected(cribs, cipher);
+        assertTrue(expected.size() > 100);
+        assertEquals(expected, found);
+        found.clear();
+        scanner.reset();
+        scanner.scan(cipher, (crib, offset) -> found.add(crib + ":" + offset));
+        assertEquals(expected, found);
+    }
+
+    @Test
+    public void checkEnciphered() {
+        Machine m = navalMachine(4, "B", "I", "II", "III");
+        m.insertRotors(new String[] { "B", "I", "II", "III" });
+        m.setRotors("AXL");
+        String plain = "XXXXXWETTERBERICHTXXXXX";
+        int[] cipher = indices(m.convert(plain));
+        CribScanner scanner = new CribScanner(UPPER.size());
+        scanner.add(indices("WETTER"));
+        List<Long> offsets = new ArrayList<>();
+        scanner.scan(cipher, (k, offset) -> offsets.add(offset));
+        assertTrue(offsets.contains(5L));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkAddAfterScan() {
+        CribScanner scanner = new CribScanner(26);
+        scanner.add(new int[] { 1, 2 });
+        scanner.scan(new int[] { 3 }, (k, offset) -> { });
+        scanner.add(new int[] { 1 });
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkBadCharacter() {
+        new CribScanner(26).add(new int[] { 26 });
+    }
+
+}
@@ -0,0 +1,435 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static enigma.EnigmaException.*;
+import static enigma.ScalarLockstepEngine.shift;
+import static enigma.ScalarLockstepEngine.step;
+
+/** A catalog of the cycle structures by which Rejewski recovered the
+ *  rotor order and positions of the day from doubled indicators.  Under
+ *  that procedure, each message began with its message key, one letter
+ *  for each of the M rotor slots but the reflector's, enciphered twice
+ *  from the day's setting.  If A1 .. A2M are the permutations the
+ *  machine applies to the first 2M characters, the first and (M+1)th
+ *  letters of every indicator are related by the product A(M+1) A1^-1,
+ *  the second and (M+2)th by A(M+2) A2^-1, and so on, so enough
+ *  indicators reveal these M products.  The lengths of the cycles of the
+ *  products do not depend on the plugboard, which only conjugates them,
+ *  and few settings share them.
+ *
+ *  A catalog is a SettingTable of every setting of a KeyspaceSweep space
+ *  without ring settings, keyed by the top bits of a fingerprint hashing
+ *  those cycle lengths, as many as fit beside the setting numbers.
+ *  Since different cycle structures may share those bits, each setting
+ *  found is checked against the structure sought.  A catalog is built
+ *  in parallel and saved in a file holding a header of little-endian
+ *  ints, MAGIC, VERSION, the alphabet size, M, the number of bits of the
+ *  setting numbers, and the length in bytes of the space's description;
+ *  then that description, in UTF-8; and then the table.
+ *  @author Xiaoru Zhao
+ */
+class CycleCatalog {
+
+    /** A catalog of the settings of SPACE, described by DESCRIPTION,
+     *  whose entries (see above) are in TABLE. */
+    private CycleCatalog(KeyspaceSweep space, String description,
+                         SettingTable table) {
+        _space = space;
+        _description = description;
+        _table = table;
+        _keyLength = space.numRotors() - 1;
+    }
+
+    /** Return a catalog of every setting of SPACE, which has been set up
+     *  from DESCRIPTION (see KeyspaceSweep.parse) and has no ring
+     *  settings, computed by up to THREADS threads.  The plugboard of
+     *  SPACE is ignored. */
+    static CycleCatalog build(KeyspaceSweep space, String description,
+                              int threads) {
+        if (space.orders() == 0) {
+            throw error("no rotor orders to catalog");
+        }
+        if (space.hasRings()) {
+            throw error("cycle catalogs do not cover ring settings");
+        }
+        long size = space.size();
+        long[] entries = SettingTable.entries(size, "catalog");
+        int bits = SettingTable.bitsFor(size);
+        AtomicLong next = new AtomicLong();
+        Runnable builder = () -> fill(space, entries, bits, next);
+        int tasks = (int) Math.min(threads, (size + BLOCK - 1) / BLOCK);
+        if (tasks <= 1) {
+            builder.run();
+        } else {
+            ExecutorService pool = Executors.newFixedThreadPool(tasks);
+            try {
+                List<Future<?>> done = new ArrayList<>();
+                for (int i = 0; i < tasks; i += 1) {
+                    done.add(pool.submit(builder));
+                }
+                for (Future<?> f : done) {
+                    f.get();
+                }
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw error("catalog interrupted");
+            } catch (ExecutionException excp) {
+                if (excp.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) excp.getCause();
+                }
+                throw error("catalog failed: %s", excp.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        return new CycleCatalog(space, description,
+                                SettingTable.of(entries));
+    }
+
+    /** Store in ENTRIES the entry of each setting of SPACE, whose numbers
+     *  take BITS bits, in successive blocks claimed from NEXT, until
+     *  there are none left. */
+    private static void fill(KeyspaceSweep space, long[] entries, int bits,
+                             AtomicLong next) {
+        Analyzer analyzer = new Analyzer(space);
+        while (true) {
+            long first = next.getAndAdd(BLOCK);
+            if (first >= entries.length) {
+                return;
+            }
+            int end = (int) Math.min(entries.length, first + BLOCK);
+            for (int n = (int) first; n < end; n += 1) {
+                long key = fingerprint(analyzer.structure(n)) >>> bits;
+                entries[n] = SettingTable.entry(key, n, bits);
+            }
+        }
+    }
+
+    /** Return the catalog saved in FILE.  SPACE is a new space over the
+     *  machine the catalog was built for, and is set up from the
+     *  description saved in FILE. */
+    static CycleCatalog load(Path file, KeyspaceSweep space)
+        throws IOException {
+        ByteBuffer data = SettingTable.map(file);
+        if (data.limit() < HEADER * Integer.BYTES || data.getInt() != MAGIC
+            || data.getInt() != VERSION) {
+            throw error("%s is not a cycle catalog", file);
+        }
+        int size = data.getInt(), keyLength = data.getInt();
+        int bits = data.getInt(), length = data.getInt();
+        if (size != space.alphabet().size()
+            || keyLength != space.numRotors() - 1) {
+            throw error("cycle catalog %s is for another machine", file);
+        }
+        if (length < 0 || length > data.remaining()) {
+            throw error("bad cycle catalog %s", file);
+        }
+        byte[] text = new byte[length];
+        data.get(text);
+        String description = new String(text, StandardCharsets.UTF_8);
+        space.parse(description);
+        SettingTable table = SettingTable.load(data, space.size(), bits);
+        if (table == null) {
+            throw error("bad cycle catalog %s", file);
+        }
+        return new CycleCatalog(space, description, table);
+    }
+
+    /** Save me in FILE. */
+    void save(Path file) throws IOException {
+        byte[] text = _description.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header =
+            ByteBuffer.allocate(HEADER * Integer.BYTES + text.length);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION)
+            .putInt(_space.alphabet().size()).putInt(_keyLength)
+            .putInt(_table.bits()).putInt(text.length).put(text);
+        _table.save(file, header);
+    }
+
+    /** Return the settings of my space whose cycle structure is
+     *  STRUCTURE (as returned by structure), in order of setting number,
+     *  each as a Result with no output. */
+    List<KeyspaceSweep.Result> find(int[][] structure) {
+        List<KeyspaceSweep.Result> result = new ArrayList<>();
+        if (structure.length != _keyLength) {
+            return result;
+        }
+        long key = fingerprint(structure) >>> _table.bits();
+        Analyzer analyzer = new Analyzer(_space);
+        for (long n : _table.settings(key)) {
+            if (Arrays.deepEquals(analyzer.structure(n), structure)) {
+                result.add(_space.setting(n));
+            }
+        }
+        return result;
+    }
+
+    /** Return the settings of my space consistent with INDICATORS (see
+     *  structure(List, int)). */
+    List<KeyspaceSweep.Result> find(List<int[]> indicators) {
+        return find(structure(indicators, _space.alphabet().size()));
+    }
+
+    /** Return the cycle structure of setting number N of my space: for
+     *  each of the M products described above, the lengths of its
+     *  cycles in ascending order. */
+    int[][] structure(long n) {
+        return new Analyzer(_space).structure(n);
+    }
+
+    /** Return the cycle structure, as for structure(long), revealed by
+     *  INDICATORS, each of which is 2M alphabet indices over an alphabet
+     *  of SIZE characters.  Throws if they contradict each other, or if
+     *  there are too few to determine every product. */
+    static int[][] structure(List<int[]> indicators, int size) {
+        if (indicators.isEmpty() || indicators.get(0).length % 2 != 0
+            || indicators.get(0).length == 0) {
+            throw error("indicators must be of even length");
+        }
+        int keyLength = indicators.get(0).length / 2;
+        int[][] products = new int[keyLength][size];
+        int[][] inverses = new int[keyLength][size];
+        for (int j = 0; j < keyLength; j += 1) {
+            Arrays.fill(products[j], -1);
+            Arrays.fill(inverses[j], -1);
+        }
+        for (int[] indicator : indicators) {
+            if (indicator.length != 2 * keyLength) {
+                throw error("indicators differ in length");
+            }
+            for (int j = 0; j < keyLength; j += 1) {
+                int a = indicator[j], b = indicator[j + keyLength];
+                if ((products[j][a] >= 0 && products[j][a] != b)
+                    || (inverses[j][b] >= 0 && inverses[j][b] != a)) {
+                    throw error("indicators are inconsistent at letter %d",
+                                j + 1);
+                }
+                products[j][a] = b;
+                inverses[j][b] = a;
+            }
+        }
+        int[][] result = new int[keyLength][];
+        for (int j = 0; j < keyLength; j += 1) {
+            for (int c = 0; c < size; c += 1) {
+                if (products[j][c] < 0) {
+                    throw error("too few indicators to find the cycles at"
+                                + " letter %d", j + 1);
+                }
+            }
+            result[j] = cycleLengths(products[j]);
+        }
+        return result;
+    }
+
+    /** Return the lengths of the cycles of the permutation PERM, in
+     *  ascending order. */
+    static int[] cycleLengths(int[] perm) {
+        boolean[] seen = new boolean[perm.length];
+        int[] lengths = new int[perm.length];
+        int count = 0;
+        for (int c = 0; c < perm.length; c += 1) {
+            if (!seen[c]) {
+                int len = 0;
+                for (int x = c; !seen[x]; x = perm[x]) {
+                    seen[x] = true;
+                    len += 1;
+                }
+                lengths[count] = len;
+                count += 1;
+            }
+        }
+        int[] result = Arrays.copyOf(lengths, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /** Return a 64-bit FNV-1a hash of STRUCTURE, its lists of lengths
+     *  separated by zeros. */
+    static long fingerprint(int[][] structure) {
+        long result = FNV_BASIS;
+        for (int[] lengths : structure) {
+            for (int len : lengths) {
+                result = (result ^ len) * FNV_PRIME;
+            }
+            result *= FNV_PRIME;
+        }
+        return result;
+    }
+
+    /** Return the number of settings I cover. */
+    int size() {
+        return _table.size();
+    }
+
+    /** Return the space whose settings I cover. */
+    KeyspaceSweep space() {
+        return _space;
+    }
+
+    /** Computes the cycle structures of settings of the space, stepping
+     *  a machine compiled into tables as KeyspaceSweep does.  Not to be
+     *  shared among threads. */
+    private static class Analyzer {
+
+        /** An analyzer of the settings of SPACE. */
+        Analyzer(KeyspaceSweep space) {
+            _space = space;
+            _keyLength = space.numRotors() - 1;
+            int n = _space.numRotors(), size = _space.alphabet().size();
+            _lanes = new MachineLanes(n, size, 1);
+            _base = new int[n];
+            _posn = new int[n];
+            _before = new int[n];
+            _rotates = new int[n];
+            _innerPosn = new int[n - 1];
+            _inner = new int[size];
+            _perms = new int[2 * _keyLength][size];
+            _inverse = new int[size];
+            _product = new int[size];
+        }
+
+        /** Return the cycle structure of setting number N, as for
+         *  CycleCatalog.structure(long). */
+        int[][] structure(long n) {
+            KeyspaceSweep.Result setting = _space.setting(n);
+            String[] order = setting.order();
+            if (!Arrays.equals(order, _order)) {
+                for (int k = 0; k < order.length; k += 1) {
+                    Rotor rotor = _space.catalog().get(order[k]);
+                    _base[k] = _lanes.tables(rotor, _space.alphabet(), 0);
+                    _rotates[k] = rotor.rotates() ? 1 : 0;
+                }
+                _order = order;
+                _stale = true;
+            }
+            int[] pool = _lanes.pool();
+            int size = _inner.length, fast = _posn.length - 1;
+            System.arraycopy(setting.positions(), 0, _posn, 1, fast);
+            Arrays.fill(_before, 0);
+            for (int i = 0; i < _perms.length; i += 1) {
+                step(pool, size, _base, _posn, _before, _rotates);
+                for (int k = 0; k < fast && !_stale; k += 1) {
+                    _stale = _posn[k] != _innerPosn[k];
+                }
+                if (_stale) {
+                    System.arraycopy(_posn, 0, _innerPosn, 0, fast);
+                    PrecomposedEngine.inner(pool, size, _base, _posn,
+                                            _inner);
+                    _stale = false;
+                }
+                int p = _posn[fast], table = _base[fast];
+                for (int c = 0; c < size; c += 1) {
+                    int r = shift(pool[table + shift(c, p, size)], -p, size);
+                    r = _inner[r];
+                    _perms[i][c] =
+                        shift(pool[table + size + shift(r, p, size)], -p,
+                              size);
+                }
+            }
+            int[][] result = new int[_keyLength][];
+            for (int j = 0; j < _keyLength; j += 1) {
+                int[] first = _perms[j], second = _perms[j + _keyLength];
+                for (int c = 0; c < size; c += 1) {
+                    _inverse[first[c]] = c;
+                }
+                for (int c = 0; c < size; c += 1) {
+                    _product[c] = second[_inverse[c]];
+                }
+                result[j] = cycleLengths(_product);
+            }
+            return result;
+        }
+
+        /** The space whose settings I analyze. */
+        private final KeyspaceSweep _space;
+
+        /** Length of a message key, M, and so the number of products. */
+        private final int _keyLength;
+
+        /** The tables of the rotors. */
+        private final MachineLanes _lanes;
+
+        /** The rotor order whose tables are in _base, or null. */
+        private String[] _order;
+
+        /** Offsets in the pool of the tables of each slot's rotor. */
+        private final int[] _base;
+
+        /** Positions of each slot's rotor. */
+        private final int[] _posn;
+
+        /** Notch flags of each slot's rotor. */
+        private final int[] _before;
+
+        /** 1 for each slot whose rotor moves, else 0. */
+        private final int[] _rotates;
+
+        /** Positions of the slots left of the fast one for which _inner
+         *  was composed. */
+        private final int[] _innerPosn;
+
+        /** True iff _inner must be composed again. */
+        private boolean _stale = true;
+
+        /** Composition of the rotors left of the fast one, there and
+         *  back (see PrecomposedEngine.inner). */
+        private final int[] _inner;
+
+        /** The permutations applied to the first 2M characters. */
+        private final int[][] _perms;
+
+        /** Scratch inverse permutation. */
+        private final int[] _inverse;
+
+        /** Scratch product permutation. */
+        private final int[] _product;
+
+    }
+
+    /** First int of a saved catalog. */
+    static final int MAGIC = 0x43594331;
+
+    /** Version of the saved form. */
+    static final int VERSION = 1;
+
+    /** Number of ints in a saved header before the description. */
+    private static final int HEADER = 6;
+
+    /** Number of settings claimed at a time by each thread building a
+     *  catalog. */
+    private static final int BLOCK = 4096;
+
+    /** Initial value of an FNV-1a hash. */
+    private static final long FNV_BASIS = 0xcbf29ce484222325L;
+
+    /** Multiplier of an FNV-1a hash. */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /** The space of settings covered. */
+    private final KeyspaceSweep _space;
+
+    /** The description from which _space was set up. */
+    private final String _description;
+
+    /** The entries of my settings. */
+    private final SettingTable _table;
+
+    /** Length of a message key, M, and so the number of products. */
+    private final int _keyLength;
+
+}
@@ -0,0 +1,164 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for CycleCatalog.
+ *  @author Xiaoru Zhao
+ */
+public class CycleCatalogTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a new three-rotor machine with naval rotors B, I, II and
+     *  III. */
+    private Machine machine() {
+        return navalMachine(4, "B", "I", "II", "III");
+    }
+
+    /** Return a new space over the machine. */
+    private KeyspaceSweep space() {
+        Machine m = machine();
+        return new KeyspaceSweep(UPPER, 4, 3, m.catalog());
+    }
+
+    /** Return the doubled indicators of COUNT random message keys, chosen
+     *  by RANDOM, enciphered under rotors ORDER at positions SETTING with
+     *  plugboard PLUGBOARD. */
+    private List<int[]> indicators(String[] order, String setting,
+                                   String plugboard, int count,
+                                   Random random) {
+        List<int[]> result = new ArrayList<>();
+        for (int i = 0; i < count; i += 1) {
+            Machine m = machine();
+            m.insertRotors(order);
+            m.setRotors(setting);
+            m.setPlugboard(new Permutation(plugboard, UPPER));
+            int[] indicator = new int[6];
+            for (int j = 0; j < 3; j += 1) {
+                indicator[j] = indicator[j + 3] = random.nextInt(26);
+            }
+            m.convert(indicator, 0, indicator.length, indicator);
+            result.add(indicator);
+        }
+        return result;
+    }
+
+    /** The space catalogued by the tests. */
+    private static final String SPACE = "B I|II|III I|II|III I|II|III"
+        + " [A-C]?? (AQ)";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkFindsSetting() {
+        KeyspaceSweep space = space();
+        space.parse(SPACE);
+        CycleCatalog catalog = CycleCatalog.build(space, SPACE, 2);
+        assertEquals(space.size(), catalog.size());
+        String[] order = { "B", "II", "III", "I" };
+        List<int[]> indicators =
+            indicators(order, "BQX", "(AZ)(EP)(TY)(MN)", 300,
+                       new Random(1));
+        List<KeyspaceSweep.Result> found = catalog.find(indicators);
+        boolean seen = false;
+        for (KeyspaceSweep.Result r : found) {
+            seen |= r.settingsLine(UPPER, "").equals("* B II III I BQX");
+        }
+        assertTrue("setting not found among " + found.size(), seen);
+        assertTrue(found.size() < 50);
+    }
+
+    @Test
+    public void checkSaveAndLoad() throws IOException {
+        String description = "B I II III|I ?A?";
+        KeyspaceSweep space = space();
+        space.parse(description);
+        CycleCatalog catalog = CycleCatalog.build(space, description, 1);
+        Path file = Files.createTempFile("cycles", ".bin");
+        try {
+            catalog.save(file);
+            CycleCatalog loaded = CycleCatalog.load(file, space());
+            assertEquals(catalog.size(), loaded.size());
+            assertEquals(space.size(), loaded.space().size());
+            String[] order = { "B", "I", "II", "III" };
+            List<int[]> indicators =
+                indicators(order, "KAF", "(BC)", 300, new Random(2));
+            List<KeyspaceSweep.Result> before = catalog.find(indicators);
+            List<KeyspaceSweep.Result> after = loaded.find(indicators);
+            assertEquals(before.size(), after.size());
+            boolean seen = false;
+            for (int i = 0; i < after.size(); i += 1) {
+                String line = after.get(i).settingsLine(UPPER, "");
+                assertEquals(before.get(i).settingsLine(UPPER, ""), line);
+                seen |= line.equals("* B I II III KAF");
+            }
+            assertTrue(seen);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkCycleLengths() {
+        assertArrayEquals(new int[] { 1, 2, 3 },
+                          CycleCatalog.cycleLengths(
+                              new int[] { 1, 2, 0, 3, 5, 4 }));
+        List<int[]> indicators = new ArrayList<>();
+        indicators.add(new int[] { 0, 1 });
+        indicators.add(new int[] { 1, 0 });
+        indicators.add(new int[] { 2, 2 });
+        assertArrayEquals(new int[][] { { 1, 2 } },
+                          CycleCatalog.structure(indicators, 3));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkInconsistentIndicators() {
+        List<int[]> indicators = new ArrayList<>();
+        indicators.add(new int[] { 0, 1 });
+        indicators.add(new int[] { 0, 2 });
+        CycleCatalog.structure(indicators, 3);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkTooFewIndicators() {
+        List<int[]> indicators = new ArrayList<>();
+        indicators.add(new int[] { 0, 1 });
+        CycleCatalog.structure(indicators, 3);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkRingsRefused() {
+        String description = "B I II III AAA AAB";
+        KeyspaceSweep space = space();
+        space.parse(description);
+        CycleCatalog.build(space, description, 1);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNotACatalog() throws IOException {
+        Path file = Files.createTempFile("cycles", ".bin");
+        try {
+            Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+            CycleCatalog.load(file, space());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
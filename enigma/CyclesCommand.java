@@ -0,0 +1,60 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.file.Paths;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--cycles [--threads=N] CONFIG SPACE INDEX", which saves in
+ *  file INDEX a catalog of the cycle structures of the doubled
+ *  indicators enciphered under each setting of SPACE, which is given as
+ *  for SweepCommand but without ring settings (see CycleCatalog), using
+ *  N threads (default the number of processors).  IndicatorsCommand
+ *  searches the catalog.
+ *  @author Xiaoru Zhao
+ */
+class CyclesCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE = "--cycles [--threads=N] CONFIG SPACE INDEX";
+
+    /** A catalog build whose options and operands are in OPTIONS. */
+    CyclesCommand(Options options) {
+        super(options, USAGE);
+        options.flag("--cycles");
+        _threads = options.count("--threads");
+        List<String> operands = options.operands();
+        if (operands.size() != 3) {
+            throw usage();
+        }
+        setConfig(operands.get(0));
+        _settings = operands.get(1);
+        _indexName = operands.get(2);
+    }
+
+    @Override
+    void run() {
+        KeyspaceSweep space = space(machine());
+        space.parse(_settings);
+        CycleCatalog catalog =
+            CycleCatalog.build(space, _settings, threads(_threads));
+        try {
+            catalog.save(Paths.get(_indexName));
+        } catch (IOException excp) {
+            throw error("could not write %s", _indexName);
+        }
+    }
+
+    /** Space of settings catalogued. */
+    private final String _settings;
+
+    /** Name of the catalog file. */
+    private final String _indexName;
+
+    /** Number of threads, or 0 for the default. */
+    private final int _threads;
+
+}
@@ -0,0 +1,272 @@
+package enigma;
+
+import java.util.List;
+
+/** Chooses the ConversionEngine a Machine uses for each conversion, and
+ *  runs it.  The cost of converting with an engine is modelled as a cost
+ *  per call, plus one per character, plus one per key (the tables
+ *  compiled when the rotors or plugboard change) shared among the
+ *  conversions made under that key.  The costs are first measured once
+ *  per process, by a quick calibration run the first time a conversion
+ *  is large enough to matter, and the selector chooses the engine
+ *  cheapest for the length of each message and the number of times its
+ *  key has been used.  Conversions too small to matter use the reference
+ *  engine.
+ *
+ *  A calibration run so early is rough, as the JIT compiler has hardly
+ *  begun, so each selector goes on timing the conversions it runs and
+ *  moves its costs per character towards those seen.  So that an engine
+ *  judged slow early gets the chance to show otherwise, every EXPLORE-th
+ *  conversion chosen by cost goes to each engine in turn instead.
+ *
+ *  Setting the system property enigma.engine to the name of an engine
+ *  forces its use; setting enigma.engine.check to "true" checks every
+ *  conversion against the reference (see ConversionEngine.checked).
+ *  @author Xiaoru Zhao
+ */
+class EngineSelector {
+
+    /** A selector with engines of its own, for one Machine. */
+    EngineSelector() {
+        _engines = ConversionEngine.all();
+        _costs = new double[_engines.size()][];
+        String forced = System.getProperty(PROPERTY);
+        if (forced != null) {
+            _forced = wrap(ConversionEngine.named(forced));
+        }
+        for (int e = 0; e < _engines.size(); e += 1) {
+            _engines.set(e, wrap(_engines.get(e)));
+        }
+    }
+
+    /** Convert MSG[FROM] .. MSG[TO-1] through MACHINE into OUT, as
+     *  ConversionEngine.convert does, with the engine chosen for a key
+     *  that has already been used for USES conversions. */
+    void convert(Machine machine, int[] msg, int from, int to, int[] out,
+                 int uses) {
+        int e = choice(to - from, uses);
+        if (e < 0 || small(to - from, uses)) {
+            engine(e).convert(machine, msg, from, to, out);
+            return;
+        }
+        _chosen += 1;
+        if (_chosen % EXPLORE == 0) {
+            e = (int) (_chosen / EXPLORE % _engines.size());
+        }
+        long start = System.nanoTime();
+        _engines.get(e).convert(machine, msg, from, to, out);
+        long time = System.nanoTime() - start;
+        if (to - from >= MIN_TIMED) {
+            double[] cost = _costs[e];
+            double perChar = (time - cost[PER_CALL]
+                              - (uses == 0 ? cost[PER_KEY] : 0))
+                / (to - from);
+            cost[PER_CHAR] += LEARNING * (Math.max(0, perChar)
+                                          - cost[PER_CHAR]);
+        }
+    }
+
+    /** Return the engine that would convert LENGTH characters under a
+     *  key that has already been used for USES conversions, but for
+     *  exploring. */
+    ConversionEngine choose(int length, int uses) {
+        return engine(choice(length, uses));
+    }
+
+    /** Return the index among _engines of the engine to convert LENGTH
+     *  characters under a key that has already been used for USES
+     *  conversions, or -1 for _forced. */
+    private int choice(int length, int uses) {
+        if (_forced != null) {
+            return -1;
+        }
+        if (small(length, uses)) {
+            return 0;
+        }
+        int best = 0;
+        double least = Double.MAX_VALUE;
+        for (int e = 0; e < _engines.size(); e += 1) {
+            if (_costs[e] == null) {
+                _costs[e] = Calibration.COSTS[e].clone();
+            }
+            double[] cost = _costs[e];
+            double total = cost[PER_CALL] + cost[PER_CHAR] * length
+                + cost[PER_KEY] / (uses + 1);
+            if (total < least) {
+                least = total;
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    /** Return true iff converting LENGTH characters under a key that has
+     *  already been used for USES conversions is too little work to
+     *  choose an engine for. */
+    private static boolean small(int length, int uses) {
+        return (long) length * (uses + 1) < MIN_WORK;
+    }
+
+    /** Return engine E of _engines, or _forced if E is -1. */
+    private ConversionEngine engine(int e) {
+        return e < 0 ? _forced : _engines.get(e);
+    }
+
+    /** Return the costs measured by calibration for each engine of
+     *  ConversionEngine.all(), in nanoseconds, per call, per character
+     *  and per key, at indices PER_CALL, PER_CHAR and PER_KEY.  Not to be
+     *  modified. */
+    static double[][] calibration() {
+        return Calibration.COSTS;
+    }
+
+    /** Return my current estimate of the costs of each of my engines, as
+     *  for calibration(). */
+    double[][] costs() {
+        double[][] result = new double[_engines.size()][];
+        for (int e = 0; e < result.length; e += 1) {
+            result[e] = (_costs[e] != null ? _costs[e]
+                         : Calibration.COSTS[e]).clone();
+        }
+        return result;
+    }
+
+    /** Return ENGINE, checked against the reference if so asked. */
+    private static ConversionEngine wrap(ConversionEngine engine) {
+        if (Boolean.getBoolean(CHECK_PROPERTY)) {
+            return ConversionEngine.checked(engine);
+        }
+        return engine;
+    }
+
+    /** The costs of the engines, measured when first needed. */
+    private static class Calibration {
+
+        /** Costs, in nanoseconds, as returned by calibration(). */
+        static final double[][] COSTS = measure();
+
+        /** Measure and return the costs of each engine, converting SHORT
+         *  and LONG messages, the first just after each key change, on a
+         *  machine with the historical rotors, and taking the least time
+         *  of ROUNDS tries. */
+        private static double[][] measure() {
+            List<ConversionEngine> engines = ConversionEngine.all();
+            Alphabet alphabet = new Alphabet(HistoricalCatalog.LETTERS);
+            Machine machine =
+                new Machine(alphabet, HistoricalCatalog.NUM_ROTORS,
+                            HistoricalCatalog.NUM_PAWLS,
+                            new HistoricalCatalog(alphabet));
+            machine.setMetrics(new EnigmaMetrics(METRICS));
+            machine.insertRotors(ROTORS);
+            Permutation[] plugboards = {
+                new Permutation(PLUGBOARDS[0], alphabet),
+                new Permutation(PLUGBOARDS[1], alphabet),
+            };
+            int[] msg = new int[LONG], out = new int[LONG];
+            for (int i = 0; i < LONG; i += 1) {
+                msg[i] = (i * STRIDE) % alphabet.size();
+            }
+            double[][] result = new double[engines.size()][COSTS_KEPT];
+            for (int e = 0; e < engines.size(); e += 1) {
+                ConversionEngine engine = engines.get(e);
+                long newKey = Long.MAX_VALUE, shortTime = Long.MAX_VALUE,
+                    longTime = Long.MAX_VALUE;
+                for (int round = 0; round < ROUNDS; round += 1) {
+                    machine.setPlugboard(plugboards[round % 2]);
+                    newKey = Math.min(newKey,
+                                      time(engine, machine, msg, SHORT, out));
+                    shortTime = Math.min(shortTime,
+                                         time(engine, machine, msg, SHORT,
+                                              out));
+                    longTime = Math.min(longTime,
+                                        time(engine, machine, msg, LONG,
+                                             out));
+                }
+                double perChar = (double) (longTime - shortTime)
+                    / (LONG - SHORT);
+                result[e][PER_CHAR] = Math.max(0, perChar);
+                result[e][PER_CALL] = Math.max(0,
+                                               shortTime - perChar * SHORT);
+                result[e][PER_KEY] = Math.max(0, newKey - shortTime);
+            }
+            return result;
+        }
+
+        /** Return the nanoseconds ENGINE takes to convert the first LEN
+         *  characters of MSG through MACHINE into OUT. */
+        private static long time(ConversionEngine engine, Machine machine,
+                                 int[] msg, int len, int[] out) {
+            long start = System.nanoTime();
+            engine.convert(machine, msg, 0, len, out);
+            return System.nanoTime() - start;
+        }
+
+    }
+
+    /** Index of the cost per call in the rows of costs(). */
+    static final int PER_CALL = 0;
+
+    /** Index of the cost per character in the rows of costs(). */
+    static final int PER_CHAR = 1;
+
+    /** Index of the cost per key in the rows of costs(). */
+    static final int PER_KEY = 2;
+
+    /** Number of costs measured for each engine. */
+    private static final int COSTS_KEPT = 3;
+
+    /** System property naming an engine to use always. */
+    static final String PROPERTY = "enigma.engine";
+
+    /** System property that, if "true", checks every conversion. */
+    static final String CHECK_PROPERTY = "enigma.engine.check";
+
+    /** Fewest characters converted under one key, counting earlier
+     *  conversions, for which an engine is chosen by cost. */
+    static final int MIN_WORK = 256;
+
+    /** One in this many conversions chosen by cost explores. */
+    static final int EXPLORE = 64;
+
+    /** Fewest characters in a conversion whose time updates the cost
+     *  per character. */
+    private static final int MIN_TIMED = 16;
+
+    /** Weight of each new time in the cost per character. */
+    private static final double LEARNING = 0.125;
+
+    /** Length of the short calibration messages. */
+    private static final int SHORT = 16;
+
+    /** Length of the long calibration messages. */
+    private static final int LONG = 512;
+
+    /** Number of times each calibration is tried. */
+    private static final int ROUNDS = 4;
+
+    /** Step between the letters of the calibration message. */
+    private static final int STRIDE = 7;
+
+    /** Rotors of the calibration machine. */
+    private static final String[] ROTORS = { "B", "Beta", "I", "II", "III" };
+
+    /** Plugboards the calibration machine alternates between. */
+    private static final String[] PLUGBOARDS = { "(AQ)(EP)", "(AQ)(EX)" };
+
+    /** Name of the metrics of the calibration machine. */
+    private static final String METRICS = "calibration";
+
+    /** Engine forced by PROPERTY, or null. */
+    private ConversionEngine _forced;
+
+    /** My estimate of the costs of each of _engines, as for
+     *  calibration(), or null where not yet needed. */
+    private final double[][] _costs;
+
+    /** Number of conversions I have chosen by cost. */
+    private long _chosen;
+
+    /** My engines, in the order of ConversionEngine.all(). */
+    private final List<ConversionEngine> _engines;
+
+}
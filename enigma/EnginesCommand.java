@@ -0,0 +1,70 @@
+package enigma;
+
+import java.util.List;
+import java.util.Random;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--engines[=N]", which checks each conversion engine
+ *  available (see ConversionEngine) against the reference engine on N
+ *  random machines (default 200), and prints, for each, the costs
+ *  measured by the calibration of EngineSelector and "ok" or the first
+ *  difference found.  It fails if any engine differs.
+ *  @author Xiaoru Zhao
+ */
+class EnginesCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE = "--engines[=N]";
+
+    /** An engine check whose options are in OPTIONS. */
+    EnginesCommand(Options options) {
+        super(options, USAGE);
+        String trials = options.value("--engines", DEFAULT_TRIALS);
+        try {
+            _trials = Integer.parseInt(trials);
+        } catch (NumberFormatException excp) {
+            throw error("bad option: --engines=%s", trials);
+        }
+        if (_trials < 1) {
+            throw error("bad option: --engines=%s", trials);
+        }
+        if (!options.operands().isEmpty()) {
+            throw usage();
+        }
+        setOutput(System.out);
+    }
+
+    @Override
+    void run() {
+        List<ConversionEngine> engines = ConversionEngine.all();
+        double[][] costs = EngineSelector.calibration();
+        long seed = new Random().nextLong();
+        boolean differs = false;
+        for (int e = 0; e < engines.size(); e += 1) {
+            String result = "ok";
+            try {
+                ConversionEngine.crossCheck(engines.get(e), seed, _trials);
+            } catch (EnigmaException excp) {
+                result = excp.getMessage();
+                differs = true;
+            }
+            output().printf("%-12s %10.0f ns/call %8.1f ns/char"
+                            + " %10.0f ns/key  %s%n", engines.get(e),
+                            costs[e][EngineSelector.PER_CALL],
+                            costs[e][EngineSelector.PER_CHAR],
+                            costs[e][EngineSelector.PER_KEY], result);
+        }
+        output().flush();
+        if (differs) {
+            throw error("some engines differ from the reference");
+        }
+    }
+
+    /** Random machines on which each engine is checked by default. */
+    private static final String DEFAULT_TRIALS = "200";
+
+    /** Number of random machines on which each engine is checked. */
+    private final int _trials;
+
+}
@@ -0,0 +1,307 @@
+package enigma;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.lang.management.ManagementFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import static enigma.EnigmaException.*;
+
+/** Counters and latency histograms describing the work done by Enigma
+ *  machines, readable directly or, once registered, through JMX.  Every
+ *  Machine reports to a set of metrics, global() unless told otherwise.
+ *  Counters are LongAdders and histograms are LatencyHistograms, so
+ *  recording takes no locks and allocates nothing.
+ *  @author Xiaoru Zhao
+ */
+public class EnigmaMetrics implements EnigmaMetricsMBean {
+
+    /** Metrics named NAME.  Use named() to share them. */
+    EnigmaMetrics(String name) {
+        _name = name;
+        _messageLatency = new LatencyHistogram();
+        _reconfigurationLatency = new LatencyHistogram();
+    }
+
+    /** Return the metrics shared by all machines not given others. */
+    static EnigmaMetrics global() {
+        return named(GLOBAL);
+    }
+
+    /** Return the metrics named NAME, creating them if need be. */
+    static EnigmaMetrics named(String name) {
+        return REGISTRY.computeIfAbsent(name, EnigmaMetrics::new);
+    }
+
+    /** Return my name. */
+    String name() {
+        return _name;
+    }
+
+    /** Register me with the platform MBean server under the name
+     *  "enigma:type=Metrics,name=NAME", where NAME is my name.  Does
+     *  nothing if I am already registered. */
+    void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = objectName();
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+            }
+        } catch (JMException excp) {
+            throw error("could not register metrics %s: %s", _name,
+                        excp.getMessage());
+        }
+    }
+
+    /** Remove me from the platform MBean server, if registered. */
+    void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = objectName();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException excp) {
+            throw error("could not unregister metrics %s: %s", _name,
+                        excp.getMessage());
+        }
+    }
+
+    /** Return the name under which I am registered with JMX. */
+    ObjectName objectName() throws JMException {
+        return new ObjectName(DOMAIN + ":type=Metrics,name="
+                              + ObjectName.quote(_name));
+    }
+
+    /** Record the conversion of a message of CHARS characters, taking
+     *  NANOS nanoseconds. */
+    void recordMessage(long chars, long nanos) {
+        _messages.increment();
+        _characters.add(chars);
+        _messageLatency.record(nanos);
+    }
+
+    /** Record the insertion of a new set of rotors into a machine. */
+    void recordReconfiguration() {
+        _reconfigurations.increment();
+    }
+
+    /** Record that setting up a machine from a settings line took
+     *  NANOS nanoseconds. */
+    void recordReconfiguration(long nanos) {
+        _reconfigurationLatency.record(nanos);
+    }
+
+    /** Record the setting of a machine's rotor positions. */
+    void recordRotorSetting() {
+        _rotorSettings.increment();
+    }
+
+    /** Record the reading of N bytes. */
+    void recordBytesIn(long n) {
+        _bytesIn.add(n);
+    }
+
+    /** Record the writing of N bytes. */
+    void recordBytesOut(long n) {
+        _bytesOut.add(n);
+    }
+
+    /** Return a stream reading from IN that records the bytes read. */
+    InputStream meter(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    _bytesIn.increment();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len)
+                throws IOException {
+                int n = super.read(buf, off, len);
+                if (n > 0) {
+                    _bytesIn.add(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    /** Return a stream writing to OUT that records the bytes written. */
+    OutputStream meter(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                _bytesOut.increment();
+            }
+
+            @Override
+            public void write(byte[] buf, int off, int len)
+                throws IOException {
+                out.write(buf, off, len);
+                _bytesOut.add(len);
+            }
+        };
+    }
+
+    /** Return the histogram of message conversion latencies. */
+    LatencyHistogram messageLatency() {
+        return _messageLatency;
+    }
+
+    /** Return the histogram of settings line latencies. */
+    LatencyHistogram reconfigurationLatency() {
+        return _reconfigurationLatency;
+    }
+
+    @Override
+    public long getCharactersConverted() {
+        return _characters.sum();
+    }
+
+    @Override
+    public long getMessages() {
+        return _messages.sum();
+    }
+
+    @Override
+    public long getReconfigurations() {
+        return _reconfigurations.sum();
+    }
+
+    @Override
+    public long getRotorSettings() {
+        return _rotorSettings.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return _bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return _bytesOut.sum();
+    }
+
+    @Override
+    public double getMessageLatencyMean() {
+        return _messageLatency.mean();
+    }
+
+    @Override
+    public long getMessageLatencyP50() {
+        return _messageLatency.percentile(P50);
+    }
+
+    @Override
+    public long getMessageLatencyP99() {
+        return _messageLatency.percentile(P99);
+    }
+
+    @Override
+    public long getMessageLatencyP999() {
+        return _messageLatency.percentile(P999);
+    }
+
+    @Override
+    public long getMessageLatencyMax() {
+        return _messageLatency.max();
+    }
+
+    @Override
+    public double getReconfigurationLatencyMean() {
+        return _reconfigurationLatency.mean();
+    }
+
+    @Override
+    public long getReconfigurationLatencyP99() {
+        return _reconfigurationLatency.percentile(P99);
+    }
+
+    @Override
+    public void reset() {
+        _characters.reset();
+        _messages.reset();
+        _reconfigurations.reset();
+        _rotorSettings.reset();
+        _bytesIn.reset();
+        _bytesOut.reset();
+        _messageLatency.reset();
+        _reconfigurationLatency.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d chars in %d messages, %d "
+                             + "reconfigurations, %d bytes in, %d bytes "
+                             + "out, message p50 %d ns, p99 %d ns",
+                             _name, getCharactersConverted(), getMessages(),
+                             getReconfigurations(), getBytesIn(),
+                             getBytesOut(), getMessageLatencyP50(),
+                             getMessageLatencyP99());
+    }
+
+    /** JMX domain of registered metrics. */
+    static final String DOMAIN = "enigma";
+
+    /** Name of the global metrics. */
+    static final String GLOBAL = "global";
+
+    /** All metrics created through named(), by name. */
+    private static final ConcurrentHashMap<String, EnigmaMetrics> REGISTRY =
+        new ConcurrentHashMap<>();
+
+    /** The median, as a percentile. */
+    private static final double P50 = 50;
+
+    /** The 99th percentile. */
+    private static final double P99 = 99;
+
+    /** The 99.9th percentile. */
+    private static final double P999 = 99.9;
+
+    /** My name. */
+    private final String _name;
+
+    /** Number of characters converted. */
+    private final LongAdder _characters = new LongAdder();
+
+    /** Number of messages converted. */
+    private final LongAdder _messages = new LongAdder();
+
+    /** Number of rotor insertions. */
+    private final LongAdder _reconfigurations = new LongAdder();
+
+    /** Number of rotor position settings. */
+    private final LongAdder _rotorSettings = new LongAdder();
+
+    /** Number of bytes read. */
+    private final LongAdder _bytesIn = new LongAdder();
+
+    /** Number of bytes written. */
+    private final LongAdder _bytesOut = new LongAdder();
+
+    /** Latencies of message conversions. */
+    private final LatencyHistogram _messageLatency;
+
+    /** Latencies of setting up machines from settings lines. */
+    private final LatencyHistogram _reconfigurationLatency;
+
+}
@@ -0,0 +1,55 @@
+package enigma;
+
+/** The management interface of EnigmaMetrics, as seen through JMX.
+ *  Latencies are in nanoseconds.
+ *  @author Xiaoru Zhao
+ */
+public interface EnigmaMetricsMBean {
+
+    /** Return the number of characters converted. */
+    long getCharactersConverted();
+
+    /** Return the number of messages (calls converting a string or
+     *  buffer) converted. */
+    long getMessages();
+
+    /** Return the number of times rotors were inserted into a machine,
+     *  as for each settings line. */
+    long getReconfigurations();
+
+    /** Return the number of times rotor positions were set. */
+    long getRotorSettings();
+
+    /** Return the number of bytes read by Main. */
+    long getBytesIn();
+
+    /** Return the number of bytes written by Main. */
+    long getBytesOut();
+
+    /** Return the mean message conversion latency. */
+    double getMessageLatencyMean();
+
+    /** Return the median message conversion latency. */
+    long getMessageLatencyP50();
+
+    /** Return the 99th percentile message conversion latency. */
+    long getMessageLatencyP99();
+
+    /** Return the 99.9th percentile message conversion latency. */
+    long getMessageLatencyP999();
+
+    /** Return the largest message conversion latency. */
+    long getMessageLatencyMax();
+
+    /** Return the mean latency of setting up a machine from a settings
+     *  line. */
+    double getReconfigurationLatencyMean();
+
+    /** Return the 99th percentile latency of setting up a machine from a
+     *  settings line. */
+    long getReconfigurationLatencyP99();
+
+    /** Set all counters and histograms back to zero. */
+    void reset();
+
+}
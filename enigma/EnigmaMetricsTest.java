@@ -0,0 +1,129 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for EnigmaMetrics and LatencyHistogram.
+ *  @author Xiaoru Zhao
+ */
+public class EnigmaMetricsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with rotors B, Beta, I, II, and III reporting to
+     *  METRICS, with no rotors inserted. */
+    private Machine machine(EnigmaMetrics metrics) {
+        Machine machine =
+            navalMachine(5, "B", "Beta", "I", "II", "III");
+        machine.setMetrics(metrics);
+        return machine;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkBuckets() {
+        for (long v = 0; v < 1L << 20; v = v * 9 / 8 + 1) {
+            int b = LatencyHistogram.bucket(v);
+            assertTrue(LatencyHistogram.lowest(b) <= v);
+            assertTrue(v < LatencyHistogram.lowest(b + 1));
+            long width = LatencyHistogram.lowest(b + 1)
+                - LatencyHistogram.lowest(b);
+            assertTrue(width * 16 <= Math.max(v, 16));
+        }
+        int last = LatencyHistogram.bucket(Long.MAX_VALUE);
+        assertTrue(LatencyHistogram.lowest(last) <= Long.MAX_VALUE);
+    }
+
+    @Test
+    public void checkPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentile(50));
+        for (int i = 1000; i >= 1; i -= 1) {
+            h.record(i);
+        }
+        assertEquals(1000, h.count());
+        assertEquals(1000, h.max());
+        assertEquals(500, h.percentile(50), 500 / 16);
+        assertEquals(990, h.percentile(99), 990 / 16);
+        assertEquals(1000, h.percentile(100));
+        assertEquals(500.5, h.mean(), 500 / 16);
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.max());
+    }
+
+    @Test
+    public void checkMachineReports() {
+        EnigmaMetrics metrics = new EnigmaMetrics("machine");
+        Machine m = machine(metrics);
+        m.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        m.setRotors("AAAA");
+        assertEquals(5, m.convert("HELLO").length());
+        m.convert("WORLD");
+        assertEquals(1, metrics.getReconfigurations());
+        assertEquals(1, metrics.getRotorSettings());
+        assertEquals(2, metrics.getMessages());
+        assertEquals(10, metrics.getCharactersConverted());
+        assertEquals(2, metrics.messageLatency().count());
+        metrics.reset();
+        assertEquals(0, metrics.getMessages());
+        assertEquals(0, metrics.messageLatency().count());
+    }
+
+    @Test
+    public void checkMeteredStreams() throws IOException {
+        EnigmaMetrics metrics = new EnigmaMetrics("streams");
+        InputStream in =
+            metrics.meter(new ByteArrayInputStream(new byte[100]));
+        assertEquals(0, in.read());
+        assertEquals(99, in.read(new byte[200], 0, 200));
+        assertEquals(-1, in.read());
+        assertEquals(100, metrics.getBytesIn());
+        OutputStream out = metrics.meter(new ByteArrayOutputStream());
+        out.write(1);
+        out.write(new byte[10], 2, 5);
+        assertEquals(6, metrics.getBytesOut());
+    }
+
+    @Test
+    public void checkRegistry() throws JMException {
+        assertSame(EnigmaMetrics.global(), EnigmaMetrics.global());
+        EnigmaMetrics metrics = EnigmaMetrics.named("jmx test");
+        assertSame(metrics, EnigmaMetrics.named("jmx test"));
+        metrics.reset();
+        metrics.recordMessage(7, 1000);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        metrics.register();
+        metrics.register();
+        try {
+            assertEquals(7L, server.getAttribute(metrics.objectName(),
+                                                 "CharactersConverted"));
+            assertEquals(1000L, server.getAttribute(metrics.objectName(),
+                                                    "MessageLatencyMax"));
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(metrics.objectName()));
+    }
+
+}
@@ -0,0 +1,99 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--extract [--range=FROM,LENGTH | --threads=N] CONFIG INPUT
+ *  OUTPUT", which decrypts the container INPUT (see ContainerCommand)
+ *  into file OUTPUT: just the LENGTH bytes from offset FROM, decrypting
+ *  only the blocks that hold them, or else the whole text, with N
+ *  threads (default the number of processors).
+ *  @author Xiaoru Zhao
+ */
+class ExtractCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE =
+        "--extract [--range=FROM,LENGTH | --threads=N] CONFIG INPUT OUTPUT";
+
+    /** A container decryption whose options and operands are in
+     *  OPTIONS. */
+    ExtractCommand(Options options) {
+        super(options, USAGE);
+        options.flag("--extract");
+        String range = options.value("--range");
+        _range = range == null ? null : range(range);
+        _threads = options.count("--threads");
+        List<String> operands = options.operands();
+        if (operands.size() != 3 || (_range != null && _threads > 0)) {
+            throw usage();
+        }
+        setConfig(operands.get(0));
+        _inputName = operands.get(1);
+        _outputName = operands.get(2);
+    }
+
+    /** Return the offset and length given by the option --range=ARG. */
+    private static long[] range(String arg) {
+        String[] parts = arg.split(",");
+        try {
+            if (parts.length == 2) {
+                long[] result = {
+                    Long.parseLong(parts[0]), Long.parseLong(parts[1])
+                };
+                if (result[0] >= 0 && result[1] >= 0
+                    && result[1] <= Integer.MAX_VALUE) {
+                    return result;
+                }
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through. */
+        }
+        throw error("bad option: --range=%s", arg);
+    }
+
+    @Override
+    void run() {
+        Machine machine = machine();
+        Function<String, Machine> setUp = line -> {
+            setUp(machine, line);
+            return machine;
+        };
+        try (CipherContainer container =
+                 CipherContainer.open(Paths.get(_inputName), setUp)) {
+            if (_range != null) {
+                byte[] text = container.read(_range[0], (int) _range[1]);
+                Files.write(Paths.get(_outputName), text);
+                metrics().recordBytesOut(text.length);
+            } else {
+                container.decryptAll(Paths.get(_outputName),
+                                     threads(_threads));
+                metrics().recordBytesOut(container.length());
+            }
+        } catch (IOException excp) {
+            throw error("could not decrypt %s: %s", _inputName,
+                        excp.getMessage());
+        }
+    }
+
+    /** Offset and length of the part of the container to decrypt, or
+     *  null for all of it. */
+    private final long[] _range;
+
+    /** Number of threads decrypting, or 0 for the default. */
+    private final int _threads;
+
+    /** Name of the container read. */
+    private final String _inputName;
+
+    /** Name of the output file. */
+    private final String _outputName;
+
+}
@@ -33,6 +33,11 @@ class FixedRotor extends Rotor {
                 _permutation.wrap(e + _setting)) - _setting);
     }
 
+    @Override
+    int setting() {
+        return _setting;
+    }
+
     @Override
     void set(int posn) {
         _setting = posn;
@@ -48,6 +53,11 @@ class FixedRotor extends Rotor {
         _permutation.changeAlphabet(alpha);
     }
 
+    @Override
+    Rotor copy(Permutation perm) {
+        return new FixedRotor(_name, perm);
+    }
+
 
     /** Name of the fixed rotor. */
     private final String _name;
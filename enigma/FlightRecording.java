@@ -0,0 +1,56 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.file.Paths;
+
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import static enigma.EnigmaException.*;
+
+/** A Flight Recorder recording of a run of Main, asked for with "--jfr"
+ *  or "--jfr=FILE", holding the JDK's default events and the enigma
+ *  events (ConfigEvent, RotorParseEvent, ReconfigurationEvent and
+ *  ConversionEvent).  It is written to its file when closed.
+ *  @author Xiaoru Zhao
+ */
+class FlightRecording implements AutoCloseable {
+
+    /** Return a started recording to be written to file NAME, or null if
+     *  NAME is null. */
+    static FlightRecording start(String name) {
+        return name == null ? null : new FlightRecording(name);
+    }
+
+    /** A started recording to be written to file NAME. */
+    private FlightRecording(String name) {
+        try {
+            _recording =
+                new Recording(Configuration.getConfiguration("default"));
+            _recording.setName("enigma");
+            _recording.enable(ConfigEvent.class);
+            _recording.enable(RotorParseEvent.class);
+            _recording.enable(ReconfigurationEvent.class);
+            _recording.enable(ConversionEvent.class);
+            _recording.setDestination(Paths.get(name));
+            _recording.start();
+        } catch (IOException | ParseException excp) {
+            throw error("could not start flight recording: %s",
+                        excp.getMessage());
+        }
+    }
+
+    /** Stop the recording, writing it to its file. */
+    @Override
+    public void close() {
+        _recording.stop();
+        _recording.close();
+    }
+
+    /** The recording. */
+    private final Recording _recording;
+
+}
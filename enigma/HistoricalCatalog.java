@@ -0,0 +1,152 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** A catalog of the standard rotors of the Wehrmacht and naval Enigma
+ *  machines: rotors I to VIII, the fixed rotors Beta and Gamma, and the
+ *  reflectors B and C, as described in testing/correct/default.conf.
+ *  Their wirings are held as ready-made tables of alphabet indices, so
+ *  that a machine built from the catalog parses no rotor descriptions
+ *  and compiles no cycles.  The tables are shared by every catalog;
+ *  each catalog makes its own rotors, on first use, since rotors hold
+ *  the state of the machine using them.
+ *  @author Xiaoru Zhao
+ */
+class HistoricalCatalog implements RotorCatalog {
+
+    /** A catalog of the historical rotors over ALPHABET, which must be
+     *  the letters of LETTERS in order. */
+    HistoricalCatalog(Alphabet alphabet) {
+        if (!fits(alphabet)) {
+            throw error("the historical rotors need the alphabet %s",
+                        LETTERS);
+        }
+        _alphabet = alphabet;
+        _rotors = new HashMap<>();
+    }
+
+    /** Return true iff ALPHABET is the letters of LETTERS in order. */
+    static boolean fits(Alphabet alphabet) {
+        if (alphabet.size() != LETTERS.length()) {
+            return false;
+        }
+        for (int i = 0; i < LETTERS.length(); i += 1) {
+            if (alphabet.toCodePoint(i) != LETTERS.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized Rotor get(String name) {
+        Rotor result = _rotors.get(name);
+        if (result == null) {
+            int k = NAMES.indexOf(name);
+            if (k < 0) {
+                return null;
+            }
+            Permutation perm =
+                new Permutation(FORWARD[k], INVERSE[k], _alphabet);
+            if (TYPES[k].charAt(0) == 'M') {
+                result = new MovingRotor(name, perm, TYPES[k].substring(1));
+            } else if (TYPES[k].equals("N")) {
+                result = new FixedRotor(name, perm);
+            } else {
+                result = new Reflector(name, perm);
+            }
+            _rotors.put(name, result);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return false;
+    }
+
+    @Override
+    public Collection<String> names() {
+        return NAMES;
+    }
+
+    /** Word of a configuration file that stands for all the historical
+     *  rotors. */
+    static final String DIRECTIVE = "@historical";
+
+    /** The alphabet of the historical rotors. */
+    static final String LETTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    /** Number of rotor slots of a naval machine. */
+    static final int NUM_ROTORS = 5;
+
+    /** Number of pawls of a naval machine. */
+    static final int NUM_PAWLS = 3;
+
+    /** The names of the rotors, in the order of default.conf. */
+    private static final List<String> NAMES = Collections.unmodifiableList(
+        Arrays.asList("I", "II", "III", "IV", "V", "VI", "VII", "VIII",
+                      "Beta", "Gamma", "B", "C"));
+
+    /** The type of each rotor of NAMES, as in a configuration file: M
+     *  and the notches for a moving rotor, N for a fixed one, and R for
+     *  a reflector. */
+    private static final String[] TYPES = {
+        "MQ", "ME", "MV", "MJ", "MZ", "MZM", "MZM", "MZM", "N", "N", "R", "R",
+    };
+
+    /** The table of each rotor of NAMES: entry P is the index of the
+     *  letter to which the letter with index P is wired, with the rotor
+     *  at position 0. */
+    private static final int[][] FORWARD = {
+        { 4, 10, 12, 5, 11, 6, 3, 16, 21, 25, 13, 19, 14,
+          22, 24, 7, 23, 20, 18, 15, 0, 8, 1, 17, 2, 9 },
+        { 0, 9, 3, 10, 18, 8, 17, 20, 23, 1, 11, 7, 22,
+          19, 12, 2, 16, 6, 25, 13, 15, 24, 5, 21, 14, 4 },
+        { 1, 3, 5, 7, 9, 11, 2, 15, 17, 19, 23, 21, 25,
+          13, 24, 4, 8, 22, 6, 0, 10, 12, 20, 18, 16, 14 },
+        { 4, 18, 14, 21, 15, 25, 9, 0, 24, 16, 20, 8, 17,
+          7, 23, 11, 13, 5, 19, 6, 10, 3, 2, 12, 22, 1 },
+        { 21, 25, 1, 17, 6, 8, 19, 24, 20, 15, 18, 3, 13,
+          7, 11, 23, 0, 22, 12, 9, 16, 14, 5, 4, 2, 10 },
+        { 9, 15, 6, 21, 14, 20, 12, 5, 24, 16, 1, 4, 13,
+          7, 25, 17, 3, 10, 0, 18, 23, 11, 8, 2, 19, 22 },
+        { 13, 25, 9, 7, 6, 17, 2, 23, 12, 24, 18, 22, 1,
+          14, 20, 5, 0, 8, 21, 11, 15, 4, 10, 16, 3, 19 },
+        { 5, 10, 16, 7, 19, 11, 23, 14, 2, 1, 9, 18, 15,
+          3, 25, 17, 0, 12, 4, 22, 13, 8, 20, 24, 6, 21 },
+        { 11, 4, 24, 9, 21, 2, 13, 8, 23, 22, 15, 1, 16,
+          12, 3, 17, 19, 0, 10, 25, 6, 5, 20, 7, 14, 18 },
+        { 5, 18, 14, 10, 0, 13, 20, 4, 17, 7, 12, 1, 19,
+          8, 24, 2, 22, 11, 16, 15, 25, 23, 21, 6, 9, 3 },
+        { 4, 13, 10, 16, 0, 20, 24, 22, 9, 8, 2, 14, 15,
+          1, 11, 12, 3, 23, 25, 21, 5, 19, 7, 17, 6, 18 },
+        { 17, 3, 14, 1, 9, 13, 19, 10, 21, 4, 7, 12, 11,
+          5, 2, 22, 25, 0, 23, 6, 24, 8, 15, 18, 20, 16 },
+    };
+
+    /** The inverse of each table of FORWARD. */
+    private static final int[][] INVERSE = new int[FORWARD.length][];
+
+    static {
+        for (int k = 0; k < FORWARD.length; k += 1) {
+            INVERSE[k] = new int[FORWARD[k].length];
+            for (int p = 0; p < FORWARD[k].length; p += 1) {
+                INVERSE[k][FORWARD[k][p]] = p;
+            }
+        }
+    }
+
+    /** The alphabet of my rotors. */
+    private final Alphabet _alphabet;
+
+    /** The rotors made so far, by name. */
+    private final HashMap<String, Rotor> _rotors;
+
+}
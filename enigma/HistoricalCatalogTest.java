@@ -0,0 +1,122 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for HistoricalCatalog.
+ *  @author Xiaoru Zhao
+ */
+public class HistoricalCatalogTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Names of the historical rotors. */
+    private static final List<String> NAMES =
+        Arrays.asList("I", "II", "III", "IV", "V", "VI", "VII", "VIII",
+                      "Beta", "Gamma", "B", "C");
+
+    /** Notches of the moving rotors among NAMES. */
+    private static final String[] NOTCHES =
+        { "Q", "E", "V", "J", "Z", "ZM", "ZM", "ZM" };
+
+    /** Return a new machine with the rotors of default.conf, parsed from
+     *  their cycles. */
+    private Machine parsedMachine() {
+        Collection<Rotor> all = new ArrayList<>();
+        for (int k = 0; k < NOTCHES.length; k += 1) {
+            all.add(new MovingRotor(NAMES.get(k),
+                    new Permutation(NAVALA.get(NAMES.get(k)), UPPER),
+                    NOTCHES[k]));
+        }
+        for (String name : new String[] { "Beta", "Gamma" }) {
+            all.add(new FixedRotor(name,
+                    new Permutation(NAVALA.get(name), UPPER)));
+        }
+        for (String name : new String[] { "B", "C" }) {
+            all.add(new Reflector(name,
+                    new Permutation(NAVALA.get(name), UPPER)));
+        }
+        return new Machine(UPPER, 5, 3, all);
+    }
+
+    /** Return a new machine with the historical rotors. */
+    private Machine builtInMachine() {
+        return new Machine(UPPER, 5, 3, new HistoricalCatalog(UPPER));
+    }
+
+    /** Settings lines, without plugboards, used in the tests. */
+    private static final String[][] SETTINGS = {
+        { "B", "Beta", "I", "II", "III", "AAAA" },
+        { "C", "Gamma", "VI", "VII", "VIII", "QZMR" },
+        { "B", "Gamma", "IV", "V", "I", "AXLE" },
+        { "C", "Beta", "VIII", "III", "II", "ZZZZ" },
+    };
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkTables() {
+        HistoricalCatalog catalog = new HistoricalCatalog(UPPER);
+        assertEquals(NAMES, new ArrayList<>(catalog.names()));
+        for (String name : NAMES) {
+            Permutation parsed = new Permutation(NAVALA.get(name), UPPER);
+            Permutation builtIn = catalog.get(name).permutation();
+            assertArrayEquals(name, parsed.forwardTable(),
+                              builtIn.forwardTable());
+            assertArrayEquals(name, parsed.inverseTable(),
+                              builtIn.inverseTable());
+            Permutation again = new Permutation(builtIn.getCycle(), UPPER);
+            assertArrayEquals(name, parsed.forwardTable(),
+                              again.forwardTable());
+        }
+        assertNull(catalog.get("IX"));
+    }
+
+    @Test
+    public void checkConversions() {
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD"
+            + "MADEOFSLIDINGFOLDINGROSEWOODNEATLYPUTITALLTOGETHER";
+        for (String[] setting : SETTINGS) {
+            String[] order = Arrays.copyOf(setting, 5);
+            Machine parsed = parsedMachine(), builtIn = builtInMachine();
+            for (Machine m : new Machine[] { parsed, builtIn }) {
+                m.insertRotors(order);
+                m.setRotors(setting[5]);
+                m.setPlugboard(new Permutation("(AQ)(EP)(TR)", UPPER));
+            }
+            for (int i = 0; i < 3; i += 1) {
+                assertEquals(parsed.convert(msg), builtIn.convert(msg));
+            }
+        }
+    }
+
+    @Test
+    public void checkOwnRotors() {
+        HistoricalCatalog one = new HistoricalCatalog(UPPER);
+        HistoricalCatalog two = new HistoricalCatalog(UPPER);
+        assertSame(one.get("III"), one.get("III"));
+        assertNotSame(one.get("III"), two.get("III"));
+        assertTrue(one.get("VI").rotates());
+        assertFalse(one.get("Beta").rotates());
+        assertTrue(one.get("C").reflecting());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkBadAlphabet() {
+        new HistoricalCatalog(new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXY"));
+    }
+
+}
@@ -0,0 +1,59 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--indicators=INDEX CONFIG INPUT [OUTPUT]", which reads a
+ *  day's doubled indicators, separated by whitespace, from INPUT, and
+ *  prints a settings line, without a plugboard, for each setting of the
+ *  catalog INDEX (see CyclesCommand) under which they could have been
+ *  enciphered.
+ *  @author Xiaoru Zhao
+ */
+class IndicatorsCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE = "--indicators=INDEX CONFIG INPUT [OUTPUT]";
+
+    /** A catalog search whose options and operands are in OPTIONS. */
+    IndicatorsCommand(Options options) {
+        super(options, USAGE);
+        _indexName = options.value("--indicators");
+        List<String> operands = options.operands();
+        if (operands.size() < 2 || operands.size() > 3) {
+            throw usage();
+        }
+        setConfig(operands.get(0));
+        setStreams(operands.get(1),
+                   operands.size() > 2 ? operands.get(2) : null);
+    }
+
+    @Override
+    void run() {
+        KeyspaceSweep space = space(machine());
+        CycleCatalog catalog;
+        try {
+            catalog = CycleCatalog.load(Paths.get(_indexName), space);
+        } catch (IOException excp) {
+            throw error("could not read %s", _indexName);
+        }
+        List<int[]> indicators = new ArrayList<>();
+        while (input().hasNext()) {
+            indicators.add(indices(input().next()));
+        }
+        for (KeyspaceSweep.Result r : catalog.find(indicators)) {
+            output().println(r.settingsLine(alphabet(), ""));
+        }
+        output().flush();
+    }
+
+    /** Name of the catalog file. */
+    private final String _indexName;
+
+}
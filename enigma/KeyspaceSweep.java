@@ -0,0 +1,752 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+
+import static enigma.EnigmaException.*;
+
+/** A space of machine settings through which one message is run under
+ *  every setting, as if by a freshly configured machine given the
+ *  corresponding settings line.  The space is a set of rotor orders,
+ *  a set of choices of position for each rotor slot and of ring setting
+ *  for each slot that takes one, and a fixed plugboard.  The settings
+ *  are enumerated in parallel, many at a time, through MachineLanes and a
+ *  LockstepEngine, and only the results that a caller's test accepts, or
+ *  the best few by a caller's score, are ever kept.
+ *  @author Xiaoru Zhao
+ */
+class KeyspaceSweep {
+
+    /** One setting of the space and the conversion of the message under
+     *  it. */
+    static class Result {
+
+        /** The result of converting under rotor order ORDER, positions
+         *  POSITIONS, and ring settings RINGS (or null for none), giving
+         *  OUTPUT (as alphabet indices), with score SCORE. */
+        Result(String[] order, int[] positions, int[] rings, int[] output,
+               double score) {
+            _order = order;
+            _positions = positions;
+            _rings = rings;
+            _output = output;
+            _score = score;
+        }
+
+        /** Return the names of the rotors, reflector first. */
+        String[] order() {
+            return _order;
+        }
+
+        /** Return the position of each rotor but the reflector, as an
+         *  alphabet index. */
+        int[] positions() {
+            return _positions;
+        }
+
+        /** Return the ring setting of each rotor but the reflector, as an
+         *  alphabet index, or null if there are none. */
+        int[] rings() {
+            return _rings;
+        }
+
+        /** Return the converted message, as alphabet indices. */
+        int[] output() {
+            return _output;
+        }
+
+        /** Return the converted message as text in ALPHABET. */
+        String output(Alphabet alphabet) {
+            return text(_output, alphabet);
+        }
+
+        /** Return my score, or 0 if unscored. */
+        double score() {
+            return _score;
+        }
+
+        /** Return the settings line giving my setting, over ALPHABET
+         *  with plugboard PLUGBOARD. */
+        String settingsLine(Alphabet alphabet, String plugboard) {
+            StringBuilder result = new StringBuilder("*");
+            for (String name : _order) {
+                result.append(' ').append(name);
+            }
+            result.append(' ').append(text(_positions, alphabet));
+            if (_rings != null) {
+                result.append(' ').append(text(_rings, alphabet));
+            }
+            if (!plugboard.trim().isEmpty()) {
+                result.append(' ').append(plugboard.trim());
+            }
+            return result.toString();
+        }
+
+        /** The rotor order. */
+        private final String[] _order;
+
+        /** The rotor positions. */
+        private final int[] _positions;
+
+        /** The ring settings, or null. */
+        private final int[] _rings;
+
+        /** The converted message. */
+        private final int[] _output;
+
+        /** The score. */
+        private final double _score;
+
+    }
+
+    /** A space of settings of machines over ALPHA with NUMROTORS rotor
+     *  slots and PAWLS pawls, using the rotors of CATALOG.  Initially, it
+     *  has no rotor orders, every position for every rotor, no ring
+     *  settings, and an empty plugboard. */
+    KeyspaceSweep(Alphabet alpha, int numRotors, int pawls,
+                  RotorCatalog catalog) {
+        _alphabet = alpha;
+        _numRotors = numRotors;
+        _catalog = catalog;
+        _checker = new Machine(alpha, numRotors, pawls, catalog);
+        _checker.setMetrics(new EnigmaMetrics("sweep"));
+        _orders = new ArrayList<>();
+        _positions = new int[numRotors - 1][];
+        _rings = new int[numRotors - 1][];
+        int[] all = new int[alpha.size()];
+        for (int i = 0; i < all.length; i += 1) {
+            all[i] = i;
+        }
+        for (int k = 0; k < numRotors - 1; k += 1) {
+            _positions[k] = all;
+            _rings[k] = new int[] { 0 };
+        }
+        _plugboard = new Permutation("", alpha);
+        _threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Add the rotor order ORDER (reflector first) to the space.  Throws
+     *  an EnigmaException if a machine would not accept it. */
+    void addOrder(String... order) {
+        _checker.insertRotors(order);
+        _orders.add(order.clone());
+    }
+
+    /** Add to the space every rotor order that takes its K-th rotor from
+     *  CHOICES[K] and that a machine would accept, leaving out orders
+     *  that use a rotor twice.  Returns the number of orders added. */
+    int addOrders(String[][] choices) {
+        if (choices.length != _numRotors) {
+            throw error("need choices for %d rotor slots", _numRotors);
+        }
+        int before = _orders.size();
+        addOrders(choices, new String[_numRotors], 0);
+        return _orders.size() - before;
+    }
+
+    /** Add the orders completing ORDER from slot K onwards with rotors
+     *  from CHOICES. */
+    private void addOrders(String[][] choices, String[] order, int k) {
+        if (k == _numRotors) {
+            try {
+                addOrder(order);
+            } catch (EnigmaException excp) {
+                /* Not a valid order: leave it out. */
+            }
+            return;
+        }
+        for (String name : choices[k]) {
+            if (!Arrays.asList(order).subList(0, k).contains(name)) {
+                order[k] = name;
+                addOrders(choices, order, k + 1);
+            }
+        }
+    }
+
+    /** Set up the space as described by SPACE, which has the form of a
+     *  settings line (with or without its initial "*") except that:
+     *  each rotor may be given as several names separated by "|", or as
+     *  "?" for every rotor of the catalog that fits its slot; and in the
+     *  positions and the optional ring settings, each character
+     *  may instead be "?", for any character, or a list of characters
+     *  and ranges of characters in brackets, such as "[A-CX]".  Rotor
+     *  orders that use a rotor twice or that a machine would not accept
+     *  are left out.  For example, "B Beta|Gamma I|II|III I|II|III
+     *  I|II|III A??? AAA[A-Z] (AQ)" sweeps both thin rotors, all orders of
+     *  three rotors, and the positions and ring setting of the last
+     *  three slots. */
+    void parse(String space) {
+        Scanner line = new Scanner(space);
+        if (line.hasNext("\\*")) {
+            line.next();
+        }
+        String[][] choices = new String[_numRotors][];
+        for (int k = 0; k < _numRotors; k += 1) {
+            if (!line.hasNext()) {
+                throw error("too few rotors in %s", space);
+            }
+            String names = line.next();
+            choices[k] =
+                names.equals("?") ? fitting(k) : names.split("\\|");
+        }
+        if (addOrders(choices) == 0) {
+            throw error("no valid rotor order in %s", space);
+        }
+        if (!line.hasNext()) {
+            throw error("no positions in %s", space);
+        }
+        int[][] posns = pattern(line.next());
+        for (int k = 1; k < _numRotors; k += 1) {
+            setPositions(k, posns[k - 1]);
+        }
+        if (line.hasNext() && !line.hasNext("\\(.*")) {
+            int[][] rings = pattern(line.next());
+            for (int k = 1; k < _numRotors; k += 1) {
+                setRings(k, rings[k - 1]);
+            }
+        }
+        StringBuilder plugboard = new StringBuilder();
+        while (line.hasNext()) {
+            plugboard.append(line.next());
+        }
+        setPlugboard(new Permutation(plugboard.toString(), _alphabet));
+    }
+
+    /** Return the names of the rotors of my catalog that fit slot K: the
+     *  reflectors for slot 0, the moving rotors for the slots with pawls,
+     *  and the other rotors for the rest. */
+    private String[] fitting(int k) {
+        ArrayList<String> result = new ArrayList<>();
+        int firstMoving = _numRotors - _checker.numPawls();
+        for (String name : _catalog.names()) {
+            Rotor rotor = _catalog.get(name);
+            boolean fits =
+                k == 0 ? rotor.reflecting()
+                : k >= firstMoving ? rotor.rotates()
+                : !rotor.rotates() && !rotor.reflecting();
+            if (fits) {
+                result.add(name);
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /** Return the choices of alphabet index for each of the numRotors - 1
+     *  items of PATTERN (see parse). */
+    private int[][] pattern(String pattern) {
+        int[] cps = pattern.codePoints().toArray();
+        int[][] result = new int[_numRotors - 1][];
+        int i = 0;
+        for (int k = 0; k < result.length; k += 1) {
+            if (i >= cps.length) {
+                throw error("too few characters in %s", pattern);
+            }
+            boolean[] chosen = new boolean[_alphabet.size()];
+            if (cps[i] == '?') {
+                Arrays.fill(chosen, true);
+                i += 1;
+            } else if (cps[i] == '[') {
+                i += 1;
+                while (i < cps.length && cps[i] != ']') {
+                    int lo = index(cps[i], pattern), hi = lo;
+                    if (i + 2 < cps.length && cps[i + 1] == '-'
+                        && cps[i + 2] != ']') {
+                        hi = index(cps[i + 2], pattern);
+                        i += 2;
+                    }
+                    for (int c = lo; c <= hi; c += 1) {
+                        chosen[c] = true;
+                    }
+                    i += 1;
+                }
+                if (i == cps.length) {
+                    throw error("missing ] in %s", pattern);
+                }
+                i += 1;
+            } else {
+                chosen[index(cps[i], pattern)] = true;
+                i += 1;
+            }
+            result[k] = chosenIndices(chosen);
+            if (result[k].length == 0) {
+                throw error("empty range in %s", pattern);
+            }
+        }
+        if (i != cps.length) {
+            throw error("too many characters in %s", pattern);
+        }
+        return result;
+    }
+
+    /** Return the index of code point CP, which must be in my alphabet,
+     *  reporting an error in PATTERN if not. */
+    private int index(int cp, String pattern) {
+        int result = _alphabet.indexOf(cp);
+        if (result < 0) {
+            throw error("character %s in %s not in alphabet",
+                        new String(Character.toChars(cp)), pattern);
+        }
+        return result;
+    }
+
+    /** Return the indices at which CHOSEN is true, in order. */
+    private static int[] chosenIndices(boolean[] chosen) {
+        int n = 0;
+        for (boolean b : chosen) {
+            n += b ? 1 : 0;
+        }
+        int[] result = new int[n];
+        n = 0;
+        for (int i = 0; i < chosen.length; i += 1) {
+            if (chosen[i]) {
+                result[n] = i;
+                n += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return the number of rotor orders in the space. */
+    int orders() {
+        return _orders.size();
+    }
+
+    /** Let the rotor in slot K (1 <= K < numRotors) take the positions
+     *  (alphabet indices) in CHOICES. */
+    void setPositions(int k, int[] choices) {
+        _positions[k - 1] = check(choices);
+    }
+
+    /** Let the rotor in slot K (1 <= K < numRotors) take the ring
+     *  settings (alphabet indices) in CHOICES. */
+    void setRings(int k, int[] choices) {
+        _rings[k - 1] = check(choices);
+    }
+
+    /** Use PLUGBOARD, over my alphabet, in every setting. */
+    void setPlugboard(Permutation plugboard) {
+        _checker.setPlugboard(plugboard);
+        _plugboard = _checker.plugboard();
+    }
+
+    /** Return the cycles of the plugboard used. */
+    String plugboard() {
+        return _plugboard.getCycle();
+    }
+
+    /** Use up to N threads. */
+    void setThreads(int n) {
+        _threads = Math.max(1, n);
+    }
+
+    /** Return the number of settings in the space. */
+    long size() {
+        long result = _orders.size();
+        for (int k = 0; k < _numRotors - 1; k += 1) {
+            result = Math.multiplyExact(result, _positions[k].length);
+            result = Math.multiplyExact(result, _rings[k].length);
+        }
+        return result;
+    }
+
+    /** Return true iff some slot may take a ring setting other than 0. */
+    boolean hasRings() {
+        for (int[] choices : _rings) {
+            if (choices.length != 1 || choices[0] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Convert MESSAGE (alphabet indices) under every setting in the space,
+     *  passing to SINK the result of each setting whose output ACCEPT
+     *  accepts.  SINK is called from one thread at a time, but results
+     *  arrive in no particular order.  The output array given to ACCEPT
+     *  is reused and must not be kept. */
+    void run(int[] message, Predicate<int[]> accept, Consumer<Result> sink) {
+        run(message, 0, size(), accept, sink);
+    }
+
+    /** As for run(MESSAGE, ACCEPT, SINK), but only over the settings
+     *  numbered FROM .. TO-1, in the order in which the space enumerates
+     *  them, so that the space may be split among many searchers. */
+    void run(int[] message, long from, long to, Predicate<int[]> accept,
+             Consumer<Result> sink) {
+        sweep(message, from, to, (worker, output) -> {
+            if (accept.test(output)) {
+                Result r = worker.result(output.clone(), 0);
+                synchronized (sink) {
+                    sink.accept(r);
+                }
+            }
+        });
+    }
+
+    /** Convert MESSAGE (alphabet indices) under every setting in the space,
+     *  passing SINK the output and number (see setting) of each.  SINK is
+     *  called from many threads at once, in no particular order.  The
+     *  output array given to SINK is reused and must not be kept. */
+    void forEach(int[] message, ObjLongConsumer<int[]> sink) {
+        sweep(message, 0, size(),
+              (worker, output) -> sink.accept(output, worker._current));
+    }
+
+    /** Return the K results with the highest scores by SCORE of converting
+     *  MESSAGE (alphabet indices) under every setting in the space, best
+     *  first.  The output array given to SCORE is reused and must not be
+     *  kept. */
+    List<Result> top(int[] message, ToDoubleFunction<int[]> score, int k) {
+        return top(message, score, k, 0, size());
+    }
+
+    /** As for top(MESSAGE, SCORE, K), but only over the settings numbered
+     *  FROM .. TO-1 (see run). */
+    List<Result> top(int[] message, ToDoubleFunction<int[]> score, int k,
+                     long from, long to) {
+        Comparator<Result> byScore =
+            Comparator.comparingDouble(Result::score);
+        PriorityQueue<Result> best = new PriorityQueue<>(byScore);
+        sweep(message, from, to, (worker, output) -> {
+            double s = score.applyAsDouble(output);
+            synchronized (best) {
+                if (best.size() < k || s > best.peek().score()) {
+                    best.add(worker.result(output.clone(), s));
+                    if (best.size() > k) {
+                        best.poll();
+                    }
+                }
+            }
+        });
+        ArrayList<Result> result = new ArrayList<>(best);
+        result.sort(Collections.reverseOrder(byScore));
+        return result;
+    }
+
+    /** What a worker does with each setting's output. */
+    private interface Visitor {
+        /** Handle OUTPUT, the output of the setting described by the
+         *  current lane of WORKER. */
+        void visit(Worker worker, int[] output);
+    }
+
+    /** Run MESSAGE through the settings numbered FROM .. TO-1, passing
+     *  each output to VISITOR. */
+    private void sweep(int[] message, long from, long to, Visitor visitor) {
+        if (_orders.isEmpty()) {
+            throw error("no rotor orders to sweep");
+        }
+        if (from < 0 || from > to || to > size()) {
+            throw error("settings %d to %d are not in the space", from, to);
+        }
+        long size = to - from;
+        AtomicLong next = new AtomicLong(from);
+        int batch = Math.max(MIN_BATCH,
+                             Math.min(MAX_BATCH, MAX_OUTPUT / Math.max(1,
+                                 message.length)));
+        int threads = (int) Math.min(_threads, (size + batch - 1) / batch);
+        if (threads <= 1) {
+            new Worker(message, batch, next, to, visitor).run();
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int i = 0; i < threads; i += 1) {
+                done.add(pool.submit(new Worker(message, batch, next, to,
+                                                visitor)));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw error("sweep interrupted");
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw error("sweep failed: %s", excp.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /** Converts the message under successive batches of settings, each
+     *  in its own MachineLanes, until the space is exhausted. */
+    private class Worker implements Runnable {
+
+        /** A worker converting MESSAGE under batches of at most BATCH
+         *  settings, taking the number of its next batch's first setting
+         *  from NEXT until it reaches END, and passing the outputs to
+         *  VISITOR. */
+        Worker(int[] message, int batch, AtomicLong next, long end,
+               Visitor visitor) {
+            _message = message;
+            _batch = batch;
+            _next = next;
+            _end = end;
+            _visitor = visitor;
+            _lanes = new MachineLanes(_numRotors, _alphabet.size(), batch);
+            _engine = LockstepEngine.best();
+            _out = new int[message.length * batch];
+            _output = new int[message.length];
+            _settings = new long[batch];
+            _plug = _lanes.tables(_plugboard);
+            _tables = new int[_numRotors];
+        }
+
+        @Override
+        public void run() {
+            int len = _message.length;
+            while (true) {
+                long first = _next.getAndAdd(_batch);
+                if (first >= _end) {
+                    return;
+                }
+                int count = (int) Math.min(_batch, _end - first);
+                _lanes.clear();
+                for (int i = 0; i < count; i += 1) {
+                    _settings[i] = first + i;
+                    decode(first + i);
+                    int lane = _lanes.addLane();
+                    for (int k = 0; k < _numRotors; k += 1) {
+                        _lanes.setRotor(lane, k, _tables[k], _rotates[k],
+                                        k == 0 ? 0 : _posn[k - 1], false);
+                    }
+                    _lanes.setPlugboard(lane, _plug);
+                }
+                _engine.convert(_lanes, _message, len, _out);
+                for (int i = 0; i < count; i += 1) {
+                    for (int t = 0; t < len; t += 1) {
+                        _output[t] = _out[t * count + i];
+                    }
+                    _current = _settings[i];
+                    _visitor.visit(this, _output);
+                }
+            }
+        }
+
+        /** Return the result for the setting last visited, with OUTPUT and
+         *  SCORE. */
+        Result result(int[] output, double score) {
+            decode(_current);
+            return new Result(_order.clone(), _posn.clone(),
+                              hasRings() ? _ring.clone() : null,
+                              output, score);
+        }
+
+        /** Set _order, _tables, _rotates, _posn, and _ring to describe
+         *  setting number N of the space. */
+        private void decode(long n) {
+            int slots = _numRotors - 1;
+            if (_posn == null) {
+                _posn = new int[slots];
+                _ring = new int[slots];
+                _ringIndex = new int[slots];
+                _rotates = new boolean[_numRotors];
+            }
+            int order = KeyspaceSweep.this.decode(n, _posn, _ringIndex);
+            boolean changed = false;
+            for (int k = 0; k < slots; k += 1) {
+                int r = _rings[k][_ringIndex[k]];
+                changed |= r != _ring[k];
+                _ring[k] = r;
+            }
+            if (changed || order != _orderIndex || _order == null) {
+                _orderIndex = order;
+                _order = _orders.get(_orderIndex);
+                for (int k = 0; k < _numRotors; k += 1) {
+                    Rotor rotor = _catalog.get(_order[k]);
+                    int ring = k > 0 ? _ring[k - 1] : 0;
+                    _tables[k] = _lanes.tables(rotor, _alphabet, ring);
+                    _rotates[k] = rotor.rotates();
+                }
+            }
+        }
+
+        /** The message, as alphabet indices. */
+        private final int[] _message;
+
+        /** Largest number of settings converted together. */
+        private final int _batch;
+
+        /** Number of the next unclaimed setting. */
+        private final AtomicLong _next;
+
+        /** Number of the setting after the last to convert. */
+        private final long _end;
+
+        /** Handles outputs. */
+        private final Visitor _visitor;
+
+        /** One lane for each setting of the current batch. */
+        private final MachineLanes _lanes;
+
+        /** Converts the message. */
+        private final LockstepEngine _engine;
+
+        /** Output of the engine. */
+        private final int[] _out;
+
+        /** Output of the current setting. */
+        private final int[] _output;
+
+        /** Number of the setting in each lane. */
+        private final long[] _settings;
+
+        /** Offset of the plugboard's table. */
+        private final int _plug;
+
+        /** Offsets of the current setting's rotor tables, by slot. */
+        private final int[] _tables;
+
+        /** Whether the current setting's rotor in each slot moves. */
+        private boolean[] _rotates;
+
+        /** Number of the setting last visited. */
+        private long _current;
+
+        /** The current rotor order, and its number. */
+        private String[] _order;
+
+        /** The number of _order. */
+        private int _orderIndex;
+
+        /** The current positions. */
+        private int[] _posn;
+
+        /** The current ring settings. */
+        private int[] _ring;
+
+        /** The current ring settings, as indices into _rings. */
+        private int[] _ringIndex;
+
+    }
+
+    /** Return setting number N of the space, as a Result with no output
+     *  and a score of 0. */
+    Result setting(long n) {
+        if (n < 0 || n >= size()) {
+            throw error("setting %d is not in the space", n);
+        }
+        int slots = _numRotors - 1;
+        int[] posn = new int[slots], ringIndex = new int[slots];
+        String[] order = _orders.get(decode(n, posn, ringIndex));
+        int[] ring = null;
+        if (hasRings()) {
+            ring = new int[slots];
+            for (int k = 0; k < slots; k += 1) {
+                ring[k] = _rings[k][ringIndex[k]];
+            }
+        }
+        return new Result(order.clone(), posn, ring, new int[0], 0);
+    }
+
+    /** Store in POSN the positions of setting number N of the space, and
+     *  in RINGINDEX the index of each ring setting among the choices for
+     *  its slot, and return the index of its rotor order. */
+    private int decode(long n, int[] posn, int[] ringIndex) {
+        int slots = _numRotors - 1;
+        for (int k = slots - 1; k >= 0; k -= 1) {
+            int m = _positions[k].length;
+            posn[k] = _positions[k][(int) (n % m)];
+            n /= m;
+        }
+        for (int k = slots - 1; k >= 0; k -= 1) {
+            int m = _rings[k].length;
+            ringIndex[k] = (int) (n % m);
+            n /= m;
+        }
+        return (int) n;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return the number of rotor slots of my settings. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the catalog my rotors come from. */
+    RotorCatalog catalog() {
+        return _catalog;
+    }
+
+    /** Return the text of the alphabet indices INDICES in ALPHABET. */
+    static String text(int[] indices, Alphabet alphabet) {
+        StringBuilder result = new StringBuilder(indices.length);
+        for (int i : indices) {
+            result.appendCodePoint(alphabet.toCodePoint(i));
+        }
+        return result.toString();
+    }
+
+    /** Return CHOICES, after checking that it is a non-empty set of
+     *  alphabet indices. */
+    private int[] check(int[] choices) {
+        if (choices.length == 0) {
+            throw error("empty set of choices");
+        }
+        for (int c : choices) {
+            if (c < 0 || c >= _alphabet.size()) {
+                throw error("choice %d out of range", c);
+            }
+        }
+        return choices.clone();
+    }
+
+    /** Fewest settings converted together. */
+    private static final int MIN_BATCH = 64;
+
+    /** Most settings converted together. */
+    private static final int MAX_BATCH = 4096;
+
+    /** Most output characters held at once by one worker. */
+    private static final int MAX_OUTPUT = 1 << 22;
+
+    /** The alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Source of rotors. */
+    private final RotorCatalog _catalog;
+
+    /** Machine used to check rotor orders and the plugboard. */
+    private final Machine _checker;
+
+    /** The rotor orders. */
+    private final ArrayList<String[]> _orders;
+
+    /** The position choices of slots 1 .. numRotors - 1, at K - 1. */
+    private final int[][] _positions;
+
+    /** The ring setting choices of slots 1 .. numRotors - 1, at K - 1. */
+    private final int[][] _rings;
+
+    /** The plugboard. */
+    private Permutation _plugboard;
+
+    /** Largest number of threads used. */
+    private int _threads;
+
+}
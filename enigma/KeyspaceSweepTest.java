@@ -0,0 +1,171 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for KeyspaceSweep.
+ *  @author Xiaoru Zhao
+ */
+public class KeyspaceSweepTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a new machine with new naval rotors B, Beta, I, II, III
+     *  and IV. */
+    private Machine machine() {
+        return navalMachine(5, "B", "Beta", "I", "II", "III", "IV");
+    }
+
+    /** Return a new sweep over a new machine. */
+    private KeyspaceSweep sweep() {
+        Machine m = machine();
+        return new KeyspaceSweep(UPPER, 5, 3, m.catalog());
+    }
+
+    /** Return the conversion of MSG by a new machine set up as Main does
+     *  for the settings line SETTINGS. */
+    private String expected(String settings, String msg) {
+        Machine m = machine();
+        String[] tokens = settings.split(" ");
+        String[] order = new String[5];
+        System.arraycopy(tokens, 1, order, 0, 5);
+        m.insertRotors(order);
+        m.setRotors(tokens[6]);
+        int next = 7;
+        if (tokens.length > next && !tokens[next].startsWith("(")) {
+            m.setRings(tokens[next]);
+            next += 1;
+        }
+        StringBuilder plugs = new StringBuilder();
+        for (int i = next; i < tokens.length; i += 1) {
+            plugs.append(tokens[i]);
+        }
+        m.setPlugboard(new Permutation(plugs.toString(), UPPER));
+        return m.convert(msg);
+    }
+
+    /** Return the alphabet indices of MSG. */
+    private int[] indices(String msg) {
+        int[] result = new int[msg.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = UPPER.toInt(msg.charAt(i));
+        }
+        return result;
+    }
+
+    /** Return the settings lines and outputs of every setting of SWEEP
+     *  for MSG. */
+    private HashMap<String, String> all(KeyspaceSweep sweep, String msg) {
+        HashMap<String, String> result = new HashMap<>();
+        sweep.run(indices(msg), out -> true, r ->
+            result.put(r.settingsLine(UPPER, sweep.plugboard()),
+                       r.output(UPPER)));
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkAgainstMachine() {
+        String msg = "FROMHISSHOULDERHIAWATHATOOKTHECAMERAOFROSEWOOD";
+        KeyspaceSweep sweep = sweep();
+        sweep.parse("* B Beta I|II|IV III II|IV Q?[DE]? A[BQ]A[AZ] (AQ)(EP)");
+        assertEquals(4, sweep.orders());
+        assertEquals(4L * 26 * 2 * 26 * 2 * 2, sweep.size());
+        HashMap<String, String> results = all(sweep, msg);
+        assertEquals(sweep.size(), results.size());
+        int n = 0;
+        for (String settings : results.keySet()) {
+            if (n % 37 == 0) {
+                assertEquals(settings, expected(settings, msg),
+                             results.get(settings));
+            }
+            n += 1;
+        }
+    }
+
+    @Test
+    public void checkThreads() {
+        String msg = "HELLOWORLD";
+        KeyspaceSweep one = sweep(), many = sweep();
+        one.parse("B Beta I|II II|III IV ???A");
+        many.parse("B Beta I|II II|III IV ???A");
+        one.setThreads(1);
+        many.setThreads(4);
+        assertEquals(all(one, msg), all(many, msg));
+    }
+
+    @Test
+    public void checkTop() {
+        String msg = "HELLOWORLD";
+        String settings = "* B Beta II IV I AMLO";
+        String target = expected(settings, msg);
+        KeyspaceSweep sweep = sweep();
+        sweep.parse("B Beta I|II|III|IV I|II|III|IV I|II|III|IV A???");
+        int[] t = indices(target);
+        List<KeyspaceSweep.Result> best = sweep.top(indices(msg), out -> {
+            int score = 0;
+            for (int i = 0; i < t.length; i += 1) {
+                score += out[i] == t[i] ? 1 : 0;
+            }
+            return score;
+        }, 5);
+        assertEquals(5, best.size());
+        assertEquals(settings, best.get(0).settingsLine(UPPER, ""));
+        assertEquals(target.length(), best.get(0).score(), 0);
+        assertTrue(best.get(1).score() <= best.get(0).score());
+        assertTrue(best.get(4).score() <= best.get(3).score());
+    }
+
+    @Test
+    public void checkAnyRotor() {
+        KeyspaceSweep sweep = sweep();
+        sweep.parse("? ? ? I|II ? AAAA");
+        assertEquals(2 * 3 * 2, sweep.orders());
+        assertEquals(12L, sweep.size());
+    }
+
+    @Test
+    public void checkOddAlphabet() {
+        String msg = "HELLOWORLD";
+        Machine machine = new Machine(ODD, 3, 2, oddRotors());
+        KeyspaceSweep sweep = new KeyspaceSweep(ODD, 3, 2, machine.catalog());
+        sweep.parse("R I II ?A");
+        int[] message = new int[msg.length()];
+        for (int i = 0; i < message.length; i += 1) {
+            message[i] = ODD.toInt(msg.charAt(i));
+        }
+        HashMap<String, String> results = new HashMap<>();
+        sweep.run(message, out -> true, r ->
+            results.put(r.settingsLine(ODD, sweep.plugboard()),
+                        r.output(ODD)));
+        assertEquals(ODD.size(), results.size());
+        for (String settings : results.keySet()) {
+            Command.setUp(machine, settings);
+            assertEquals(settings, machine.convert(msg),
+                         results.get(settings));
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkBadPattern() {
+        sweep().parse("B Beta I II III A[B-A]AA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNoOrders() {
+        sweep().parse("B I Beta II III AAAA");
+    }
+
+}
@@ -0,0 +1,133 @@
+package enigma;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A histogram of latencies in nanoseconds with about 6% precision over
+ *  the whole range of long, in the style of an HDR histogram: values
+ *  fall into buckets whose width grows with the value, so the buckets
+ *  fit in a small fixed array.  Recording is lock-free and allocation
+ *  free, so it can be left on in production.
+ *  @author Xiaoru Zhao
+ */
+class LatencyHistogram {
+
+    /** An empty histogram. */
+    LatencyHistogram() {
+        _counts = new AtomicLongArray(BUCKETS);
+        _max = new AtomicLong();
+    }
+
+    /** Record one latency of NANOS nanoseconds (negative values count as
+     *  0). */
+    void record(long nanos) {
+        long v = Math.max(nanos, 0);
+        _counts.getAndIncrement(bucket(v));
+        long max = _max.get();
+        while (v > max && !_max.compareAndSet(max, v)) {
+            max = _max.get();
+        }
+    }
+
+    /** Return the number of latencies recorded. */
+    long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i += 1) {
+            total += _counts.get(i);
+        }
+        return total;
+    }
+
+    /** Return the largest latency recorded, or 0 if none. */
+    long max() {
+        return _max.get();
+    }
+
+    /** Return the mean of the recorded latencies (by bucket), or 0 if
+     *  none. */
+    double mean() {
+        long n = 0;
+        double sum = 0;
+        for (int i = 0; i < BUCKETS; i += 1) {
+            long c = _counts.get(i);
+            n += c;
+            sum += c * (double) middle(i);
+        }
+        return n == 0 ? 0 : sum / n;
+    }
+
+    /** Return an upper bound on the latency at percentile P (0 <= P <=
+     *  100) of the recorded ones, or 0 if none. */
+    long percentile(double p) {
+        long total = count();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p / PERCENT * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i += 1) {
+            seen += _counts.get(i);
+            if (seen >= rank) {
+                return Math.min(lowest(i + 1) - 1, max());
+            }
+        }
+        return max();
+    }
+
+    /** Forget all recorded latencies. */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i += 1) {
+            _counts.set(i, 0);
+        }
+        _max.set(0);
+    }
+
+    /** Return the bucket holding the value V >= 0.  Values below SUB have
+     *  buckets of their own; above that, each power of two is split into
+     *  SUB / 2 buckets. */
+    static int bucket(long v) {
+        int k = Long.SIZE - 1 - Long.numberOfLeadingZeros(v | (SUB - 1));
+        int shift = k - (SUB_BITS - 1);
+        return shift * HALF + (int) (v >>> shift);
+    }
+
+    /** Return the smallest value in bucket I. */
+    static long lowest(int i) {
+        if (i < SUB) {
+            return i;
+        }
+        int shift = i / HALF - 1;
+        if (shift >= Long.SIZE - SUB_BITS) {
+            return Long.MAX_VALUE;
+        }
+        return (long) (i % HALF + HALF) << shift;
+    }
+
+    /** Return a value midway through bucket I. */
+    private static long middle(int i) {
+        long lo = lowest(i);
+        return lo + (lowest(i + 1) - lo) / 2;
+    }
+
+    /** Number of bits of precision kept for each value. */
+    private static final int SUB_BITS = 5;
+
+    /** Values below SUB are recorded exactly. */
+    private static final int SUB = 1 << SUB_BITS;
+
+    /** Number of buckets per power of two above SUB. */
+    private static final int HALF = SUB / 2;
+
+    /** Total number of buckets. */
+    private static final int BUCKETS = (Long.SIZE - SUB_BITS + 2) * HALF;
+
+    /** Scale of percentiles. */
+    private static final double PERCENT = 100.0;
+
+    /** Number of latencies recorded in each bucket. */
+    private final AtomicLongArray _counts;
+
+    /** Largest latency recorded. */
+    private final AtomicLong _max;
+
+}
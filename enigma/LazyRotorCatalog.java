@@ -0,0 +1,239 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.function.Function;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.READ;
+
+import static enigma.EnigmaException.*;
+
+/** A catalog of the rotors described in a configuration file, for
+ *  catalogs far larger than any one message needs.  Construction makes
+ *  one quick pass over the file, recording where each rotor's
+ *  description starts and ends.  A rotor is parsed only when first asked
+ *  for, and the most recently used rotors are kept in a bounded cache.
+ *  The file is mapped into memory whole and indexed by int offsets, so
+ *  it may be at most MAX_SIZE bytes (2 GiB - 1).
+ *  @author Xiaoru Zhao
+ */
+class LazyRotorCatalog implements RotorCatalog {
+
+    /** A catalog of the rotors described in the configuration file
+     *  CONFIG, whose descriptions are parsed by PARSER from a Scanner
+     *  positioned at the start of one.  At most CAPACITY parsed rotors are
+     *  kept at a time.  Throws if CONFIG is longer than MAX_SIZE bytes. */
+    LazyRotorCatalog(Path config, Function<Scanner, Rotor> parser,
+                     int capacity) throws IOException {
+        try (FileChannel in = FileChannel.open(config, READ)) {
+            long size = in.size();
+            if (size > MAX_SIZE) {
+                throw error("configuration file %s is %d bytes, more than"
+                            + " the %d that can be loaded lazily", config,
+                            size, MAX_SIZE);
+            }
+            _data = in.map(READ_ONLY, 0, size);
+        }
+        _parser = parser;
+        _index = new LinkedHashMap<>();
+        _cache = new LinkedHashMap<String, Rotor>(capacity, LOAD, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Rotor> e) {
+                return size() > capacity;
+            }
+        };
+        index();
+    }
+
+    /** Return true iff my file includes the historical rotors with the
+     *  word HistoricalCatalog.DIRECTIVE. */
+    boolean historical() {
+        return _historical;
+    }
+
+    /** Also hold the rotors of MORE that my file does not describe. */
+    void include(RotorCatalog more) {
+        _more = more;
+    }
+
+    @Override
+    public synchronized Rotor get(String name) {
+        Rotor result = _cache.get(name);
+        if (result == null) {
+            int[] extent = _index.get(name);
+            if (extent == null) {
+                return _more == null ? null : _more.get(name);
+            }
+            result = _parser.apply(new Scanner(text(extent)));
+            if (result == null || !result.name().equals(name)) {
+                throw error("bad description of rotor %s", name);
+            }
+            _cache.put(name, result);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return _index.isEmpty() && (_more == null || _more.isEmpty());
+    }
+
+    @Override
+    public Collection<String> names() {
+        if (_more == null) {
+            return Collections.unmodifiableSet(_index.keySet());
+        }
+        LinkedHashSet<String> result = new LinkedHashSet<>(_index.keySet());
+        result.addAll(_more.names());
+        return Collections.unmodifiableSet(result);
+    }
+
+    /** Return the number of rotors described in my file. */
+    int size() {
+        return _index.size();
+    }
+
+    /** Return the text of the description whose start and end offsets
+     *  are in EXTENT. */
+    private String text(int[] extent) {
+        ByteBuffer slice = _data.duplicate();
+        slice.position(extent[0]).limit(extent[1]);
+        return StandardCharsets.UTF_8.decode(slice).toString();
+    }
+
+    /** Record the extent of each rotor description in _data.  The header
+     *  (alphabet, number of rotors and pawls) is skipped.  Each
+     *  description is a name, a type, and the rest of its line; a
+     *  reflector's description continues onto the next line when that
+     *  line starts with "(", just as Main reads it.  The word
+     *  HistoricalCatalog.DIRECTIVE stands alone, and is not indexed. */
+    private void index() {
+        _pos = 0;
+        for (int i = 0; i < HEADER_TOKENS; i += 1) {
+            if (token() < 0) {
+                throw error("configuration file truncated");
+            }
+        }
+        while (true) {
+            int start = token();
+            if (start < 0) {
+                break;
+            }
+            String name = new String(bytes(start, _pos),
+                                     StandardCharsets.UTF_8);
+            if (name.equals(HistoricalCatalog.DIRECTIVE)) {
+                _historical = true;
+                continue;
+            }
+            int type = token();
+            if (type < 0) {
+                throw error("bad rotor description");
+            }
+            boolean reflector = _data.get(type) == 'R' && _pos == type + 1;
+            skipLine();
+            if (reflector) {
+                int lineStart = _pos;
+                int next = token();
+                _pos = lineStart;
+                if (next >= 0 && _data.get(next) == '(') {
+                    skipLine();
+                }
+            }
+            _index.putIfAbsent(name, new int[] { start, _pos });
+        }
+    }
+
+    /** Skip whitespace and then one token of _data, returning the offset
+     *  at which the token starts, or -1 at the end of the file. */
+    private int token() {
+        int n = _data.limit();
+        while (_pos < n && isSpace(_data.get(_pos))) {
+            _pos += 1;
+        }
+        if (_pos == n) {
+            return -1;
+        }
+        int start = _pos;
+        while (_pos < n && !isSpace(_data.get(_pos))) {
+            _pos += 1;
+        }
+        return start;
+    }
+
+    /** Advance past the end of the current line of _data. */
+    private void skipLine() {
+        int n = _data.limit();
+        while (_pos < n && _data.get(_pos) != '\n'
+               && _data.get(_pos) != '\r') {
+            _pos += 1;
+        }
+        if (_pos < n && _data.get(_pos) == '\r') {
+            _pos += 1;
+        }
+        if (_pos < n && _data.get(_pos) == '\n') {
+            _pos += 1;
+        }
+    }
+
+    /** Return the bytes of _data from START to END. */
+    private byte[] bytes(int start, int end) {
+        byte[] result = new byte[end - start];
+        for (int i = start; i < end; i += 1) {
+            result[i - start] = _data.get(i);
+        }
+        return result;
+    }
+
+    /** Return true iff B is an ASCII whitespace byte. */
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r'
+            || b == '\f' || b == LINE_TAB;
+    }
+
+    /** Largest configuration file, in bytes, that can be mapped and
+     *  indexed. */
+    static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    /** Number of tokens in the configuration header. */
+    private static final int HEADER_TOKENS = 3;
+
+    /** The vertical tab character. */
+    private static final byte LINE_TAB = 0x0b;
+
+    /** Load factor of the cache. */
+    private static final float LOAD = 0.75f;
+
+    /** Contents of the configuration file. */
+    private final ByteBuffer _data;
+
+    /** Parses one rotor description. */
+    private final Function<Scanner, Rotor> _parser;
+
+    /** Start and end offsets in _data of each rotor's description. */
+    private final LinkedHashMap<String, int[]> _index;
+
+    /** Recently used rotors, least recently used first. */
+    private final LinkedHashMap<String, Rotor> _cache;
+
+    /** Current offset in _data while indexing. */
+    private int _pos;
+
+    /** True iff my file includes the historical rotors. */
+    private boolean _historical;
+
+    /** Rotors held besides those of my file, or null. */
+    private RotorCatalog _more;
+
+}
@@ -0,0 +1,265 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for LazyRotorCatalog.
+ *  @author Xiaoru Zhao
+ */
+public class LazyRotorCatalogTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a rotor parsed from its description in CONFIG, as Main
+     *  parses one, counting the call in _parsed. */
+    private Rotor parse(Scanner config) {
+        _parsed += 1;
+        String name = config.next();
+        String type = config.next();
+        String perm = config.nextLine();
+        switch (type.charAt(0)) {
+        case 'M':
+            return new MovingRotor(name, new Permutation(perm, UPPER),
+                                   type.substring(1));
+        case 'N':
+            return new FixedRotor(name, new Permutation(perm, UPPER));
+        case 'R':
+            if (config.hasNext("\\(\\S+")) {
+                perm += config.nextLine();
+            }
+            return new Reflector(name, new Permutation(perm, UPPER));
+        default:
+            return null;
+        }
+    }
+
+    /** Return the lines of a configuration file describing the naval
+     *  rotors, with reflector B's cycles split over two lines, each line
+     *  ending in TRAILER. */
+    private List<String> lines(String trailer) {
+        List<String> result = new ArrayList<>();
+        result.add(UPPER_STRING + trailer);
+        result.add(" 5 3" + trailer);
+        for (int i = 0; i < MOVING.length; i += 1) {
+            result.add(" " + MOVING[i] + " M" + NOTCHES[i] + "  "
+                       + NAVALA.get(MOVING[i]) + trailer);
+        }
+        result.add(" Beta N " + NAVALA.get("Beta") + trailer);
+        result.add(" B R (AE) (BN) (CK) (DQ) (FU) (GY) (HW)" + trailer);
+        result.add("     (IJ) (LO) (MP) (RX) (SZ) (TV)" + trailer);
+        result.add(" Gamma N " + NAVALA.get("Gamma") + trailer);
+        result.add(" C R " + NAVALA.get("C") + trailer);
+        return result;
+    }
+
+    /** Return a new file holding LINES, each followed by NEWLINE. */
+    private Path write(List<String> lines, String newline)
+        throws IOException {
+        Path result = Files.createTempFile("enigma", ".conf");
+        Files.write(result, (String.join(newline, lines) + newline)
+                    .getBytes(StandardCharsets.UTF_8));
+        return result;
+    }
+
+    /** Return a catalog of FILE keeping at most CAPACITY rotors. */
+    private LazyRotorCatalog catalog(Path file, int capacity)
+        throws IOException {
+        return new LazyRotorCatalog(file, this::parse, capacity);
+    }
+
+    /** Check that CATALOG holds exactly the rotors described by
+     *  lines(). */
+    private void checkRotors(LazyRotorCatalog catalog) {
+        List<String> names = new ArrayList<>(Arrays.asList(MOVING));
+        names.addAll(Arrays.asList("Beta", "B", "Gamma", "C"));
+        assertEquals(names, new ArrayList<>(catalog.names()));
+        assertEquals(names.size(), catalog.size());
+        for (String name : names) {
+            Rotor rotor = catalog.get(name);
+            assertEquals(name, rotor.name());
+            Permutation expected = new Permutation(NAVALA.get(name), UPPER);
+            for (int i = 0; i < UPPER.size(); i += 1) {
+                assertEquals(msg(name, "wrong wiring at %d", i),
+                             expected.permute(i), rotor.convertForward(i));
+            }
+        }
+        assertTrue(catalog.get("I").rotates());
+        assertTrue(catalog.get("III").hasNotch('V'));
+        assertTrue(catalog.get("B").reflecting());
+        assertFalse(catalog.get("Gamma").rotates());
+        assertNull(catalog.get("VI"));
+    }
+
+    /** Names of the moving rotors described. */
+    private static final String[] MOVING = { "I", "II", "III", "IV", "V" };
+
+    /** Notches of the moving rotors described. */
+    private static final String[] NOTCHES = { "Q", "E", "V", "J", "Z" };
+
+    /** Number of times parse has been called. */
+    private int _parsed;
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkIndex() throws IOException {
+        Path file = write(lines(""), "\n");
+        try {
+            LazyRotorCatalog catalog = catalog(file, 64);
+            assertEquals(0, _parsed);
+            assertFalse(catalog.historical());
+            checkRotors(catalog);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkReflectorContinuation() throws IOException {
+        Path file = write(lines(""), "\n");
+        try {
+            LazyRotorCatalog catalog = catalog(file, 64);
+            Rotor b = catalog.get("B");
+            assertEquals(UPPER.toInt('P'),
+                         b.convertForward(UPPER.toInt('M')));
+            assertEquals(UPPER.toInt('V'),
+                         b.convertForward(UPPER.toInt('T')));
+            assertEquals(1, _parsed);
+            assertEquals("Gamma", catalog.get("Gamma").name());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkCrlfAndTrailingSpace() throws IOException {
+        for (String newline : new String[] { "\r\n", "\r", "\n" }) {
+            for (String trailer : new String[] { "", "  ", " \t" }) {
+                Path file = write(lines(trailer), newline);
+                try {
+                    checkRotors(catalog(file, 64));
+                } finally {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void checkNoFinalNewline() throws IOException {
+        Path file = Files.createTempFile("enigma", ".conf");
+        try {
+            Files.write(file, String.join("\n", lines(""))
+                        .getBytes(StandardCharsets.UTF_8));
+            checkRotors(catalog(file, 64));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkEviction() throws IOException {
+        Path file = write(lines(""), "\n");
+        try {
+            LazyRotorCatalog catalog = catalog(file, 2);
+            Rotor first = catalog.get("I");
+            assertSame(first, catalog.get("I"));
+            catalog.get("II");
+            assertEquals(2, _parsed);
+            catalog.get("III");
+            assertEquals(3, _parsed);
+            assertSame(catalog.get("III"), catalog.get("III"));
+            assertEquals(3, _parsed);
+            Rotor again = catalog.get("I");
+            assertEquals(4, _parsed);
+            assertNotSame(first, again);
+            for (int i = 0; i < UPPER.size(); i += 1) {
+                assertEquals(first.convertForward(i),
+                             again.convertForward(i));
+            }
+            assertTrue(again.hasNotch('Q'));
+            checkRotors(catalog);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkHistorical() throws IOException {
+        List<String> lines = lines("");
+        lines.add(HistoricalCatalog.DIRECTIVE);
+        Path file = write(lines, "\n");
+        try {
+            LazyRotorCatalog catalog = catalog(file, 64);
+            assertTrue(catalog.historical());
+            assertFalse(catalog.names().contains(HistoricalCatalog.DIRECTIVE));
+            catalog.include(new HistoricalCatalog(UPPER));
+            assertNotNull(catalog.get("VI"));
+            assertTrue(catalog.names().contains("VIII"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkLazyMain() throws IOException {
+        Path config = write(lines(" "), "\r\n");
+        Path input = Files.createTempFile("enigma", ".in");
+        Path eager = Files.createTempFile("enigma", ".out");
+        Path lazy = Files.createTempFile("enigma", ".out");
+        try {
+            Files.write(input, Arrays.asList(
+                "* B Beta I II III AAAA (AQ) (EP)",
+                "HELLO WORLD",
+                "* C Gamma IV V I QRSX BCFG",
+                "FROM HIS SHOULDER HIAWATHA",
+                "TOOK THE CAMERA OF ROSEWOOD"));
+            Main.main(config.toString(), input.toString(), eager.toString());
+            Main.main("--lazy", config.toString(), input.toString(),
+                      lazy.toString());
+            assertEquals(3, Files.readAllLines(eager).size());
+            assertEquals(Files.readAllLines(eager),
+                         Files.readAllLines(lazy));
+        } finally {
+            for (Path p : new Path[] { config, input, eager, lazy }) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    @Test
+    public void checkTooLarge() throws IOException {
+        Path file = Files.createTempFile("enigma", ".conf");
+        try {
+            try (RandomAccessFile out =
+                     new RandomAccessFile(file.toFile(), "rw")) {
+                out.setLength(LazyRotorCatalog.MAX_SIZE + 1);
+            }
+            catalog(file, 64);
+            fail("mapped a file larger than MAX_SIZE");
+        } catch (EnigmaException excp) {
+            assertTrue(excp.getMessage().contains("lazily"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,56 @@
+package enigma;
+
+/** Runs one message through many independent machines at once: the
+ *  lanes of a MachineLanes, all stepped together a character at a time.
+ *  best() gives an engine using the incubating Vector API to handle
+ *  several lanes per instruction when that API and the compiled
+ *  VectorLockstepEngine are available (see the vector directory), and a
+ *  plain scalar one otherwise.  Both give exactly the results of
+ *  Machine.convert.
+ *  @author Xiaoru Zhao
+ */
+abstract class LockstepEngine {
+
+    /** Return the fastest engine available here.  Setting the system
+     *  property enigma.lockstep to "scalar" forces the scalar engine. */
+    static LockstepEngine best() {
+        if (!SCALAR.equals(System.getProperty(PROPERTY))) {
+            try {
+                return (LockstepEngine) Class.forName(VECTOR_CLASS)
+                    .getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError excp) {
+                /* Fall through to the scalar engine. */
+            }
+        }
+        return scalar();
+    }
+
+    /** Return an engine that handles one lane at a time. */
+    static LockstepEngine scalar() {
+        return new ScalarLockstepEngine();
+    }
+
+    /** Return a short name describing me. */
+    abstract String name();
+
+    /** Convert the first LEN characters of MSG, given as alphabet
+     *  indices, through every lane of LANES, advancing the lanes as
+     *  Machine.convert would.  The conversion of MSG[T] by lane L is
+     *  stored in OUT[T * LANES.lanes() + L]. */
+    abstract void convert(MachineLanes lanes, int[] msg, int len, int[] out);
+
+    @Override
+    public String toString() {
+        return name();
+    }
+
+    /** System property choosing the engine. */
+    static final String PROPERTY = "enigma.lockstep";
+
+    /** Value of PROPERTY that forces the scalar engine. */
+    static final String SCALAR = "scalar";
+
+    /** Name of the Vector API engine class. */
+    private static final String VECTOR_CLASS = "enigma.VectorLockstepEngine";
+
+}
@@ -0,0 +1,137 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for MachineLanes and the lockstep
+ *  engines.
+ *  @author Xiaoru Zhao
+ */
+public class LockstepEngineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Names of the moving rotors. */
+    private static final String[] MOVING = {
+        "I", "II", "III", "IV", "V", "VI", "VII", "VIII"
+    };
+
+    /** Return a new machine with new naval rotors, set up with the rotors
+     *  named in ORDER, positions SETTING and plugboard PLUGS. */
+    private Machine machine(String[] order, String setting, String plugs) {
+        Machine machine =
+            navalMachine(5, "B", "C", "Beta", "Gamma", "I", "II", "III",
+                         "IV", "V", "VI", "VII", "VIII");
+        machine.insertRotors(order);
+        machine.setRotors(setting);
+        machine.setPlugboard(new Permutation(plugs, UPPER));
+        return machine;
+    }
+
+    /** Return the rotor orders, settings and plugboards of COUNT random
+     *  machines chosen with RANDOM, as {order, setting, plugs}. */
+    private Object[][] randomSettings(Random random, int count) {
+        Object[][] result = new Object[count][];
+        for (int k = 0; k < count; k += 1) {
+            ArrayList<String> moving = new ArrayList<>(Arrays.asList(MOVING));
+            String[] order = new String[5];
+            order[0] = random.nextBoolean() ? "B" : "C";
+            order[1] = random.nextBoolean() ? "Beta" : "Gamma";
+            for (int i = 2; i < 5; i += 1) {
+                order[i] = moving.remove(random.nextInt(moving.size()));
+            }
+            StringBuilder setting = new StringBuilder();
+            for (int i = 0; i < 4; i += 1) {
+                setting.append(UPPER_STRING.charAt(random.nextInt(26)));
+            }
+            String plugs = k % 2 == 0 ? "" : "(AQ) (EP) (ZX)";
+            result[k] = new Object[] { order, setting.toString(), plugs };
+        }
+        return result;
+    }
+
+    /** Check that ENGINE gives the same results as Machine.convert for
+     *  many random machines, across two successive calls. */
+    private void checkAgainstMachine(LockstepEngine engine) {
+        Random random = new Random(61);
+        int count = 37, len = 300, half = 170;
+        Object[][] settings = randomSettings(random, count);
+        MachineLanes lanes = new MachineLanes(5, 26, count);
+        for (Object[] s : settings) {
+            lanes.add(machine((String[]) s[0], (String) s[1], (String) s[2]));
+        }
+        StringBuilder text = new StringBuilder();
+        int[] msg = new int[len];
+        for (int t = 0; t < len; t += 1) {
+            msg[t] = random.nextInt(26);
+            text.append(UPPER.toChar(msg[t]));
+        }
+        int[] first = new int[half * count];
+        int[] second = new int[(len - half) * count];
+        engine.convert(lanes, msg, half, first);
+        engine.convert(lanes, Arrays.copyOfRange(msg, half, len),
+                       len - half, second);
+        for (int lane = 0; lane < count; lane += 1) {
+            Object[] s = settings[lane];
+            String expected =
+                machine((String[]) s[0], (String) s[1], (String) s[2])
+                .convert(text.toString());
+            for (int t = 0; t < len; t += 1) {
+                int got = t < half ? first[t * count + lane]
+                    : second[(t - half) * count + lane];
+                assertEquals(engine + " lane " + lane + " char " + t,
+                             expected.charAt(t), UPPER.toChar(got));
+            }
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkScalarEngine() {
+        checkAgainstMachine(LockstepEngine.scalar());
+    }
+
+    @Test
+    public void checkBestEngine() {
+        checkAgainstMachine(LockstepEngine.best());
+    }
+
+    @Test
+    public void checkSharedTables() {
+        MachineLanes lanes = new MachineLanes(5, 26, 4);
+        String[] order = { "B", "Beta", "I", "II", "III" };
+        lanes.add(machine(order, "AAAA", ""));
+        int poolUse = lanes.pool().length;
+        Machine m = machine(order, "QEVA", "");
+        lanes.add(m);
+        lanes.add(m);
+        assertEquals(poolUse, lanes.pool().length);
+        assertEquals(lanes.base(2)[1], lanes.base(2)[2]);
+        assertEquals(UPPER.toInt('Q'), lanes.position(1, 1));
+        assertEquals(UPPER.toInt('E'), lanes.position(1, 2));
+        assertEquals(3, lanes.lanes());
+        lanes.clear();
+        assertEquals(0, lanes.lanes());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkFull() {
+        MachineLanes lanes = new MachineLanes(5, 26, 1);
+        lanes.addLane();
+        lanes.addLane();
+    }
+
+}
@@ -0,0 +1,59 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.file.Paths;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--lookup=INDEX CONFIG INPUT [OUTPUT]", which reads an
+ *  intercepted message from INPUT (all its lines run together, without
+ *  whitespace), and prints, for each setting of the index INDEX (see
+ *  PrefixCommand) under which it could begin with that index's prefix,
+ *  the settings line and the message decrypted under it.
+ *  @author Xiaoru Zhao
+ */
+class LookupCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE = "--lookup=INDEX CONFIG INPUT [OUTPUT]";
+
+    /** An index search whose options and operands are in OPTIONS. */
+    LookupCommand(Options options) {
+        super(options, USAGE);
+        _indexName = options.value("--lookup");
+        List<String> operands = options.operands();
+        if (operands.size() < 2 || operands.size() > 3) {
+            throw usage();
+        }
+        setConfig(operands.get(0));
+        setStreams(operands.get(1),
+                   operands.size() > 2 ? operands.get(2) : null);
+    }
+
+    @Override
+    void run() {
+        Machine machine = machine();
+        KeyspaceSweep space = space(machine);
+        PrefixIndex index;
+        try {
+            index = PrefixIndex.load(Paths.get(_indexName), space);
+        } catch (IOException excp) {
+            throw error("could not read %s", _indexName);
+        }
+        String text = readAll();
+        for (KeyspaceSweep.Result r : index.find(indices(text))) {
+            String line = r.settingsLine(alphabet(), space.plugboard());
+            setUp(machine, line);
+            output().println(line);
+            printMessageLine(machine.convert(text));
+        }
+        output().flush();
+    }
+
+    /** Name of the index file. */
+    private final String _indexName;
+
+}
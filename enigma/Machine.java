@@ -1,7 +1,12 @@
 package enigma;
 
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 
 import static enigma.EnigmaException.*;
 
@@ -15,15 +20,55 @@ class Machine {
      *  available rotors. */
     Machine(Alphabet alpha, int numRotors, int pawls,
             Collection<Rotor> allRotors) {
+        this(alpha, numRotors, pawls, catalogOf(allRotors));
+    }
+
+    /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
+     *  and 0 <= PAWLS < NUMROTORS pawls, whose rotors come from
+     *  CATALOG. */
+    Machine(Alphabet alpha, int numRotors, int pawls, RotorCatalog catalog) {
         _alphabet = alpha;
         _numRotors = numRotors;
         _pawls = pawls;
-        _allRotors = new ArrayList<Rotor>();
-        for (Rotor x : allRotors) {
-            _allRotors.add(x);
-        }
+        _catalog = catalog;
         _myRotors = new ArrayList<>();
         _plugboard = new Permutation("", alpha);
+        _metrics = EnigmaMetrics.global();
+    }
+
+    /** Return a catalog of the rotors in ALLROTORS.  Where two rotors
+     *  share a name, the first is used. */
+    static RotorCatalog catalogOf(Collection<Rotor> allRotors) {
+        final LinkedHashMap<String, Rotor> byName = new LinkedHashMap<>();
+        for (Rotor x : allRotors) {
+            byName.putIfAbsent(x.name(), x);
+        }
+        return new RotorCatalog() {
+            @Override
+            public Rotor get(String name) {
+                return byName.get(name);
+            }
+
+            @Override
+            public boolean isEmpty() {
+                return byName.isEmpty();
+            }
+
+            @Override
+            public Collection<String> names() {
+                return Collections.unmodifiableSet(byName.keySet());
+            }
+        };
+    }
+
+    /** Report my work to METRICS rather than to EnigmaMetrics.global(). */
+    void setMetrics(EnigmaMetrics metrics) {
+        _metrics = metrics;
+    }
+
+    /** Return the metrics to which I report my work. */
+    EnigmaMetrics metrics() {
+        return _metrics;
     }
 
     /** Return the number of rotor slots I have. */
@@ -36,26 +81,29 @@ class Machine {
         return _pawls;
     }
 
-    /** Set my rotor slots to the rotors named ROTORS from my set of
-     *  available rotors (ROTORS[0] names the reflector).
+    /** Set my rotor slots to copies (see Rotor.copy) of the rotors named
+     *  ROTORS from my set of available rotors (ROTORS[0] names the
+     *  reflector), as it stands now (see RotorCatalog.snapshot), so that
+     *  machines sharing a catalog never change each other's rotors.
      *  Initially, all rotors are set at their 0 setting. */
     void insertRotors(String[] rotors) {
+        ReconfigurationEvent event = new ReconfigurationEvent();
+        event.begin();
         _myRotors.clear();
+        RotorCatalog catalog = _catalog.snapshot();
         for (int i = 0; i < rotors.length; i += 1) {
-            if (_allRotors.isEmpty()) {
+            if (catalog.isEmpty()) {
                 throw new EnigmaException("Empty allRotors.");
-            } else {
-                for (int k = 0; k < _allRotors.size(); k += 1) {
-                    if (_allRotors.get(k).name().equals(rotors[i])) {
-                        _myRotors.add(_allRotors.get(k));
-                        break;
-                    }
-                    if (!_allRotors.get(k).name().equals(
-                            rotors[i]) && k == _allRotors.size() - 1) {
-                        throw new EnigmaException("Rotor not contained.");
-                    }
-                }
             }
+            Rotor rotor = catalog.get(rotors[i]);
+            if (rotor == null) {
+                throw new EnigmaException("Rotor not contained.");
+            }
+            rotor = rotor.copy();
+            if (rotor.ring() != 0) {
+                rotor.setRing(_alphabet, 0);
+            }
+            _myRotors.add(rotor);
         }
         if (!_myRotors.get(0).reflecting()) {
             throw new EnigmaException("First one not reflector.");
@@ -73,22 +121,79 @@ class Machine {
             throw new EnigmaException(
                     "Inserted rotors number not equal to numRotors.");
         }
+        _uses = 0;
+        _metrics.recordReconfiguration();
+        commit(event, "insertRotors", null, rotors.length);
     }
 
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
+        ReconfigurationEvent event = new ReconfigurationEvent();
+        event.begin();
+        int[] posns = setting.codePoints().toArray();
+        if (posns.length < _myRotors.size() - 1) {
+            throw error("wrong number of rotor settings");
+        }
         for (int i = 1; i < _myRotors.size(); i += 1) {
-            _myRotors.get(i).set(setting.charAt(i - 1));
+            Rotor rotor = _myRotors.get(i);
+            rotor.set(_alphabet.toInt(posns[i - 1]));
         }
+        _metrics.recordRotorSetting();
+        commit(event, "setRotors", setting, posns.length);
     }
 
-    /** Set the plugboard to PLUGBOARD. */
+    /** Set the ring settings of my rotors according to RINGS, which must
+     *  be a string of numRotors()-1 characters in my alphabet, the first
+     *  for the leftmost rotor (not counting the reflector).  Ring setting
+     *  A, the first character of my alphabet, is the one rotors have when
+     *  inserted (see Rotor.setRing). */
+    void setRings(String rings) {
+        int[] letters = rings.codePoints().toArray();
+        if (letters.length != _myRotors.size() - 1) {
+            throw error("wrong number of ring settings");
+        }
+        for (int i = 1; i < _myRotors.size(); i += 1) {
+            int ring = _alphabet.indexOf(letters[i - 1]);
+            if (ring < 0) {
+                throw error("bad ring setting: %s", rings);
+            }
+            _myRotors.get(i).setRing(_alphabet, ring);
+        }
+        _uses = 0;
+    }
+
+    /** Set the plugboard to PLUGBOARD, whose cycles must swap disjoint
+     *  pairs of letters. */
     void setPlugboard(Permutation plugboard) {
-        _plugboard.addCycle(plugboard.getCycle());
-        if (_plugboard.size() % 2 != 0) {
-            throw new EnigmaException("Value maps to itself.");
+        ReconfigurationEvent event = new ReconfigurationEvent();
+        event.begin();
+        Permutation result = new Permutation(plugboard.getCycle(), _alphabet);
+        if (!result.getCycle().isEmpty()) {
+            checkSwaps(result);
+        }
+        _plugboard = result;
+        _uses = 0;
+        commit(event, "setPlugboard", plugboard.getCycle(),
+               _plugboard.size());
+    }
+
+    /** Throw unless the cycles of PLUGBOARD swap disjoint pairs of
+     *  letters of my alphabet, mapping none of them to itself. */
+    private void checkSwaps(Permutation plugboard) {
+        int[] forward = plugboard.forwardTable();
+        for (int p = 0; p < forward.length; p += 1) {
+            if (forward[forward[p]] != p) {
+                throw error("plugboard %s is not a set of swaps",
+                            plugboard.getCycle());
+            }
+        }
+        for (int c : plugboard.getCycle().codePoints().toArray()) {
+            int p = _alphabet.indexOf(c);
+            if (p >= 0 && forward[p] == p) {
+                throw new EnigmaException("Value maps to itself.");
+            }
         }
     }
 
@@ -134,14 +239,310 @@ class Machine {
         return result;
     }
 
+    /** Convert MSG[FROM] .. MSG[TO-1], given as alphabet indices, into
+     *  OUT[FROM] .. OUT[TO-1], exactly as convert(int) would one by one,
+     *  updating the state of the rotors accordingly.  OUT may be MSG.
+     *  The conversion is done by the engine given to setEngine, if any,
+     *  and otherwise by the one my EngineSelector chooses. */
+    void convert(int[] msg, int from, int to, int[] out) {
+        if (_engine != null) {
+            _engine.convert(this, msg, from, to, out);
+        } else {
+            selector().convert(this, msg, from, to, out, _uses);
+        }
+        if (_uses < Integer.MAX_VALUE) {
+            _uses += 1;
+        }
+    }
+
+    /** Return the engine that would convert a message of LENGTH
+     *  characters now (though my selector sometimes tries another). */
+    ConversionEngine engine(int length) {
+        if (_engine != null) {
+            return _engine;
+        }
+        return selector().choose(length, _uses);
+    }
+
+    /** Return my engine selector, creating it if need be. */
+    EngineSelector selector() {
+        if (_selector == null) {
+            _selector = new EngineSelector();
+        }
+        return _selector;
+    }
+
+    /** Convert all messages with ENGINE, or choose an engine for each
+     *  message if ENGINE is null. */
+    void setEngine(ConversionEngine engine) {
+        _engine = engine;
+    }
+
+    /** Return an array of at least N entries for converting messages
+     *  in. */
+    private int[] scratch(int n) {
+        if (_scratch.length < n) {
+            _scratch = new int[Math.max(n, 2 * _scratch.length)];
+        }
+        return _scratch;
+    }
+
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String result = "";
-        for (int i = 0; i < msg.length(); i += 1) {
-            result += _alphabet.toChar(convert(_alphabet.toInt(msg.charAt(i))));
+        ConversionEvent event = new ConversionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        StringBuilder result = new StringBuilder(msg.length());
+        int[] buf = scratch(msg.length());
+        int count = 0;
+        for (int i = 0; i < msg.length(); count += 1) {
+            int cp = msg.codePointAt(i);
+            buf[count] = _alphabet.toInt(cp);
+            i += Character.charCount(cp);
+        }
+        convert(buf, 0, count, buf);
+        for (int i = 0; i < count; i += 1) {
+            result.appendCodePoint(_alphabet.toCodePoint(buf[i]));
+        }
+        _metrics.recordMessage(count, System.nanoTime() - start);
+        commit(event, "string", count);
+        return result.toString();
+    }
+
+    /** Convert the bytes of BUF between its position and limit in place,
+     *  updating the state of the rotors accordingly.  Each byte is taken
+     *  to be a character of my alphabet, which must be single-byte; bytes
+     *  outside the alphabet (such as whitespace) are left unchanged and do
+     *  not advance the machine.  Works on heap and direct buffers alike.
+     *  On return, the position of BUF is its limit.  Returns the number
+     *  of bytes converted. */
+    int transform(ByteBuffer buf) {
+        ConversionEvent event = new ConversionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int[] toIndex = _alphabet.byteIndex();
+        byte[] toByte = _alphabet.indexByte();
+        int[] chars = scratch(BLOCK);
+        int count = 0;
+        int pos = buf.position(), lim = buf.limit();
+        for (int from = pos; from < lim; from += BLOCK) {
+            int to = Math.min(lim, from + BLOCK);
+            int n = 0;
+            for (int i = from; i < to; i += 1) {
+                int k = toIndex[buf.get(i) & BYTE_MASK];
+                if (k >= 0) {
+                    chars[n] = k;
+                    n += 1;
+                }
+            }
+            convert(chars, 0, n, chars);
+            n = 0;
+            for (int i = from; i < to; i += 1) {
+                if (toIndex[buf.get(i) & BYTE_MASK] >= 0) {
+                    buf.put(i, toByte[chars[n]]);
+                    n += 1;
+                }
+            }
+            count += n;
+        }
+        buf.position(lim);
+        _metrics.recordMessage(count, System.nanoTime() - start);
+        commit(event, "bytes", count);
+        return count;
+    }
+
+    /** Convert the characters of BUF between its position and limit in
+     *  place, updating the state of the rotors accordingly.  Characters
+     *  outside my alphabet are left unchanged and do not advance the
+     *  machine.  On return, the position of BUF is its limit.  Returns
+     *  the number of characters converted. */
+    int transform(CharBuffer buf) {
+        ConversionEvent event = new ConversionEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int[] chars = scratch(BLOCK);
+        int count = 0;
+        int pos = buf.position(), lim = buf.limit();
+        for (int from = pos; from < lim; from += BLOCK) {
+            int to = Math.min(lim, from + BLOCK);
+            int n = 0;
+            for (int i = from; i < to; i += 1) {
+                int k = _alphabet.indexOf(buf.get(i));
+                if (k >= 0) {
+                    chars[n] = k;
+                    n += 1;
+                }
+            }
+            convert(chars, 0, n, chars);
+            n = 0;
+            for (int i = from; i < to; i += 1) {
+                if (_alphabet.indexOf(buf.get(i)) >= 0) {
+                    buf.put(i, _alphabet.toChar(chars[n]));
+                    n += 1;
+                }
+            }
+            count += n;
+        }
+        buf.position(lim);
+        _metrics.recordMessage(count, System.nanoTime() - start);
+        commit(event, "chars", count);
+        return count;
+    }
+
+    /** Return the names of my rotors, reflector first, separated by
+     *  spaces. */
+    String rotorNames() {
+        StringBuilder result = new StringBuilder();
+        for (Rotor rotor : _myRotors) {
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append(rotor.name());
+        }
+        return result.toString();
+    }
+
+    /** Fill in and commit EVENT, which records a conversion of KIND
+     *  covering CHARACTERS characters, if it is enabled. */
+    private void commit(ConversionEvent event, String kind,
+                        long characters) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = kind;
+            event.rotors = rotorNames();
+            event.characters = characters;
+            event.commit();
+        }
+    }
+
+    /** Fill in and commit EVENT, which records the change OPERATION
+     *  to SETTING of size SIZE, if it is enabled. */
+    private void commit(ReconfigurationEvent event, String operation,
+                        String setting, int size) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.rotors = rotorNames();
+            event.setting = setting;
+            event.size = size;
+            event.commit();
         }
-        return result;
+    }
+
+    /** The state of a machine between conversions: the rotors in its
+     *  slots, their settings, ring settings and notch records, and its
+     *  plugboard.  A
+     *  machine restored to it converts exactly as the machine it was
+     *  taken from would have. */
+    static class State {
+
+        /** The state of a machine with rotors named ROTORS (reflector
+         *  first), with settings SETTINGS, ring settings RINGS and notch
+         *  records NOTCHES, and a plugboard with cycles PLUGBOARD. */
+        State(String[] rotors, int[] settings, int[] rings,
+              boolean[] notches, String plugboard) {
+            if (settings.length != rotors.length
+                || rings.length != rotors.length
+                || notches.length != rotors.length) {
+                throw error("inconsistent machine state");
+            }
+            _rotors = rotors;
+            _settings = settings;
+            _rings = rings;
+            _notches = notches;
+            _plugboard = plugboard;
+        }
+
+        /** Return the names of the rotors, reflector first. */
+        String[] rotors() {
+            return _rotors;
+        }
+
+        /** Return the setting of each rotor, in the range 0 .. alphabet
+         *  size - 1. */
+        int[] settings() {
+            return _settings;
+        }
+
+        /** Return the ring setting of each rotor (see Rotor.setRing), in
+         *  the range 0 .. alphabet size - 1. */
+        int[] rings() {
+            return _rings;
+        }
+
+        /** Return each rotor's record of having been at a notch (see
+         *  Rotor.atNotchBefore). */
+        boolean[] notches() {
+            return _notches;
+        }
+
+        /** Return the cycles of the plugboard. */
+        String plugboard() {
+            return _plugboard;
+        }
+
+        /** The rotor names. */
+        private final String[] _rotors;
+
+        /** The rotor settings. */
+        private final int[] _settings;
+
+        /** The ring settings. */
+        private final int[] _rings;
+
+        /** The notch records. */
+        private final boolean[] _notches;
+
+        /** The plugboard cycles. */
+        private final String _plugboard;
+
+    }
+
+    /** Return my current state, after insertRotors. */
+    State state() {
+        int n = _myRotors.size();
+        String[] rotors = new String[n];
+        int[] settings = new int[n];
+        int[] rings = new int[n];
+        boolean[] notches = new boolean[n];
+        for (int k = 0; k < n; k += 1) {
+            Rotor rotor = _myRotors.get(k);
+            rotors[k] = rotor.name();
+            settings[k] = rotor.permutation().wrap(rotor.setting());
+            rings[k] = rotor.ring();
+            notches[k] = rotor.atNotchBefore();
+        }
+        return new State(rotors, settings, rings, notches,
+                         _plugboard.getCycle());
+    }
+
+    /** Put me in STATE, taken from a machine like me. */
+    void restore(State state) {
+        insertRotors(state.rotors());
+        for (int k = 1; k < _myRotors.size(); k += 1) {
+            Rotor rotor = _myRotors.get(k);
+            rotor.setRing(_alphabet, state.rings()[k]);
+            rotor.set(state.settings()[k]);
+            rotor.updateNotch(state.notches()[k]);
+        }
+        setPlugboard(new Permutation(state.plugboard(), _alphabet));
+    }
+
+    /** Return the rotor in slot K (0 for the reflector), after
+     *  insertRotors. */
+    Rotor rotor(int k) {
+        return _myRotors.get(k);
+    }
+
+    /** Return the catalog my rotors come from. */
+    RotorCatalog catalog() {
+        return _catalog;
+    }
+
+    /** Return my plugboard. */
+    Permutation plugboard() {
+        return _plugboard;
     }
 
     /** Returns the alphabet of machine. */
@@ -154,6 +555,12 @@ class Machine {
         _myRotors.get(numRotor).setA(alphabet);
     }
 
+    /** Mask selecting the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** Number of characters of a buffer converted at a time. */
+    private static final int BLOCK = 1 << 13;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
@@ -163,12 +570,29 @@ class Machine {
     /** Number of my pawls. */
     private int _pawls;
 
-    /** Array of all rotors. */
-    private ArrayList<Rotor> _allRotors;
+    /** All rotors available to me. */
+    private final RotorCatalog _catalog;
 
     /** Array of my rotors. */
     private ArrayList<Rotor> _myRotors;
 
     /** My plugboard. */
     private Permutation _plugboard;
+
+    /** Where I report my work. */
+    private EnigmaMetrics _metrics;
+
+    /** The engine converting all my messages, or null to choose one for
+     *  each. */
+    private ConversionEngine _engine;
+
+    /** Chooses my engines, once needed. */
+    private EngineSelector _selector;
+
+    /** Number of conversions made since my rotors or plugboard last
+     *  changed. */
+    private int _uses;
+
+    /** Space in which messages are converted. */
+    private int[] _scratch = new int[0];
 }
@@ -0,0 +1,278 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** The machine described by a configuration file: its alphabet, the
+ *  number of rotor slots and pawls, and the rotor descriptions (see
+ *  Main).  A configuration file may also include all the historical
+ *  rotors (see HistoricalCatalog) with the word @historical among its
+ *  rotor descriptions; the rotors it describes itself take precedence.
+ *  With no file, the machine is a naval one with 5 slots, 3 pawls, and
+ *  the historical rotors built in.
+ *
+ *  Two options change how the rotors are read.  "--lazy" makes them be
+ *  parsed only when a settings line first uses them (see
+ *  LazyRotorCatalog); the configuration file may then be at most 2 GiB.
+ *  "--watch" makes the file be read again whenever it changes (see
+ *  CatalogRegistry), so that settings lines after the change get the
+ *  rotors it now describes; it must keep the same alphabet, rotor slots
+ *  and pawls.
+ *  @author Xiaoru Zhao
+ */
+class MachineConfig {
+
+    /** The configuration in the file NAME, or the built-in one if NAME
+     *  is null, read as OPTIONS --lazy and --watch say. */
+    MachineConfig(String name, Options options) {
+        _name = name;
+        _lazy = options.flag("--lazy");
+        _watch = options.flag("--watch");
+        if (_watch && (_lazy || name == null)) {
+            throw error("--watch needs CONFIG, and not --lazy");
+        }
+        if (name != null) {
+            try {
+                _config = new Scanner(new File(name), Command.CHARSET);
+            } catch (IOException excp) {
+                throw error("could not open %s", name);
+            }
+        }
+    }
+
+    /** Return the name of my file, or null if built in. */
+    String name() {
+        return _name;
+    }
+
+    /** Return the alphabet of my machine, once machine() has been
+     *  called. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return a new machine as my file describes. */
+    Machine machine() {
+        if (_config == null) {
+            _alphabet = new Alphabet(HistoricalCatalog.LETTERS);
+            return new Machine(_alphabet, HistoricalCatalog.NUM_ROTORS,
+                               HistoricalCatalog.NUM_PAWLS,
+                               new HistoricalCatalog(_alphabet));
+        }
+        ConfigEvent event = new ConfigEvent();
+        event.begin();
+        Machine result;
+        int rotors = -1;
+        try {
+            _alphabet = new Alphabet(_config.next());
+            int numRotors = _config.nextInt();
+            int numPawls = _config.nextInt();
+            if (_lazy) {
+                result = new Machine(_alphabet, numRotors, numPawls,
+                                     lazyCatalog());
+            } else if (_watch) {
+                _registry =
+                    new CatalogRegistry(Paths.get(_name),
+                                        file -> reloadCatalog(file,
+                                                              numRotors,
+                                                              numPawls));
+                _registry.watch(WATCH_PERIOD, excp ->
+                    System.err.printf("Error: %s%n", excp.getMessage()));
+                result = new Machine(_alphabet, numRotors, numPawls,
+                                     _registry);
+            } else {
+                Collection<Rotor> allRotors = new ArrayList<>();
+                rotors = readRotors(_config, allRotors);
+                result = new Machine(_alphabet, numRotors, numPawls,
+                                     allRotors);
+            }
+        } catch (NoSuchElementException excp) {
+            throw error("configuration file truncated");
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = _name;
+            event.size = new File(_name).length();
+            event.alphabetSize = _alphabet.size();
+            event.rotors = rotors;
+            event.commit();
+        }
+        return result;
+    }
+
+    /** Close my file, and stop watching it, if I am. */
+    void close() {
+        if (_config != null) {
+            _config.close();
+        }
+        if (_registry != null) {
+            _registry.close();
+        }
+    }
+
+    /** Return true iff alphabets A and B have the same characters in the
+     *  same order. */
+    static boolean sameAlphabet(Alphabet a, Alphabet b) {
+        boolean result = a.size() == b.size();
+        for (int i = 0; result && i < a.size(); i += 1) {
+            result = a.toCodePoint(i) == b.toCodePoint(i);
+        }
+        return result;
+    }
+
+    /** Add to ALLROTORS the rotors described in the rest of CONFIG and
+     *  then, if it includes them with HistoricalCatalog.DIRECTIVE, the
+     *  historical rotors.  Return the number of rotors CONFIG describes
+     *  itself. */
+    private int readRotors(Scanner config, Collection<Rotor> allRotors) {
+        int start = allRotors.size();
+        boolean historical = false;
+        while (config.hasNext()) {
+            if (config.hasNext(HistoricalCatalog.DIRECTIVE)) {
+                config.next();
+                historical = true;
+            } else {
+                allRotors.add(readRotor(config));
+            }
+        }
+        int result = allRotors.size() - start;
+        if (historical) {
+            RotorCatalog builtIn = new HistoricalCatalog(_alphabet);
+            for (String name : builtIn.names()) {
+                allRotors.add(builtIn.get(name));
+            }
+        }
+        return result;
+    }
+
+    /** Return a catalog of the rotors of the configuration file FILE,
+     *  read again for a CatalogRegistry.  FILE must still describe
+     *  machines over _alphabet with NUMROTORS slots and NUMPAWLS
+     *  pawls. */
+    private RotorCatalog reloadCatalog(Path file, int numRotors,
+                                       int numPawls) {
+        try (Scanner config = new Scanner(file, Command.CHARSET)) {
+            Alphabet alphabet = new Alphabet(config.next());
+            if (!sameAlphabet(alphabet, _alphabet)
+                || config.nextInt() != numRotors
+                || config.nextInt() != numPawls) {
+                throw error("%s changed its alphabet, rotor slots or pawls",
+                            file);
+            }
+            Collection<Rotor> allRotors = new ArrayList<>();
+            readRotors(config, allRotors);
+            return Machine.catalogOf(allRotors);
+        } catch (IOException excp) {
+            throw error("could not read %s", file);
+        } catch (NoSuchElementException excp) {
+            throw error("configuration file %s truncated", file);
+        }
+    }
+
+    /** Return a catalog that indexes the rotors of my file and parses
+     *  each only when it is first used. */
+    private RotorCatalog lazyCatalog() {
+        LazyRotorCatalog result;
+        try {
+            result = new LazyRotorCatalog(Paths.get(_name), this::readRotor,
+                                          LAZY_CACHE_SIZE);
+        } catch (IOException excp) {
+            throw error("could not open %s", _name);
+        }
+        if (result.historical()) {
+            result.include(new HistoricalCatalog(_alphabet));
+        }
+        return result;
+    }
+
+    /** Return a rotor, reading its description from CONFIG. */
+    private Rotor readRotor(Scanner config) {
+        RotorParseEvent event = new RotorParseEvent();
+        event.begin();
+        Rotor result = parseRotor(config);
+        event.end();
+        if (event.shouldCommit() && result != null) {
+            event.rotor = result.name();
+            if (result.rotates()) {
+                event.type = "M";
+            } else {
+                event.type = result.reflecting() ? "R" : "N";
+            }
+            event.size = result.permutation().getCycle().length();
+            event.commit();
+        }
+        return result;
+    }
+
+    /** Return a rotor, parsing its description from CONFIG. */
+    private Rotor parseRotor(Scanner config) {
+        try {
+            String name = config.next();
+            String type = config.next();
+            String perm = config.nextLine();
+            Scanner checkperm = new Scanner(perm);
+            while (checkperm.hasNext("\\(\\S+\\)")) {
+                checkperm.next();
+            }
+            if (checkperm.hasNext()) {
+                throw new EnigmaException("no ) at the end.");
+            }
+            if (type.length() > 1) {
+                type = type.substring(1);
+                return new MovingRotor(name,
+                        new Permutation(perm, _alphabet), type);
+            } else if (type.charAt(0) == 'N') {
+                return new FixedRotor(name, new Permutation(perm, _alphabet));
+            } else if (type.charAt(0) == 'R') {
+                if (config.hasNext("\\(\\S+")) {
+                    return new Reflector(name, new Permutation(perm
+                            + config.nextLine(), _alphabet));
+                } else {
+                    return new Reflector(
+                            name, new Permutation(perm, _alphabet));
+                }
+            }
+            return null;
+        } catch (NoSuchElementException excp) {
+            throw error("bad rotor description");
+        }
+    }
+
+    /** Number of parsed rotors kept by a lazily loaded catalog. */
+    private static final int LAZY_CACHE_SIZE = 64;
+
+    /** Milliseconds between checks for changes to a watched
+     *  configuration file. */
+    private static final long WATCH_PERIOD = 1000;
+
+    /** Name of the configuration file, or null. */
+    private final String _name;
+
+    /** True iff rotors are parsed only when first used. */
+    private final boolean _lazy;
+
+    /** True iff the configuration file is read again when it
+     *  changes. */
+    private final boolean _watch;
+
+    /** Source of machine configuration, or null. */
+    private Scanner _config;
+
+    /** Alphabet of the machine. */
+    private Alphabet _alphabet;
+
+    /** The catalog following changes to the configuration file, or
+     *  null. */
+    private CatalogRegistry _registry;
+
+}
@@ -0,0 +1,316 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import static enigma.EnigmaException.*;
+
+/** The states of many independent Enigma machines of the same shape,
+ *  laid out for a LockstepEngine to step together.  Each machine is a
+ *  lane.  The wiring of every rotor and plugboard used by any lane is
+ *  compiled once into one shared table, and each lane records, for each
+ *  rotor slot, where its rotor's tables start, its position, and its
+ *  stepping state.  Lanes behave exactly as the Machines they were taken
+ *  from, including the way Machine.convert steps its rotors.
+ *  @author Xiaoru Zhao
+ */
+class MachineLanes {
+
+    /** Room for CAPACITY lanes of machines with NUMROTORS rotor slots
+     *  over an alphabet of SIZE characters. */
+    MachineLanes(int numRotors, int size, int capacity) {
+        if (numRotors < 2 || size < 1 || capacity < 1) {
+            throw error("bad shape for machine lanes");
+        }
+        _numRotors = numRotors;
+        _size = size;
+        _capacity = capacity;
+        _base = new int[numRotors][capacity];
+        _posn = new int[numRotors][capacity];
+        _before = new int[numRotors][capacity];
+        _rotates = new int[numRotors][capacity];
+        _plug = new int[capacity];
+        _pool = new int[INITIAL_POOL];
+        _offsets = new IdentityHashMap<>();
+        _ringOffsets = new IdentityHashMap<>();
+    }
+
+    /** Return the number of rotor slots of each lane. */
+    int numRotors() {
+        return _numRotors;
+    }
+
+    /** Return the number of characters in the lanes' alphabet. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the largest number of lanes I can hold. */
+    int capacity() {
+        return _capacity;
+    }
+
+    /** Return the number of lanes in use. */
+    int lanes() {
+        return _lanes;
+    }
+
+    /** Remove all lanes, keeping the compiled tables. */
+    void clear() {
+        _lanes = 0;
+    }
+
+    /** Add a lane in the current state of MACHINE, which must have its
+     *  rotors inserted, and return its number. */
+    int add(Machine machine) {
+        int lane = addLane();
+        set(lane, machine);
+        return lane;
+    }
+
+    /** Add a lane with no rotors yet, and return its number.  All its
+     *  slots must be filled by setRotor and its plugboard set by
+     *  setPlugboard before it is used. */
+    int addLane() {
+        if (_lanes == _capacity) {
+            throw error("no room for another lane");
+        }
+        _lanes += 1;
+        return _lanes - 1;
+    }
+
+    /** Make LANE match the current state of MACHINE, which must have its
+     *  rotors inserted. */
+    void set(int lane, Machine machine) {
+        if (machine.numRotors() != _numRotors
+            || machine.getAlphabet().size() != _size) {
+            throw error("machine does not fit these lanes");
+        }
+        for (int k = 0; k < _numRotors; k += 1) {
+            Rotor rotor = machine.rotor(k);
+            setRotor(lane, k, rotor, rotor.setting(),
+                     rotor.atNotchBefore());
+        }
+        setPlugboard(lane, machine.plugboard());
+    }
+
+    /** Put ROTOR, in its current alphabet, into slot K of LANE at
+     *  position POSN, with the notch flag that Machine.convert keeps for
+     *  it set to BEFORE. */
+    void setRotor(int lane, int k, Rotor rotor, int posn, boolean before) {
+        setRotor(lane, k, tables(rotor), rotor.rotates(), posn, before);
+    }
+
+    /** Put the rotor whose tables are at offset TABLES of pool() into
+     *  slot K of LANE at position POSN, with the notch flag BEFORE.  The
+     *  rotor moves iff ROTATES. */
+    void setRotor(int lane, int k, int tables, boolean rotates, int posn,
+                  boolean before) {
+        checkLane(lane);
+        _base[k][lane] = tables;
+        _posn[k][lane] = Math.floorMod(posn, _size);
+        _before[k][lane] = before ? 1 : 0;
+        _rotates[k][lane] = rotates ? 1 : 0;
+    }
+
+    /** Set the position of the rotor in slot K of LANE to POSN. */
+    void setPosition(int lane, int k, int posn) {
+        checkLane(lane);
+        _posn[k][lane] = Math.floorMod(posn, _size);
+    }
+
+    /** Return the position of the rotor in slot K of LANE. */
+    int position(int lane, int k) {
+        checkLane(lane);
+        return _posn[k][lane];
+    }
+
+    /** Set the notch flag of the rotor in slot K of LANE to BEFORE. */
+    void setBefore(int lane, int k, boolean before) {
+        checkLane(lane);
+        _before[k][lane] = before ? 1 : 0;
+    }
+
+    /** Set the plugboard of LANE to PLUGBOARD. */
+    void setPlugboard(int lane, Permutation plugboard) {
+        setPlugboard(lane, tables(plugboard));
+    }
+
+    /** Set the plugboard of LANE to the one whose table is at offset
+     *  TABLES of pool(). */
+    void setPlugboard(int lane, int tables) {
+        checkLane(lane);
+        _plug[lane] = tables;
+    }
+
+    /** Return the offset in pool() of the tables of ROTOR in its current
+     *  alphabet: its forward mapping, then its inverse, then 1 at each
+     *  notch and 0 elsewhere, each of size() entries. */
+    int tables(Rotor rotor) {
+        int[] forward = rotor.permutation().forwardTable();
+        Integer offset = _offsets.get(forward);
+        if (offset == null) {
+            checkSize(forward);
+            int[] inverse = rotor.permutation().inverseTable();
+            offset = allocate(TABLES * _size);
+            System.arraycopy(forward, 0, _pool, offset, _size);
+            System.arraycopy(inverse, 0, _pool, offset + _size, _size);
+            for (int i = 0; i < _size; i += 1) {
+                _pool[offset + 2 * _size + i] = rotor.notchAt(i) ? 1 : 0;
+            }
+            _offsets.put(forward, offset);
+        }
+        return offset;
+    }
+
+    /** Return the offset in pool() of the tables of ROTOR as a freshly
+     *  configured machine over ALPHABET would use it with ring setting
+     *  RING (see Rotor.setRing): that is, with its wiring over ALPHABET
+     *  turned RING places and its notches at their letters of ALPHABET,
+     *  whatever alphabet ROTOR itself now has.  ALPHABET must be the same
+     *  on every call. */
+    int tables(Rotor rotor, Alphabet alphabet, int ring) {
+        int[] offsets = _ringOffsets.get(rotor);
+        if (offsets == null) {
+            offsets = new int[_size];
+            Arrays.fill(offsets, -1);
+            _ringOffsets.put(rotor, offsets);
+        }
+        if (offsets[ring] < 0) {
+            Permutation perm =
+                new Permutation(rotor.permutation().getCycle(), alphabet);
+            int[] forward = perm.forwardTable();
+            checkSize(forward);
+            int[] inverse = perm.inverseTable();
+            int offset = allocate(TABLES * _size);
+            for (int i = 0; i < _size; i += 1) {
+                int j = Math.floorMod(i - ring, _size);
+                _pool[offset + i] = (forward[j] + ring) % _size;
+                _pool[offset + _size + i] = (inverse[j] + ring) % _size;
+                _pool[offset + 2 * _size + i] =
+                    rotor.hasNotch(alphabet.toCodePoint(i)) ? 1 : 0;
+            }
+            offsets[ring] = offset;
+        }
+        return offsets[ring];
+    }
+
+    /** Return the offset in pool() of the table of PLUGBOARD. */
+    int tables(Permutation plugboard) {
+        int[] forward = plugboard.forwardTable();
+        Integer offset = _offsets.get(forward);
+        if (offset == null) {
+            checkSize(forward);
+            offset = allocate(_size);
+            System.arraycopy(forward, 0, _pool, offset, _size);
+            _offsets.put(forward, offset);
+        }
+        return offset;
+    }
+
+    /** Return the table holding all compiled rotors and plugboards.  Not
+     *  to be modified. */
+    int[] pool() {
+        return _pool;
+    }
+
+    /** Return the offsets of the tables of the rotor in each lane's slot
+     *  K (see tables(Rotor)).  To be modified only through setRotor. */
+    int[] base(int k) {
+        return _base[k];
+    }
+
+    /** Return the positions of the rotor in each lane's slot K. */
+    int[] positions(int k) {
+        return _posn[k];
+    }
+
+    /** Return the notch flags (1 or 0) of the rotor in each lane's slot
+     *  K. */
+    int[] before(int k) {
+        return _before[k];
+    }
+
+    /** Return 1 for each lane whose rotor in slot K moves, else 0. */
+    int[] rotates(int k) {
+        return _rotates[k];
+    }
+
+    /** Return the offset of each lane's plugboard table in pool(). */
+    int[] plugboards() {
+        return _plug;
+    }
+
+    /** Check that LANE is in use. */
+    private void checkLane(int lane) {
+        if (lane < 0 || lane >= _lanes) {
+            throw error("no lane %d", lane);
+        }
+    }
+
+    /** Check that TABLE is a table over an alphabet of my size. */
+    private void checkSize(int[] table) {
+        if (table.length != _size) {
+            throw error("wiring does not fit these lanes");
+        }
+    }
+
+    /** Return the offset of N newly reserved entries of _pool. */
+    private int allocate(int n) {
+        if (_poolSize + n > _pool.length) {
+            _pool = Arrays.copyOf(_pool,
+                                  Math.max(2 * _pool.length, _poolSize + n));
+        }
+        _poolSize += n;
+        return _poolSize - n;
+    }
+
+    /** Number of tables compiled for each rotor. */
+    private static final int TABLES = 3;
+
+    /** Initial size of _pool. */
+    private static final int INITIAL_POOL = 1024;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Largest number of lanes. */
+    private final int _capacity;
+
+    /** Number of lanes in use. */
+    private int _lanes;
+
+    /** Offset in _pool of the tables of the rotor in slot K of lane L, at
+     *  [K][L]. */
+    private final int[][] _base;
+
+    /** Position of the rotor in slot K of lane L, at [K][L]. */
+    private final int[][] _posn;
+
+    /** Notch flag (see Rotor.atNotchBefore) of the rotor in slot K of
+     *  lane L, at [K][L]. */
+    private final int[][] _before;
+
+    /** 1 iff the rotor in slot K of lane L moves, at [K][L]. */
+    private final int[][] _rotates;
+
+    /** Offset in _pool of each lane's plugboard table. */
+    private final int[] _plug;
+
+    /** Compiled tables of all rotors and plugboards. */
+    private int[] _pool;
+
+    /** Number of entries of _pool in use. */
+    private int _poolSize;
+
+    /** Offset in _pool of the tables compiled from each forward table. */
+    private final IdentityHashMap<int[], Integer> _offsets;
+
+    /** Offsets in _pool of the tables compiled for each rotor by ring
+     *  setting, or -1 where not yet compiled. */
+    private final IdentityHashMap<Rotor, int[]> _ringOffsets;
+
+}
@@ -0,0 +1,187 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Machine class.
+ *  @author Xiaoru Zhao
+ */
+public class MachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a machine with the naval rotors, set up as
+     *  "* B Beta I II III AAAA". */
+    private Machine navalMachine() {
+        Machine machine =
+            TestUtils.navalMachine(5, "B", "Beta", "I", "II", "III");
+        machine.insertRotors(new String[] { "B", "Beta", "I", "II", "III" });
+        machine.setRotors("AAAA");
+        return machine;
+    }
+
+    /** Return a machine with the historical rotors and NUMROTORS slots,
+     *  with rotors ORDER at positions SETTING and ring settings RINGS. */
+    private Machine ringMachine(int numRotors, String[] order,
+                                String setting, String rings) {
+        Machine machine =
+            new Machine(UPPER, numRotors, 3, new HistoricalCatalog(UPPER));
+        machine.insertRotors(order);
+        machine.setRotors(setting);
+        machine.setRings(rings);
+        return machine;
+    }
+
+    /** Return a machine with the rotors of oddRotors, over an alphabet
+     *  of odd size, set up as "* R I II AA", with plugboard PLUGS. */
+    private Machine oddMachine(String plugs) {
+        Machine machine = new Machine(ODD, 3, 2, oddRotors());
+        machine.insertRotors(new String[] { "R", "I", "II" });
+        machine.setRotors("AA");
+        machine.setPlugboard(new Permutation(plugs, ODD));
+        return machine;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkOddAlphabetPlugboard() {
+        String msg = "HELLOWORLDYEARLY";
+        Permutation swaps = new Permutation("(AY) (HE)", ODD);
+        StringBuilder swapped = new StringBuilder();
+        for (char c : msg.toCharArray()) {
+            swapped.append(swaps.permute(c));
+        }
+        String plain = oddMachine("").convert(swapped.toString());
+        StringBuilder expected = new StringBuilder();
+        for (char c : plain.toCharArray()) {
+            expected.append(swaps.permute(c));
+        }
+        assertEquals(msg.length(), plain.length());
+        assertEquals(expected.toString(),
+                     oddMachine("(AY) (HE)").convert(msg));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkPlugboardLongCycle() {
+        oddMachine("(ABC)");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkPlugboardFixedPoint() {
+        oddMachine("(AB) (C)");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkPlugboardOverlap() {
+        oddMachine("(AB) (AC)");
+    }
+
+    @Test
+    public void checkRingSettings() {
+        String[] order = { "B", "Beta", "III", "IV", "I" };
+        Machine machine = ringMachine(5, order, "AXLE", "BCFG");
+        assertEquals("VUSZKMAGXKOSXCGZVDGYCQI",
+                     machine.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void checkRingsKeepNotches() {
+        String[] order = { "B", "I", "II", "III" };
+        Machine machine = ringMachine(4, order, "ADU", "XYZ");
+        assertEquals("MOVGPILMSQELYXGEIHPLHMVTSNIORQ",
+                     machine.convert("AAAAAAAAAAAAAAAAAAAAAAAAAAAAAA"));
+    }
+
+    @Test
+    public void checkRingsNotKept() {
+        String[] order = { "B", "Beta", "III", "IV", "I" };
+        Machine machine = ringMachine(5, order, "AXLE", "BCFG");
+        machine.convert("FROMHISSHOULDERHIAWATHA");
+        machine.insertRotors(order);
+        machine.setRotors("AXLE");
+        assertEquals(ringMachine(5, order, "AXLE", "AAAA")
+                     .convert("FROMHISSHOULDERHIAWATHA"),
+                     machine.convert("FROMHISSHOULDERHIAWATHA"));
+    }
+
+    @Test
+    public void checkTransformHeapBytes() {
+        String expected = navalMachine().convert("HELLOWORLD");
+        ByteBuffer buf = ByteBuffer.wrap(
+                "HELLO WORLD\n".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals(10, navalMachine().transform(buf));
+        assertEquals(buf.limit(), buf.position());
+        String result = new String(buf.array(), StandardCharsets.ISO_8859_1);
+        assertEquals(expected.substring(0, 5) + " " + expected.substring(5)
+                     + "\n", result);
+    }
+
+    @Test
+    public void checkTransformDirectBytes() {
+        byte[] msg = "HELLO WORLD".getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer heap = ByteBuffer.wrap(msg.clone());
+        ByteBuffer direct = ByteBuffer.allocateDirect(msg.length);
+        direct.put(msg).flip();
+        navalMachine().transform(heap);
+        navalMachine().transform(direct);
+        for (int i = 0; i < msg.length; i += 1) {
+            assertEquals(heap.get(i), direct.get(i));
+        }
+    }
+
+    @Test
+    public void checkTransformChars() {
+        String expected = navalMachine().convert("HELLOWORLD");
+        CharBuffer buf = CharBuffer.wrap("HELLOWORLD".toCharArray());
+        assertEquals(10, navalMachine().transform(buf));
+        assertEquals(expected, new String(buf.array()));
+    }
+
+    @Test
+    public void checkFlightEvents() throws IOException {
+        Path file = Files.createTempFile("enigma", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(ConversionEvent.class);
+            recording.enable(ReconfigurationEvent.class);
+            recording.start();
+            navalMachine().convert("HELLOWORLD");
+            recording.stop();
+            recording.dump(file);
+        }
+        int conversions = 0, reconfigurations = 0;
+        for (RecordedEvent e : RecordingFile.readAllEvents(file)) {
+            String name = e.getEventType().getName();
+            if (name.equals("enigma.Conversion")) {
+                conversions += 1;
+                assertEquals(10, e.getLong("characters"));
+                assertEquals("B Beta I II III", e.getString("rotors"));
+            } else if (name.equals("enigma.Reconfiguration")) {
+                reconfigurations += 1;
+            }
+        }
+        Files.delete(file);
+        assertEquals(1, conversions);
+        assertEquals(2, reconfigurations);
+    }
+
+}
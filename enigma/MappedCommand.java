@@ -0,0 +1,104 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--mmap [--group] CONFIG SETTINGS INPUT OUTPUT", which
+ *  encrypts the whole of file INPUT under the single settings line
+ *  SETTINGS into file OUTPUT through memory-mapped files (see
+ *  MappedFileCipher), reporting the sustained throughput on the standard
+ *  error.  With --group, each line is converted and printed in groups of
+ *  five as for ordinary messages; otherwise every byte outside the
+ *  alphabet is copied unchanged.
+ *  @author Xiaoru Zhao
+ */
+class MappedCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE =
+        "--mmap [--group] CONFIG SETTINGS INPUT OUTPUT";
+
+    /** A memory-mapped encryption whose options and operands are in
+     *  OPTIONS. */
+    MappedCommand(Options options) {
+        this(options, USAGE, options.flag("--group"));
+        options.flag("--mmap");
+        setConfig(options.operands().get(0));
+    }
+
+    /** A file-to-file encryption whose options and operands, CONFIG
+     *  SETTINGS INPUT OUTPUT, are in OPTIONS, and whose command line is
+     *  USAGE, grouping its output iff GROUP.  Subclasses read CONFIG
+     *  themselves. */
+    MappedCommand(Options options, String usage, boolean group) {
+        super(options, usage);
+        List<String> operands = options.operands();
+        if (operands.size() != 4) {
+            throw usage();
+        }
+        _settings = operands.get(1);
+        _inputName = operands.get(2);
+        _outputName = operands.get(3);
+        _group = group;
+    }
+
+    @Override
+    void run() {
+        Machine machine = machine();
+        setUp(machine, settingsLine(_settings));
+        encrypt(new MappedFileCipher(machine, _group));
+    }
+
+    /** Return the settings line used. */
+    String settings() {
+        return _settings;
+    }
+
+    /** Encrypt my input file into my output file with CIPHER, reporting
+     *  the sustained throughput on the standard error. */
+    void encrypt(MappedFileCipher cipher) {
+        long start = System.nanoTime();
+        long size;
+        try {
+            size = cipher.encrypt(Paths.get(_inputName),
+                                  Paths.get(_outputName));
+        } catch (IOException excp) {
+            throw error("could not encrypt %s: %s", _inputName,
+                        excp.getMessage());
+        }
+        double secs = Math.max(System.nanoTime() - start, 1) / NANOS;
+        metrics().recordBytesIn(size);
+        try {
+            metrics().recordBytesOut(Files.size(Paths.get(_outputName)));
+        } catch (IOException excp) {
+            throw error("could not read %s", _outputName);
+        }
+        System.err.printf("%d bytes in %.3f s (%.1f MB/s)%n",
+                          size, secs, size / secs / MEGABYTE);
+    }
+
+    /** Nanoseconds per second. */
+    private static final double NANOS = 1e9;
+
+    /** Bytes per megabyte. */
+    private static final double MEGABYTE = 1 << 20;
+
+    /** True iff output is printed in groups of five. */
+    private final boolean _group;
+
+    /** Settings line used. */
+    private final String _settings;
+
+    /** Name of the input file. */
+    private final String _inputName;
+
+    /** Name of the output file. */
+    private final String _outputName;
+
+}
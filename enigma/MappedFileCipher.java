@@ -0,0 +1,238 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import static enigma.EnigmaException.*;
+
+/** Encrypts a whole file under one machine setting by mapping the input
+ *  and a pre-sized output file into memory, one window at a time, so that
+ *  files of any size are handled without Scanner or PrintStream.
+ *  @author Xiaoru Zhao
+ */
+class MappedFileCipher {
+
+    /** A cipher that runs files through MACHINE, which must already be
+     *  set up and have a single-byte alphabet.  If GROUP, each input line
+     *  is stripped of whitespace and printed in groups of five as by
+     *  Main; otherwise, bytes outside the alphabet are copied unchanged. */
+    MappedFileCipher(Machine machine, boolean group) {
+        this(machine, group, DEFAULT_WINDOW);
+    }
+
+    /** As for MappedFileCipher(MACHINE, GROUP), but mapping at most WINDOW
+     *  bytes of each file at a time. */
+    MappedFileCipher(Machine machine, boolean group, int window) {
+        _machine = machine;
+        _bytes = null;
+        _group = group;
+        _window = window;
+        _toIndex = machine.getAlphabet().byteIndex();
+        _toByte = machine.getAlphabet().indexByte();
+        _newline = System.lineSeparator().getBytes();
+    }
+
+    /** A cipher that runs whole files, byte for byte, through MACHINE,
+     *  which must already be set up. */
+    MappedFileCipher(ByteMachine machine) {
+        _machine = null;
+        _bytes = machine;
+        _group = false;
+        _window = DEFAULT_WINDOW;
+        _toIndex = null;
+        _toByte = null;
+        _newline = null;
+    }
+
+    /** Encrypt the file INPUT into the file OUTPUT, which is created or
+     *  truncated as needed.  Returns the number of input bytes. */
+    long encrypt(Path input, Path output) throws IOException {
+        ConversionEvent event = new ConversionEvent();
+        event.begin();
+        long size;
+        try (FileChannel in = FileChannel.open(input, READ);
+             FileChannel out = FileChannel.open(output, READ, WRITE,
+                                                CREATE, TRUNCATE_EXISTING)) {
+            size = in.size();
+            if (_group) {
+                encryptGrouped(in, out, size);
+            } else {
+                encryptBytes(in, out, size);
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.kind = "file";
+            event.rotors = _machine == null ? null : _machine.rotorNames();
+            event.characters = size;
+            event.commit();
+        }
+        return size;
+    }
+
+    /** Copy SIZE bytes of IN into OUT window by window, converting the
+     *  output mapping in place. */
+    private void encryptBytes(FileChannel in, FileChannel out, long size)
+        throws IOException {
+        for (long pos = 0; pos < size; pos += _window) {
+            long len = Math.min(_window, size - pos);
+            MappedByteBuffer src = in.map(READ_ONLY, pos, len);
+            MappedByteBuffer dst = out.map(READ_WRITE, pos, len);
+            dst.put(src);
+            dst.flip();
+            if (_bytes != null) {
+                _bytes.transform(dst);
+            } else {
+                _machine.transform(dst);
+            }
+        }
+    }
+
+    /** Convert SIZE bytes of IN line by line into OUT, in groups of
+     *  five.  The output is pre-sized by a first counting pass. */
+    private void encryptGrouped(FileChannel in, FileChannel out, long size)
+        throws IOException {
+        _out = out;
+        _outPos = 0;
+        _outBuf = null;
+        long outSize = groupedSize(in, size);
+        _outEnd = outSize;
+        int column = 0;
+        boolean open = false;
+        for (long pos = 0; pos < size; pos += _window) {
+            MappedByteBuffer src =
+                in.map(READ_ONLY, pos, Math.min(_window, size - pos));
+            while (src.hasRemaining()) {
+                int b = src.get() & BYTE_MASK;
+                if (b == '\n') {
+                    putNewline();
+                    column = 0;
+                    open = false;
+                    continue;
+                }
+                open = true;
+                int k = _toIndex[b];
+                if (k >= 0) {
+                    put(_toByte[_machine.convert(k)]);
+                    column += 1;
+                    if (column % GROUP_SIZE == 0) {
+                        put((byte) ' ');
+                    }
+                } else if (!Character.isWhitespace(b)) {
+                    throw error("character '%c' not in alphabet", (char) b);
+                }
+            }
+        }
+        if (open) {
+            putNewline();
+        }
+        if (_outBuf != null) {
+            _outBuf.force();
+        }
+        _out = null;
+        _outBuf = null;
+    }
+
+    /** Return the number of bytes that encryptGrouped will write for
+     *  the SIZE bytes of IN. */
+    private long groupedSize(FileChannel in, long size) throws IOException {
+        long total = 0;
+        long symbols = 0;
+        boolean open = false;
+        for (long pos = 0; pos < size; pos += _window) {
+            ByteBuffer src =
+                in.map(READ_ONLY, pos, Math.min(_window, size - pos));
+            while (src.hasRemaining()) {
+                int b = src.get() & BYTE_MASK;
+                if (b == '\n') {
+                    total += symbols + symbols / GROUP_SIZE + _newline.length;
+                    symbols = 0;
+                    open = false;
+                } else {
+                    open = true;
+                    if (_toIndex[b] >= 0) {
+                        symbols += 1;
+                    }
+                }
+            }
+        }
+        if (open) {
+            total += symbols + symbols / GROUP_SIZE + _newline.length;
+        }
+        return total;
+    }
+
+    /** Write the line separator to the output. */
+    private void putNewline() throws IOException {
+        for (byte b : _newline) {
+            put(b);
+        }
+    }
+
+    /** Write B to the output, mapping its next window when needed. */
+    private void put(byte b) throws IOException {
+        if (_outBuf == null || !_outBuf.hasRemaining()) {
+            if (_outBuf != null) {
+                _outBuf.force();
+            }
+            long len = Math.min(_window, _outEnd - _outPos);
+            _outBuf = _out.map(READ_WRITE, _outPos, len);
+            _outPos += len;
+        }
+        _outBuf.put(b);
+    }
+
+    /** Default number of bytes mapped at a time. */
+    static final int DEFAULT_WINDOW = 1 << 28;
+
+    /** Number of characters in an output group. */
+    private static final int GROUP_SIZE = 5;
+
+    /** Mask selecting the unsigned value of a byte. */
+    private static final int BYTE_MASK = 0xff;
+
+    /** The machine doing the conversion, if converting text. */
+    private final Machine _machine;
+
+    /** The machine doing the conversion, if converting binary data. */
+    private final ByteMachine _bytes;
+
+    /** True iff output is printed in groups of five. */
+    private final boolean _group;
+
+    /** Maximum number of bytes mapped at a time. */
+    private final int _window;
+
+    /** Maps bytes to alphabet indices (-1 for bytes outside it). */
+    private final int[] _toIndex;
+
+    /** Maps alphabet indices to bytes. */
+    private final byte[] _toByte;
+
+    /** The line separator, as bytes. */
+    private final byte[] _newline;
+
+    /** Output channel during a grouped encryption. */
+    private FileChannel _out;
+
+    /** Currently mapped output window, or null. */
+    private MappedByteBuffer _outBuf;
+
+    /** File position just past the current output window. */
+    private long _outPos;
+
+    /** Total size of the output file. */
+    private long _outEnd;
+
+}
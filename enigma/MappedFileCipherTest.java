@@ -0,0 +1,168 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for MappedFileCipher.
+ *  @author Xiaoru Zhao
+ */
+public class MappedFileCipherTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a new machine with the historical rotors, set up with
+     *  rotors, positions, rings and a plugboard. */
+    private Machine machine() {
+        Machine result =
+            new Machine(UPPER, 5, 3, new HistoricalCatalog(UPPER));
+        result.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        result.setRotors("AXLE");
+        result.setRings("BCFG");
+        result.setPlugboard(new Permutation("(HQ)(EX)(IP)", UPPER));
+        return result;
+    }
+
+    /** Return LINES random lines from RANDOM, of upper-case letters
+     *  mixed with the characters of OTHERS, separated by newlines and
+     *  with no newline after the last. */
+    private String text(Random random, int lines, String others) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < lines; i += 1) {
+            if (i > 0) {
+                result.append('\n');
+            }
+            int length = random.nextInt(40);
+            for (int j = 0; j < length; j += 1) {
+                if (random.nextInt(4) == 0) {
+                    result.append(others.charAt(random.nextInt(
+                                                    others.length())));
+                } else {
+                    result.append((char) ('A'
+                                          + random.nextInt(UPPER.size())));
+                }
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return the output of a MappedFileCipher with a WINDOW-byte window,
+     *  grouping iff GROUP, given INPUT. */
+    private String encrypt(String input, boolean group, int window)
+        throws IOException {
+        Path in = Files.createTempFile("enigma", ".in");
+        Path out = Files.createTempFile("enigma", ".out");
+        try {
+            Files.write(in, input.getBytes(StandardCharsets.US_ASCII));
+            MappedFileCipher cipher =
+                new MappedFileCipher(machine(), group, window);
+            assertEquals(input.length(), cipher.encrypt(in, out));
+            return new String(Files.readAllBytes(out),
+                              StandardCharsets.US_ASCII);
+        } finally {
+            Files.delete(in);
+            Files.delete(out);
+        }
+    }
+
+    /** Return INPUT converted in one pass by a single machine, with
+     *  characters outside the alphabet copied unchanged. */
+    private String plain(String input) {
+        Machine m = machine();
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < input.length(); i += 1) {
+            char c = input.charAt(i);
+            result.append(UPPER.contains(c) ? m.convert(String.valueOf(c))
+                          : String.valueOf(c));
+        }
+        return result.toString();
+    }
+
+    /** Return INPUT converted in one pass by a single machine, each line
+     *  stripped of whitespace and printed in groups of five.  A last line
+     *  with no newline is ended with one. */
+    private String grouped(String input) {
+        Machine m = machine();
+        StringBuilder result = new StringBuilder();
+        String[] lines = input.split("\n", -1);
+        int n = lines[lines.length - 1].isEmpty() ? lines.length - 1
+            : lines.length;
+        for (int k = 0; k < n; k += 1) {
+            String line = lines[k];
+            String msg = m.convert(line.replaceAll("\\s", ""));
+            for (int i = 0; i < msg.length(); i += 1) {
+                result.append(msg.charAt(i));
+                if ((i + 1) % 5 == 0) {
+                    result.append(' ');
+                }
+            }
+            result.append(System.lineSeparator());
+        }
+        return result.toString();
+    }
+
+    /** Characters outside the alphabet put in plain input. */
+    private static final String PUNCTUATION = " ,.!?0123456789-\t";
+
+    /** Characters outside the alphabet put in grouped input. */
+    private static final String WHITESPACE = " \t\r";
+
+    /** Window size, in bytes, smaller than a line. */
+    private static final int WINDOW = 7;
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkPlain() throws IOException {
+        String input = text(new Random(1), 40, PUNCTUATION);
+        assertTrue(input.length() > 20 * WINDOW);
+        assertEquals(plain(input), encrypt(input, false, WINDOW));
+        assertEquals(plain(input),
+                     encrypt(input, false, MappedFileCipher.DEFAULT_WINDOW));
+    }
+
+    @Test
+    public void checkGrouped() throws IOException {
+        String input = text(new Random(2), 40, WHITESPACE);
+        assertTrue(input.length() > 20 * WINDOW);
+        assertEquals(grouped(input), encrypt(input, true, WINDOW));
+        assertEquals(grouped(input),
+                     encrypt(input, true, MappedFileCipher.DEFAULT_WINDOW));
+    }
+
+    @Test
+    public void checkGroupStraddlesWindow() throws IOException {
+        String input = "ABC DEFGH\nIJKLMNOPQRSTU\n";
+        assertEquals(grouped(input), encrypt(input, true, WINDOW));
+        assertEquals(grouped(input), encrypt(input, true, 1));
+        assertEquals(' ', encrypt(input, true, WINDOW).charAt(5));
+    }
+
+    @Test
+    public void checkEmptyLinesAndEnd() throws IOException {
+        String input = "\n\nHELLO\n\nWORLD";
+        assertEquals(grouped(input), encrypt(input, true, 3));
+        assertEquals(plain(input), encrypt(input, false, 3));
+        assertEquals("", encrypt("", true, WINDOW));
+        assertEquals("", encrypt("", false, WINDOW));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkGroupedRejectsPunctuation() throws IOException {
+        encrypt("HELLO, WORLD\n", true, WINDOW);
+    }
+
+}
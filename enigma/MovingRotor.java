@@ -43,13 +43,12 @@ class MovingRotor extends Rotor {
 
     @Override
     boolean atNotch() {
-        for (int i = 0; i < _notches.length(); i += 1) {
-            if (_notches.charAt(i) == alphabet().toChar(
-                    _permutation.wrap(_setting))) {
-                return true;
-            }
-        }
-        return false;
+        return notchAt(_permutation.wrap(_setting));
+    }
+
+    @Override
+    boolean hasNotch(int cp) {
+        return _notches.indexOf(cp) >= 0;
     }
 
     @Override
@@ -62,6 +61,11 @@ class MovingRotor extends Rotor {
         _notchBefore = a;
     }
 
+    @Override
+    int setting() {
+        return _setting;
+    }
+
     @Override
     void set(int posn) {
         _setting = posn;
@@ -77,6 +81,11 @@ class MovingRotor extends Rotor {
         _permutation.changeAlphabet(alpha);
     }
 
+    @Override
+    Rotor copy(Permutation perm) {
+        return new MovingRotor(_name, perm, _notches);
+    }
+
 
     /** Rotor name. */
     private final String _name;
@@ -0,0 +1,323 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import static enigma.EnigmaException.*;
+
+/** Scores text, given as alphabet indices, by how much it looks like a
+ *  corpus: the sum, over each run of N consecutive characters, of the
+ *  base-10 logarithm of the frequency of that N-gram in the corpus.
+ *  N-grams never seen in the corpus get a small floor frequency.  The
+ *  table of log frequencies is indexed by the N-gram read as an N-digit
+ *  number in base alphabet size, first character most significant.
+ *
+ *  A table is held either as floats or, packed, as shorts counting
+ *  units of QUANTUM, which halves its size at a small cost in precision.
+ *  A table saved with save is read back by load through a memory-mapped
+ *  file, and scored in place, so that a large table (a quadgram table
+ *  has size^4 entries) is shared by every process using it and costs no
+ *  time to load.  The file holds a header of little-endian ints: MAGIC,
+ *  VERSION, N, 1 if packed else 0, the alphabet size, and the alphabet's
+ *  code points; then the table's entries, also little-endian.
+ *  @author Xiaoru Zhao
+ */
+class NGramScorer {
+
+    /** A scorer for N-grams over ALPHABET whose log frequencies are
+     *  TABLE (see above). */
+    NGramScorer(Alphabet alphabet, int n, float[] table) {
+        this(alphabet, n, FloatBuffer.wrap(table), null);
+    }
+
+    /** A scorer for N-grams over ALPHABET whose log frequencies are
+     *  FLOATS or, if that is null, SHORTS times QUANTUM. */
+    private NGramScorer(Alphabet alphabet, int n, FloatBuffer floats,
+                        ShortBuffer shorts) {
+        int entries = floats != null ? floats.limit() : shorts.limit();
+        if (n < 1 || entries != tableSize(alphabet.size(), n)) {
+            throw error("bad %d-gram table", n);
+        }
+        _alphabet = alphabet;
+        _n = n;
+        _size = alphabet.size();
+        _floats = floats;
+        _shorts = shorts;
+        _modulus = entries / _size;
+    }
+
+    /** Return a scorer for N-grams over ALPHABET, with frequencies counted
+     *  in CORPUS.  Characters of CORPUS not in ALPHABET, even in upper
+     *  case, separate words, and no N-gram is counted across them. */
+    static NGramScorer train(Alphabet alphabet, int n, Reader corpus)
+        throws IOException {
+        int size = alphabet.size();
+        int modulus = tableSize(size, n - 1);
+        long[] counts = new long[tableSize(size, n)];
+        long total = 0;
+        int run = 0, gram = 0;
+        while (true) {
+            int c = corpus.read();
+            if (c < 0) {
+                break;
+            }
+            if (Character.isHighSurrogate((char) c)) {
+                int low = corpus.read();
+                c = low < 0 ? c : Character.toCodePoint((char) c, (char) low);
+            }
+            int k = alphabet.indexOf(c);
+            if (k < 0) {
+                k = alphabet.indexOf(Character.toUpperCase(c));
+            }
+            if (k < 0) {
+                run = 0;
+                continue;
+            }
+            gram = (gram % modulus) * size + k;
+            run += 1;
+            if (run >= n) {
+                counts[gram] += 1;
+                total += 1;
+            }
+        }
+        if (total == 0) {
+            throw error("corpus holds no %d-grams", n);
+        }
+        float[] table = new float[counts.length];
+        float floor = (float) Math.log10(FLOOR / total);
+        for (int i = 0; i < table.length; i += 1) {
+            table[i] = counts[i] == 0
+                ? floor : (float) Math.log10((double) counts[i] / total);
+        }
+        return new NGramScorer(alphabet, n, table);
+    }
+
+    /** Return the scorer saved in FILE by save, scoring straight from the
+     *  file mapped into memory. */
+    static NGramScorer load(Path file) throws IOException {
+        ByteBuffer data;
+        try (FileChannel in = FileChannel.open(file, READ)) {
+            data = in.map(READ_ONLY, 0, in.size());
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        if (data.limit() < HEADER * Integer.BYTES || data.getInt() != MAGIC
+            || data.getInt() != VERSION) {
+            throw error("%s is not an n-gram table", file);
+        }
+        int n = data.getInt();
+        boolean packed = data.getInt() != 0;
+        int size = data.getInt();
+        if (size < 1 || (long) size * Integer.BYTES > data.remaining()) {
+            throw error("bad n-gram table %s", file);
+        }
+        int[] codePoints = new int[size];
+        for (int i = 0; i < size; i += 1) {
+            codePoints[i] = data.getInt();
+        }
+        Alphabet alphabet = new Alphabet(codePoints);
+        long entries = (long) tableSize(size, n);
+        int width = packed ? Short.BYTES : Float.BYTES;
+        if (data.remaining() != entries * width) {
+            throw error("bad n-gram table %s", file);
+        }
+        ByteBuffer table = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        return packed
+            ? new NGramScorer(alphabet, n, null, table.asShortBuffer())
+            : new NGramScorer(alphabet, n, table.asFloatBuffer(), null);
+    }
+
+    /** Save me to FILE, packing my entries into shorts iff PACKED, in the
+     *  form that load reads. */
+    void save(Path file, boolean packed) throws IOException {
+        try (FileChannel out = FileChannel.open(file, CREATE, WRITE,
+                                                TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate((HEADER + _size)
+                                                    * Integer.BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(_n)
+                .putInt(packed ? 1 : 0).putInt(_size);
+            for (int i = 0; i < _size; i += 1) {
+                header.putInt(_alphabet.toCodePoint(i));
+            }
+            write(out, header);
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            int entries = _modulus * _size;
+            for (int i = 0; i < entries; i += 1) {
+                if (chunk.remaining() < Float.BYTES) {
+                    write(out, chunk);
+                }
+                if (packed) {
+                    chunk.putShort(pack(entry(i)));
+                } else {
+                    chunk.putFloat(entry(i));
+                }
+            }
+            write(out, chunk);
+        }
+    }
+
+    /** Write the contents of BUFFER to OUT, and clear it. */
+    private static void write(FileChannel out, ByteBuffer buffer)
+        throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /** Return the packed form of the log frequency X. */
+    private static short pack(float x) {
+        long units = Math.round(x / QUANTUM);
+        return (short) Math.max(Short.MIN_VALUE,
+                                Math.min(Short.MAX_VALUE, units));
+    }
+
+    /** Return the number of entries in a table of N-grams over an
+     *  alphabet of SIZE characters, which must be reasonable. */
+    static int tableSize(int size, int n) {
+        long result = 1;
+        for (int i = 0; i < n; i += 1) {
+            result *= size;
+            if (result > MAX_TABLE) {
+                throw error("%d-gram table too large", n);
+            }
+        }
+        return (int) result;
+    }
+
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return N, the length of the N-grams I score. */
+    int order() {
+        return _n;
+    }
+
+    /** Return true iff my entries are packed into shorts. */
+    boolean packed() {
+        return _shorts != null;
+    }
+
+    /** Return the log frequency of the N-gram numbered GRAM. */
+    float entry(int gram) {
+        return _shorts != null ? _shorts.get(gram) * QUANTUM
+            : _floats.get(gram);
+    }
+
+    /** Return the score of all of TEXT. */
+    double score(int[] text) {
+        return score(text, 0, text.length);
+    }
+
+    /** Return the score of TEXT[FROM .. TO-1], counting only N-grams that
+     *  lie wholly within it. */
+    double score(int[] text, int from, int to) {
+        if (to - from < _n) {
+            return 0;
+        }
+        int gram = 0;
+        for (int i = from; i < from + _n - 1; i += 1) {
+            gram = gram * _size + text[i];
+        }
+        double result = 0;
+        if (_shorts != null) {
+            long units = 0;
+            for (int i = from + _n - 1; i < to; i += 1) {
+                gram = (gram % _modulus) * _size + text[i];
+                units += _shorts.get(gram);
+            }
+            result = units * (double) QUANTUM;
+        } else {
+            for (int i = from + _n - 1; i < to; i += 1) {
+                gram = (gram % _modulus) * _size + text[i];
+                result += _floats.get(gram);
+            }
+        }
+        return result;
+    }
+
+    /** Return score(AFTER, 0, LEN), given that SCORE is score(BEFORE, 0,
+     *  LEN) and that BEFORE and AFTER differ at most at the COUNT
+     *  positions CHANGED[0 .. COUNT-1], in increasing order.  Only the
+     *  N-grams that include a changed position are looked up, so when a
+     *  plugboard swap changes a few characters of a long text, rescoring
+     *  costs a few lookups rather than one per character. */
+    double rescore(double score, int[] before, int[] after, int len,
+                   int[] changed, int count) {
+        double result = score;
+        int last = len - _n;
+        int i = 0;
+        while (i < count) {
+            int from = Math.max(0, changed[i] - _n + 1);
+            int to = Math.min(last, changed[i]);
+            i += 1;
+            while (i < count && changed[i] - _n + 1 <= to + 1) {
+                to = Math.min(last, changed[i]);
+                i += 1;
+            }
+            if (from <= to) {
+                result += score(after, from, to + _n)
+                    - score(before, from, to + _n);
+            }
+        }
+        return result;
+    }
+
+    /** Identifies a saved table. */
+    static final int MAGIC = 0x4e475231;
+
+    /** Version of the saved form. */
+    static final int VERSION = 1;
+
+    /** Value of one unit of a packed entry. */
+    static final float QUANTUM = 1f / 1024;
+
+    /** Number of ints in a saved header before the alphabet. */
+    private static final int HEADER = 5;
+
+    /** Size of the buffer used to write tables. */
+    private static final int CHUNK = 1 << 16;
+
+    /** Frequency given to an N-gram never seen, as a count. */
+    private static final double FLOOR = 0.01;
+
+    /** Largest number of entries in a table. */
+    private static final long MAX_TABLE = 1 << 28;
+
+    /** The alphabet. */
+    private final Alphabet _alphabet;
+
+    /** Length of the N-grams scored. */
+    private final int _n;
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Log frequency of each N-gram, or null if packed. */
+    private final FloatBuffer _floats;
+
+    /** Log frequency of each N-gram in units of QUANTUM, or null if not
+     *  packed. */
+    private final ShortBuffer _shorts;
+
+    /** Number of (N-1)-grams. */
+    private final int _modulus;
+
+}
@@ -0,0 +1,129 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for NGramScorer.
+ *  @author Xiaoru Zhao
+ */
+public class NGramScorerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(10);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Text from which n-gram frequencies are taken. */
+    private static final String CORPUS =
+        "It was the best of times, it was the worst of times, it was the "
+        + "age of wisdom, it was the age of foolishness, it was the epoch "
+        + "of belief, it was the epoch of incredulity, it was the season of "
+        + "Light, it was the season of Darkness.";
+
+    /** Return the alphabet indices of MSG. */
+    private int[] indices(String msg) {
+        int[] result = new int[msg.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = UPPER.toInt(msg.charAt(i));
+        }
+        return result;
+    }
+
+    /** Return a scorer of N-grams of CORPUS. */
+    private NGramScorer scorer(int n) throws IOException {
+        return NGramScorer.train(UPPER, n, new StringReader(CORPUS));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkScorer() throws IOException {
+        NGramScorer bigrams =
+            NGramScorer.train(UPPER, 2, new StringReader("ab-ab ba!"));
+        assertEquals(2, bigrams.order());
+        assertEquals(Math.log10(2.0 / 3), bigrams.score(indices("AB")),
+                     1e-6);
+        assertEquals(Math.log10(2.0 / 3) + Math.log10(1.0 / 3),
+                     bigrams.score(indices("ABA")), 1e-6);
+        assertEquals(2 * Math.log10(0.01 / 3), bigrams.score(indices("XYZ")),
+                     1e-6);
+        assertEquals(0, bigrams.score(indices("ABAB"), 1, 2), 0);
+        assertEquals(Math.log10(1.0 / 3), bigrams.score(indices("ABAB"), 1, 3),
+                     1e-6);
+    }
+
+    @Test
+    public void checkSaveAndLoad() throws IOException {
+        NGramScorer scorer = scorer(4);
+        int[] text = indices("ITWASTHESEASONOFWISDOMANDOFDARKNESS");
+        Path file = Files.createTempFile("enigma", ".ngrams");
+        try {
+            scorer.save(file, false);
+            NGramScorer loaded = NGramScorer.load(file);
+            assertFalse(loaded.packed());
+            assertEquals(4, loaded.order());
+            assertEquals(UPPER.size(), loaded.alphabet().size());
+            assertEquals('Z', loaded.alphabet().toCodePoint(25));
+            assertEquals(scorer.score(text), loaded.score(text), 0);
+            scorer.save(file, true);
+            NGramScorer packed = NGramScorer.load(file);
+            assertTrue(packed.packed());
+            assertEquals(scorer.score(text), packed.score(text),
+                         text.length * NGramScorer.QUANTUM);
+            assertEquals(scorer.entry(7), packed.entry(7),
+                         NGramScorer.QUANTUM);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkBadTable() throws IOException {
+        Path file = Files.createTempFile("enigma", ".ngrams");
+        try {
+            Files.write(file, CORPUS.getBytes("UTF-8"));
+            NGramScorer.load(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkRescore() throws IOException {
+        Random random = new Random(42);
+        for (int n = 1; n <= 4; n += 1) {
+            NGramScorer scorer = scorer(n);
+            int[] before = indices("ITWASTHEAGEOFFOOLISHNESSANDBELIEF");
+            int len = before.length;
+            double score = scorer.score(before);
+            int[] after = before.clone();
+            int[] changed = new int[len];
+            for (int trial = 0; trial < 100; trial += 1) {
+                int count = 0;
+                for (int t = 0; t < len; t += 1) {
+                    after[t] = before[t];
+                    if (random.nextInt(8) == 0) {
+                        after[t] = random.nextInt(UPPER.size());
+                        changed[count] = t;
+                        count += 1;
+                    }
+                }
+                assertEquals(scorer.score(after),
+                             scorer.rescore(score, before, after, len,
+                                            changed, count), 1e-3);
+            }
+        }
+    }
+
+}
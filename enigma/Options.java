@@ -0,0 +1,139 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static enigma.EnigmaException.*;
+
+/** The options and operands of a command line.  An option is an argument
+ *  "--NAME" or "--NAME=VALUE"; any other argument is an operand.  Each
+ *  command takes the options it understands, and those it never takes
+ *  are then reported by checkUsed.
+ *  @author Xiaoru Zhao
+ */
+class Options {
+
+    /** The options and operands of the command line ARGS. */
+    Options(String[] args) {
+        _options = new LinkedHashMap<>();
+        _operands = new ArrayList<>();
+        _used = new HashSet<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                _operands.add(arg);
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg : arg.substring(0, eq);
+            String value = eq < 0 ? null : arg.substring(eq + 1);
+            _options.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+        }
+    }
+
+    /** Return true iff option NAME was given, with or without a value,
+     *  without taking it. */
+    boolean given(String name) {
+        return _options.containsKey(name);
+    }
+
+    /** Take option NAME, which takes no value, and return true iff it was
+     *  given. */
+    boolean flag(String name) {
+        List<String> values = take(name);
+        for (String value : values) {
+            if (value != null) {
+                throw error("bad option: %s=%s", name, value);
+            }
+        }
+        return !values.isEmpty();
+    }
+
+    /** Take option NAME, which needs a value, and return all the values
+     *  given it, in order. */
+    List<String> values(String name) {
+        List<String> result = take(name);
+        if (result.contains(null)) {
+            throw error("%s needs a value", name);
+        }
+        return result;
+    }
+
+    /** Take option NAME, which needs a value, and return the last value
+     *  given it, or null if it was not given. */
+    String value(String name) {
+        List<String> values = values(name);
+        return values.isEmpty() ? null : values.get(values.size() - 1);
+    }
+
+    /** Take option NAME, whose value may be left out, and return the last
+     *  value given it, BARE if it was last given without one, or null if
+     *  it was not given. */
+    String value(String name, String bare) {
+        List<String> values = take(name);
+        if (values.isEmpty()) {
+            return null;
+        }
+        String result = values.get(values.size() - 1);
+        return result == null ? bare : result;
+    }
+
+    /** Take option NAME, whose value must be a positive number, and
+     *  return that number, or 0 if it was not given. */
+    int count(String name) {
+        return number(name, 1, 0);
+    }
+
+    /** Take option NAME, whose value must be a number at least LEAST, and
+     *  return that number, or ABSENT if it was not given. */
+    int number(String name, int least, int absent) {
+        String value = value(name);
+        if (value == null) {
+            return absent;
+        }
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= least) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            /* Reported below. */
+        }
+        throw error("bad option: %s=%s", name, value);
+    }
+
+    /** Return the operands, in order. */
+    List<String> operands() {
+        return _operands;
+    }
+
+    /** Throw if any option given was never taken, since it is not one of
+     *  those of MODE. */
+    void checkUsed(String mode) {
+        for (String name : _options.keySet()) {
+            if (!_used.contains(name)) {
+                throw error("%s is not an option of %s", name, mode);
+            }
+        }
+    }
+
+    /** Mark option NAME as taken, and return the values given it, null
+     *  for each time it was given without one. */
+    private List<String> take(String name) {
+        _used.add(name);
+        return _options.getOrDefault(name, new ArrayList<>());
+    }
+
+    /** The values given each option, in the order the options first
+     *  appear. */
+    private final Map<String, List<String>> _options;
+
+    /** The operands. */
+    private final List<String> _operands;
+
+    /** The names of the options taken. */
+    private final HashSet<String> _used;
+
+}
@@ -1,5 +1,7 @@
 package enigma;
 
+import java.util.Arrays;
+
 import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
@@ -18,14 +20,48 @@ class Permutation {
         _cycle = cycles;
     }
 
+    /** Set this Permutation to the one of ALPHABET whose tables (see
+     *  forwardTable and inverseTable) are FORWARD and INVERSE, which must
+     *  be inverse permutations of the indices of ALPHABET.  The tables are
+     *  used as they are, with no cycles to parse, and must not be
+     *  modified. */
+    Permutation(int[] forward, int[] inverse, Alphabet alphabet) {
+        if (forward.length != alphabet.size()
+            || inverse.length != alphabet.size()) {
+            throw error("permutation tables do not fit the alphabet");
+        }
+        _alphabet = alphabet;
+        _forward = forward;
+        _inverse = inverse;
+    }
+
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
      *  c0c1...cm. */
     void addCycle(String cycle) {
-        _cycle = _cycle + cycle;
+        _cycle = getCycle() + cycle;
+        _forward = _inverse = null;
     }
 
-    /** Return the cycle of permutation. */
+    /** Return the cycle of permutation.  For a permutation given by its
+     *  tables, the cycles are computed from them on first use, leaving
+     *  out characters that map to themselves. */
     String getCycle() {
+        if (_cycle == null) {
+            StringBuilder cycles = new StringBuilder();
+            boolean[] seen = new boolean[_forward.length];
+            for (int p = 0; p < _forward.length; p += 1) {
+                if (seen[p] || _forward[p] == p) {
+                    continue;
+                }
+                cycles.append('(');
+                for (int q = p; !seen[q]; q = _forward[q]) {
+                    seen[q] = true;
+                    cycles.appendCodePoint(_alphabet.toCodePoint(q));
+                }
+                cycles.append(')');
+            }
+            _cycle = cycles.toString();
+        }
         return _cycle;
     }
 
@@ -46,39 +82,13 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        for (int k = 0; k < _cycle.length(); k += 1) {
-            if (_cycle.charAt(k) == _alphabet.toChar(p)) {
-                if (')' == _cycle.charAt(k + 1)) {
-                    for (int i = k; i >= 0; i -= 1) {
-                        if ('(' == _cycle.charAt(i)) {
-                            return _alphabet.toInt(_cycle.charAt(i + 1));
-                        }
-                    }
-                } else {
-                    return _alphabet.toInt(_cycle.charAt(k + 1));
-                }
-            }
-        }
-        return p;
+        return forwardTable()[p];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        for (int k = 0; k < _cycle.length(); k += 1) {
-            if (_cycle.charAt(k) == _alphabet.toChar(c)) {
-                if ('(' == _cycle.charAt(k - 1)) {
-                    for (int i = k; i < _cycle.length(); i += 1) {
-                        if (')' == _cycle.charAt(i)) {
-                            return _alphabet.toInt(_cycle.charAt(i - 1));
-                        }
-                    }
-                } else {
-                    return _alphabet.toInt(_cycle.charAt(k - 1));
-                }
-            }
-        }
-        return c;
+        return inverseTable()[c];
     }
 
     /** Return the result of applying this permutation to the index of P
@@ -101,7 +111,98 @@ class Permutation {
 
     /** Change the alphabet to ALPHA. */
     void changeAlphabet(Alphabet alpha) {
+        _cycle = getCycle();
         _alphabet = alpha;
+        _forward = _inverse = null;
+    }
+
+    /** Return a new permutation equal to me, sharing my tables (computed
+     *  now if need be), so that changing the alphabet of either of us
+     *  leaves the other as it was. */
+    Permutation copy() {
+        Permutation result =
+            new Permutation(forwardTable(), inverseTable(), _alphabet);
+        result._cycle = _cycle;
+        return result;
+    }
+
+    /** Return a table whose K-th entry is permute(K).  The table is
+     *  computed from my cycles on first use and kept until they or my
+     *  alphabet change, so that permute costs one array access.  The
+     *  result is not to be modified. */
+    int[] forwardTable() {
+        if (_forward == null) {
+            compile();
+        }
+        return _forward;
+    }
+
+    /** Return a table whose K-th entry is invert(K).  The result is not
+     *  to be modified. */
+    int[] inverseTable() {
+        if (_inverse == null) {
+            compile();
+        }
+        return _inverse;
+    }
+
+    /** Compute _forward and _inverse from _cycle in time linear in the
+     *  lengths of _cycle and my alphabet.  A character maps to the one
+     *  following its first appearance in _cycle, or to the first of its
+     *  cycle if it ends one; characters not in any cycle map to
+     *  themselves. */
+    private void compile() {
+        int[] cycle = _cycle.codePoints().toArray();
+        int n = size();
+        int[] first = new int[n];
+        Arrays.fill(first, -1);
+        for (int k = cycle.length - 1; k >= 0; k -= 1) {
+            int index = _alphabet.indexOf(cycle[k]);
+            if (index >= 0) {
+                first[index] = k;
+            }
+        }
+        int[] open = new int[cycle.length];
+        int last = -1;
+        for (int k = 0; k < cycle.length; k += 1) {
+            if (cycle[k] == '(') {
+                last = k;
+            }
+            open[k] = last;
+        }
+        int[] close = new int[cycle.length];
+        last = -1;
+        for (int k = cycle.length - 1; k >= 0; k -= 1) {
+            if (cycle[k] == ')') {
+                last = k;
+            }
+            close[k] = last;
+        }
+        int[] forward = new int[n];
+        int[] inverse = new int[n];
+        for (int p = 0; p < n; p += 1) {
+            int k = first[p];
+            if (k < 0) {
+                forward[p] = inverse[p] = p;
+                continue;
+            }
+            if (k == 0 || k == cycle.length - 1
+                || open[k] < 0 || close[k] < 0) {
+                throw error("malformed cycles: %s", _cycle);
+            }
+            if (cycle[k + 1] == ')') {
+                forward[p] = _alphabet.toInt(cycle[open[k] + 1]);
+            } else {
+                forward[p] = _alphabet.toInt(cycle[k + 1]);
+            }
+            if (cycle[k - 1] == '(') {
+                inverse[p] = _alphabet.toInt(cycle[close[k] - 1]);
+            } else {
+                inverse[p] = _alphabet.toInt(cycle[k - 1]);
+            }
+        }
+        _forward = forward;
+        _inverse = inverse;
     }
 
     /** Return true iff this permutation is a derangement (i.e., a
@@ -118,6 +219,13 @@ class Permutation {
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /** Cycle of this permutation. */
+    /** Cycle of this permutation, or null if not yet computed from the
+     *  tables. */
     private String _cycle;
+
+    /** Table of permute(), or null if not yet computed. */
+    private int[] _forward;
+
+    /** Table of invert(), or null if not yet computed. */
+    private int[] _inverse;
 }
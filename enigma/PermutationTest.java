@@ -56,6 +56,57 @@ public class PermutationTest {
         checkPerm("identity", UPPER_STRING, UPPER_STRING);
     }
 
+    @Test
+    public void checkSupplementaryCycles() {
+        String chars = "A\ud83d\ude00B\ud83d\ude01C";
+        Alphabet alpha = new Alphabet(chars);
+        assertEquals(5, alpha.size());
+        perm = new Permutation("(A\ud83d\ude00) (B\ud83d\ude01C)", alpha);
+        assertEquals(1, perm.permute(0));
+        assertEquals(0, perm.permute(1));
+        assertEquals(3, perm.permute(2));
+        assertEquals(4, perm.permute(3));
+        assertEquals(2, perm.permute(4));
+        assertEquals(4, perm.invert(2));
+        assertTrue(perm.derangement());
+    }
+
+    @Test
+    public void checkLargeAlphabet() {
+        int n = 40000;
+        int[] cps = new int[n];
+        StringBuilder cycle = new StringBuilder("(");
+        for (int i = 0; i < n; i += 1) {
+            cps[i] = 0x20000 + 5 * i;
+            cycle.appendCodePoint(cps[i]);
+        }
+        cycle.append(")");
+        Alphabet alpha = new Alphabet(cps);
+        perm = new Permutation(cycle.toString(), alpha);
+        for (int i = 0; i < n; i += 1) {
+            assertEquals(i, alpha.toInt(cps[i]));
+            assertEquals((i + 1) % n, perm.permute(i));
+            assertEquals((i + n - 1) % n, perm.invert(i));
+        }
+        assertFalse(alpha.contains(0x20001));
+        assertEquals(-1, alpha.indexOf(0x20001));
+    }
+
+    @Test
+    public void checkTableFollowsAlphabet() {
+        perm = new Permutation("(AB)", UPPER);
+        assertEquals(1, perm.permute(0));
+        perm.changeAlphabet(new Alphabet("BCDEFGHIJKLMNOPQRSTUVWXYZA"));
+        assertEquals(25, perm.permute(0));
+        perm.addCycle("(CD)");
+        assertEquals(2, perm.permute(1));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkDuplicateCharacter() {
+        new Alphabet("ABCA");
+    }
+
     /*@Test
     public void testPermute() {
         Alphabet alpha = new Alphabet("ABCDEFGH");
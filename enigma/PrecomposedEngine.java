@@ -0,0 +1,122 @@
+package enigma;
+
+import static enigma.ScalarLockstepEngine.shift;
+import static enigma.ScalarLockstepEngine.step;
+
+/** A TableEngine that does three lookups per character, whatever the
+ *  number of rotors.  Everything to the left of the fast rotor, there
+ *  and back, only changes when one of those rotors moves, which is
+ *  rarely: it is composed into one table, recomputed when they do.  The
+ *  plugboard and the fast rotor, in each of its positions, are composed
+ *  into a table going in and one coming out, computed once for each
+ *  key.  Alphabets larger than MAX_SIZE, whose composed tables would be
+ *  too large, are converted as by a TableEngine.
+ *  @author Xiaoru Zhao
+ */
+class PrecomposedEngine extends TableEngine {
+
+    @Override
+    String name() {
+        return "precomposed";
+    }
+
+    @Override
+    void run(MachineLanes lanes, int[] msg, int from, int to, int[] out) {
+        int n = lanes.numRotors(), size = lanes.size();
+        if (size > MAX_SIZE) {
+            super.run(lanes, msg, from, to, out);
+            return;
+        }
+        int[] pool = lanes.pool();
+        int[] base = new int[n], posn = new int[n];
+        int[] before = new int[n], rotates = new int[n];
+        load(lanes, base, posn, before, rotates);
+        int fast = n - 1;
+        compose(pool, size, base[fast], lanes.plugboards()[0]);
+        int[] in = _in, back = _out;
+        int[] inner = new int[size];
+        int[] innerPosn = new int[fast];
+        boolean stale = true;
+        for (int t = from; t < to; t += 1) {
+            step(pool, size, base, posn, before, rotates);
+            for (int k = 0; k < fast && !stale; k += 1) {
+                stale = posn[k] != innerPosn[k];
+            }
+            if (stale) {
+                System.arraycopy(posn, 0, innerPosn, 0, fast);
+                inner(pool, size, base, posn, inner);
+                stale = false;
+            }
+            int row = posn[fast] * size;
+            out[t] = back[row + inner[in[row + msg[t]]]];
+        }
+        store(lanes, posn, before);
+    }
+
+    /** Make _in and _out the composed tables of the plugboard whose table
+     *  is at PLUG in POOL and the fast rotor whose tables are at FAST,
+     *  over an alphabet of SIZE characters, unless they already are. */
+    private void compose(int[] pool, int size, int fast, int plug) {
+        if (_pool == pool && _fast == fast && _plug == plug) {
+            return;
+        }
+        _in = new int[size * size];
+        _out = new int[size * size];
+        for (int p = 0; p < size; p += 1) {
+            for (int c = 0; c < size; c += 1) {
+                _in[p * size + c] =
+                    shift(pool[fast + shift(pool[plug + c], p, size)], -p,
+                          size);
+                _out[p * size + c] =
+                    pool[plug + shift(pool[fast + size + shift(c, p, size)],
+                                      -p, size)];
+            }
+        }
+        _pool = pool;
+        _fast = fast;
+        _plug = plug;
+    }
+
+    /** Fill INNER with the composition of the rotors to the left of the
+     *  fast one, from the fast rotor's left to the reflector and back,
+     *  with their tables at BASE in POOL and their positions in POSN,
+     *  over an alphabet of SIZE characters. */
+    static void inner(int[] pool, int size, int[] base, int[] posn,
+                      int[] inner) {
+        int fast = posn.length - 1;
+        for (int c = 0; c < size; c += 1) {
+            int r = c;
+            for (int k = fast - 1; k >= 0; k -= 1) {
+                r = shift(pool[base[k] + shift(r, posn[k], size)],
+                          -posn[k], size);
+            }
+            for (int k = 1; k < fast; k += 1) {
+                r = shift(pool[base[k] + size + shift(r, posn[k], size)],
+                          -posn[k], size);
+            }
+            inner[c] = r;
+        }
+    }
+
+    /** Largest alphabet whose composed tables are kept. */
+    static final int MAX_SIZE = 256;
+
+    /** For the fast rotor at position P, entry P * size + C is the
+     *  result of C going in through the plugboard and the fast rotor. */
+    private int[] _in;
+
+    /** For the fast rotor at position P, entry P * size + C is the
+     *  result of C coming back out through the fast rotor and the
+     *  plugboard. */
+    private int[] _out;
+
+    /** The table pool from which _in and _out were composed. */
+    private int[] _pool;
+
+    /** Offset of the fast rotor's tables composed in _in and _out. */
+    private int _fast;
+
+    /** Offset of the plugboard's table composed in _in and _out. */
+    private int _plug;
+
+}
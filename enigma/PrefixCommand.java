@@ -0,0 +1,64 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.file.Paths;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--prefix=TEXT [--threads=N] CONFIG SPACE INDEX", which
+ *  saves in file INDEX an index of the encryptions of the known
+ *  plaintext prefix TEXT under each setting of SPACE, which is given as
+ *  for SweepCommand (see PrefixIndex), using N threads (default the
+ *  number of processors).  LookupCommand searches the index.
+ *  @author Xiaoru Zhao
+ */
+class PrefixCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE =
+        "--prefix=TEXT [--threads=N] CONFIG SPACE INDEX";
+
+    /** An index build whose options and operands are in OPTIONS. */
+    PrefixCommand(Options options) {
+        super(options, USAGE);
+        _prefix = options.value("--prefix").replaceAll("\\s", "");
+        _threads = options.count("--threads");
+        List<String> operands = options.operands();
+        if (operands.size() != 3) {
+            throw usage();
+        }
+        setConfig(operands.get(0));
+        _settings = operands.get(1);
+        _indexName = operands.get(2);
+    }
+
+    @Override
+    void run() {
+        KeyspaceSweep space = space(machine());
+        space.parse(_settings);
+        PrefixIndex index =
+            PrefixIndex.build(space, _settings, indices(_prefix),
+                              threads(_threads));
+        try {
+            index.save(Paths.get(_indexName));
+        } catch (IOException excp) {
+            throw error("could not write %s", _indexName);
+        }
+    }
+
+    /** Known plaintext prefix. */
+    private final String _prefix;
+
+    /** Space of settings indexed. */
+    private final String _settings;
+
+    /** Name of the index file. */
+    private final String _indexName;
+
+    /** Number of threads, or 0 for the default. */
+    private final int _threads;
+
+}
@@ -0,0 +1,211 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** An index of the encryptions of a known plaintext prefix, such as a
+ *  fixed message header, under every setting of a KeyspaceSweep space,
+ *  so that the settings under which an intercepted message could begin
+ *  with that prefix are found by a lookup rather than a sweep.
+ *
+ *  An index is a SettingTable of the settings of the space, keyed by the
+ *  K characters of ciphertext each gives the prefix, packed into the
+ *  number whose digits in base S, the alphabet size, are their alphabet
+ *  indices, first character most significant.  So that keys stay
+ *  positive, K is limited to what fits in 63 bits beside the setting
+ *  numbers.  An index is built in parallel and saved in a file holding
+ *  a header of little-endian ints, MAGIC, VERSION, S, the number of
+ *  rotor slots, the number of bits of the setting numbers, K, and the
+ *  length in bytes of the space's description; then the prefix, as K
+ *  ints; then the description, in UTF-8; and then the table.
+ *  @author Xiaoru Zhao
+ */
+class PrefixIndex {
+
+    /** An index of the settings of SPACE, described by DESCRIPTION,
+     *  under which they encrypt PREFIX, whose entries (see above) are in
+     *  TABLE. */
+    private PrefixIndex(KeyspaceSweep space, String description,
+                        int[] prefix, SettingTable table) {
+        _space = space;
+        _description = description;
+        _prefix = prefix;
+        _table = table;
+    }
+
+    /** Return an index of the encryptions of PREFIX (alphabet indices)
+     *  under every setting of SPACE, which has been set up from
+     *  DESCRIPTION (see KeyspaceSweep.parse), computed by up to THREADS
+     *  threads. */
+    static PrefixIndex build(KeyspaceSweep space, String description,
+                             int[] prefix, int threads) {
+        if (space.orders() == 0) {
+            throw error("no rotor orders to index");
+        }
+        long size = space.size();
+        long[] entries = SettingTable.entries(size, "index");
+        int bits = SettingTable.bitsFor(size);
+        checkLength(prefix.length, space.alphabet().size(), bits);
+        int radix = space.alphabet().size();
+        space.setThreads(threads);
+        space.forEach(prefix, (output, n) -> {
+            entries[(int) n] = SettingTable.entry(pack(output, radix), n,
+                                                  bits);
+        });
+        return new PrefixIndex(space, description, prefix.clone(),
+                               SettingTable.of(entries));
+    }
+
+    /** Return the index saved in FILE.  SPACE is a new space over the
+     *  machine the index was built for, and is set up from the
+     *  description saved in FILE. */
+    static PrefixIndex load(Path file, KeyspaceSweep space)
+        throws IOException {
+        ByteBuffer data = SettingTable.map(file);
+        if (data.limit() < HEADER * Integer.BYTES || data.getInt() != MAGIC
+            || data.getInt() != VERSION) {
+            throw error("%s is not a prefix index", file);
+        }
+        int size = data.getInt(), numRotors = data.getInt();
+        int bits = data.getInt(), length = data.getInt();
+        int textLength = data.getInt();
+        if (size != space.alphabet().size()
+            || numRotors != space.numRotors()) {
+            throw error("prefix index %s is for another machine", file);
+        }
+        if (length < 1 || length > MAX_PREFIX || textLength < 0
+            || (long) length * Integer.BYTES + textLength
+                > data.remaining()) {
+            throw error("bad prefix index %s", file);
+        }
+        int[] prefix = new int[length];
+        for (int i = 0; i < length; i += 1) {
+            prefix[i] = data.getInt();
+            if (prefix[i] < 0 || prefix[i] >= size) {
+                throw error("bad prefix index %s", file);
+            }
+        }
+        byte[] text = new byte[textLength];
+        data.get(text);
+        String description = new String(text, StandardCharsets.UTF_8);
+        space.parse(description);
+        SettingTable table = SettingTable.load(data, space.size(), bits);
+        if (table == null) {
+            throw error("bad prefix index %s", file);
+        }
+        checkLength(length, size, bits);
+        return new PrefixIndex(space, description, prefix, table);
+    }
+
+    /** Save me in FILE. */
+    void save(Path file) throws IOException {
+        byte[] text = _description.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer header =
+            ByteBuffer.allocate((HEADER + _prefix.length) * Integer.BYTES
+                                + text.length);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION)
+            .putInt(_space.alphabet().size()).putInt(_space.numRotors())
+            .putInt(_table.bits()).putInt(_prefix.length)
+            .putInt(text.length);
+        for (int c : _prefix) {
+            header.putInt(c);
+        }
+        header.put(text);
+        _table.save(file, header);
+    }
+
+    /** Return the settings of my space under which my prefix encrypts to
+     *  the start of CIPHERTEXT (alphabet indices), which must be at least
+     *  as long as my prefix, in order of setting number, each as a Result
+     *  with no output. */
+    List<KeyspaceSweep.Result> find(int[] ciphertext) {
+        if (ciphertext.length < _prefix.length) {
+            throw error("ciphertext is shorter than the prefix of %d"
+                        + " characters", _prefix.length);
+        }
+        int[] start = Arrays.copyOf(ciphertext, _prefix.length);
+        long key = pack(start, _space.alphabet().size());
+        List<KeyspaceSweep.Result> result = new ArrayList<>();
+        for (long n : _table.settings(key)) {
+            result.add(_space.setting(n));
+        }
+        return result;
+    }
+
+    /** Return the key packing TEXT, alphabet indices over an alphabet of
+     *  RADIX characters, as described above. */
+    static long pack(int[] text, int radix) {
+        long result = 0;
+        for (int c : text) {
+            result = result * radix + c;
+        }
+        return result;
+    }
+
+    /** Throw unless keys of LENGTH characters over an alphabet of SIZE
+     *  characters fit in 63 bits beside setting numbers of BITS bits. */
+    private static void checkLength(int length, int size, int bits) {
+        if (length < 1) {
+            throw error("the prefix is empty");
+        }
+        long room = 1L << (Long.SIZE - 1 - bits), keys = 1;
+        for (int i = 0; i < length; i += 1) {
+            if (keys > room / size) {
+                throw error("a prefix of %d characters is too long to index"
+                            + " %d-bit setting numbers", length, bits);
+            }
+            keys *= size;
+        }
+    }
+
+    /** Return the number of settings I cover. */
+    int size() {
+        return _table.size();
+    }
+
+    /** Return the plaintext prefix I index, as alphabet indices. */
+    int[] prefix() {
+        return _prefix.clone();
+    }
+
+    /** Return the space whose settings I cover. */
+    KeyspaceSweep space() {
+        return _space;
+    }
+
+    /** First int of a saved index. */
+    static final int MAGIC = 0x50465831;
+
+    /** Version of the saved form. */
+    static final int VERSION = 1;
+
+    /** Number of ints in a saved header before the prefix. */
+    private static final int HEADER = 7;
+
+    /** Longest prefix that could be packed, over a two-letter
+     *  alphabet. */
+    private static final int MAX_PREFIX = Long.SIZE - 1;
+
+    /** The space of settings covered. */
+    private final KeyspaceSweep _space;
+
+    /** The description from which _space was set up. */
+    private final String _description;
+
+    /** The plaintext prefix, as alphabet indices. */
+    private final int[] _prefix;
+
+    /** The entries of my settings. */
+    private final SettingTable _table;
+
+}
@@ -0,0 +1,183 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for PrefixIndex.
+ *  @author Xiaoru Zhao
+ */
+public class PrefixIndexTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(30);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a new three-rotor machine with naval rotors B, I, II and
+     *  III. */
+    private Machine machine() {
+        return navalMachine(4, "B", "I", "II", "III");
+    }
+
+    /** Return a new space over the machine, set up from SPACE. */
+    private KeyspaceSweep space(String space) {
+        KeyspaceSweep result =
+            new KeyspaceSweep(UPPER, 4, 3, machine().catalog());
+        result.parse(space);
+        return result;
+    }
+
+    /** Return the alphabet indices of TEXT. */
+    private static int[] indices(String text) {
+        int[] result = new int[text.length()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = UPPER.toInt(text.charAt(i));
+        }
+        return result;
+    }
+
+    /** Return the encryption of TEXT under rotors ORDER at positions
+     *  SETTING with plugboard PLUGBOARD. */
+    private int[] encrypt(String text, String[] order, String setting,
+                          String plugboard) {
+        Machine m = machine();
+        m.insertRotors(order);
+        m.setRotors(setting);
+        m.setPlugboard(new Permutation(plugboard, UPPER));
+        int[] result = indices(text);
+        m.convert(result, 0, result.length, result);
+        return result;
+    }
+
+    /** The space indexed by the tests. */
+    private static final String SPACE = "B I|II|III I|II|III I|II|III"
+        + " [A-C]?? (AQ)";
+
+    /** The known prefix. */
+    private static final String PREFIX = "WETTER";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkFindsSetting() {
+        KeyspaceSweep space = space(SPACE);
+        PrefixIndex index =
+            PrefixIndex.build(space, SPACE, indices(PREFIX), 3);
+        assertEquals(space.size(), index.size());
+        String[] order = { "B", "II", "III", "I" };
+        int[] message =
+            encrypt(PREFIX + "VORHERSAGE", order, "BQX", "(AQ)");
+        List<KeyspaceSweep.Result> found = index.find(message);
+        boolean seen = false;
+        for (KeyspaceSweep.Result r : found) {
+            seen |= Arrays.equals(order, r.order())
+                && Arrays.equals(indices("BQX"), r.positions());
+            assertArrayEquals(Arrays.copyOf(message, PREFIX.length()),
+                              encrypt(PREFIX, r.order(),
+                                      KeyspaceSweep.text(r.positions(),
+                                                         UPPER),
+                                      "(AQ)"));
+        }
+        assertTrue(seen);
+        assertTrue(found.size() < 10);
+    }
+
+    @Test
+    public void checkMatchesSweep() {
+        String description = "B I II III A?? A[AB]A";
+        KeyspaceSweep space = space(description);
+        int[] prefix = indices("ANX");
+        PrefixIndex index = PrefixIndex.build(space, description, prefix, 2);
+        Random random = new Random(2);
+        for (int i = 0; i < 20; i += 1) {
+            long n = random.nextInt((int) space.size());
+            List<KeyspaceSweep.Result> one = new ArrayList<>();
+            space.run(prefix, n, n + 1, out -> true, one::add);
+            int[] target = one.get(0).output();
+            List<KeyspaceSweep.Result> all = new ArrayList<>();
+            space.run(prefix, out -> Arrays.equals(out, target), all::add);
+            List<KeyspaceSweep.Result> found = index.find(target);
+            assertEquals(all.size(), found.size());
+            boolean seen = false;
+            for (KeyspaceSweep.Result r : found) {
+                seen |= Arrays.equals(one.get(0).positions(), r.positions())
+                    && Arrays.equals(one.get(0).rings(), r.rings());
+            }
+            assertTrue(seen);
+        }
+    }
+
+    @Test
+    public void checkSaveAndLoad() throws IOException {
+        KeyspaceSweep space = space(SPACE);
+        PrefixIndex index =
+            PrefixIndex.build(space, SPACE, indices(PREFIX), 2);
+        Path file = Files.createTempFile("prefix", ".idx");
+        try {
+            index.save(file);
+            PrefixIndex loaded =
+                PrefixIndex.load(file, new KeyspaceSweep(UPPER, 4, 3,
+                                                         machine().catalog()));
+            assertEquals(index.size(), loaded.size());
+            assertArrayEquals(indices(PREFIX), loaded.prefix());
+            Random random = new Random(3);
+            for (int i = 0; i < 20; i += 1) {
+                int[] text = new int[PREFIX.length()];
+                for (int j = 0; j < text.length; j += 1) {
+                    text[j] = random.nextInt(UPPER.size());
+                }
+                List<String> expected = new ArrayList<>();
+                for (KeyspaceSweep.Result r : index.find(text)) {
+                    expected.add(r.settingsLine(UPPER, ""));
+                }
+                List<String> actual = new ArrayList<>();
+                for (KeyspaceSweep.Result r : loaded.find(text)) {
+                    actual.add(r.settingsLine(UPPER, ""));
+                }
+                assertEquals(expected, actual);
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkPrefixTooLong() {
+        PrefixIndex.build(space(SPACE), SPACE,
+                          indices("WETTERBERICHT"), 1);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkShortCiphertext() {
+        PrefixIndex.build(space(SPACE), SPACE, indices(PREFIX), 1)
+            .find(indices("WET"));
+    }
+
+    @Test
+    public void checkBadFile() throws IOException {
+        Path file = Files.createTempFile("prefix", ".idx");
+        try {
+            Files.write(file, new byte[] { 1, 2, 3 });
+            PrefixIndex.load(file, space(SPACE));
+            fail("loaded a bad index");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
@@ -0,0 +1,41 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A Flight Recorder event spanning a change to a machine's rotors,
+ *  rotor settings, or plugboard.  Disabled unless a recording enables
+ *  it.
+ *  @author Xiaoru Zhao
+ */
+@Name("enigma.Reconfiguration")
+@Label("Machine Reconfigured")
+@Category("Enigma")
+@Description("Inserting rotors or changing settings or plugboard")
+@Enabled(false)
+@StackTrace(false)
+class ReconfigurationEvent extends Event {
+
+    /** What was changed: "insertRotors", "setRotors" or
+     *  "setPlugboard". */
+    @Label("Operation")
+    String operation;
+
+    /** Names of the machine's rotors, reflector first. */
+    @Label("Rotors")
+    String rotors;
+
+    /** The new settings or plugboard, if any. */
+    @Label("Setting")
+    String setting;
+
+    /** Number of rotors or settings, or the size of the plugboard. */
+    @Label("Size")
+    int size;
+
+}
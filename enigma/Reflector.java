@@ -21,6 +21,11 @@ class Reflector extends FixedRotor {
         return true;
     }
 
+    @Override
+    Rotor copy(Permutation perm) {
+        return new Reflector(_name, perm);
+    }
+
     @Override
     void set(int posn) {
         if (posn != 0) {
@@ -64,6 +64,27 @@ class Rotor {
         _permutation.changeAlphabet(alpha);
     }
 
+    /** Return my ring setting, as an index into my machine's alphabet. */
+    int ring() {
+        return _ring;
+    }
+
+    /** Give me ring setting RING, an index into ALPHABET, my machine's
+     *  alphabet.  As on a real Enigma, the ring carries the letters and
+     *  notches, so my positions and notches stay with the letters of
+     *  ALPHABET, while my wiring is turned RING places relative to them:
+     *  ring setting B with position B wires like ring setting A with
+     *  position A. */
+    void setRing(Alphabet alphabet, int ring) {
+        int size = alphabet.size();
+        int[] chars = new int[size];
+        for (int i = 0; i < size; i += 1) {
+            chars[i] = alphabet.toCodePoint(Math.floorMod(i - ring, size));
+        }
+        setA(ring == 0 ? alphabet : new Alphabet(chars));
+        _ring = ring;
+    }
+
     /** Return the conversion of P (an integer in the range 0..size()-1)
      *  according to my permutation. */
     int convertForward(int p) {
@@ -82,6 +103,19 @@ class Rotor {
         return false;
     }
 
+    /** Returns true iff I would be at a notch in setting K, where
+     *  0 <= K < size(). */
+    boolean notchAt(int k) {
+        return hasNotch(alphabet().toCodePoint(Math.floorMod(k + _ring,
+                                                             size())));
+    }
+
+    /** Returns true iff I have a notch at the character whose code point
+     *  is CP. */
+    boolean hasNotch(int cp) {
+        return false;
+    }
+
     /** Advance me one position, if possible. By default, does nothing. */
     void advance() {
     }
@@ -95,6 +129,24 @@ class Rotor {
     void updateNotch(boolean a) {
     }
 
+    /** Return a new rotor with my name, wiring, notches and ring setting,
+     *  in its 0 setting, whose state is its own: setting, advancing or
+     *  changing the ring of either of us leaves the other as it was.  We
+     *  share the tables of our wiring, which never change.  Synchronized,
+     *  as machines in several threads may copy one rotor of a shared
+     *  catalog. */
+    synchronized Rotor copy() {
+        Rotor result = copy(_permutation.copy());
+        result._ring = _ring;
+        return result;
+    }
+
+    /** Return a new rotor of my kind, with my name and notches, whose
+     *  permutation is PERM.  Each subclass makes its own kind. */
+    Rotor copy(Permutation perm) {
+        return new Rotor(_name, perm);
+    }
+
     @Override
     public String toString() {
         return "Rotor " + _name;
@@ -109,4 +161,7 @@ class Rotor {
     /** Setting of rotor. */
     private int _setting;
 
+    /** Ring setting of rotor (see setRing). */
+    private int _ring;
+
 }
@@ -0,0 +1,27 @@
+package enigma;
+
+import java.util.Collection;
+
+/** A source of the rotors available to a machine, looked up by name.
+ *  @author Xiaoru Zhao
+ */
+interface RotorCatalog {
+
+    /** Return the rotor named NAME, or null if I have none by that
+     *  name. */
+    Rotor get(String name);
+
+    /** Return true iff I hold no rotors at all. */
+    boolean isEmpty();
+
+    /** Return the names of all my rotors, in the order in which they were
+     *  described. */
+    Collection<String> names();
+
+    /** Return the catalog as it stands now, which does not change when I
+     *  do.  Catalogs that never change return themselves. */
+    default RotorCatalog snapshot() {
+        return this;
+    }
+
+}
@@ -0,0 +1,35 @@
+package enigma;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A Flight Recorder event spanning the parsing of one rotor
+ *  description.  Disabled unless a recording enables it.
+ *  @author Xiaoru Zhao
+ */
+@Name("enigma.RotorParse")
+@Label("Rotor Parsed")
+@Category("Enigma")
+@Description("Parsing one rotor description of a configuration")
+@Enabled(false)
+@StackTrace(false)
+class RotorParseEvent extends Event {
+
+    /** Name of the rotor. */
+    @Label("Rotor")
+    String rotor;
+
+    /** Type of the rotor: "M", "N" or "R". */
+    @Label("Type")
+    String type;
+
+    /** Number of characters in the rotor's cycles. */
+    @Label("Cycles Length")
+    int size;
+
+}
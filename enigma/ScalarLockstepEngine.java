@@ -0,0 +1,108 @@
+package enigma;
+
+/** A LockstepEngine that converts the message through each lane in
+ *  turn, with the lane's state held in locals.
+ *  @author Xiaoru Zhao
+ */
+class ScalarLockstepEngine extends LockstepEngine {
+
+    @Override
+    String name() {
+        return "scalar";
+    }
+
+    @Override
+    void convert(MachineLanes lanes, int[] msg, int len, int[] out) {
+        convert(lanes, msg, len, out, 0, lanes.lanes());
+    }
+
+    /** As for convert(LANES, MSG, LEN, OUT), but only for lanes FROM up to
+     *  but not including TO. */
+    void convert(MachineLanes lanes, int[] msg, int len, int[] out,
+                 int from, int to) {
+        int n = lanes.numRotors(), size = lanes.size();
+        int count = lanes.lanes();
+        int[] pool = lanes.pool();
+        int[] base = new int[n], posn = new int[n];
+        int[] before = new int[n], rotates = new int[n];
+        for (int lane = from; lane < to; lane += 1) {
+            for (int k = 0; k < n; k += 1) {
+                base[k] = lanes.base(k)[lane];
+                posn[k] = lanes.positions(k)[lane];
+                before[k] = lanes.before(k)[lane];
+                rotates[k] = lanes.rotates(k)[lane];
+            }
+            int plug = lanes.plugboards()[lane];
+            for (int t = 0; t < len; t += 1) {
+                step(pool, size, base, posn, before, rotates);
+                int r = pool[plug + msg[t]];
+                for (int k = n - 1; k >= 0; k -= 1) {
+                    r = shift(pool[base[k] + shift(r, posn[k], size)],
+                              -posn[k], size);
+                }
+                for (int k = 1; k < n; k += 1) {
+                    r = shift(pool[base[k] + size + shift(r, posn[k], size)],
+                              -posn[k], size);
+                }
+                out[t * count + lane] = pool[plug + r];
+            }
+            for (int k = 0; k < n; k += 1) {
+                lanes.positions(k)[lane] = posn[k];
+                lanes.before(k)[lane] = before[k];
+            }
+        }
+    }
+
+    /** Advance the rotors of one lane, whose tables are at BASE in POOL,
+     *  positions are POSN, notch flags BEFORE and moving rotors marked in
+     *  ROTATES, just as Machine.convert advances its rotors.  SIZE is the
+     *  alphabet size. */
+    static void step(int[] pool, int size, int[] base, int[] posn,
+                     int[] before, int[] rotates) {
+        int fast = posn.length - 1;
+        int notches = 2 * size;
+        if (pool[base[fast] + notches + posn[fast]] != 0) {
+            before[fast] = 1;
+        }
+        if (rotates[fast] != 0) {
+            posn[fast] = shift(posn[fast], 1, size);
+        }
+        if (pool[base[fast] + notches + posn[fast]] != 0) {
+            before[fast] = 1;
+        }
+        for (int i = fast - 1; i >= 0; i -= 1) {
+            if (rotates[i] == 0) {
+                continue;
+            }
+            if (pool[base[i] + notches + posn[i]] != 0) {
+                before[i] = 1;
+            }
+            if (before[i + 1] != 0
+                && pool[base[i + 1] + notches + posn[i + 1]] == 0) {
+                posn[i] = shift(posn[i], 1, size);
+                before[i + 1] = 0;
+                if (pool[base[i] + notches + posn[i]] != 0) {
+                    before[i] = 1;
+                }
+            } else if (pool[base[i] + notches + posn[i]] != 0
+                       && rotates[i - 1] != 0) {
+                posn[i] = shift(posn[i], 1, size);
+                posn[i - 1] = shift(posn[i - 1], 1, size);
+                before[i] = 0;
+            }
+        }
+    }
+
+    /** Return (P + D) modulo SIZE, where 0 <= P < SIZE and
+     *  -SIZE <= D <= SIZE. */
+    static int shift(int p, int d, int size) {
+        int r = p + d;
+        if (r >= size) {
+            r -= size;
+        } else if (r < 0) {
+            r += size;
+        }
+        return r;
+    }
+
+}
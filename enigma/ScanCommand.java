@@ -0,0 +1,56 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The mode "--scan --crib=TEXT... CONFIG INPUT [OUTPUT]", which prints
+ *  each offset in the ciphertext in INPUT (all its lines run together,
+ *  without whitespace) at which one of the given cribs may lie, since no
+ *  letter of it falls on the same letter of the ciphertext, as a line
+ *  holding the offset and the crib (see CribScanner).  --crib may be
+ *  given many times.  The ciphertext is scanned a word at a time, and
+ *  never held whole.
+ *  @author Xiaoru Zhao
+ */
+class ScanCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE = "--scan --crib=TEXT... CONFIG INPUT [OUTPUT]";
+
+    /** A crib scan whose options and operands are in OPTIONS. */
+    ScanCommand(Options options) {
+        super(options, USAGE);
+        options.flag("--scan");
+        _cribs = new ArrayList<>();
+        for (String crib : options.values("--crib")) {
+            _cribs.add(crib.replaceAll("\\s", ""));
+        }
+        List<String> operands = options.operands();
+        if (_cribs.isEmpty() || operands.size() < 2 || operands.size() > 3) {
+            throw usage();
+        }
+        setConfig(operands.get(0));
+        setStreams(operands.get(1),
+                   operands.size() > 2 ? operands.get(2) : null);
+    }
+
+    @Override
+    void run() {
+        machine();
+        CribScanner scanner = new CribScanner(alphabet().size());
+        for (String crib : _cribs) {
+            scanner.add(indices(crib));
+        }
+        CribScanner.Sink sink = (crib, offset) ->
+            output().printf("%d %s%n", offset, _cribs.get(crib));
+        while (input().hasNext()) {
+            int[] word = indices(input().next());
+            scanner.scan(word, sink);
+        }
+        output().flush();
+    }
+
+    /** The cribs. */
+    private final List<String> _cribs;
+
+}
@@ -0,0 +1,179 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import static enigma.EnigmaException.*;
+
+/** A sorted table of the settings of a KeyspaceSweep space, looked up
+ *  by a key computed from each setting, on which CycleCatalog and
+ *  PrefixIndex are built.  Each entry is a long holding the key of a
+ *  setting followed by the number of the setting in its low bits, the
+ *  fewest that hold every setting number (see bitsFor), so the settings
+ *  with a given key are found by a binary search, in order of setting
+ *  number.  A table is saved as its entries, little-endian longs,
+ *  following a header of its owner's, and a table loaded from a file is
+ *  searched in place, through a memory-mapped file.
+ *  @author Xiaoru Zhao
+ */
+class SettingTable {
+
+    /** A table of the sorted ENTRIES, whose setting numbers are in their
+     *  low BITS bits. */
+    private SettingTable(LongBuffer entries, int bits) {
+        _entries = entries;
+        _bits = bits;
+    }
+
+    /** Return an array for the entries of SIZE settings, to be filled by
+     *  the caller (see entry) and passed to of.  Throws if SIZE is more
+     *  than MAX_ENTRIES, as too many to WHAT, e.g. "index". */
+    static long[] entries(long size, String what) {
+        if (size > MAX_ENTRIES) {
+            throw error("%d settings are too many to %s", size, what);
+        }
+        return new long[(int) size];
+    }
+
+    /** Return the entry for setting number N, whose key is KEY, in a
+     *  table whose setting numbers take BITS bits.  KEY must fit in the
+     *  other 64 - BITS bits. */
+    static long entry(long key, long n, int bits) {
+        return (key << bits) | n;
+    }
+
+    /** Return a table of ENTRIES, filled in for each setting number
+     *  below ENTRIES.length, which are sorted in place. */
+    static SettingTable of(long[] entries) {
+        Arrays.parallelSort(entries);
+        return new SettingTable(LongBuffer.wrap(entries),
+                                bitsFor(entries.length));
+    }
+
+    /** Return the mapped contents of FILE, to be read, little-endian,
+     *  as far as the entries of its table (see load). */
+    static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file, READ)) {
+            return in.map(READ_ONLY, 0, in.size())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /** Return the table whose entries are the rest of DATA (see map),
+     *  or null unless they are those of SIZE settings whose numbers take
+     *  BITS bits. */
+    static SettingTable load(ByteBuffer data, long size, int bits) {
+        if (size > MAX_ENTRIES || bits != bitsFor(size)
+            || data.remaining() != size * Long.BYTES) {
+            return null;
+        }
+        ByteBuffer table = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        return new SettingTable(table.asLongBuffer(), bits);
+    }
+
+    /** Save HEADER, from its start to its position, followed by my
+     *  entries, in FILE. */
+    void save(Path file, ByteBuffer header) throws IOException {
+        try (FileChannel out = FileChannel.open(file, CREATE, WRITE,
+                                                TRUNCATE_EXISTING)) {
+            write(out, header);
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK);
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < _entries.limit(); i += 1) {
+                if (chunk.remaining() < Long.BYTES) {
+                    write(out, chunk);
+                }
+                chunk.putLong(_entries.get(i));
+            }
+            write(out, chunk);
+        }
+    }
+
+    /** Write the contents of BUFFER to OUT and clear it. */
+    private static void write(FileChannel out, ByteBuffer buffer)
+        throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /** Return the numbers of the settings whose key is KEY, in
+     *  ascending order. */
+    long[] settings(long key) {
+        long low = entry(key, 0, _bits);
+        long high = low | mask();
+        int first = search(low), end = first;
+        while (end < _entries.limit() && _entries.get(end) <= high) {
+            end += 1;
+        }
+        long[] result = new long[end - first];
+        for (int i = first; i < end; i += 1) {
+            result[i - first] = _entries.get(i) & mask();
+        }
+        return result;
+    }
+
+    /** Return the index of my first entry that is at least ENTRY, or
+     *  size() if there is none. */
+    private int search(long entry) {
+        int lo = 0, hi = _entries.limit();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (_entries.get(mid) < entry) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Return the mask selecting the setting number of an entry. */
+    private long mask() {
+        return (1L << _bits) - 1;
+    }
+
+    /** Return the number of bits needed for setting numbers below SIZE,
+     *  at least 1. */
+    static int bitsFor(long size) {
+        return Math.max(1, Long.SIZE - Long.numberOfLeadingZeros(size - 1));
+    }
+
+    /** Return the number of bits of my setting numbers. */
+    int bits() {
+        return _bits;
+    }
+
+    /** Return the number of settings I cover. */
+    int size() {
+        return _entries.limit();
+    }
+
+    /** Most settings in a table, whose entries must fit in a mapped
+     *  buffer. */
+    static final long MAX_ENTRIES = 1 << 27;
+
+    /** Size of the buffer used to write tables. */
+    private static final int CHUNK = 1 << 16;
+
+    /** The sorted entries. */
+    private final LongBuffer _entries;
+
+    /** Number of low bits of each entry holding its setting number. */
+    private final int _bits;
+
+}
@@ -0,0 +1,123 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+/** The suite of all JUnit tests for SettingTable.
+ *  @author Xiaoru Zhao
+ */
+public class SettingTableTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a table of KEYS.length settings, setting N having key
+     *  KEYS[N]. */
+    private static SettingTable table(long[] keys) {
+        long[] entries = SettingTable.entries(keys.length, "test");
+        int bits = SettingTable.bitsFor(keys.length);
+        for (int n = 0; n < keys.length; n += 1) {
+            entries[n] = SettingTable.entry(keys[n], n, bits);
+        }
+        return SettingTable.of(entries);
+    }
+
+    /** Return the numbers of the settings whose key in KEYS is KEY, in
+     *  ascending order. */
+    private static long[] settings(long[] keys, long key) {
+        return LongStream.range(0, keys.length)
+            .filter(n -> keys[(int) n] == key).toArray();
+    }
+
+    /** Return random keys of 1000 settings, each below RANGE, some of
+     *  which are negative when NEGATIVE. */
+    private static long[] keys(long range, boolean negative) {
+        Random random = new Random(5);
+        long[] result = new long[1000];
+        for (int n = 0; n < result.length; n += 1) {
+            result[n] = Math.floorMod(random.nextLong(), range);
+            if (negative && random.nextBoolean()) {
+                result[n] = -1 - result[n];
+            }
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkBitsFor() {
+        assertEquals(1, SettingTable.bitsFor(1));
+        assertEquals(1, SettingTable.bitsFor(2));
+        assertEquals(2, SettingTable.bitsFor(3));
+        assertEquals(10, SettingTable.bitsFor(1024));
+        assertEquals(11, SettingTable.bitsFor(1025));
+    }
+
+    @Test
+    public void checkSettings() {
+        long[] keys = keys(40, false);
+        SettingTable table = table(keys);
+        assertEquals(keys.length, table.size());
+        assertEquals(10, table.bits());
+        for (long key = 0; key <= 40; key += 1) {
+            assertArrayEquals(settings(keys, key), table.settings(key));
+        }
+    }
+
+    @Test
+    public void checkNegativeKeys() {
+        long[] keys = keys(20, true);
+        SettingTable table = table(keys);
+        for (long key = -21; key <= 20; key += 1) {
+            assertArrayEquals(settings(keys, key), table.settings(key));
+        }
+    }
+
+    @Test
+    public void checkSaveAndLoad() throws IOException {
+        long[] keys = keys(1L << 40, false);
+        SettingTable table = table(keys);
+        Path file = Files.createTempFile("table", ".bin");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN).putInt(42);
+            table.save(file, header);
+            assertEquals(Integer.BYTES + keys.length * Long.BYTES,
+                         Files.size(file));
+            ByteBuffer data = SettingTable.map(file);
+            assertEquals(42, data.getInt());
+            assertNull(SettingTable.load(data.duplicate(), keys.length - 1,
+                                         table.bits()));
+            assertNull(SettingTable.load(data.duplicate(), keys.length,
+                                         table.bits() + 1));
+            SettingTable loaded =
+                SettingTable.load(data, keys.length, table.bits());
+            assertEquals(keys.length, loaded.size());
+            for (long key : keys) {
+                assertArrayEquals(table.settings(key), loaded.settings(key));
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkTooMany() {
+        SettingTable.entries(SettingTable.MAX_ENTRIES + 1, "test");
+    }
+
+}
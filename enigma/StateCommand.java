@@ -0,0 +1,158 @@
+package enigma;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--state=STATE [--every=N] [--resume] CONFIG INPUT OUTPUT",
+ *  which converts messages as ConvertCommand does, saving a checkpoint
+ *  of the conversion (see StreamCheckpoint) in file STATE after every N
+ *  characters (default 1048576) and at the end, on a thread of its own.
+ *  With --resume, it continues an interrupted conversion from the
+ *  checkpoint in STATE, if there is one: the machine is restored, the
+ *  lines of INPUT already done are skipped, and OUTPUT is cut back to
+ *  where the checkpoint was taken and appended to, so that it ends up as
+ *  if never interrupted.
+ *  @author Xiaoru Zhao
+ */
+class StateCommand extends ConvertCommand {
+
+    /** My command line. */
+    static final String USAGE =
+        "--state=STATE [--every=N] [--resume] CONFIG INPUT OUTPUT";
+
+    /** A checkpointed conversion whose options and operands are in
+     *  OPTIONS. */
+    StateCommand(Options options) {
+        super(options, USAGE);
+        _stateName = options.value("--state");
+        _every = options.count("--every");
+        boolean resume = options.flag("--resume");
+        List<String> operands = options.operands();
+        if (operands.size() != 3) {
+            throw usage();
+        }
+        setConfig(operands.get(0));
+        setStreams(operands.get(1), null);
+        String name = operands.get(2);
+        Path state = Paths.get(_stateName);
+        try {
+            if (resume && Files.exists(state)) {
+                _resumeFrom = resumeFrom(state);
+                _outputFile = new FileOutputStream(name, true);
+                FileChannel out = _outputFile.getChannel();
+                if (out.size() < _resumeFrom.bytes()) {
+                    throw error("%s is shorter than at checkpoint %s", name,
+                                _stateName);
+                }
+                out.truncate(_resumeFrom.bytes());
+            } else {
+                _outputFile = new FileOutputStream(name);
+            }
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+        setOutput(_outputFile);
+    }
+
+    /** Return the checkpoint in STATE. */
+    private StreamCheckpoint resumeFrom(Path state) {
+        try {
+            return StreamCheckpoint.load(state);
+        } catch (IOException excp) {
+            throw error("could not read %s", _stateName);
+        }
+    }
+
+    @Override
+    void run() {
+        Machine machine = machine();
+        long lines = 0, characters = 0;
+        if (_resumeFrom != null) {
+            machine.restore(_resumeFrom.state());
+            characters = _resumeFrom.characters();
+            for (; lines < _resumeFrom.lines(); lines += 1) {
+                if (!input().hasNextLine()) {
+                    throw error("input is shorter than at checkpoint %s",
+                                _stateName);
+                }
+                input().nextLine();
+            }
+        } else if (!input().hasNext("\\*")) {
+            throw new EnigmaException("no setting");
+        }
+        try (StreamCheckpoint.Writer checkpoints =
+                 new StreamCheckpoint.Writer(Paths.get(_stateName))) {
+            _checkpoints = checkpoints;
+            _characters = characters;
+            _lines = lines;
+            convert(machine, lines, characters);
+            checkpoint(machine, _characters, _lines);
+        }
+    }
+
+    @Override
+    void converted(Machine machine, long characters, long lines,
+                   int count) {
+        _characters = characters;
+        _lines = lines;
+        _since += count;
+        if (_since >= (_every > 0 ? _every : DEFAULT_EVERY)) {
+            checkpoint(machine, characters, lines);
+            _since = 0;
+        }
+    }
+
+    /** Submit a checkpoint of MACHINE, having converted CHARACTERS
+     *  characters since its settings line, after LINES lines of input
+     *  and all the output so far, which is flushed first. */
+    private void checkpoint(Machine machine, long characters, long lines) {
+        output().flush();
+        long bytes;
+        try {
+            bytes = _outputFile.getChannel().position();
+        } catch (IOException excp) {
+            throw error("could not checkpoint output");
+        }
+        _checkpoints.submit(new StreamCheckpoint(machine.state(), characters,
+                                                 lines, bytes));
+    }
+
+    /** Characters converted between checkpoints by default. */
+    private static final int DEFAULT_EVERY = 1 << 20;
+
+    /** Name of the checkpoint file. */
+    private final String _stateName;
+
+    /** Number of characters converted between checkpoints, or 0 for the
+     *  default. */
+    private final int _every;
+
+    /** The checkpoint resumed from, or null. */
+    private StreamCheckpoint _resumeFrom;
+
+    /** The output file. */
+    private FileOutputStream _outputFile;
+
+    /** Where checkpoints are submitted while running. */
+    private StreamCheckpoint.Writer _checkpoints;
+
+    /** Characters converted since the last settings line, as of the last
+     *  line converted. */
+    private long _characters;
+
+    /** Lines of input read, as of the last line converted. */
+    private long _lines;
+
+    /** Characters converted since the last checkpoint. */
+    private long _since;
+
+}
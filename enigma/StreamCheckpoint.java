@@ -0,0 +1,224 @@
+package enigma;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import static enigma.EnigmaException.*;
+
+/** A point reached in converting a long stream of messages: the state
+ *  of the machine, the number of characters converted since the last
+ *  settings line, and how far the input and output had got.  A stream
+ *  resumed from a checkpoint, by restoring the machine, skipping that
+ *  much input, and cutting the output back to that length, gives the
+ *  same output as one never interrupted.
+ *
+ *  A checkpoint is saved as a few dozen bytes: MAGIC, VERSION, the
+ *  number of rotors, each rotor's name, setting, ring setting and notch
+ *  record, the plugboard's cycles, and the three offsets, in the form of
+ *  DataOutputStream.  It is written to a temporary file and renamed
+ *  over the old one, so that the file always holds a whole checkpoint.
+ *  @author Xiaoru Zhao
+ */
+class StreamCheckpoint {
+
+    /** A checkpoint at which the machine was in STATE, having converted
+     *  CHARACTERS characters since its last settings line, after LINES
+     *  lines of input and BYTES bytes of output. */
+    StreamCheckpoint(Machine.State state, long characters, long lines,
+                     long bytes) {
+        _state = state;
+        _characters = characters;
+        _lines = lines;
+        _bytes = bytes;
+    }
+
+    /** Return the state of the machine. */
+    Machine.State state() {
+        return _state;
+    }
+
+    /** Return the number of characters converted since the last
+     *  settings line. */
+    long characters() {
+        return _characters;
+    }
+
+    /** Return the number of input lines read. */
+    long lines() {
+        return _lines;
+    }
+
+    /** Return the number of output bytes written. */
+    long bytes() {
+        return _bytes;
+    }
+
+    /** Save me to FILE, replacing any checkpoint there. */
+    void save(Path file) throws IOException {
+        Path part = file.resolveSibling(file.getFileName() + PART);
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(part)))) {
+            String[] rotors = _state.rotors();
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rotors.length);
+            for (int k = 0; k < rotors.length; k += 1) {
+                out.writeUTF(rotors[k]);
+                out.writeInt(_state.settings()[k]);
+                out.writeInt(_state.rings()[k]);
+                out.writeBoolean(_state.notches()[k]);
+            }
+            out.writeUTF(_state.plugboard());
+            out.writeLong(_characters);
+            out.writeLong(_lines);
+            out.writeLong(_bytes);
+        }
+        Files.move(part, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    /** Return the checkpoint saved in FILE. */
+    static StreamCheckpoint load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw error("%s is not a checkpoint", file);
+            }
+            int n = in.readInt();
+            if (n < 1 || n > MAX_ROTORS) {
+                throw error("bad checkpoint %s", file);
+            }
+            String[] rotors = new String[n];
+            int[] settings = new int[n];
+            int[] rings = new int[n];
+            boolean[] notches = new boolean[n];
+            for (int k = 0; k < n; k += 1) {
+                rotors[k] = in.readUTF();
+                settings[k] = in.readInt();
+                rings[k] = in.readInt();
+                notches[k] = in.readBoolean();
+            }
+            Machine.State state = new Machine.State(rotors, settings, rings,
+                                                    notches, in.readUTF());
+            return new StreamCheckpoint(state, in.readLong(), in.readLong(),
+                                        in.readLong());
+        } catch (EOFException excp) {
+            throw error("checkpoint %s is truncated", file);
+        }
+    }
+
+    /** Saves checkpoints to a file on a thread of its own, so that the
+     *  conversion that makes them never waits for the file system.  If
+     *  checkpoints come faster than they can be saved, only the latest
+     *  is saved. */
+    static class Writer implements AutoCloseable {
+
+        /** A writer of checkpoints to FILE. */
+        Writer(Path file) {
+            _file = file;
+            _pending = new AtomicReference<>();
+            _thread = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "checkpoint " + file);
+                t.setDaemon(true);
+                return t;
+            });
+        }
+
+        /** Save CHECKPOINT soon, in place of any checkpoint not yet
+         *  saved.  Throws if saving an earlier checkpoint failed. */
+        void submit(StreamCheckpoint checkpoint) {
+            check();
+            if (_pending.getAndSet(checkpoint) == null) {
+                _thread.execute(this::drain);
+            }
+        }
+
+        /** Save the latest checkpoint submitted, and wait for it to be
+         *  saved.  Throws if saving any checkpoint failed. */
+        @Override
+        public void close() {
+            _thread.shutdown();
+            try {
+                _thread.awaitTermination(Long.MAX_VALUE,
+                                         TimeUnit.NANOSECONDS);
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw error("interrupted while saving checkpoint");
+            }
+            check();
+        }
+
+        /** Save the pending checkpoint, if any. */
+        private void drain() {
+            StreamCheckpoint checkpoint = _pending.getAndSet(null);
+            if (checkpoint == null || _failure != null) {
+                return;
+            }
+            try {
+                checkpoint.save(_file);
+            } catch (IOException excp) {
+                _failure = excp;
+            }
+        }
+
+        /** Throw if saving a checkpoint has failed. */
+        private void check() {
+            if (_failure != null) {
+                throw error("could not save checkpoint %s: %s", _file,
+                            _failure.getMessage());
+            }
+        }
+
+        /** The checkpoint file. */
+        private final Path _file;
+
+        /** The latest checkpoint not yet being saved, or null. */
+        private final AtomicReference<StreamCheckpoint> _pending;
+
+        /** The thread saving checkpoints. */
+        private final ExecutorService _thread;
+
+        /** The first failure to save a checkpoint, or null. */
+        private volatile IOException _failure;
+
+    }
+
+    /** Identifies a checkpoint file. */
+    static final int MAGIC = 0x454e4350;
+
+    /** Version of the saved form. */
+    static final int VERSION = 2;
+
+    /** Suffix of the temporary file written before renaming. */
+    private static final String PART = ".part";
+
+    /** Most rotors a saved machine may have. */
+    private static final int MAX_ROTORS = 1 << 10;
+
+    /** The state of the machine. */
+    private final Machine.State _state;
+
+    /** Characters converted since the last settings line. */
+    private final long _characters;
+
+    /** Lines of input read. */
+    private final long _lines;
+
+    /** Bytes of output written. */
+    private final long _bytes;
+
+}
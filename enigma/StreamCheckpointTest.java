@@ -0,0 +1,218 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for StreamCheckpoint and the machine
+ *  states it holds.
+ *  @author Xiaoru Zhao
+ */
+public class StreamCheckpointTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(20);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a new machine set up as by historicalMachine(ORDER,
+     *  SETTING, PLUGS), with ring settings RINGS. */
+    private Machine machine(String[] order, String setting, String rings,
+                            String plugs) {
+        Machine result = historicalMachine(order, setting, plugs);
+        result.setRings(rings);
+        return result;
+    }
+
+    /** Return N random upper-case letters from RANDOM. */
+    private String letters(Random random, int n) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < n; i += 1) {
+            result.append((char) ('A' + random.nextInt(UPPER.size())));
+        }
+        return result.toString();
+    }
+
+    /** Return a checkpoint for the tests. */
+    private StreamCheckpoint checkpoint() {
+        Machine m = machine(ORDER, "AXLE", "BCFG", "(AQ)(EP)");
+        m.convert("HELLOWORLD");
+        return new StreamCheckpoint(m.state(), 10, 3, 12);
+    }
+
+    /** Check that A and B are the same machine state. */
+    private void checkSame(Machine.State a, Machine.State b) {
+        assertArrayEquals(a.rotors(), b.rotors());
+        assertArrayEquals(a.settings(), b.settings());
+        assertArrayEquals(a.rings(), b.rings());
+        assertTrue(Arrays.equals(a.notches(), b.notches()));
+        assertEquals(a.plugboard(), b.plugboard());
+    }
+
+    /** Check that a stream whose settings lines are FIRST and, after 150
+     *  lines, SECOND, converted up to a checkpoint and then resumed,
+     *  gives the same output as when converted whole. */
+    private void checkResume(String first, String second) throws Exception {
+        Path config = Files.createTempFile("enigma", ".conf");
+        Path part = Files.createTempFile("enigma", ".in");
+        Path input = Files.createTempFile("enigma", ".in");
+        Path expected = Files.createTempFile("enigma", ".out");
+        Path output = Files.createTempFile("enigma", ".out");
+        Path state = Files.createTempFile("enigma", ".state");
+        try {
+            Files.write(config, Arrays.asList(HistoricalCatalog.LETTERS,
+                                              "5 3", "@historical"));
+            Random random = new Random(5);
+            List<String> lines = new ArrayList<>();
+            lines.add(first);
+            for (int i = 0; i < 300; i += 1) {
+                lines.add(letters(random, 1 + random.nextInt(60)));
+                if (i == 150) {
+                    lines.add(second);
+                }
+            }
+            Files.write(input, lines);
+            Files.write(part, lines.subList(0, 200));
+            Main.main(config.toString(), input.toString(),
+                      expected.toString());
+            Files.delete(state);
+            Main.main("--state=" + state, "--every=1", config.toString(),
+                      part.toString(), output.toString());
+            assertEquals(200, StreamCheckpoint.load(state).lines());
+            Files.write(output, "GARBAGE\n".getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.APPEND);
+            Main.main("--state=" + state, "--resume", config.toString(),
+                      input.toString(), output.toString());
+            assertEquals(Files.readAllLines(expected),
+                         Files.readAllLines(output));
+            assertEquals(lines.size(), StreamCheckpoint.load(state).lines());
+        } finally {
+            for (Path p : new Path[] { config, part, input, expected,
+                                       output, state }) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /** Rotor order used in the tests. */
+    private static final String[] ORDER = { "B", "Beta", "I", "II", "III" };
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkRestore() {
+        Random random = new Random(11);
+        String msg = letters(random, 2000);
+        Machine whole = historicalMachine(ORDER, "ADEU", "(AQ)(EP)(TR)");
+        String expected = whole.convert(msg);
+        Machine m = historicalMachine(ORDER, "ADEU", "(AQ)(EP)(TR)");
+        StringBuilder got = new StringBuilder();
+        for (int i = 0; i < msg.length(); i += 37) {
+            Machine.State state = m.state();
+            m = historicalMachine(new String[] {
+                    "C", "Gamma", "VI", "VII", "VIII" }, "ZZZZ", "");
+            m.restore(state);
+            checkSame(state, m.state());
+            got.append(m.convert(msg.substring(i,
+                                               Math.min(msg.length(),
+                                                        i + 37))));
+        }
+        assertEquals(expected, got.toString());
+    }
+
+    @Test
+    public void checkSaveAndLoad() throws Exception {
+        Path file = Files.createTempFile("enigma", ".state");
+        try {
+            StreamCheckpoint saved = checkpoint();
+            saved.save(file);
+            assertTrue(Files.size(file) < 128);
+            StreamCheckpoint loaded = StreamCheckpoint.load(file);
+            checkSame(saved.state(), loaded.state());
+            assertEquals(10, loaded.characters());
+            assertEquals(3, loaded.lines());
+            assertEquals(12, loaded.bytes());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkWriter() throws Exception {
+        Path file = Files.createTempFile("enigma", ".state");
+        try {
+            Machine m = historicalMachine(ORDER, "AAAA", "");
+            try (StreamCheckpoint.Writer writer =
+                     new StreamCheckpoint.Writer(file)) {
+                for (int i = 1; i <= 1000; i += 1) {
+                    m.convert("A");
+                    writer.submit(new StreamCheckpoint(m.state(), i, i, i));
+                }
+            }
+            StreamCheckpoint loaded = StreamCheckpoint.load(file);
+            assertEquals(1000, loaded.lines());
+            checkSame(m.state(), loaded.state());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void checkRestoreRings() {
+        Random random = new Random(12);
+        String msg = letters(random, 2000);
+        Machine whole = machine(ORDER, "ADEU", "BCFG", "(AQ)(EP)");
+        String expected = whole.convert(msg);
+        Machine m = machine(ORDER, "ADEU", "BCFG", "(AQ)(EP)");
+        StringBuilder got = new StringBuilder();
+        for (int i = 0; i < msg.length(); i += 41) {
+            Machine.State state = m.state();
+            assertArrayEquals(new int[] { 0, 1, 2, 5, 6 }, state.rings());
+            m = machine(ORDER, "ADEU", "ZZZZ", "(AQ)(EP)");
+            m.restore(state);
+            checkSame(state, m.state());
+            got.append(m.convert(msg.substring(i,
+                                               Math.min(msg.length(),
+                                                        i + 41))));
+        }
+        assertEquals(expected, got.toString());
+    }
+
+    @Test
+    public void checkResume() throws Exception {
+        checkResume("* B Beta III IV I AXLE (HQ) (EX) (IP) (TR) (BY)",
+                    "* C Gamma VI VII VIII QZMR (AQ)");
+    }
+
+    @Test
+    public void checkResumeRings() throws Exception {
+        checkResume("* B Beta III IV I AXLE BCFG (HQ) (EX)",
+                    "* C Gamma VI VII VIII QZMR DKPA (AQ)");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkBadCheckpoint() throws Exception {
+        Path file = Files.createTempFile("enigma", ".state");
+        try {
+            Files.write(file, "not a checkpoint".getBytes("UTF-8"));
+            StreamCheckpoint.load(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+}
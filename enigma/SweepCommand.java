@@ -0,0 +1,179 @@
+package enigma;
+
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--sweep [--match=TEXT] [--top=N] [--threads=N]
+ *  [--workers=W --checkpoint=DIR] CONFIG SPACE INPUT [OUTPUT]", which
+ *  converts the message in INPUT (all its lines run together, without
+ *  whitespace) under every setting in SPACE, which is a settings line
+ *  allowing choices (see KeyspaceSweep.parse).  For each setting whose
+ *  output starts with TEXT (or for every setting, if no TEXT is given),
+ *  it prints the equivalent settings line and the converted message, in
+ *  no particular order.  With --top, it prints instead only the N
+ *  settings whose outputs agree with TEXT in the most places, best
+ *  first.
+ *
+ *  With "--workers=W --checkpoint=DIR", the sweep is split among W
+ *  worker processes (see WorkerCommand) sharing the work directory DIR
+ *  (see SweepCoordinator), each using --threads threads (default 1).
+ *  The parts of the sweep done are kept in DIR, so that the same
+ *  command run again after the sweep is killed resumes it.  It prints
+ *  the same results as a single process, in order of setting unless
+ *  --top is given.
+ *  @author Xiaoru Zhao
+ */
+class SweepCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE =
+        "--sweep [--match=TEXT] [--top=N] [--threads=N]"
+        + " [--workers=W --checkpoint=DIR] CONFIG SPACE INPUT [OUTPUT]";
+
+    /** A sweep whose options and operands are in OPTIONS. */
+    SweepCommand(Options options) {
+        super(options, USAGE);
+        options.flag("--sweep");
+        String match = options.value("--match");
+        _match = match == null ? null : match.replaceAll("\\s", "");
+        _top = options.count("--top");
+        _threads = options.count("--threads");
+        _workers = options.count("--workers");
+        _checkpointName = options.value("--checkpoint");
+        List<String> operands = options.operands();
+        if (operands.size() < 3 || operands.size() > 4) {
+            throw usage();
+        }
+        if (_top > 0 && _match == null) {
+            throw error("--top requires --match");
+        }
+        if ((_workers > 0) != (_checkpointName != null)) {
+            throw error("--workers and --checkpoint go together");
+        }
+        setConfig(operands.get(0));
+        _settings = operands.get(1);
+        setStreams(operands.get(2),
+                   operands.size() > 3 ? operands.get(3) : null);
+    }
+
+    @Override
+    void run() {
+        KeyspaceSweep sweep = space(machine());
+        sweep.parse(_settings);
+        if (_threads > 0) {
+            sweep.setThreads(_threads);
+        }
+        String text = readAll();
+        if (_checkpointName != null) {
+            coordinate(sweep, text);
+            return;
+        }
+        int[] message = indices(text);
+        if (_top > 0) {
+            int[] target = indices(_match);
+            for (KeyspaceSweep.Result r
+                     : sweep.top(message, out -> agreement(out, target),
+                                 _top)) {
+                printResult(sweep, r);
+            }
+        } else {
+            Predicate<int[]> accept = out -> true;
+            if (_match != null) {
+                int[] target = indices(_match);
+                accept = out -> agreement(out, target) == target.length;
+            }
+            sweep.run(message, accept, r -> printResult(sweep, r));
+        }
+        output().flush();
+    }
+
+    /** Sweep MESSAGE through SWEEP with _workers worker processes sharing
+     *  the work directory _checkpointName, resuming any sweep already
+     *  begun there, and print the results as run does. */
+    private void coordinate(KeyspaceSweep sweep, String message) {
+        SweepCoordinator coordinator =
+            new SweepCoordinator(Paths.get(_checkpointName));
+        List<String> job = new ArrayList<>();
+        job.add(Paths.get(config().name()).toAbsolutePath().toString());
+        job.add(_settings);
+        job.add(_match == null ? "" : _match);
+        job.add(Integer.toString(_top));
+        job.add(message);
+        coordinator.prepare(job, sweep.size());
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java")
+                    .toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Main.class.getName());
+        command.add("--worker=" + _checkpointName);
+        if (_threads > 0) {
+            command.add("--threads=" + _threads);
+        }
+        coordinator.launch(command, _workers);
+        List<String[]> results = new ArrayList<>();
+        for (String line : coordinator.results()) {
+            results.add(line.split("\t", 3));
+        }
+        if (_top > 0) {
+            results.sort(Comparator.comparingDouble(
+                (String[] r) -> Double.parseDouble(r[0])).reversed());
+            results = results.subList(0, Math.min(_top, results.size()));
+        }
+        for (String[] r : results) {
+            output().println(r[1]);
+            printMessageLine(r[2]);
+        }
+        output().flush();
+    }
+
+    /** Print the settings line and output of R, a result of SWEEP. */
+    private void printResult(KeyspaceSweep sweep, KeyspaceSweep.Result r) {
+        output().println(r.settingsLine(alphabet(), sweep.plugboard()));
+        printMessageLine(r.output(alphabet()));
+    }
+
+    /** Return the number of places where OUTPUT agrees with TARGET. */
+    static int agreement(int[] output, int[] target) {
+        int n = Math.min(output.length, target.length);
+        int result = 0;
+        for (int t = 0; t < n; t += 1) {
+            if (output[t] == target[t]) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Number of lines describing a sweep in its work directory: the
+     *  configuration file, space, match, number of best results, and
+     *  message. */
+    static final int JOB_LINES = 5;
+
+    /** Space of settings swept. */
+    private final String _settings;
+
+    /** Text that swept outputs must start with, or null. */
+    private final String _match;
+
+    /** Number of best swept results printed, or 0 to print all that
+     *  match. */
+    private final int _top;
+
+    /** Number of threads sweeping, or 0 for the default. */
+    private final int _threads;
+
+    /** Number of worker processes sweeping, or 0 to sweep in this
+     *  process. */
+    private final int _workers;
+
+    /** Work directory shared by the sweep's workers, or null. */
+    private final String _checkpointName;
+
+}
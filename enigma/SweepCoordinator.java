@@ -0,0 +1,313 @@
+package enigma;
+
+import java.io.IOException;
+
+import java.lang.ProcessBuilder.Redirect;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+import static enigma.EnigmaException.*;
+
+/** Splits a search over the settings of a KeyspaceSweep among many
+ *  worker processes that share a work directory, and keeps in that
+ *  directory every part of the search that has been done, so that a
+ *  search that is killed can be resumed without redoing that work.
+ *
+ *  The settings, numbered 0 .. size - 1, are split into work units of
+ *  consecutive settings.  The directory holds a file JOB describing the
+ *  search, whose first line gives the number of settings and of
+ *  settings per unit, and whose other lines are opaque to the
+ *  coordinator.  A worker claims unit N by creating the file N.claim,
+ *  which only one worker can do, and records the unit as done by
+ *  renaming its lines of results to N.done, so that a unit is either
+ *  done completely or not at all.  Claims left by workers that died
+ *  are cleared whenever no worker is running.
+ *  @author Xiaoru Zhao
+ */
+class SweepCoordinator {
+
+    /** Does the search of one work unit. */
+    interface Task {
+        /** Search the settings numbered FROM .. TO-1, and return the
+         *  results as lines of text, which must not contain line
+         *  breaks. */
+        List<String> run(long from, long to);
+    }
+
+    /** A coordinator of searches kept in the directory DIR. */
+    SweepCoordinator(Path dir) {
+        _dir = dir;
+    }
+
+    /** Use units of N settings for searches prepared from now on, rather
+     *  than a size chosen from the size of the search. */
+    void setUnitSize(long n) {
+        if (n < 1) {
+            throw error("work units must hold at least one setting");
+        }
+        _unitSize = n;
+    }
+
+    /** Set up my directory for the search of SIZE settings described by
+     *  JOB, or, if it already holds that search, resume it.  Returns the
+     *  number of units left to do.  No worker may be running. */
+    int prepare(List<String> job, long size) {
+        try {
+            Files.createDirectories(_dir);
+            Path file = _dir.resolve(JOB);
+            if (Files.exists(file)) {
+                readJob();
+                if (_size != size || !_job.equals(job)) {
+                    throw error("%s holds a different search", _dir);
+                }
+            } else {
+                long unit = _unitSize > 0 ? _unitSize
+                    : Math.max(MIN_UNIT, (size + MAX_UNITS - 1) / MAX_UNITS);
+                List<String> lines = new ArrayList<>();
+                lines.add(size + " " + unit);
+                lines.addAll(job);
+                write(file, lines);
+                readJob();
+            }
+            clearClaims();
+            return remaining();
+        } catch (IOException excp) {
+            throw error("could not set up %s: %s", _dir, excp.getMessage());
+        }
+    }
+
+    /** Return the description of the search in my directory. */
+    List<String> job() {
+        readJob();
+        return _job;
+    }
+
+    /** Return the number of work units of the search in my directory. */
+    int units() {
+        readJob();
+        return _units;
+    }
+
+    /** Return the number of work units not yet done. */
+    int remaining() {
+        readJob();
+        int result = 0;
+        for (int n = 0; n < _units; n += 1) {
+            if (!Files.exists(done(n))) {
+                result += 1;
+            }
+        }
+        return result;
+    }
+
+    /** Do every work unit not yet done or claimed with TASK, claiming
+     *  each for the worker named NAME, until none is left.  Returns the
+     *  number of units done. */
+    int work(String name, Task task) {
+        readJob();
+        int result = 0;
+        for (int n = 0; n < _units; n += 1) {
+            Path claim = _dir.resolve(n + CLAIM);
+            if (Files.exists(done(n))) {
+                continue;
+            }
+            try {
+                Files.write(Files.createFile(claim),
+                            name.getBytes(StandardCharsets.UTF_8));
+            } catch (FileAlreadyExistsException excp) {
+                continue;
+            } catch (IOException excp) {
+                throw error("could not claim unit %d: %s", n,
+                            excp.getMessage());
+            }
+            if (Files.exists(done(n))) {
+                release(claim);
+                continue;
+            }
+            long from = n * _unitSize;
+            List<String> lines =
+                task.run(from, Math.min(_size, from + _unitSize));
+            Path part = _dir.resolve(n + "." + name + PART);
+            try {
+                write(part, lines);
+                Files.move(part, done(n), ATOMIC_MOVE);
+            } catch (IOException excp) {
+                throw error("could not save unit %d: %s", n,
+                            excp.getMessage());
+            }
+            release(claim);
+            result += 1;
+        }
+        return result;
+    }
+
+    /** Run WORKERS processes with COMMAND, each of which should do work
+     *  units in my directory until none is left, and wait for them.  If
+     *  any units are left after they all exit, clear their claims and
+     *  run the workers again, as long as each round does some units.
+     *  The workers' standard error is that of this process. */
+    void launch(List<String> command, int workers) {
+        int left = remaining();
+        while (left > 0) {
+            List<Process> running = new ArrayList<>();
+            try {
+                for (int i = 0; i < Math.min(workers, left); i += 1) {
+                    running.add(new ProcessBuilder(command)
+                                .redirectOutput(Redirect.DISCARD)
+                                .redirectError(Redirect.INHERIT)
+                                .start());
+                }
+                for (Process p : running) {
+                    p.waitFor();
+                }
+            } catch (IOException excp) {
+                throw error("could not start worker: %s", excp.getMessage());
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                throw error("search interrupted");
+            } finally {
+                for (Process p : running) {
+                    p.destroy();
+                }
+            }
+            clearClaims();
+            int now = remaining();
+            if (now == left) {
+                throw error("workers failed with %d of %d units left",
+                            now, _units);
+            }
+            left = now;
+        }
+    }
+
+    /** Return the result lines of every work unit, in order of unit.
+     *  Every unit must be done. */
+    List<String> results() {
+        readJob();
+        List<String> result = new ArrayList<>();
+        for (int n = 0; n < _units; n += 1) {
+            try {
+                result.addAll(Files.readAllLines(done(n),
+                                                 StandardCharsets.UTF_8));
+            } catch (NoSuchFileException excp) {
+                throw error("unit %d of %s is not done", n, _dir);
+            } catch (IOException excp) {
+                throw error("could not read unit %d: %s", n,
+                            excp.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /** Remove the claims on units not done, and any partial results
+     *  left by workers that died. */
+    private void clearClaims() {
+        try {
+            try (DirectoryStream<Path> files =
+                     Files.newDirectoryStream(_dir)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(CLAIM) || name.endsWith(PART)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException excp) {
+            throw error("could not clear claims in %s: %s", _dir,
+                        excp.getMessage());
+        }
+    }
+
+    /** Remove CLAIM, which was made by this worker. */
+    private void release(Path claim) {
+        try {
+            Files.deleteIfExists(claim);
+        } catch (IOException excp) {
+            throw error("could not release %s", claim);
+        }
+    }
+
+    /** Read the job file of my directory into _size, _unitSize, _units,
+     *  and _job, unless already read. */
+    private void readJob() {
+        if (_job != null) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(_dir.resolve(JOB),
+                                       StandardCharsets.UTF_8);
+        } catch (IOException excp) {
+            throw error("%s holds no search", _dir);
+        }
+        try {
+            String[] header = lines.get(0).split(" ");
+            _size = Long.parseLong(header[0]);
+            _unitSize = Long.parseLong(header[1]);
+        } catch (IndexOutOfBoundsException | NumberFormatException excp) {
+            throw error("bad job file in %s", _dir);
+        }
+        if (_size < 0 || _unitSize < 1
+            || (_size + _unitSize - 1) / _unitSize > Integer.MAX_VALUE) {
+            throw error("bad job file in %s", _dir);
+        }
+        _units = (int) ((_size + _unitSize - 1) / _unitSize);
+        _job = new ArrayList<>(lines.subList(1, lines.size()));
+    }
+
+    /** Return the file holding the results of unit N. */
+    private Path done(int n) {
+        return _dir.resolve(n + DONE);
+    }
+
+    /** Write LINES to FILE, replacing its contents. */
+    private static void write(Path file, List<String> lines)
+        throws IOException {
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    /** Name of the job file. */
+    static final String JOB = "JOB";
+
+    /** Suffix of a claim on a unit. */
+    private static final String CLAIM = ".claim";
+
+    /** Suffix of a unit's results. */
+    private static final String DONE = ".done";
+
+    /** Suffix of a unit's results being written. */
+    private static final String PART = ".part";
+
+    /** Fewest settings in a unit, unless set by setUnitSize. */
+    private static final long MIN_UNIT = 1 << 16;
+
+    /** Most units into which a search is split, unless the unit size is
+     *  set by setUnitSize. */
+    private static final long MAX_UNITS = 1024;
+
+    /** The work directory. */
+    private final Path _dir;
+
+    /** Number of settings searched. */
+    private long _size;
+
+    /** Number of settings in each unit, or 0 if not yet chosen. */
+    private long _unitSize;
+
+    /** Number of units. */
+    private int _units;
+
+    /** Description of the search, or null if not yet read. */
+    private List<String> _job;
+
+}
@@ -0,0 +1,221 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for SweepCoordinator.
+ *  @author Xiaoru Zhao
+ */
+public class SweepCoordinatorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a task whose result for settings FROM .. TO-1 is a line
+     *  for each setting, counting the units done in DONE. */
+    private SweepCoordinator.Task counting(AtomicInteger done) {
+        return (from, to) -> {
+            done.incrementAndGet();
+            List<String> lines = new ArrayList<>();
+            for (long n = from; n < to; n += 1) {
+                lines.add("setting " + n);
+            }
+            return lines;
+        };
+    }
+
+    /** Return the lines of counting for settings 0 .. SIZE-1. */
+    private List<String> expected(long size) {
+        List<String> result = new ArrayList<>();
+        for (long n = 0; n < size; n += 1) {
+            result.add("setting " + n);
+        }
+        return result;
+    }
+
+    /** Delete DIR and its contents. */
+    private void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    /** Return a new machine with naval rotors B, I, II and III. */
+    private Machine machine() {
+        return navalMachine(4, "B", "I", "II", "III");
+    }
+
+    /** The configuration of the machines returned by machine(). */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n4 3\n"
+        + "B R " + NAVALA.get("B") + "\n"
+        + "I MQ " + NAVALA.get("I") + "\n"
+        + "II ME " + NAVALA.get("II") + "\n"
+        + "III MV " + NAVALA.get("III") + "\n";
+
+    /** Space of settings swept. */
+    private static final String SPACE = "* B ? ? ? A?? (AQ)(EP)";
+
+    /** Message swept. */
+    private static final String MESSAGE = "HELLOWORLDHELLOWORLD";
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkWorkersShareUnits() throws Exception {
+        Path dir = Files.createTempDirectory("enigma");
+        try {
+            SweepCoordinator coordinator = new SweepCoordinator(dir);
+            coordinator.setUnitSize(7);
+            assertEquals(15, coordinator.prepare(Arrays.asList("a", "b"),
+                                                 100));
+            AtomicInteger done = new AtomicInteger();
+            List<Thread> workers = new ArrayList<>();
+            int[] counts = new int[4];
+            for (int i = 0; i < counts.length; i += 1) {
+                int k = i;
+                SweepCoordinator worker = new SweepCoordinator(dir);
+                workers.add(new Thread(() ->
+                    counts[k] = worker.work("w" + k, counting(done))));
+            }
+            workers.forEach(Thread::start);
+            for (Thread t : workers) {
+                t.join();
+            }
+            assertEquals(15, done.get());
+            assertEquals(15, Arrays.stream(counts).sum());
+            assertEquals(0, coordinator.remaining());
+            assertEquals(expected(100), coordinator.results());
+            assertEquals(Arrays.asList("a", "b"),
+                         new SweepCoordinator(dir).job());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void checkResume() throws Exception {
+        Path dir = Files.createTempDirectory("enigma");
+        try {
+            List<String> job = Collections.singletonList("job");
+            SweepCoordinator first = new SweepCoordinator(dir);
+            first.setUnitSize(10);
+            assertEquals(10, first.prepare(job, 95));
+            AtomicInteger done = new AtomicInteger();
+            SweepCoordinator.Task dying = (from, to) -> {
+                if (done.get() == 3) {
+                    throw new IllegalStateException("killed");
+                }
+                return counting(done).run(from, to);
+            };
+            try {
+                first.work("dies", dying);
+                fail("worker did not die");
+            } catch (IllegalStateException excp) {
+                assertEquals(3, done.get());
+            }
+            assertEquals(7, first.remaining());
+            SweepCoordinator second = new SweepCoordinator(dir);
+            assertEquals(7, second.prepare(job, 95));
+            done.set(0);
+            assertEquals(7, second.work("lives", counting(done)));
+            assertEquals(7, done.get());
+            assertEquals(expected(95), second.results());
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void checkDifferentJob() throws Exception {
+        Path dir = Files.createTempDirectory("enigma");
+        try {
+            new SweepCoordinator(dir).prepare(Arrays.asList("a"), 10);
+            new SweepCoordinator(dir).prepare(Arrays.asList("b"), 10);
+            fail("different job accepted");
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void checkNotDone() throws Exception {
+        Path dir = Files.createTempDirectory("enigma");
+        try {
+            new SweepCoordinator(dir).prepare(Arrays.asList("a"), 10);
+            new SweepCoordinator(dir).results();
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void checkProcesses() throws Exception {
+        Path dir = Files.createTempDirectory("enigma");
+        Path config = Files.createTempFile("enigma", ".conf");
+        try {
+            Files.write(config, CONFIG.getBytes("UTF-8"));
+            Machine m = machine();
+            KeyspaceSweep sweep = new KeyspaceSweep(UPPER, 4, 3, m.catalog());
+            sweep.parse(SPACE);
+            int[] message = new int[MESSAGE.length()];
+            for (int i = 0; i < message.length; i += 1) {
+                message[i] = UPPER.toInt(MESSAGE.charAt(i));
+            }
+            List<String> expected = new ArrayList<>();
+            sweep.run(message, out -> out[0] == UPPER.toInt('A'),
+                      r -> expected.add(r.settingsLine(UPPER, "(AQ)(EP)")));
+            SweepCoordinator coordinator = new SweepCoordinator(dir);
+            coordinator.setUnitSize(sweep.size() / 5);
+            List<String> job = Arrays.asList(config.toString(), SPACE, "A",
+                                             "0", MESSAGE);
+            assertEquals(6, coordinator.prepare(job, sweep.size()));
+            coordinator.launch(Arrays.asList(
+                Paths.get(System.getProperty("java.home"), "bin", "java")
+                    .toString(),
+                "-cp", System.getProperty("java.class.path"),
+                Main.class.getName(), "--worker=" + dir), 3);
+            assertEquals(0, coordinator.remaining());
+            List<String> found = new ArrayList<>();
+            for (String line : coordinator.results()) {
+                String[] fields = line.split("\t");
+                assertEquals(3, fields.length);
+                assertTrue(fields[2].startsWith("A"));
+                found.add(fields[1]);
+            }
+            Collections.sort(expected);
+            Collections.sort(found);
+            assertTrue(expected.size() > 100);
+            assertEquals(expected, found);
+        } finally {
+            delete(dir);
+            Files.delete(config);
+        }
+    }
+
+}
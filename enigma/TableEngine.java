@@ -0,0 +1,95 @@
+package enigma;
+
+import static enigma.ScalarLockstepEngine.shift;
+import static enigma.ScalarLockstepEngine.step;
+
+/** A ConversionEngine that compiles the machine into a MachineLanes of
+ *  one lane and converts through its tables, stepping the rotors as
+ *  ScalarLockstepEngine does.  The tables of each rotor and plugboard
+ *  are compiled on first use and kept, up to a limit, so a machine whose
+ *  key changes back and forth among rotors it has used before compiles
+ *  little.  Subclasses convert the lane in other ways through run.
+ *  @author Xiaoru Zhao
+ */
+class TableEngine extends ConversionEngine {
+
+    @Override
+    String name() {
+        return "table";
+    }
+
+    @Override
+    void convert(Machine machine, int[] msg, int from, int to, int[] out) {
+        if (_lanes == null || _lanes.numRotors() != machine.numRotors()
+            || _lanes.size() != machine.getAlphabet().size()
+            || _lanes.pool().length > MAX_POOL) {
+            _lanes = new MachineLanes(machine.numRotors(),
+                                      machine.getAlphabet().size(), 1);
+            _lanes.addLane();
+        }
+        _lanes.set(0, machine);
+        run(_lanes, msg, from, to, out);
+        for (int k = 1; k < machine.numRotors(); k += 1) {
+            Rotor rotor = machine.rotor(k);
+            if (rotor.rotates()) {
+                rotor.set(_lanes.positions(k)[0]);
+                rotor.updateNotch(_lanes.before(k)[0] != 0);
+            }
+        }
+    }
+
+    /** Convert MSG[FROM] .. MSG[TO-1] through the only lane of LANES into
+     *  OUT[FROM] .. OUT[TO-1], as for convert, leaving the lane in its
+     *  final state.  OUT may be MSG. */
+    void run(MachineLanes lanes, int[] msg, int from, int to, int[] out) {
+        int n = lanes.numRotors(), size = lanes.size();
+        int[] pool = lanes.pool();
+        int[] base = new int[n], posn = new int[n];
+        int[] before = new int[n], rotates = new int[n];
+        load(lanes, base, posn, before, rotates);
+        int plug = lanes.plugboards()[0];
+        for (int t = from; t < to; t += 1) {
+            step(pool, size, base, posn, before, rotates);
+            int r = pool[plug + msg[t]];
+            for (int k = n - 1; k >= 0; k -= 1) {
+                r = shift(pool[base[k] + shift(r, posn[k], size)],
+                          -posn[k], size);
+            }
+            for (int k = 1; k < n; k += 1) {
+                r = shift(pool[base[k] + size + shift(r, posn[k], size)],
+                          -posn[k], size);
+            }
+            out[t] = pool[plug + r];
+        }
+        store(lanes, posn, before);
+    }
+
+    /** Copy the table offsets, positions, notch flags and moving rotors
+     *  of the only lane of LANES into BASE, POSN, BEFORE and ROTATES. */
+    static void load(MachineLanes lanes, int[] base, int[] posn,
+                     int[] before, int[] rotates) {
+        for (int k = 0; k < lanes.numRotors(); k += 1) {
+            base[k] = lanes.base(k)[0];
+            posn[k] = lanes.positions(k)[0];
+            before[k] = lanes.before(k)[0];
+            rotates[k] = lanes.rotates(k)[0];
+        }
+    }
+
+    /** Make POSN and BEFORE the positions and notch flags of the only
+     *  lane of LANES. */
+    static void store(MachineLanes lanes, int[] posn, int[] before) {
+        for (int k = 0; k < lanes.numRotors(); k += 1) {
+            lanes.positions(k)[0] = posn[k];
+            lanes.before(k)[0] = before[k];
+        }
+    }
+
+    /** Size of the table pool beyond which the tables compiled so far,
+     *  for rotors and plugboards perhaps no longer used, are dropped. */
+    private static final int MAX_POOL = 1 << 16;
+
+    /** The machine compiled, as lane 0. */
+    private MachineLanes _lanes;
+
+}
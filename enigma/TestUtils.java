@@ -1,5 +1,7 @@
 package enigma;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 
 /** Utility definitions for use in unit tests.
@@ -126,4 +128,87 @@ class TestUtils {
         NAVALZ_MAP.put("Gamma", "EGTPLBOVFSINCUJZDXMRQAYWHK");
     }
 
+    /** The notches of the naval moving rotors. */
+    static final HashMap<String, String> NAVAL_NOTCHES = new HashMap<>();
+    static {
+        NAVAL_NOTCHES.put("I", "Q");
+        NAVAL_NOTCHES.put("II", "E");
+        NAVAL_NOTCHES.put("III", "V");
+        NAVAL_NOTCHES.put("IV", "J");
+        NAVAL_NOTCHES.put("V", "Z");
+        NAVAL_NOTCHES.put("VI", "ZM");
+        NAVAL_NOTCHES.put("VII", "ZM");
+        NAVAL_NOTCHES.put("VIII", "ZM");
+    }
+
+    /** Return new rotors over UPPER with the wirings in NAVALA of the
+     *  naval rotors NAMES: reflectors for B and C, fixed rotors for Beta
+     *  and Gamma, and moving rotors with the notches in NAVAL_NOTCHES for
+     *  the rest. */
+    static Collection<Rotor> navalRotors(String... names) {
+        Collection<Rotor> result = new ArrayList<>();
+        for (String name : names) {
+            Permutation perm = new Permutation(NAVALA.get(name), UPPER);
+            switch (name) {
+            case "B": case "C":
+                result.add(new Reflector(name, perm));
+                break;
+            case "Beta": case "Gamma":
+                result.add(new FixedRotor(name, perm));
+                break;
+            default:
+                result.add(new MovingRotor(name, perm,
+                                           NAVAL_NOTCHES.get(name)));
+                break;
+            }
+        }
+        return result;
+    }
+
+    /** Return a new machine over UPPER with NUMROTORS slots, 3 pawls, and
+     *  the naval rotors NAMES (see navalRotors), with no rotors
+     *  inserted. */
+    static Machine navalMachine(int numRotors, String... names) {
+        return new Machine(UPPER, numRotors, 3, navalRotors(names));
+    }
+
+    /** Return a new machine with 5 slots, 3 pawls and the historical
+     *  rotors (see HistoricalCatalog), set up with rotors ORDER at
+     *  SETTING and plugboard PLUGS. */
+    static Machine historicalMachine(String[] order, String setting,
+                                     String plugs) {
+        Machine result =
+            new Machine(UPPER, 5, 3, new HistoricalCatalog(UPPER));
+        result.insertRotors(order);
+        result.setRotors(setting);
+        result.setPlugboard(new Permutation(plugs, UPPER));
+        return result;
+    }
+
+    /** Return a new machine with 5 slots, 3 pawls and the historical
+     *  rotors, set up by the settings line LINE (see Command.setUp). */
+    static Machine historicalMachine(String line) {
+        Machine result =
+            new Machine(UPPER, 5, 3, new HistoricalCatalog(UPPER));
+        Command.setUp(result, line);
+        return result;
+    }
+
+    /** An alphabet of an odd number of letters. */
+    static final Alphabet ODD = new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXY");
+
+    /** Return new rotors over ODD: a reflector R, which must leave Y
+     *  fixed, and moving rotors I and II. */
+    static Collection<Rotor> oddRotors() {
+        Collection<Rotor> result = new ArrayList<>();
+        result.add(new Reflector("R", new Permutation(
+            "(AN) (BO) (CP) (DQ) (ER) (FS) (GT) (HU) (IV) (JW) (KX) (LM)",
+            ODD)));
+        result.add(new MovingRotor("I", new Permutation(
+            "(ACEGIKMOQSUWY) (BDFHJLNPRTVX)", ODD), "M"));
+        result.add(new MovingRotor("II", new Permutation(
+            "(AYXWVUTSRQPONMLKJIHGFEDCB)", ODD), "E"));
+        return result;
+    }
+
 }
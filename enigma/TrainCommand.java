@@ -0,0 +1,79 @@
+package enigma;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import java.nio.file.Paths;
+
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--train [--ngram=N] [--packed] CONFIG CORPUS TABLE", which
+ *  counts the N-grams (default 3) of the text in CORPUS over the
+ *  alphabet of CONFIG and saves their log frequencies in TABLE (see
+ *  NGramScorer), packed into shorts with --packed.
+ *  @author Xiaoru Zhao
+ */
+class TrainCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE =
+        "--train [--ngram=N] [--packed] CONFIG CORPUS TABLE";
+
+    /** A training run whose options and operands are in OPTIONS. */
+    TrainCommand(Options options) {
+        super(options, USAGE);
+        options.flag("--train");
+        _ngram = options.count("--ngram");
+        _packed = options.flag("--packed");
+        List<String> operands = options.operands();
+        if (operands.size() != 3) {
+            throw usage();
+        }
+        setConfig(operands.get(0));
+        _corpusName = operands.get(1);
+        _tableName = operands.get(2);
+    }
+
+    @Override
+    void run() {
+        machine();
+        NGramScorer scorer = train(alphabet(), _ngram, _corpusName);
+        try {
+            scorer.save(Paths.get(_tableName), _packed);
+        } catch (IOException excp) {
+            throw error("could not write %s", _tableName);
+        }
+    }
+
+    /** Return a scorer of N-grams (or DEFAULT_NGRAM-grams if N is 0)
+     *  over ALPHABET trained on the text in file NAME. */
+    static NGramScorer train(Alphabet alphabet, int n, String name) {
+        try (Reader corpus = new InputStreamReader(
+                 new FileInputStream(name), CHARSET)) {
+            return NGramScorer.train(alphabet, n > 0 ? n : DEFAULT_NGRAM,
+                                     corpus);
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+    }
+
+    /** Length of n-grams by default. */
+    static final int DEFAULT_NGRAM = 3;
+
+    /** Length of n-grams, or 0 for the default. */
+    private final int _ngram;
+
+    /** True iff the table is packed into shorts. */
+    private final boolean _packed;
+
+    /** Name of the corpus. */
+    private final String _corpusName;
+
+    /** Name of the table saved. */
+    private final String _tableName;
+
+}
@@ -11,7 +11,28 @@ public class UnitTest {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         System.exit(textui.runClasses(PermutationTest.class,
-                                      MovingRotorTest.class));
+                                      MovingRotorTest.class,
+                                      MachineTest.class,
+                                      ByteMachineTest.class,
+                                      EnigmaMetricsTest.class,
+                                      LockstepEngineTest.class,
+                                      KeyspaceSweepTest.class,
+                                      BombeTest.class,
+                                      CiphertextAttackTest.class,
+                                      NGramScorerTest.class,
+                                      CribScannerTest.class,
+                                      SweepCoordinatorTest.class,
+                                      HistoricalCatalogTest.class,
+                                      StreamCheckpointTest.class,
+                                      ConversionEngineTest.class,
+                                      CycleCatalogTest.class,
+                                      ConversionProcessorTest.class,
+                                      CatalogRegistryTest.class,
+                                      CipherContainerTest.class,
+                                      PrefixIndexTest.class,
+                                      MappedFileCipherTest.class,
+                                      LazyRotorCatalogTest.class,
+                                      SettingTableTest.class));
     }
 
 }
@@ -0,0 +1,99 @@
+package enigma;
+
+import java.nio.file.Paths;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static enigma.EnigmaException.*;
+
+/** The mode "--worker=DIR [--threads=N]", which runs one worker of the
+ *  sweep kept in the work directory DIR (see SweepCommand and
+ *  SweepCoordinator), sweeping with N threads (default 1).
+ *  @author Xiaoru Zhao
+ */
+class WorkerCommand extends Command {
+
+    /** My command line. */
+    static final String USAGE = "--worker=DIR [--threads=N]";
+
+    /** A sweep worker whose options are in OPTIONS. */
+    WorkerCommand(Options options) {
+        super(options, USAGE);
+        _workerDir = options.value("--worker");
+        _threads = options.count("--threads");
+        if (!options.operands().isEmpty()) {
+            throw usage();
+        }
+        _coordinator = new SweepCoordinator(Paths.get(_workerDir));
+        List<String> job = _coordinator.job();
+        if (job.size() != SweepCommand.JOB_LINES) {
+            throw error("%s holds no sweep", _workerDir);
+        }
+        setConfig(job.get(0));
+        _settings = job.get(1);
+        _match = job.get(2).isEmpty() ? null : job.get(2);
+        try {
+            _top = Integer.parseInt(job.get(3));
+        } catch (NumberFormatException excp) {
+            throw error("%s holds no sweep", _workerDir);
+        }
+        _message = job.get(4);
+    }
+
+    /** Do the units of my sweep, recording for each unit a line for each
+     *  result holding its score, settings line and output, separated by
+     *  tabs. */
+    @Override
+    void run() {
+        KeyspaceSweep sweep = space(machine());
+        sweep.parse(_settings);
+        sweep.setThreads(_threads > 0 ? _threads : 1);
+        Alphabet alphabet = alphabet();
+        int[] message = indices(_message);
+        int[] target = _match == null ? null : indices(_match);
+        Predicate<int[]> accept = out -> target == null
+            || SweepCommand.agreement(out, target) == target.length;
+        String name = Long.toString(ProcessHandle.current().pid());
+        _coordinator.work(name, (from, to) -> {
+            List<String> lines = new ArrayList<>();
+            Consumer<KeyspaceSweep.Result> keep = r ->
+                lines.add(r.score() + "\t"
+                          + r.settingsLine(alphabet, sweep.plugboard())
+                          + "\t" + r.output(alphabet));
+            if (_top > 0) {
+                sweep.top(message,
+                          out -> SweepCommand.agreement(out, target),
+                          _top, from, to).forEach(keep);
+            } else {
+                sweep.run(message, from, to, accept, keep);
+            }
+            return lines;
+        });
+    }
+
+    /** Work directory of my sweep. */
+    private final String _workerDir;
+
+    /** Coordinator of my sweep. */
+    private final SweepCoordinator _coordinator;
+
+    /** Number of threads sweeping, or 0 for the default. */
+    private final int _threads;
+
+    /** Space of settings swept. */
+    private final String _settings;
+
+    /** Text that swept outputs must start with, or null. */
+    private final String _match;
+
+    /** Number of best swept results kept, or 0 to keep all that
+     *  match. */
+    private final int _top;
+
+    /** Message swept. */
+    private final String _message;
+
+}
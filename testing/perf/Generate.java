@@ -0,0 +1,208 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/** Generates the large configurations and inputs used by test-perf.
+ *  Usage: java Generate.java NAME DIR.  Writes DIR/NAME.conf and
+ *  DIR/NAME.in for the workload NAME (see WORKLOADS), and prints the
+ *  number of message characters in DIR/NAME.in.  The output depends only
+ *  on NAME, so workloads are the same on every run.
+ *  @author Xiaoru Zhao
+ */
+public class Generate {
+
+    /** The workloads: name, alphabet size, rotor slots, pawls, rotors in
+     *  the catalog, settings lines, message lines per settings line,
+     *  characters per message line, and plugboard pairs per settings
+     *  line. */
+    private static final Object[][] WORKLOADS = {
+        { "longlines", 26, 5, 3, 200, 1, 200, 50000, 5 },
+        { "manysettings", 26, 5, 3, 200, 20000, 1, 40, 10 },
+        { "bigalpha", 4096, 8, 6, 50, 4, 50, 5000, 100 },
+        { "bigcatalog", 256, 5, 3, 20000, 50, 10, 1000, 20 },
+    };
+
+    /** First code point of alphabets of more than 26 characters. */
+    private static final int LARGE_BASE = 0x4e00;
+
+    /** Upper-case letters. */
+    private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    /** Generate the workload ARGS[0] into directory ARGS[1]. */
+    public static void main(String... args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java Generate.java NAME DIR");
+            System.exit(1);
+        }
+        for (Object[] w : WORKLOADS) {
+            if (w[0].equals(args[0])) {
+                Path dir = Paths.get(args[1]);
+                Files.createDirectories(dir);
+                long chars = new Generate(w).write(dir);
+                System.out.println(chars);
+                return;
+            }
+        }
+        System.err.println("unknown workload: " + args[0]);
+        System.exit(1);
+    }
+
+    /** A generator for the workload described by W. */
+    Generate(Object[] w) {
+        _name = (String) w[0];
+        _size = (Integer) w[1];
+        _slots = (Integer) w[2];
+        _pawls = (Integer) w[3];
+        _catalog = (Integer) w[4];
+        _settings = (Integer) w[5];
+        _lines = (Integer) w[6];
+        _lineLength = (Integer) w[7];
+        _plugs = (Integer) w[8];
+        _random = new Random(_name.hashCode());
+        _alphabet = new int[_size];
+        for (int i = 0; i < _size; i += 1) {
+            _alphabet[i] = _size <= UPPER.length() ? UPPER.charAt(i)
+                : LARGE_BASE + i;
+        }
+    }
+
+    /** Write the configuration and input files into DIR, returning the
+     *  number of message characters. */
+    long write(Path dir) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(
+                 dir.resolve(_name + ".conf"), StandardCharsets.UTF_8)) {
+            out.write(text(_alphabet));
+            out.write(String.format(" %d %d%n", _slots, _pawls));
+            int fixed = _slots - _pawls - 1;
+            for (int r = 0; r < _catalog; r += 1) {
+                int kind = r % _slots;
+                if (kind == 0) {
+                    out.write(String.format(" R%d R %s%n", r, pairs()));
+                } else if (kind <= fixed) {
+                    out.write(String.format(" N%d N %s%n", r, cycles()));
+                } else {
+                    out.write(String.format(" M%d M%s %s%n", r,
+                        text(new int[] { symbol() }), cycles()));
+                }
+            }
+        }
+        long chars = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(
+                 dir.resolve(_name + ".in"), StandardCharsets.UTF_8)) {
+            for (int s = 0; s < _settings; s += 1) {
+                out.write(settingsLine());
+                out.newLine();
+                for (int l = 0; l < _lines; l += 1) {
+                    for (int c = 0; c < _lineLength; c += 1) {
+                        out.write(text(new int[] { symbol() }));
+                    }
+                    out.newLine();
+                    chars += _lineLength;
+                }
+            }
+        }
+        return chars;
+    }
+
+    /** Return a random settings line choosing from the catalog. */
+    private String settingsLine() {
+        StringBuilder line = new StringBuilder("*");
+        int fixed = _slots - _pawls - 1;
+        int period = _slots;
+        int groups = _catalog / period;
+        line.append(" R").append(period * _random.nextInt(groups));
+        int[] group = shuffle(groups);
+        for (int i = 0; i < fixed; i += 1) {
+            line.append(" N").append(period * group[i] + 1 + i);
+        }
+        for (int i = 0; i < _pawls; i += 1) {
+            line.append(" M").append(period * group[i] + 1 + fixed + i);
+        }
+        line.append(' ');
+        for (int i = 1; i < _slots; i += 1) {
+            line.append(text(new int[] { symbol() }));
+        }
+        int[] order = shuffle(_size);
+        for (int p = 0; p < _plugs && 2 * p + 1 < _size; p += 1) {
+            line.append(" (").append(text(new int[] {
+                _alphabet[order[2 * p]], _alphabet[order[2 * p + 1]] }))
+                .append(')');
+        }
+        return line.toString();
+    }
+
+    /** Return a random permutation of the alphabet in cycle notation. */
+    private String cycles() {
+        int[] next = shuffle(_size);
+        boolean[] seen = new boolean[_size];
+        StringBuilder result = new StringBuilder();
+        for (int start = 0; start < _size; start += 1) {
+            if (!seen[start]) {
+                result.append('(');
+                for (int k = start; !seen[k]; k = next[k]) {
+                    seen[k] = true;
+                    result.appendCodePoint(_alphabet[k]);
+                }
+                result.append(')');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Return a random pairing of the alphabet in cycle notation. */
+    private String pairs() {
+        int[] order = shuffle(_size);
+        StringBuilder result = new StringBuilder();
+        for (int k = 0; k + 1 < _size; k += 2) {
+            result.append('(').appendCodePoint(_alphabet[order[k]])
+                .appendCodePoint(_alphabet[order[k + 1]]).append(") ");
+        }
+        return result.toString();
+    }
+
+    /** Return a random character of the alphabet. */
+    private int symbol() {
+        return _alphabet[_random.nextInt(_size)];
+    }
+
+    /** Return a random permutation of 0 .. N-1. */
+    private int[] shuffle(int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = i;
+        }
+        for (int i = n - 1; i > 0; i -= 1) {
+            int j = _random.nextInt(i + 1);
+            int t = result[i];
+            result[i] = result[j];
+            result[j] = t;
+        }
+        return result;
+    }
+
+    /** Return the string of code points CPS. */
+    private static String text(int[] cps) {
+        return new String(cps, 0, cps.length);
+    }
+
+    /** Workload name. */
+    private final String _name;
+
+    /** Alphabet size, rotor slots, pawls, and rotors in the catalog. */
+    private final int _size, _slots, _pawls, _catalog;
+
+    /** Settings lines, message lines per settings line, characters per
+     *  message line, and plugboard pairs per settings line. */
+    private final int _settings, _lines, _lineLength, _plugs;
+
+    /** The alphabet's code points. */
+    private final int[] _alphabet;
+
+    /** Source of randomness. */
+    private final Random _random;
+
+}
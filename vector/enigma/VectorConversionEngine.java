@@ -0,0 +1,125 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.GE;
+import static jdk.incubator.vector.VectorOperators.LT;
+
+import static enigma.ScalarLockstepEngine.shift;
+import static enigma.ScalarLockstepEngine.step;
+
+/** A TableEngine that converts many characters of one message per
+ *  instruction.  The stepping of the rotors depends on the previous
+ *  step, but is cheap; what each character then goes through depends
+ *  only on the positions reached.  So the rotors are first stepped for a
+ *  block of characters, recording each slot's positions, and then the
+ *  characters of the block are converted SPECIES.length() at a time,
+ *  each table lookup being a gather.  Characters left over after the
+ *  last full vector of a block are converted one at a time.
+ *
+ *  This class uses the incubating jdk.incubator.vector module, so it is
+ *  kept out of the enigma directory and compiled separately (see
+ *  vector/Makefile); ConversionEngine.vector() loads it only if it was
+ *  compiled and the module is present.
+ *  @author Xiaoru Zhao
+ */
+class VectorConversionEngine extends TableEngine {
+
+    @Override
+    String name() {
+        return "vector";
+    }
+
+    @Override
+    void run(MachineLanes lanes, int[] msg, int from, int to, int[] out) {
+        int n = lanes.numRotors(), size = lanes.size();
+        int[] pool = lanes.pool();
+        int[] base = new int[n], posn = new int[n];
+        int[] before = new int[n], rotates = new int[n];
+        load(lanes, base, posn, before, rotates);
+        int plug = lanes.plugboards()[0];
+        if (_posns == null || _posns.length != n) {
+            _posns = new int[n][BLOCK];
+        }
+        for (int start = from; start < to; start += BLOCK) {
+            int len = Math.min(BLOCK, to - start);
+            for (int t = 0; t < len; t += 1) {
+                step(pool, size, base, posn, before, rotates);
+                for (int k = 0; k < n; k += 1) {
+                    _posns[k][t] = posn[k];
+                }
+            }
+            int full = SPECIES.loopBound(len);
+            for (int t = 0; t < full; t += SPECIES.length()) {
+                IntVector r =
+                    IntVector.fromArray(SPECIES, pool, plug, msg, start + t);
+                for (int k = n - 1; k >= 0; k -= 1) {
+                    r = through(pool, size, base[k], _posns[k], t, r);
+                }
+                for (int k = 1; k < n; k += 1) {
+                    r = through(pool, size, base[k] + size, _posns[k], t, r);
+                }
+                gather(pool, plug, r).intoArray(out, start + t);
+            }
+            for (int t = full; t < len; t += 1) {
+                int r = pool[plug + msg[start + t]];
+                for (int k = n - 1; k >= 0; k -= 1) {
+                    r = through(pool, size, base[k], _posns[k][t], r);
+                }
+                for (int k = 1; k < n; k += 1) {
+                    r = through(pool, size, base[k] + size, _posns[k][t], r);
+                }
+                out[start + t] = pool[plug + r];
+            }
+        }
+        store(lanes, posn, before);
+    }
+
+    /** Return the conversion of R, for the characters starting at T of a
+     *  block, through the table at TABLE in POOL of a rotor whose
+     *  positions for the block are POSNS, over an alphabet of SIZE
+     *  characters. */
+    private IntVector through(int[] pool, int size, int table, int[] posns,
+                              int t, IntVector r) {
+        IntVector p = IntVector.fromArray(SPECIES, posns, t);
+        IntVector x = wrap(r.add(p), size);
+        return wrap(gather(pool, table, x).sub(p), size);
+    }
+
+    /** Return the conversion of R through the table at TABLE in POOL of a
+     *  rotor at position P, over an alphabet of SIZE characters. */
+    private static int through(int[] pool, int size, int table, int p,
+                               int r) {
+        return shift(pool[table + shift(r, p, size)], -p, size);
+    }
+
+    /** Return the entries of POOL at OFFSET plus each element of
+     *  INDEX. */
+    private IntVector gather(int[] pool, int offset, IntVector index) {
+        index.intoArray(_index, 0);
+        return IntVector.fromArray(SPECIES, pool, offset, _index, 0);
+    }
+
+    /** Return V modulo SIZE, where -SIZE <= V < 2 * SIZE. */
+    private static IntVector wrap(IntVector v, int size) {
+        IntVector r = v.sub(size, v.compare(GE, size));
+        return r.add(size, r.compare(LT, 0));
+    }
+
+    /** The vector shape used. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Number of characters whose rotor positions are recorded at a
+     *  time. */
+    private static final int BLOCK = 1024;
+
+    /** The positions of each slot's rotor for each character of the
+     *  current block. */
+    private int[][] _posns;
+
+    /** Scratch index map for gathers. */
+    private final int[] _index = new int[SPECIES.length()];
+
+}
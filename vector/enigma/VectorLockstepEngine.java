@@ -0,0 +1,199 @@
+package enigma;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.GE;
+import static jdk.incubator.vector.VectorOperators.LT;
+import static jdk.incubator.vector.VectorOperators.NE;
+
+/** A LockstepEngine that holds as many lanes as fit in a SIMD register
+ *  in vectors, and steps and converts them together.  Each rotor's
+ *  position and notch flag for the group of lanes is one vector; table
+ *  lookups are gathers from the lanes' shared table, and the stepping
+ *  rules of Machine.convert become masks computed per lane.  Lanes left
+ *  over after the last full group are handled by the scalar engine.
+ *
+ *  This class uses the incubating jdk.incubator.vector module, so it is
+ *  kept out of the enigma directory and compiled separately (see
+ *  vector/Makefile); LockstepEngine.best() loads it only if it was
+ *  compiled and the module is present (java --add-modules
+ *  jdk.incubator.vector).
+ *  @author Xiaoru Zhao
+ */
+class VectorLockstepEngine extends LockstepEngine {
+
+    @Override
+    String name() {
+        return "vector" + SPECIES.length();
+    }
+
+    @Override
+    void convert(MachineLanes lanes, int[] msg, int len, int[] out) {
+        int count = lanes.lanes();
+        int full = SPECIES.loopBound(count);
+        for (int lane = 0; lane < full; lane += SPECIES.length()) {
+            new Group(lanes, lane).convert(msg, len, out);
+        }
+        _scalar.convert(lanes, msg, len, out, full, count);
+    }
+
+    /** The state of one group of SPECIES.length() lanes, held in
+     *  vectors while converting. */
+    private static class Group {
+
+        /** The group of lanes of LANES starting at lane FIRST. */
+        @SuppressWarnings("unchecked")
+        Group(MachineLanes lanes, int first) {
+            _lanes = lanes;
+            _first = first;
+            _n = lanes.numRotors();
+            _size = lanes.size();
+            _pool = lanes.pool();
+            _index = new int[SPECIES.length()];
+            _base = new IntVector[_n];
+            _posn = new IntVector[_n];
+            _before = new VectorMask[_n];
+            _rotates = new VectorMask[_n];
+            for (int k = 0; k < _n; k += 1) {
+                _base[k] = IntVector.fromArray(SPECIES, lanes.base(k), first);
+                _posn[k] = IntVector.fromArray(SPECIES, lanes.positions(k),
+                                               first);
+                _before[k] = IntVector.fromArray(SPECIES, lanes.before(k),
+                                                 first).compare(NE, 0);
+                _rotates[k] = IntVector.fromArray(SPECIES, lanes.rotates(k),
+                                                  first).compare(NE, 0);
+            }
+            _plug = IntVector.fromArray(SPECIES, lanes.plugboards(), first);
+        }
+
+        /** Convert the first LEN characters of MSG through my lanes,
+         *  storing the results in OUT as LockstepEngine.convert does, and
+         *  save my lanes' final states. */
+        void convert(int[] msg, int len, int[] out) {
+            int count = _lanes.lanes();
+            for (int t = 0; t < len; t += 1) {
+                step();
+                IntVector r = gather(_plug.add(msg[t]));
+                for (int k = _n - 1; k >= 0; k -= 1) {
+                    r = through(r, k, 0);
+                }
+                for (int k = 1; k < _n; k += 1) {
+                    r = through(r, k, _size);
+                }
+                gather(_plug.add(r)).intoArray(out, t * count + _first);
+            }
+            IntVector zero = IntVector.zero(SPECIES);
+            for (int k = 0; k < _n; k += 1) {
+                _posn[k].intoArray(_lanes.positions(k), _first);
+                zero.blend(1, _before[k]).intoArray(_lanes.before(k), _first);
+            }
+        }
+
+        /** Return the conversion of R by the rotor in slot K, using its
+         *  forward table if TABLE is 0, or its inverse if TABLE is the
+         *  alphabet size. */
+        private IntVector through(IntVector r, int k, int table) {
+            IntVector x = wrap(r.add(_posn[k]));
+            IntVector y = gather(_base[k].add(table).add(x));
+            return wrap(y.sub(_posn[k]));
+        }
+
+        /** Advance the rotors of each lane as Machine.convert would. */
+        private void step() {
+            int fast = _n - 1;
+            _before[fast] = _before[fast].or(notch(fast));
+            _posn[fast] = inc(_posn[fast], _rotates[fast]);
+            _before[fast] = _before[fast].or(notch(fast));
+            for (int i = fast - 1; i >= 0; i -= 1) {
+                VectorMask<Integer> moving = _rotates[i];
+                if (!moving.anyTrue()) {
+                    continue;
+                }
+                VectorMask<Integer> atNotch = notch(i);
+                _before[i] = _before[i].or(atNotch.and(moving));
+                VectorMask<Integer> carry =
+                    moving.and(_before[i + 1]).and(notch(i + 1).not());
+                _posn[i] = inc(_posn[i], carry);
+                _before[i + 1] = _before[i + 1].and(carry.not());
+                _before[i] = _before[i].or(carry.and(notch(i)));
+                if (i > 0) {
+                    VectorMask<Integer> both = moving.and(carry.not())
+                        .and(atNotch).and(_rotates[i - 1]);
+                    _posn[i] = inc(_posn[i], both);
+                    _posn[i - 1] = inc(_posn[i - 1], both);
+                    _before[i] = _before[i].and(both.not());
+                }
+            }
+        }
+
+        /** Return the lanes whose rotor in slot K is at a notch. */
+        private VectorMask<Integer> notch(int k) {
+            return gather(_base[k].add(2 * _size).add(_posn[k]))
+                .compare(NE, 0);
+        }
+
+        /** Return the positions P advanced by one in the lanes of MASK. */
+        private IntVector inc(IntVector p, VectorMask<Integer> mask) {
+            IntVector r = p.add(1, mask);
+            return r.sub(_size, r.compare(GE, _size));
+        }
+
+        /** Return V modulo the alphabet size, where -size <= V < 2 *
+         *  size. */
+        private IntVector wrap(IntVector v) {
+            IntVector r = v.sub(_size, v.compare(GE, _size));
+            return r.add(_size, r.compare(LT, 0));
+        }
+
+        /** Return the entries of the shared table at the offsets in
+         *  INDEX. */
+        private IntVector gather(IntVector index) {
+            index.intoArray(_index, 0);
+            return IntVector.fromArray(SPECIES, _pool, 0, _index, 0);
+        }
+
+        /** The lanes. */
+        private final MachineLanes _lanes;
+
+        /** My first lane. */
+        private final int _first;
+
+        /** Number of rotor slots. */
+        private final int _n;
+
+        /** Alphabet size. */
+        private final int _size;
+
+        /** The lanes' shared table. */
+        private final int[] _pool;
+
+        /** Scratch index map for gathers. */
+        private final int[] _index;
+
+        /** Offsets of each slot's rotor tables, by slot. */
+        private final IntVector[] _base;
+
+        /** Positions of each slot's rotor, by slot. */
+        private final IntVector[] _posn;
+
+        /** Notch flags of each slot's rotor, by slot. */
+        private final VectorMask<Integer>[] _before;
+
+        /** Lanes whose rotor in each slot moves, by slot. */
+        private final VectorMask<Integer>[] _rotates;
+
+        /** Offsets of the plugboard tables. */
+        private final IntVector _plug;
+
+    }
+
+    /** The vector shape used. */
+    private static final VectorSpecies<Integer> SPECIES =
+        IntVector.SPECIES_PREFERRED;
+
+    /** Engine for the lanes left over after the last full group. */
+    private final ScalarLockstepEngine _scalar = new ScalarLockstepEngine();
+
+}